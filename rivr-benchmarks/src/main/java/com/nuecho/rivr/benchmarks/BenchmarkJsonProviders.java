@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import javax.json.spi.*;
+
+import com.nuecho.rivr.voicexml.util.json.*;
+
+/**
+ * JSON-P providers compared by the benchmarks. The names are those accepted by
+ * the <code>jsonProvider</code> benchmark parameter. Providers are selected
+ * explicitly because the one found by {@link JsonProvider#provider()} depends
+ * on the class path.
+ *
+ * @author Nu Echo Inc.
+ */
+final class BenchmarkJsonProviders {
+
+    static final String GLASSFISH = "glassfish";
+    static final String JOHNZON = "johnzon";
+
+    private static final String GLASSFISH_PROVIDER_CLASS = "org.glassfish.json.JsonProviderImpl";
+    private static final String JOHNZON_PROVIDER_CLASS = "org.apache.johnzon.core.JsonProviderImpl";
+
+    private BenchmarkJsonProviders() {
+        //utility class: instantiation forbidden
+    }
+
+    static void use(String name) throws Exception {
+        String className;
+        if (GLASSFISH.equals(name)) {
+            className = GLASSFISH_PROVIDER_CLASS;
+        } else if (JOHNZON.equals(name)) {
+            className = JOHNZON_PROVIDER_CLASS;
+        } else throw new IllegalArgumentException("Unknown JSON provider '" + name + "'.");
+
+        JsonUtils.setProvider((JsonProvider) Class.forName(className).newInstance());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Minimal {@link HttpServletRequest} implementations used to drive the
+ * servlet-facing components outside of a servlet container. Only the methods
+ * used by the input turn factory and the step renderers are supported.
+ *
+ * @author Nu Echo Inc.
+ */
+final class BenchmarkRequests {
+
+    private static final String POST_METHOD = "POST";
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+    private static final String MULTIPART_BOUNDARY = "----RivrBenchmarkBoundary";
+    private static final String MULTIPART_CONTENT_TYPE = "multipart/form-data; boundary=" + MULTIPART_BOUNDARY;
+
+    private BenchmarkRequests() {
+        //utility class: instantiation forbidden
+    }
+
+    static HttpServletRequest createFormRequest(Map<String, String> parameters) {
+        return createRequest(POST_METHOD, FORM_CONTENT_TYPE, new byte[0], parameters);
+    }
+
+    static HttpServletRequest createMultipartRequest(Map<String, String> parameters,
+                                                     String fileParameterName,
+                                                     String fileContentType,
+                                                     byte[] fileContent) {
+        return createRequest(POST_METHOD,
+                             MULTIPART_CONTENT_TYPE,
+                             createMultipartBody(parameters, fileParameterName, fileContentType, fileContent),
+                             Collections.<String, String> emptyMap());
+    }
+
+    private static byte[] createMultipartBody(Map<String, String> parameters,
+                                              String fileParameterName,
+                                              String fileContentType,
+                                              byte[] fileContent) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                writeAscii(body, "--" + MULTIPART_BOUNDARY + "\r\n");
+                writeAscii(body, "Content-Disposition: form-data; name=\"" + parameter.getKey() + "\"\r\n");
+                writeAscii(body, "Content-Type: text/plain; charset=UTF-8\r\n\r\n");
+                body.write(parameter.getValue().getBytes(Encoding.UTF_8.getId()));
+                writeAscii(body, "\r\n");
+            }
+
+            writeAscii(body, "--" + MULTIPART_BOUNDARY + "\r\n");
+            writeAscii(body, "Content-Disposition: form-data; name=\""
+                             + fileParameterName
+                             + "\"; filename=\""
+                             + fileParameterName
+                             + "\"\r\n");
+            writeAscii(body, "Content-Type: " + fileContentType + "\r\n\r\n");
+            body.write(fileContent);
+            writeAscii(body, "\r\n--" + MULTIPART_BOUNDARY + "--\r\n");
+            return body.toByteArray();
+        } catch (IOException exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    private static void writeAscii(OutputStream outputStream, String string) throws IOException {
+        outputStream.write(string.getBytes(Encoding.US_ASCII.getId()));
+    }
+
+    private static HttpServletRequest createRequest(final String method,
+                                                    final String contentType,
+                                                    final byte[] body,
+                                                    final Map<String, String> parameters) {
+        InvocationHandler invocationHandler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method invokedMethod, Object[] arguments) {
+                String methodName = invokedMethod.getName();
+                if (methodName.equals("getMethod")) return method;
+                if (methodName.equals("getContentType")) return contentType;
+                if (methodName.equals("getContentLength")) return body.length;
+                if (methodName.equals("getContentLengthLong")) return (long) body.length;
+                if (methodName.equals("getCharacterEncoding")) return Encoding.UTF_8.getId();
+                if (methodName.equals("getInputStream")) return new ByteArrayServletInputStream(body);
+                if (methodName.equals("getParameter")) return parameters.get(arguments[0]);
+                if (methodName.equals("getParameterNames")) return Collections.enumeration(parameters.keySet());
+                if (methodName.equals("getHeader")) return getHeader((String) arguments[0]);
+                if (methodName.equals("toString")) return "BenchmarkRequest[" + contentType + "]";
+                if (methodName.equals("hashCode")) return System.identityHashCode(proxy);
+                if (methodName.equals("equals")) return proxy == arguments[0];
+                return null;
+            }
+
+            private String getHeader(String headerName) {
+                if (headerName.equalsIgnoreCase("Content-Type")) return contentType;
+                if (headerName.equalsIgnoreCase("Content-Length")) return Integer.toString(body.length);
+                return null;
+            }
+        };
+
+        return (HttpServletRequest) Proxy.newProxyInstance(BenchmarkRequests.class.getClassLoader(),
+                                                           new Class<?>[] {HttpServletRequest.class},
+                                                           invocationHandler);
+    }
+
+    private static final class ByteArrayServletInputStream extends ServletInputStream {
+        private final ByteArrayInputStream mInputStream;
+
+        public ByteArrayServletInputStream(byte[] bytes) {
+            mInputStream = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() {
+            return mInputStream.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            return mInputStream.read(buffer, offset, length);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
+import com.nuecho.rivr.voicexml.turn.output.grammar.*;
+
+/**
+ * Turns and dialogue contexts shared by the benchmarks. The names of the
+ * output turn types are those accepted by the <code>turnType</code> benchmark
+ * parameter.
+ *
+ * @author Nu Echo Inc.
+ */
+final class BenchmarkTurns {
+
+    static final String MESSAGE = "message";
+    static final String DTMF_INTERACTION = "dtmfInteraction";
+    static final String SPEECH_INTERACTION = "speechInteraction";
+    static final String RECORDING_INTERACTION = "recordingInteraction";
+    static final String SCRIPT = "script";
+    static final String OBJECT_CALL = "objectCall";
+    static final String SUBDIALOGUE_CALL = "subdialogueCall";
+    static final String BLIND_TRANSFER = "blindTransfer";
+    static final String BRIDGE_TRANSFER = "bridgeTransfer";
+    static final String CONSULTATION_TRANSFER = "consultationTransfer";
+
+    private static final String CONTEXT_PATH = "/app";
+    private static final String SERVLET_PATH = "/dialogue";
+
+    private BenchmarkTurns() {
+        //utility class: instantiation forbidden
+    }
+
+    static VoiceXmlDialogueContext createDialogueContext(String dialogueId) {
+        VoiceXmlDialogueContext dialogueContext = new VoiceXmlDialogueContext(null,
+                                                                              NOPLogger.NOP_LOGGER,
+                                                                              dialogueId,
+                                                                              CONTEXT_PATH,
+                                                                              SERVLET_PATH);
+        dialogueContext.setLanguage("en-US");
+        dialogueContext.getProperties().put("universals", "all");
+        return dialogueContext;
+    }
+
+    static VoiceXmlOutputTurn createOutputTurn(String turnType) {
+        if (MESSAGE.equals(turnType)) return createMessage();
+        if (DTMF_INTERACTION.equals(turnType)) return createDtmfInteraction();
+        if (SPEECH_INTERACTION.equals(turnType)) return createSpeechInteraction();
+        if (RECORDING_INTERACTION.equals(turnType)) return createRecordingInteraction();
+        if (SCRIPT.equals(turnType)) return createScript();
+        if (OBJECT_CALL.equals(turnType)) return createObjectCall();
+        if (SUBDIALOGUE_CALL.equals(turnType)) return createSubdialogueCall();
+        if (BLIND_TRANSFER.equals(turnType)) return createBlindTransfer();
+        if (BRIDGE_TRANSFER.equals(turnType)) return createBridgeTransfer();
+        if (CONSULTATION_TRANSFER.equals(turnType)) return createConsultationTransfer();
+        throw new IllegalArgumentException("Unknown turn type '" + turnType + "'.");
+    }
+
+    static Message createMessage() {
+        return OutputTurns.message("welcome")
+                          .addAudioItems(AudioFile.fromLocation("audio/welcome.wav",
+                                                                new SpeechSynthesis("Welcome to the service.")),
+                                         new Pause(Duration.milliseconds(500)),
+                                         new SpeechSynthesis("Your call is important to us."))
+                          .build();
+    }
+
+    private static Interaction createDtmfInteraction() {
+        DtmfRecognition dtmfRecognition = createDtmfRecognition();
+        return OutputTurns.interaction("menu")
+                          .addPrompt(dtmfRecognition,
+                                     new SpeechSynthesis("For sales, press 1. For support, press 2."),
+                                     AudioFile.fromLocation("audio/menu.wav"))
+                          .build(dtmfRecognition, Duration.seconds(5));
+    }
+
+    private static Interaction createSpeechInteraction() {
+        DtmfRecognition dtmfRecognition = createDtmfRecognition();
+        SpeechRecognition speechRecognition = new SpeechRecognition(new GrammarReference("grammars/menu.grxml"));
+        speechRecognition.setConfidenceLevel(0.5);
+        speechRecognition.setMaxNBest(3);
+        return OutputTurns.interaction("menu")
+                          .addPrompt(dtmfRecognition, speechRecognition, new SpeechSynthesis("Say sales or support."))
+                          .build(dtmfRecognition, speechRecognition, Duration.seconds(5));
+    }
+
+    private static Interaction createRecordingInteraction() {
+        Recording recording = new Recording();
+        recording.setBeep(true);
+        recording.setDtmfTermRecognition(createDtmfRecognition());
+        recording.setMaximumTime(Duration.seconds(30));
+        recording.setPostAudioToServer(true);
+        return OutputTurns.interaction("message")
+                          .addPrompt(new SpeechSynthesis("Leave a message after the tone."))
+                          .build(recording, Duration.seconds(5));
+    }
+
+    private static Script createScript() {
+        return OutputTurns.script("script")
+                          .addVariable("accountNumber")
+                          .addVariableString("language", "en-US")
+                          .addVariableExpression("retries", "application.retries + 1")
+                          .setCode("var result = accountNumber + retries;")
+                          .build();
+    }
+
+    private static ObjectCall createObjectCall() {
+        return OutputTurns.objectCall("object")
+                          .setClassId("method://example/object")
+                          .setData("http://example.com/object")
+                          .addParameter(ObjectCall.Parameter.createWithValue("name", "value"))
+                          .build();
+    }
+
+    private static SubdialogueCall createSubdialogueCall() {
+        return OutputTurns.subdialogueCall("subdialogue")
+                          .uri("http://example.com/subdialogue.vxml")
+                          .addVoiceXmlParameter(SubdialogueCall.Parameter.createWithValue("name", "value"))
+                          .build();
+    }
+
+    private static BlindTransfer createBlindTransfer() {
+        BlindTransfer.Builder builder = OutputTurns.blindTransfer("transfer");
+        builder.setDestination("tel:+15145550100");
+        return builder.build();
+    }
+
+    private static BridgeTransfer createBridgeTransfer() {
+        BridgeTransfer.Builder builder = OutputTurns.bridgeTransfer("transfer");
+        builder.setDestination("tel:+15145550100");
+        builder.setMaximumDuration(Duration.minutes(5));
+        return builder.build();
+    }
+
+    private static ConsultationTransfer createConsultationTransfer() {
+        ConsultationTransfer.Builder builder = OutputTurns.consultationTransfer("transfer");
+        builder.setDestination("tel:+15145550100");
+        return builder.build();
+    }
+
+    private static DtmfRecognition createDtmfRecognition() {
+        DtmfRecognition dtmfRecognition = new DtmfRecognition(new GrammarReference("builtin:dtmf/digits?length=1"));
+        dtmfRecognition.setTermChar("#");
+        return dtmfRecognition;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import java.io.*;
+
+import org.openjdk.jmh.infra.*;
+
+/**
+ * {@link OutputStream} discarding the written bytes into a JMH
+ * {@link Blackhole} so that rendered documents are not copied into a buffer.
+ *
+ * @author Nu Echo Inc.
+ */
+final class BlackholeOutputStream extends OutputStream {
+
+    private final Blackhole mBlackhole;
+    private long mCount;
+
+    public BlackholeOutputStream(Blackhole blackhole) {
+        mBlackhole = blackhole;
+    }
+
+    @Override
+    public void write(int value) {
+        mBlackhole.consume(value);
+        mCount++;
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) {
+        mBlackhole.consume(buffer);
+        mCount += length;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+}
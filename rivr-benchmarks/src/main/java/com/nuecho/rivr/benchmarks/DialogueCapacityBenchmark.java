@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.synchronous.*;
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.first.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+import com.nuecho.rivr.voicexml.turn.last.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+
+/**
+ * Measures how many concurrent dialogues one node can hold, with platform or
+ * virtual dialogue threads. Each operation starts <code>dialogueCount</code>
+ * dialogues, each one parked in <code>doTurn()</code> waiting for its next
+ * input turn, as between the requests of a call.
+ * <p>
+ * The time of the operation is the time taken to start the dialogues. The
+ * auxiliary counters report the number of dialogues actually parked, which is
+ * lower than <code>dialogueCount</code> if no more dialogue thread can be
+ * created, and the heap used by the parked dialogues after a garbage
+ * collection. The stacks of platform threads are not allocated in the heap:
+ * their cost shows in the number of dialogues reached rather than in the heap.
+ * Virtual threads require Java 21 or later.
+ *
+ * @author Nu Echo Inc.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+// a single iteration: JMH adds up the auxiliary counters of the iterations
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class DialogueCapacityBenchmark {
+
+    // long enough for the dialogues to stay parked until the iteration tear down
+    private static final Duration PARKED_TIMEOUT = Duration.minutes(5);
+    private static final Duration TIMEOUT = Duration.seconds(5);
+
+    @Param({DialogueChannelBenchmark.PLATFORM_THREAD_FACTORY, DialogueChannelBenchmark.VIRTUAL_THREAD_FACTORY})
+    public String threadFactory;
+
+    @Param({"1000", "10000"})
+    public int dialogueCount;
+
+    private ThreadFactory mThreadFactory;
+    private List<SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext>> mChannels;
+    private long mBaselineHeap;
+
+    /**
+     * Reached capacity, reported by JMH next to the time of the operation.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Capacity {
+        public long parkedDialogues;
+        public long usedHeapBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            parkedDialogues = 0;
+            usedHeapBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mThreadFactory = DialogueChannelBenchmark.getThreadFactory(threadFactory);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        mChannels = new ArrayList<SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext>>(dialogueCount);
+        mBaselineHeap = getUsedHeap();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() throws InterruptedException {
+        for (SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> channel : mChannels) {
+            channel.stop(TIMEOUT);
+        }
+        mChannels = null;
+    }
+
+    @Benchmark
+    public void parkDialogues(Capacity capacity) throws Exception {
+        for (int index = 0; index < dialogueCount; index++) {
+            SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> channel = new SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext>();
+            channel.setDialogueThreadFactory(mThreadFactory);
+            try {
+                channel.start(new ParkedDialogue(),
+                              new VoiceXmlFirstTurn(),
+                              TIMEOUT,
+                              new VoiceXmlDialogueContext(channel, NOPLogger.NOP_LOGGER, "benchmark", "/app", "/dialogue"));
+            } catch (OutOfMemoryError error) {
+                // no more native thread can be created: the capacity is reached
+                break;
+            }
+            mChannels.add(channel);
+        }
+
+        capacity.parkedDialogues = mChannels.size();
+        capacity.usedHeapBytes = getUsedHeap() - mBaselineHeap;
+    }
+
+    private static long getUsedHeap() {
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        memoryMXBean.gc();
+        return memoryMXBean.getHeapMemoryUsage().getUsed();
+    }
+
+    private static final class ParkedDialogue implements VoiceXmlDialogue {
+        private final Message mMessage = BenchmarkTurns.createMessage();
+
+        @Override
+        public VoiceXmlLastTurn run(VoiceXmlFirstTurn firstTurn, VoiceXmlDialogueContext context) throws Exception {
+            while (true) {
+                context.getDialogueChannel().doTurn(mMessage, PARKED_TIMEOUT);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.synchronous.*;
+import com.nuecho.rivr.core.channel.synchronous.step.*;
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.first.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+import com.nuecho.rivr.voicexml.turn.last.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+
+/**
+ * Measures the turn exchange between the controller and the dialogue thread
+ * through a {@link SynchronousDialogueChannel}, as well as the complete
+ * lifecycle of a dialogue (thread creation, first step and termination).
+ * <p>
+ * The <code>threadFactory</code> parameter selects between platform and
+ * virtual dialogue threads. Virtual threads require Java 21 or later.
+ *
+ * @author Nu Echo Inc.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DialogueChannelBenchmark {
+
+    static final String PLATFORM_THREAD_FACTORY = "platform";
+    static final String VIRTUAL_THREAD_FACTORY = "virtual";
+
+    private static final Duration TIMEOUT = Duration.seconds(5);
+
+    @Param({PLATFORM_THREAD_FACTORY, VIRTUAL_THREAD_FACTORY})
+    public String threadFactory;
+
+    private ThreadFactory mThreadFactory;
+    private SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> mRoundTripChannel;
+    private final VoiceXmlInputTurn mInputTurn = new VoiceXmlInputTurn();
+
+    @Setup
+    public void setUp() throws Exception {
+        mThreadFactory = getThreadFactory(threadFactory);
+        mRoundTripChannel = createChannel();
+        mRoundTripChannel.start(new LoopingDialogue(),
+                                new VoiceXmlFirstTurn(),
+                                TIMEOUT,
+                                createDialogueContext(mRoundTripChannel));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        mRoundTripChannel.stop(TIMEOUT);
+    }
+
+    @Benchmark
+    public Step<VoiceXmlOutputTurn, VoiceXmlLastTurn> roundTrip() throws Exception {
+        return mRoundTripChannel.doTurn(mInputTurn, TIMEOUT);
+    }
+
+    @Benchmark
+    public Step<VoiceXmlOutputTurn, VoiceXmlLastTurn> dialogueLifecycle() throws Exception {
+        SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> channel = createChannel();
+        Step<VoiceXmlOutputTurn, VoiceXmlLastTurn> step = channel.start(new ExitingDialogue(),
+                                                                        new VoiceXmlFirstTurn(),
+                                                                        TIMEOUT,
+                                                                        createDialogueContext(channel));
+        channel.join(TIMEOUT);
+        return step;
+    }
+
+    private SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> createChannel() {
+        SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> channel = new SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext>();
+        channel.setDialogueThreadFactory(mThreadFactory);
+        return channel;
+    }
+
+    private static VoiceXmlDialogueContext createDialogueContext(SynchronousDialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> channel) {
+        return new VoiceXmlDialogueContext(channel, NOPLogger.NOP_LOGGER, "benchmark", "/app", "/dialogue");
+    }
+
+    static ThreadFactory getThreadFactory(String threadFactory) {
+        if (PLATFORM_THREAD_FACTORY.equals(threadFactory)) return DialogueThreadFactories.platformThreadFactory();
+        if (VIRTUAL_THREAD_FACTORY.equals(threadFactory)) return DialogueThreadFactories.virtualThreadFactory();
+        throw new IllegalArgumentException("Unknown thread factory '" + threadFactory + "'.");
+    }
+
+    private static final class LoopingDialogue implements VoiceXmlDialogue {
+        private final Message mMessage = BenchmarkTurns.createMessage();
+
+        @Override
+        public VoiceXmlLastTurn run(VoiceXmlFirstTurn firstTurn, VoiceXmlDialogueContext context) throws Exception {
+            while (true) {
+                context.getDialogueChannel().doTurn(mMessage, TIMEOUT);
+            }
+        }
+    }
+
+    private static final class ExitingDialogue implements VoiceXmlDialogue {
+        @Override
+        public VoiceXmlLastTurn run(VoiceXmlFirstTurn firstTurn, VoiceXmlDialogueContext context) {
+            return new Exit("exit");
+        }
+    }
+}
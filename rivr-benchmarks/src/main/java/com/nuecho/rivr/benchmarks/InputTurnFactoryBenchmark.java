@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.servlet.http.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.nuecho.rivr.voicexml.servlet.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+
+/**
+ * Measures the creation of a {@link VoiceXmlInputTurn} from an HTTP request by
+ * the {@link VoiceXmlInputTurnFactory}.
+ * <p>
+ * The <code>encoding</code> parameter selects between a form-encoded request
+ * carrying a recognition result and a multipart request carrying a recording.
+ * The size of the recording is controlled by the <code>recordingSize</code>
+ * parameter. The <code>jsonProvider</code> parameter selects the JSON-P
+ * implementation used to parse the input turn.
+ * <p>
+ * The recognition result is built lazily by the factory: the
+ * <code>readRecognitionResult</code> benchmark also includes building it.
+ *
+ * @author Nu Echo Inc.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InputTurnFactoryBenchmark {
+
+    static final String FORM_ENCODING = "form";
+    static final String MULTIPART_ENCODING = "multipart";
+
+    private static final String RECOGNITION_INPUT_TURN = "{\"recognition\":{\"result\":["
+                                                         + "{\"utterance\":\"sales\",\"interpretation\":\"sales\","
+                                                         + "\"confidence\":0.92,\"inputmode\":\"voice\"},"
+                                                         + "{\"utterance\":\"support\",\"interpretation\":\"support\","
+                                                         + "\"confidence\":0.31,\"inputmode\":\"voice\"}],"
+                                                         + "\"mark\":{\"name\":\"prompt\",\"time\":1250}}}";
+
+    private static final String RECORDING_INPUT_TURN = "{\"recordingMetaData\":"
+                                                       + "{\"duration\":8000,\"maxTime\":false,\"termChar\":\"#\"}}";
+
+    @Param({FORM_ENCODING, MULTIPART_ENCODING})
+    public String encoding;
+
+    @Param({"65536"})
+    public int recordingSize;
+
+    @Param({BenchmarkJsonProviders.GLASSFISH, BenchmarkJsonProviders.JOHNZON})
+    public String jsonProvider;
+
+    private final VoiceXmlInputTurnFactory mInputTurnFactory = new VoiceXmlInputTurnFactory();
+    private HttpServletRequest mRequest;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkJsonProviders.use(jsonProvider);
+        if (FORM_ENCODING.equals(encoding)) {
+            mRequest = BenchmarkRequests.createFormRequest(Collections.singletonMap(VoiceXmlInputTurnFactory.INPUT_TURN_PARAMETER,
+                                                                                    RECOGNITION_INPUT_TURN));
+        } else if (MULTIPART_ENCODING.equals(encoding)) {
+            mRequest = BenchmarkRequests.createMultipartRequest(Collections.singletonMap(VoiceXmlInputTurnFactory.INPUT_TURN_PARAMETER,
+                                                                                         RECORDING_INPUT_TURN),
+                                                                VoiceXmlInputTurnFactory.RECORDING_PARAMETER,
+                                                                "audio/x-wav",
+                                                                new byte[recordingSize]);
+        } else throw new IllegalArgumentException("Unknown encoding '" + encoding + "'.");
+    }
+
+    @Benchmark
+    public VoiceXmlInputTurn createInputTurn() throws Exception {
+        return mInputTurnFactory.createInputTurn(mRequest, null);
+    }
+
+    @Benchmark
+    public Object readRecognitionResult() throws Exception {
+        VoiceXmlInputTurn inputTurn = mInputTurnFactory.createInputTurn(mRequest, null);
+        RecognitionInfo recognitionInfo = inputTurn.getRecognitionInfo();
+        if (recognitionInfo == null) return inputTurn;
+        return recognitionInfo.getRecognitionResult();
+    }
+}
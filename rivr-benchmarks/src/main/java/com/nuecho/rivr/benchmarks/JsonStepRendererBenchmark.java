@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.servlet.http.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.rendering.json.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+
+/**
+ * Measures the rendering of an output turn by the {@link JsonStepRenderer},
+ * which serializes the turn to JSON and embeds the rendered VoiceXML
+ * document. The <code>jsonProvider</code> parameter selects the JSON-P
+ * implementation.
+ *
+ * @author Nu Echo Inc.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonStepRendererBenchmark {
+
+    @Param({BenchmarkTurns.MESSAGE,
+            BenchmarkTurns.DTMF_INTERACTION,
+            BenchmarkTurns.SPEECH_INTERACTION,
+            BenchmarkTurns.RECORDING_INTERACTION,
+            BenchmarkTurns.SCRIPT,
+            BenchmarkTurns.OBJECT_CALL,
+            BenchmarkTurns.SUBDIALOGUE_CALL,
+            BenchmarkTurns.BLIND_TRANSFER,
+            BenchmarkTurns.BRIDGE_TRANSFER,
+            BenchmarkTurns.CONSULTATION_TRANSFER})
+    public String turnType;
+
+    @Param({BenchmarkJsonProviders.GLASSFISH, BenchmarkJsonProviders.JOHNZON})
+    public String jsonProvider;
+
+    private JsonStepRenderer mRenderer;
+    private VoiceXmlOutputTurn mOutputTurn;
+    private VoiceXmlDialogueContext mDialogueContext;
+    private HttpServletRequest mRequest;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkJsonProviders.use(jsonProvider);
+        mRenderer = new JsonStepRenderer(VoiceXmlStepRendererBenchmark.createRenderer(VoiceXmlStepRendererBenchmark.STREAMING_RENDERING,
+                                                                                      false));
+        mOutputTurn = BenchmarkTurns.createOutputTurn(turnType);
+        mDialogueContext = BenchmarkTurns.createDialogueContext("benchmark");
+        mRequest = BenchmarkRequests.createFormRequest(Collections.<String, String> emptyMap());
+    }
+
+    @Benchmark
+    public long renderOutputTurn(Blackhole blackhole) throws Exception {
+        ServletResponseContent content = mRenderer.createDocumentForOutputTurn(mOutputTurn,
+                                                                               mRequest,
+                                                                               null,
+                                                                               mDialogueContext);
+        BlackholeOutputStream outputStream = new BlackholeOutputStream(blackhole);
+        try {
+            content.writeTo(outputStream);
+        } finally {
+            //as done by the dialogue servlet once the response is written
+            if (content instanceof ReleasableServletResponseContent) {
+                ((ReleasableServletResponseContent) content).release();
+            }
+        }
+        return outputStream.getCount();
+    }
+}
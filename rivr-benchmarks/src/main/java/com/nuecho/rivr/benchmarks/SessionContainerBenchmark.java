@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.servlet.session.*;
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.first.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+import com.nuecho.rivr.voicexml.turn.last.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+
+/**
+ * Measures concurrent session lookups in a {@link SessionContainer}, which
+ * happen on every request processed by the dialogue servlet.
+ *
+ * @author Nu Echo Inc.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class SessionContainerBenchmark {
+
+    @Param({"100", "10000"})
+    public int sessionCount;
+
+    private SessionContainer<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> mSessionContainer;
+    private String[] mSessionIds;
+
+    @Setup
+    public void setUp() {
+        mSessionContainer = new SessionContainer<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext>(NOPLogger.NOP_LOGGER,
+                                                                                                                                                     Duration.minutes(30),
+                                                                                                                                                     Duration.minutes(1),
+                                                                                                                                                     "benchmark");
+        mSessionIds = new String[sessionCount];
+        for (int index = 0; index < sessionCount; index++) {
+            String sessionId = "session-" + index;
+            mSessionIds[index] = sessionId;
+            mSessionContainer.addSession(new Session<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext>(mSessionContainer,
+                                                                                                                                                         sessionId));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        // sessions have no dialogue channel: remove them before stopping the container
+        for (String sessionId : mSessionIds) {
+            mSessionContainer.removeSession(sessionId);
+        }
+        mSessionContainer.stop();
+    }
+
+    @Benchmark
+    public Session<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> getSession() {
+        String sessionId = mSessionIds[ThreadLocalRandom.current().nextInt(mSessionIds.length)];
+        return mSessionContainer.getSession(sessionId);
+    }
+}
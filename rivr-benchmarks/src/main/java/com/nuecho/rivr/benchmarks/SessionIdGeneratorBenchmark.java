@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.nuecho.rivr.core.servlet.session.*;
+
+/**
+ * Measures concurrent session id generation, which happens on every call
+ * set-up, with {@link UUID#randomUUID()} and with the
+ * {@link RandomSessionIdGenerator}.
+ *
+ * @author Nu Echo Inc.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class SessionIdGeneratorBenchmark {
+
+    private SessionIdGenerator mSessionIdGenerator;
+
+    @Setup
+    public void setUp() {
+        mSessionIdGenerator = new RandomSessionIdGenerator("node1");
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String randomSessionIdGenerator() {
+        return mSessionIdGenerator.generateSessionId();
+    }
+}
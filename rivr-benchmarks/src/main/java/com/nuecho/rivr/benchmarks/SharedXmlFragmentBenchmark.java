@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import javax.xml.parsers.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+import org.w3c.dom.*;
+import org.xml.sax.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
+import com.nuecho.rivr.voicexml.turn.output.grammar.*;
+
+/**
+ * Measures the rendering of a speech interaction with a large inline SRGS
+ * grammar and a SSML prompt, depending on whether they are
+ * {@link SharedXmlFragment shared fragments} or plain DOM nodes.
+ *
+ * @author Nu Echo Inc.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SharedXmlFragmentBenchmark {
+
+    static final String SHARED_FRAGMENTS = "shared";
+    static final String DOM_FRAGMENTS = "dom";
+
+    private static final String GRAMMAR_NAMESPACE = "http://www.w3.org/2001/06/grammar";
+    private static final String SSML_NAMESPACE = "http://www.w3.org/2001/10/synthesis";
+
+    @Param({SHARED_FRAGMENTS, DOM_FRAGMENTS})
+    public String fragments;
+
+    @Param({VoiceXmlStepRendererBenchmark.STREAMING_RENDERING, VoiceXmlStepRendererBenchmark.DOM_RENDERING})
+    public String rendering;
+
+    @Param({"200"})
+    public int grammarItemCount;
+
+    private VoiceXmlStepRenderer mRenderer;
+    private VoiceXmlOutputTurn mOutputTurn;
+    private VoiceXmlDialogueContext mDialogueContext;
+
+    @Setup
+    public void setUp() throws Exception {
+        Document grammar = createGrammar(grammarItemCount);
+        DocumentFragment prompt = createPrompt();
+
+        InlineXmlGrammar grammarItem;
+        SpeechSynthesis promptItem;
+        if (SHARED_FRAGMENTS.equals(fragments)) {
+            grammarItem = InlineXmlGrammar.shared("benchmark.grammar", grammar);
+            promptItem = SpeechSynthesis.shared("benchmark.prompt", prompt);
+        } else if (DOM_FRAGMENTS.equals(fragments)) {
+            grammarItem = new InlineXmlGrammar(grammar);
+            promptItem = new SpeechSynthesis(prompt);
+        } else throw new IllegalArgumentException("Unknown fragments mode '" + fragments + "'.");
+
+        SpeechRecognition speechRecognition = new SpeechRecognition(grammarItem);
+        mOutputTurn = OutputTurns.interaction("menu")
+                                 .addPrompt(speechRecognition, promptItem)
+                                 .build(speechRecognition, Duration.seconds(5));
+        mRenderer = VoiceXmlStepRendererBenchmark.createRenderer(rendering, false);
+        mDialogueContext = BenchmarkTurns.createDialogueContext("benchmark");
+    }
+
+    @TearDown
+    public void tearDown() {
+        SharedXmlFragment.clearRegistry();
+    }
+
+    @Benchmark
+    public long renderOutputTurn(Blackhole blackhole) throws Exception {
+        BlackholeOutputStream outputStream = new BlackholeOutputStream(blackhole);
+        mRenderer.createDocumentForOutputTurn(mOutputTurn, null, null, mDialogueContext).writeTo(outputStream);
+        return outputStream.getCount();
+    }
+
+    private static Document createGrammar(int itemCount) throws Exception {
+        StringBuilder source = new StringBuilder();
+        source.append("<grammar xmlns=\"" + GRAMMAR_NAMESPACE + "\" version=\"1.0\" root=\"main\" xml:lang=\"en-US\">");
+        source.append("<rule id=\"main\" scope=\"public\"><one-of>");
+        for (int index = 0; index < itemCount; index++) {
+            source.append("<item>product number ").append(index);
+            source.append("<tag>out.product = ").append(index).append(";</tag></item>");
+        }
+        source.append("</one-of></rule></grammar>");
+        return parse(source.toString());
+    }
+
+    private static DocumentFragment createPrompt() throws Exception {
+        Document document = parse("<speak xmlns=\""
+                                  + SSML_NAMESPACE
+                                  + "\">Please say the name of the product. <break time=\"300ms\"/>"
+                                  + "For example, say <emphasis>product number one</emphasis>.</speak>");
+        DocumentFragment documentFragment = document.createDocumentFragment();
+        Element speakElement = document.getDocumentElement();
+        while (speakElement.getFirstChild() != null) {
+            documentFragment.appendChild(speakElement.getFirstChild());
+        }
+        return documentFragment;
+    }
+
+    private static Document parse(String source) throws ParserConfigurationException, SAXException, IOException {
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        return documentBuilderFactory.newDocumentBuilder().parse(new InputSource(new StringReader(source)));
+    }
+}
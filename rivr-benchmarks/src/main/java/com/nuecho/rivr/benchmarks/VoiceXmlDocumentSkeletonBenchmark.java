@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+
+/**
+ * Measures the benefit of the {@link VoiceXmlDocumentSkeleton} cache on the
+ * streaming rendering of an output turn.
+ * <p>
+ * When the <code>cache</code> parameter is <code>disabled</code>, the cache is
+ * filled to capacity with skeletons of unrelated dialogue contexts so that the
+ * document start and end are written directly for every rendered turn.
+ *
+ * @author Nu Echo Inc.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VoiceXmlDocumentSkeletonBenchmark {
+
+    static final String CACHE_ENABLED = "enabled";
+    static final String CACHE_DISABLED = "disabled";
+
+    private static final String FILLER_PROPERTY = "benchmark.filler";
+
+    @Param({CACHE_ENABLED, CACHE_DISABLED})
+    public String cache;
+
+    @Param({"false", "true"})
+    public boolean compactOutput;
+
+    private VoiceXmlStepRenderer mRenderer;
+    private VoiceXmlOutputTurn mOutputTurn;
+    private VoiceXmlDialogueContext mDialogueContext;
+
+    @Setup
+    public void setUp() {
+        VoiceXmlDocumentSkeleton.clearCache();
+        if (CACHE_DISABLED.equals(cache)) {
+            fillCache();
+        } else if (!CACHE_ENABLED.equals(cache))
+            throw new IllegalArgumentException("Unknown cache mode '" + cache + "'.");
+
+        mRenderer = VoiceXmlStepRendererBenchmark.createRenderer(VoiceXmlStepRendererBenchmark.STREAMING_RENDERING,
+                                                                 compactOutput);
+        mOutputTurn = BenchmarkTurns.createMessage();
+        mDialogueContext = BenchmarkTurns.createDialogueContext("benchmark");
+    }
+
+    @TearDown
+    public void tearDown() {
+        VoiceXmlDocumentSkeleton.clearCache();
+    }
+
+    @Benchmark
+    public long renderOutputTurn(Blackhole blackhole) throws Exception {
+        BlackholeOutputStream outputStream = new BlackholeOutputStream(blackhole);
+        mRenderer.createDocumentForOutputTurn(mOutputTurn, null, null, mDialogueContext).writeTo(outputStream);
+        return outputStream.getCount();
+    }
+
+    private void fillCache() {
+        for (int index = 0; index < VoiceXmlDocumentSkeleton.CACHE_CAPACITY; index++) {
+            VoiceXmlDialogueContext dialogueContext = BenchmarkTurns.createDialogueContext("filler");
+            dialogueContext.getProperties().put(FILLER_PROPERTY, Integer.toString(index));
+            VoiceXmlDocumentSkeleton.getOutputTurnSkeleton(dialogueContext, !compactOutput);
+        }
+    }
+}
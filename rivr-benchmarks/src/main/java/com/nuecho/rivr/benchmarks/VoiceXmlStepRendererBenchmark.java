@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+import org.w3c.dom.*;
+
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.*;
+import com.nuecho.rivr.voicexml.turn.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+
+/**
+ * Measures the rendering of an output turn into a VoiceXML document, from
+ * {@link VoiceXmlStepRenderer#createDocumentForOutputTurn} to the last byte
+ * written to the response stream.
+ * <p>
+ * The <code>rendering</code> parameter selects between the streaming path and
+ * the DOM path. The DOM path is forced by registering a
+ * {@link VoiceXmlDocumentAdapter} that does nothing.
+ *
+ * @author Nu Echo Inc.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VoiceXmlStepRendererBenchmark {
+
+    static final String STREAMING_RENDERING = "streaming";
+    static final String DOM_RENDERING = "dom";
+
+    @Param({BenchmarkTurns.MESSAGE,
+            BenchmarkTurns.DTMF_INTERACTION,
+            BenchmarkTurns.SPEECH_INTERACTION,
+            BenchmarkTurns.RECORDING_INTERACTION,
+            BenchmarkTurns.SCRIPT,
+            BenchmarkTurns.OBJECT_CALL,
+            BenchmarkTurns.SUBDIALOGUE_CALL,
+            BenchmarkTurns.BLIND_TRANSFER,
+            BenchmarkTurns.BRIDGE_TRANSFER,
+            BenchmarkTurns.CONSULTATION_TRANSFER})
+    public String turnType;
+
+    @Param({STREAMING_RENDERING, DOM_RENDERING})
+    public String rendering;
+
+    @Param({"false", "true"})
+    public boolean compactOutput;
+
+    private VoiceXmlStepRenderer mRenderer;
+    private VoiceXmlOutputTurn mOutputTurn;
+    private VoiceXmlDialogueContext mDialogueContext;
+
+    @Setup
+    public void setUp() {
+        mRenderer = createRenderer(rendering, compactOutput);
+        mOutputTurn = BenchmarkTurns.createOutputTurn(turnType);
+        mDialogueContext = BenchmarkTurns.createDialogueContext("benchmark");
+    }
+
+    @Benchmark
+    public long renderOutputTurn(Blackhole blackhole) throws Exception {
+        ServletResponseContent content = mRenderer.createDocumentForOutputTurn(mOutputTurn,
+                                                                               null,
+                                                                               null,
+                                                                               mDialogueContext);
+        BlackholeOutputStream outputStream = new BlackholeOutputStream(blackhole);
+        try {
+            content.writeTo(outputStream);
+        } finally {
+            //as done by the dialogue servlet once the response is written
+            if (content instanceof ReleasableServletResponseContent) {
+                ((ReleasableServletResponseContent) content).release();
+            }
+        }
+        return outputStream.getCount();
+    }
+
+    static VoiceXmlStepRenderer createRenderer(String rendering, boolean compactOutput) {
+        if (STREAMING_RENDERING.equals(rendering)) return new VoiceXmlStepRenderer(null, compactOutput);
+        if (DOM_RENDERING.equals(rendering))
+            return new VoiceXmlStepRenderer(Collections.singletonList(new NoOpDocumentAdapter()), compactOutput);
+        throw new IllegalArgumentException("Unknown rendering '" + rendering + "'.");
+    }
+
+    private static final class NoOpDocumentAdapter implements VoiceXmlDocumentAdapter {
+        @Override
+        public void adaptVoiceXmlDocument(Document voiceXmlDocument) {}
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * JMH benchmarks of the turn processing path: dialogue channel, step
+ * renderers, input turn factory and session container.
+ */
+package com.nuecho.rivr.benchmarks;
+
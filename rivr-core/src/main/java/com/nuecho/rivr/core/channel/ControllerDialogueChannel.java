@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel;
+
+import java.util.concurrent.*;
+
+import org.slf4j.*;
+
+import com.nuecho.rivr.core.channel.asynchronous.*;
+import com.nuecho.rivr.core.channel.synchronous.*;
+import com.nuecho.rivr.core.channel.synchronous.step.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * A {@link DialogueChannel} as seen from the controller (such as the
+ * {@link DialogueServlet}). The controller starts the dialogue with
+ * {@link #start(Dialogue, FirstTurn, Duration, DialogueContext)} and sends
+ * input turns with {@link #doTurn(InputTurn, Duration)}. In exchange, it
+ * receives {@link Step Steps} from the dialogue.
+ *
+ * @param <F> type of {@link FirstTurn}
+ * @param <L> type of {@link LastTurn}
+ * @param <O> type of {@link OutputTurn}
+ * @param <I> type of {@link InputTurn}
+ * @param <C> type of {@link DialogueContext}
+ * @see SynchronousDialogueChannel
+ * @see AsynchronousDialogueChannel
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface ControllerDialogueChannel<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
+        extends DialogueChannel<I, O> {
+
+    /**
+     * Starts a {@link Dialogue}.
+     *
+     * @param dialogue Dialogue to start. Cannot be <code>null</code>.
+     * @param firstTurn First turn passed to the dialogue. Cannot be
+     *            <code>null</code>.
+     * @param timeout maximum time allowed to receive the first step from the
+     *            dialogue. If <code>null</code>, uses the default value of
+     *            this dialogue channel. A value of Duration.ZERO (or
+     *            equivalent) means to wait forever.
+     * @param context Dialogue context passed to the dialogue. Cannot be
+     *            <code>null</code>.
+     * @return the first Step of the dialogue.
+     * @throws Timeout If no result can be obtain from dialogue after delay
+     *             specified by <code>timeout</code> parameter.
+     * @throws InterruptedException if the controller has been interrupted.
+     */
+    Step<O, L> start(Dialogue<I, O, F, L, C> dialogue, F firstTurn, Duration timeout, C context) throws Timeout,
+            InterruptedException;
+
+    /**
+     * Performs a turn exchange: the dialogue channel will return the next
+     * {@link Step} of the dialogue.
+     *
+     * @param inputTurn the input turn to send to the dialogue
+     * @param timeout maximum time allowed to receive the step from the
+     *            dialogue. If <code>null</code>, uses the default value of this
+     *            dialogue channel. A value of Duration.ZERO (or equivalent)
+     *            means to wait forever.
+     * @return the {@link Step} wrapping the dialogue next step
+     * @throws Timeout If no result can be obtain from dialogue after delay
+     *             specified by <code>timeout</code> parameter.
+     * @throws InterruptedException if the controller was interrupted wile
+     *             waiting for the dialogue step.
+     */
+    Step<O, L> doTurn(I inputTurn, Duration timeout) throws Timeout, InterruptedException;
+
+    /**
+     * Starts a {@link Dialogue} without waiting for its first step.
+     *
+     * @param dialogue Dialogue to start. Cannot be <code>null</code>.
+     * @param firstTurn First turn passed to the dialogue. Cannot be
+     *            <code>null</code>.
+     * @param context Dialogue context passed to the dialogue. Cannot be
+     *            <code>null</code>.
+     * @return a stage completed with the first Step of the dialogue. The stage
+     *         may be completed by a thread of the dialogue channel. It is up to
+     *         the controller to give up on the stage after some delay.
+     * @since 1.0.13
+     */
+    CompletionStage<Step<O, L>> startAsync(Dialogue<I, O, F, L, C> dialogue, F firstTurn, C context);
+
+    /**
+     * Sends an input turn to the dialogue without waiting for the next
+     * {@link Step}.
+     *
+     * @param inputTurn the input turn to send to the dialogue
+     * @return a stage completed with the next Step of the dialogue. The stage
+     *         may be completed by a thread of the dialogue channel. It is up to
+     *         the controller to give up on the stage after some delay.
+     * @throws Timeout If the input turn could not be handed to the dialogue in
+     *             time.
+     * @throws InterruptedException if the controller was interrupted wile
+     *             sending the input turn.
+     * @since 1.0.13
+     */
+    CompletionStage<Step<O, L>> doTurnAsync(I inputTurn) throws Timeout, InterruptedException;
+
+    /**
+     * Tells if the dialogue has started.
+     *
+     * @return <code>true</code> if the dialogue has started, <code>false</code>
+     *         otherwise.
+     */
+    boolean isDialogueStarted();
+
+    /**
+     * Tells if the dialogue has ended.
+     *
+     * @return <code>true</code> if the dialogue has ended, <code>false</code>
+     *         otherwise.
+     */
+    boolean isDialogueDone();
+
+    /**
+     * Tells if the dialogue has started but not yet ended.
+     *
+     * @return <code>true</code> if the dialogue has started but not ended yet,
+     *         <code>false</code> otherwise.
+     */
+    boolean isDialogueActive();
+
+    /**
+     * Stops the dialogue.
+     */
+    void stop();
+
+    /**
+     * Waits for the dialogue to end.
+     *
+     * @param timeout maximum time to wait for the dialogue to end. A value of
+     *            Duration.ZERO (or equivalent) means to wait forever.
+     * @throws InterruptedException if the current thread was interrupted while
+     *             waiting for the dialogue to terminate.
+     */
+    void join(Duration timeout) throws InterruptedException;
+
+    /**
+     * Sets the logger for this dialogue channel.
+     *
+     * @param logger The logger. Cannot be <code>null</code>.
+     */
+    void setLogger(Logger logger);
+
+    /**
+     * Sets the maximum duration the controller can wait for a step from the
+     * dialogue when not specified by the controller.
+     *
+     * @param defaultReceiveFromDialogueTimeout The default timeout. Cannot be
+     *            <code>null</code>.
+     */
+    void setDefaultReceiveFromDialogueTimeout(Duration defaultReceiveFromDialogueTimeout);
+
+    /**
+     * Sets the maximum duration the dialogue can wait for an input turn from
+     * the controller when not specified by the dialogue.
+     *
+     * @param defaultReceiveFromControllerTimeout The default timeout. Cannot be
+     *            <code>null</code>.
+     */
+    void setDefaultReceiveFromControllerTimeout(Duration defaultReceiveFromControllerTimeout);
+}
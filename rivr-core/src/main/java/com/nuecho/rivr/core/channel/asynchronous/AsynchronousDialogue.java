@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.asynchronous;
+
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.dialogue.*;
+
+/**
+ * A {@link Dialogue} that does not block while waiting for input turns. Instead
+ * of calling {@link DialogueChannel#doTurn(OutputTurn, com.nuecho.rivr.core.util.Duration)
+ * doTurn()}, the dialogue calls
+ * {@link DialogueUtils#doTurnAsync(OutputTurn, DialogueContext)} and chains the
+ * rest of its logic on the returned {@link CompletionStage}. A dialogue written
+ * as a state machine simply composes one stage per state:
+ *
+ * <pre>
+ * public CompletionStage&lt;VoiceXmlLastTurn&gt; runAsync(VoiceXmlFirstTurn firstTurn, VoiceXmlDialogueContext context) {
+ *     return DialogueUtils.doTurnAsync(askNumber(), context).thenCompose(inputTurn -&gt; confirm(inputTurn, context));
+ * }
+ * </pre>
+ * <p>
+ * When run by an {@link AsynchronousDialogueChannel}, no thread is held by the
+ * dialogue between turns: the dialogue is resumed on a shared pool when the
+ * next input turn arrives. When run by any other {@link DialogueChannel}, the
+ * default {@link #run(FirstTurn, DialogueContext)} implementation waits for the
+ * completion of the dialogue.
+ *
+ * @param <F> type of {@link FirstTurn}
+ * @param <L> type of {@link LastTurn}
+ * @param <O> type of {@link OutputTurn}
+ * @param <I> type of {@link InputTurn}
+ * @param <C> type of {@link DialogueContext}
+ * @see AsynchronousDialogueChannel
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface AsynchronousDialogue<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
+        extends Dialogue<I, O, F, L, C> {
+
+    /**
+     * Method called by the controller to run the dialogue. This method must not
+     * block: it returns a stage completed with the result of the dialogue.
+     *
+     * @param firstTurn First turn. Contains dialogue initialization
+     *            information. Cannot be <code>null</code>.
+     * @param context Dialogue context. Cannot be <code>null</code>.
+     * @return a stage completed with the result of the dialogue as a
+     *         {@link LastTurn}, or completed exceptionally if something
+     *         prevents the dialogue from completing normally.
+     */
+    CompletionStage<L> runAsync(F firstTurn, C context);
+
+    @Override
+    default L run(F firstTurn, C context) throws Exception {
+        try {
+            return runAsync(firstTurn, context).toCompletableFuture().get();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw exception;
+        }
+    }
+}
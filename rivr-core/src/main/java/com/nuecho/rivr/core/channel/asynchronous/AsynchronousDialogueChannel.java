@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.asynchronous;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import org.slf4j.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.synchronous.*;
+import com.nuecho.rivr.core.channel.synchronous.step.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.metrics.*;
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Implementation of {@link DialogueChannel} running {@link AsynchronousDialogue
+ * AsynchronousDialogues} without dedicating a thread to each dialogue.
+ * <p>
+ * Unlike the {@link SynchronousDialogueChannel}, where the dialogue thread is
+ * parked between two HTTP requests, the {@link AsynchronousDialogueChannel}
+ * keeps only a pending {@link CompletableFuture} for an idle dialogue. When the
+ * controller delivers the next {@link InputTurn} with
+ * {@link #doTurn(InputTurn, Duration)}, the dialogue is resumed on the shared
+ * executor given at construction. A fixed pool of threads can therefore serve
+ * a large number of mostly idle dialogues.
+ * <p>
+ * The dialogue exchanges turns with {@link #doTurnAsync(OutputTurn, Duration)}
+ * (usually through
+ * {@link DialogueUtils#doTurnAsync(OutputTurn, DialogueContext)}). The blocking
+ * {@link #doTurn(OutputTurn, Duration)} method is supported but holds a pool
+ * thread until the input turn is received and should therefore be avoided.
+ * <p>
+ * The executor is also used to schedule the time-outs. The time-out values
+ * have the same meaning as for the {@link SynchronousDialogueChannel}:
+ * <code>defaultReceiveFromControllerTimeout</code> defaults to <b>5
+ * minutes</b> and <code>defaultReceiveFromDialogueTimeout</code> defaults to
+ * <b>1 minute</b>.
+ *
+ * @param <F> type of {@link FirstTurn}
+ * @param <L> type of {@link LastTurn}
+ * @param <O> type of {@link OutputTurn}
+ * @param <I> type of {@link InputTurn}
+ * @param <C> type of {@link DialogueContext}
+ * @see AsynchronousDialogue
+ * @see DialogueServlet
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class AsynchronousDialogueChannel<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
+        implements ControllerDialogueChannel<I, O, F, L, C> {
+
+    private final ScheduledExecutorService mExecutor;
+
+    private CompletableFuture<Step<O, L>> mPendingStep;
+    private CompletableFuture<I> mPendingInputTurn;
+    private final CompletableFuture<Void> mTermination = new CompletableFuture<Void>();
+
+    private Duration mDefaultReceiveFromDialogueTimeout = Duration.minutes(1);
+    private Duration mDefaultReceiveFromControllerTimeout = Duration.minutes(5);
+
+    private final List<DialogueChannelListener<I, O>> mListener = new ArrayList<DialogueChannelListener<I, O>>();
+    private Logger mLogger = NOPLogger.NOP_LOGGER;
+    private DialogueMetrics mDialogueMetrics = NoOpDialogueMetrics.INSTANCE;
+
+    private volatile boolean mStopped;
+    private volatile boolean mDialogueStarted;
+    private volatile boolean mDialogueDone;
+
+    /**
+     * @param executor The executor on which dialogues are resumed and time-outs
+     *            are scheduled. Usually shared by all dialogue channels. Cannot
+     *            be <code>null</code>.
+     */
+    public AsynchronousDialogueChannel(ScheduledExecutorService executor) {
+        Assert.notNull(executor, "executor");
+        mExecutor = executor;
+    }
+
+    public Duration getDefaultReceiveFromDialogueTimeout() {
+        return mDefaultReceiveFromDialogueTimeout;
+    }
+
+    @Override
+    public void setDefaultReceiveFromDialogueTimeout(Duration defaultReceiveFromDialogueTimeout) {
+        Assert.notNull(defaultReceiveFromDialogueTimeout, "defaultReceiveFromDialogueTimeout");
+        mDefaultReceiveFromDialogueTimeout = defaultReceiveFromDialogueTimeout;
+    }
+
+    public Duration getDefaultReceiveFromControllerTimeout() {
+        return mDefaultReceiveFromControllerTimeout;
+    }
+
+    @Override
+    public void setDefaultReceiveFromControllerTimeout(Duration defaultReceiveFromControllerTimeout) {
+        Assert.notNull(defaultReceiveFromControllerTimeout, "defaultReceiveFromControllerTimeout");
+        mDefaultReceiveFromControllerTimeout = defaultReceiveFromControllerTimeout;
+    }
+
+    @Override
+    public void setLogger(Logger logger) {
+        Assert.notNull(logger, "logger");
+        mLogger = logger;
+    }
+
+    /**
+     * Sets the metrics notified of the time the dialogue waits for input
+     * turns. Must be called before the dialogue is started.
+     *
+     * @param dialogueMetrics the metrics. Cannot be <code>null</code>.
+     */
+    public void setDialogueMetrics(DialogueMetrics dialogueMetrics) {
+        Assert.notNull(dialogueMetrics, "dialogueMetrics");
+        mDialogueMetrics = dialogueMetrics;
+    }
+
+    /**
+     * Starts an {@link AsynchronousDialogue} on the executor.
+     *
+     * @param dialogue Dialogue to start. Must be an
+     *            {@link AsynchronousDialogue}.
+     * @throws IllegalArgumentException if the dialogue is not an
+     *             {@link AsynchronousDialogue}.
+     */
+    @Override
+    public Step<O, L> start(Dialogue<I, O, F, L, C> dialogue, F firstTurn, Duration timeout, C context)
+            throws Timeout, InterruptedException {
+        CompletableFuture<Step<O, L>> firstStep = startAsync(dialogue, firstTurn, context);
+
+        if (timeout == null) {
+            timeout = mDefaultReceiveFromDialogueTimeout;
+        }
+        return receive(firstStep, timeout);
+    }
+
+    /**
+     * Starts an {@link AsynchronousDialogue} on the executor without waiting
+     * for its first step.
+     *
+     * @param dialogue Dialogue to start. Must be an
+     *            {@link AsynchronousDialogue}.
+     * @throws IllegalArgumentException if the dialogue is not an
+     *             {@link AsynchronousDialogue}.
+     * @since 1.0.13
+     */
+    @Override
+    public CompletableFuture<Step<O, L>> startAsync(Dialogue<I, O, F, L, C> dialogue,
+                                                    final F firstTurn,
+                                                    final C context) {
+        if (!(dialogue instanceof AsynchronousDialogue))
+            throw new IllegalArgumentException("Dialogue "
+                                               + dialogue.getClass().getName()
+                                               + " does not implement "
+                                               + AsynchronousDialogue.class.getName()
+                                               + ".");
+        final AsynchronousDialogue<I, O, F, L, C> asynchronousDialogue = (AsynchronousDialogue<I, O, F, L, C>) dialogue;
+
+        CompletableFuture<Step<O, L>> firstStep = new CompletableFuture<Step<O, L>>();
+        synchronized (this) {
+            if (mDialogueStarted) throw new IllegalStateException("Dialogue already started");
+            mDialogueStarted = true;
+            mPendingStep = firstStep;
+        }
+
+        for (DialogueChannelListener<I, O> listener : mListener) {
+            listener.onStart(this);
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                CompletionStage<L> result;
+                try {
+                    result = asynchronousDialogue.runAsync(firstTurn, context);
+                } catch (Throwable throwable) {
+                    CompletableFuture<L> failure = new CompletableFuture<L>();
+                    failure.completeExceptionally(throwable);
+                    result = failure;
+                }
+
+                result.whenComplete(new BiConsumer<L, Throwable>() {
+                    @Override
+                    public void accept(L lastTurn, Throwable throwable) {
+                        dialogueEnded(lastTurn, throwable);
+                    }
+                });
+            }
+        });
+        mLogger.info("Dialogue started.");
+        return firstStep;
+    }
+
+    @Override
+    public boolean isDialogueStarted() {
+        return mDialogueStarted;
+    }
+
+    @Override
+    public boolean isDialogueDone() {
+        return mDialogueDone;
+    }
+
+    @Override
+    public boolean isDialogueActive() {
+        return mDialogueStarted && !mDialogueDone;
+    }
+
+    @Override
+    public void stop() {
+        CompletableFuture<I> pendingInputTurn;
+        CompletableFuture<Step<O, L>> pendingStep;
+        synchronized (this) {
+            mStopped = true;
+            pendingInputTurn = mPendingInputTurn;
+            pendingStep = mPendingStep;
+            mPendingInputTurn = null;
+            mPendingStep = null;
+        }
+
+        if (pendingInputTurn != null) {
+            pendingInputTurn.completeExceptionally(new DialogueChannelStopped());
+        }
+
+        if (pendingStep != null) {
+            pendingStep.completeExceptionally(new DialogueChannelStopped());
+        }
+    }
+
+    @Override
+    public void join(Duration timeout) throws InterruptedException {
+        try {
+            if (timeout.getMilliseconds() == 0) {
+                mTermination.get();
+            } else {
+                mTermination.get(timeout.getMilliseconds(), TimeUnit.MILLISECONDS);
+            }
+        } catch (ExecutionException exception) {
+            throw new AssertionError(exception);
+        } catch (TimeoutException exception) {
+            //same semantic as Thread.join(): simply return
+        }
+    }
+
+    /**
+     * Performs a turn exchange without blocking: the returned stage is
+     * completed with the {@link InputTurn} once the controller provides it. The
+     * dependent stages of the returned stage are executed on the executor of
+     * this dialogue channel.
+     *
+     * @param outputTurn The output turn to send. Cannot be <code>null</code>.
+     * @param timeout maximum time allowed to receive the input turn from the
+     *            controller. If <code>null</code>, uses the
+     *            <code>defaultReceiveFromControllerTimeout</code>. A value of
+     *            Duration.ZERO (or equivalent) means to wait forever.
+     * @return a stage completed with the received {@link InputTurn}, or
+     *         completed exceptionally with a {@link Timeout} if the controller
+     *         has not provided the input turn in time or with a
+     *         {@link DialogueChannelStopped} if the dialogue channel has been
+     *         stopped.
+     */
+    public CompletionStage<I> doTurnAsync(O outputTurn, Duration timeout) {
+        Assert.notNull(outputTurn, "outputTurn");
+        mLogger.trace("OutputTurn: {}", outputTurn);
+        if (timeout == null) {
+            timeout = mDefaultReceiveFromControllerTimeout;
+        }
+
+        final CompletableFuture<I> inputTurn = new CompletableFuture<I>();
+        CompletableFuture<Step<O, L>> pendingStep;
+        synchronized (this) {
+            verifyState();
+            if (mPendingStep == null) throw new IllegalStateException("Controller is not waiting for a step");
+            if (mPendingInputTurn != null) throw new IllegalStateException("Dialogue is already waiting for a turn");
+            pendingStep = mPendingStep;
+            mPendingStep = null;
+            mPendingInputTurn = inputTurn;
+        }
+
+        if (timeout.getMilliseconds() != 0) {
+            final Duration receiveTimeout = timeout;
+            final ScheduledFuture<?> timeoutTask = mExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    //the controller or the time-out, whichever takes the pending input turn, completes it
+                    synchronized (AsynchronousDialogueChannel.this) {
+                        if (mPendingInputTurn != inputTurn) return;
+                        mPendingInputTurn = null;
+                    }
+                    inputTurn.completeExceptionally(new Timeout("Timed-out in receive() after "
+                                                                + receiveTimeout
+                                                                + " in [controller to dialogue]"));
+                }
+            }, timeout.getMilliseconds(), TimeUnit.MILLISECONDS);
+
+            inputTurn.whenComplete(new BiConsumer<I, Throwable>() {
+                @Override
+                public void accept(I turn, Throwable throwable) {
+                    timeoutTask.cancel(false);
+                }
+            });
+        }
+
+        final long waitStartTime = System.nanoTime();
+        inputTurn.whenComplete(new BiConsumer<I, Throwable>() {
+            @Override
+            public void accept(I turn, Throwable throwable) {
+                mDialogueMetrics.recordDialogueWaitTime(System.nanoTime() - waitStartTime);
+                if (throwable instanceof Timeout) {
+                    mDialogueMetrics.timeoutOccurred();
+                }
+            }
+        });
+
+        pendingStep.complete(new OutputTurnStep<O, L>(outputTurn));
+        return inputTurn;
+    }
+
+    /**
+     * Performs a turn exchange, blocking until the input turn is received. This
+     * holds a thread of the executor for the duration of the wait. Use
+     * {@link #doTurnAsync(OutputTurn, Duration)} instead.
+     */
+    @Override
+    public I doTurn(O outputTurn, Duration timeout) throws Timeout, InterruptedException {
+        try {
+            return doTurnAsync(outputTurn, timeout).toCompletableFuture().get();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof Timeout) throw (Timeout) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException("Unexpected error while waiting for input turn.", cause);
+        }
+    }
+
+    @Override
+    public Step<O, L> doTurn(I inputTurn, Duration timeout) throws Timeout, InterruptedException {
+        CompletableFuture<Step<O, L>> nextStep = doTurnAsync(inputTurn);
+
+        if (timeout == null) {
+            timeout = mDefaultReceiveFromDialogueTimeout;
+        }
+        return receive(nextStep, timeout);
+    }
+
+    /**
+     * Delivers the input turn to the dialogue, which is resumed on the
+     * executor, without waiting for the next step.
+     *
+     * @since 1.0.13
+     */
+    @Override
+    public CompletableFuture<Step<O, L>> doTurnAsync(final I inputTurn) {
+        Assert.notNull(inputTurn, "inputTurn");
+        mLogger.trace("InputTurn: {}", inputTurn);
+
+        CompletableFuture<Step<O, L>> nextStep = new CompletableFuture<Step<O, L>>();
+        final CompletableFuture<I> pendingInputTurn;
+        synchronized (this) {
+            verifyState();
+            if (mPendingInputTurn == null) throw new IllegalStateException("Dialogue is not waiting for a turn");
+            //once taken, the pending input turn can no longer time out
+            pendingInputTurn = mPendingInputTurn;
+            mPendingInputTurn = null;
+            mPendingStep = nextStep;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!pendingInputTurn.complete(inputTurn)) {
+                    mLogger.warn("Input turn not delivered: dialogue no longer waiting for it.");
+                }
+            }
+        });
+
+        return nextStep;
+    }
+
+    private void verifyState() {
+        if (!mDialogueStarted) throw new IllegalStateException("Dialogue is not started");
+        if (mDialogueDone) throw new IllegalStateException("Dialogue is done");
+        if (mStopped) throw new IllegalStateException("Dialogue is stopped");
+    }
+
+    private void dialogueEnded(L lastTurn, Throwable throwable) {
+        Step<O, L> lastStep;
+        if (throwable == null) {
+            lastStep = new LastTurnStep<O, L>(lastTurn);
+        } else {
+            if (throwable instanceof CompletionException && throwable.getCause() != null) {
+                throwable = throwable.getCause();
+            }
+            mLogger.error("Error in dialogue.", throwable);
+            lastStep = new ErrorStep<O, L>(throwable);
+        }
+
+        CompletableFuture<Step<O, L>> pendingStep;
+        CompletableFuture<I> pendingInputTurn;
+        synchronized (this) {
+            mDialogueDone = true;
+            pendingStep = mPendingStep;
+            pendingInputTurn = mPendingInputTurn;
+            mPendingStep = null;
+            mPendingInputTurn = null;
+        }
+
+        try {
+            if (pendingInputTurn != null) {
+                pendingInputTurn.completeExceptionally(new IllegalStateException("Dialogue is done"));
+            }
+
+            if (!mStopped) {
+                mLogger.trace("Last step: {}", lastStep);
+                if (pendingStep == null) {
+                    mLogger.warn("Controller not waiting for last step.");
+                } else {
+                    pendingStep.complete(lastStep);
+                }
+            }
+        } finally {
+            for (DialogueChannelListener<I, O> listener : mListener) {
+                listener.onStop(this);
+            }
+            mTermination.complete(null);
+            mLogger.info("Dialogue ended.");
+        }
+    }
+
+    private Step<O, L> receive(CompletableFuture<Step<O, L>> step, Duration timeout) throws Timeout,
+            InterruptedException {
+        try {
+            if (timeout.getMilliseconds() == 0) return step.get();
+            return step.get(timeout.getMilliseconds(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException exception) {
+            throw new Timeout("Timed-out in receive() after " + timeout + " in [dialogue to controller]");
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException("Unexpected error while waiting for step.", cause);
+        } catch (InterruptedException exception) {
+            if (mStopped) throw new DialogueChannelStopped();
+            throw exception;
+        }
+    }
+
+    @Override
+    public void addListener(DialogueChannelListener<I, O> listener) {
+        mListener.add(listener);
+    }
+
+    @Override
+    public void removeListener(DialogueChannelListener<I, O> listener) {
+        mListener.remove(listener);
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Implementation of the dialogue channel resuming non-blocking dialogues on a
+ * shared thread pool instead of dedicating a thread to each dialogue.
+ */
+package com.nuecho.rivr.core.channel.asynchronous;
+
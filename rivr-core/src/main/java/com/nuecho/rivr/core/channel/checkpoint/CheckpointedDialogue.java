@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.checkpoint;
+
+import java.io.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.servlet.session.*;
+
+/**
+ * A {@link Dialogue} written as a state machine. Instead of calling
+ * {@link DialogueChannel#doTurn(OutputTurn, com.nuecho.rivr.core.util.Duration)
+ * doTurn()}, each step of the dialogue returns a {@link Transition} holding the
+ * output turn and a {@link Serializable} state. The dialogue is later resumed
+ * with this state and the input turn:
+ *
+ * <pre>
+ * public Transition&lt;VoiceXmlOutputTurn, VoiceXmlLastTurn, MenuState&gt; resume(MenuState state,
+ *                                                                            VoiceXmlInputTurn inputTurn,
+ *                                                                            VoiceXmlDialogueContext context) {
+ *     if (state.isConfirming()) return Transition.lastTurn(new Exit("exit"));
+ *     return Transition.outputTurn(confirm(inputTurn), state.confirming());
+ * }
+ * </pre>
+ * <p>
+ * The whole state of the dialogue between two turns must be in the state
+ * object. When run by a {@link CheckpointingDialogueChannel}, the state is
+ * saved in a {@link SessionStore} after each step, so the dialogue can be
+ * resumed by another instance of the dialogue created by the same
+ * {@link DialogueFactory}, possibly on another server. When run by any other
+ * {@link DialogueChannel}, the default
+ * {@link #run(FirstTurn, DialogueContext)} implementation simply chains the
+ * steps with {@link DialogueChannel#doTurn(OutputTurn, com.nuecho.rivr.core.util.Duration)
+ * doTurn()}.
+ *
+ * @param <F> type of {@link FirstTurn}
+ * @param <L> type of {@link LastTurn}
+ * @param <O> type of {@link OutputTurn}
+ * @param <I> type of {@link InputTurn}
+ * @param <C> type of {@link DialogueContext}
+ * @param <S> type of the dialogue state
+ * @see CheckpointingDialogueChannel
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface CheckpointedDialogue<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>, S extends Serializable>
+        extends Dialogue<I, O, F, L, C> {
+
+    /**
+     * Starts the dialogue.
+     *
+     * @param firstTurn First turn. Contains dialogue initialization
+     *            information. Cannot be <code>null</code>.
+     * @param context Dialogue context. Cannot be <code>null</code>.
+     * @return the first transition of the dialogue
+     * @throws Exception if something prevents the dialogue from starting
+     *             normally. The dialogue is then ended.
+     */
+    Transition<O, L, S> start(F firstTurn, C context) throws Exception;
+
+    /**
+     * Resumes the dialogue with the input turn received for the output turn
+     * of the previous transition.
+     *
+     * @param state State of the previous transition. Cannot be
+     *            <code>null</code>. May have been deserialized.
+     * @param inputTurn Input turn. Cannot be <code>null</code>.
+     * @param context Dialogue context. Cannot be <code>null</code>. When the
+     *            dialogue is resumed from a checkpoint, this is a new context
+     *            created for the current request.
+     * @return the next transition of the dialogue
+     * @throws Exception if something prevents the dialogue from continuing
+     *             normally. The dialogue is then ended.
+     */
+    Transition<O, L, S> resume(S state, I inputTurn, C context) throws Exception;
+
+    @Override
+    default L run(F firstTurn, C context) throws Exception {
+        Transition<O, L, S> transition = start(firstTurn, context);
+        while (!transition.isLastTurn()) {
+            I inputTurn = context.getDialogueChannel().doTurn(transition.getOutputTurn(), null);
+            transition = resume(transition.getState(), inputTurn, context);
+        }
+        return transition.getLastTurn();
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.checkpoint;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.slf4j.*;
+import org.slf4j.helpers.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.synchronous.*;
+import com.nuecho.rivr.core.channel.synchronous.step.*;
+import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.servlet.session.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Implementation of {@link DialogueChannel} running {@link CheckpointedDialogue
+ * CheckpointedDialogues} and saving their state in a {@link SessionStore} at
+ * each turn boundary.
+ * <p>
+ * No thread is attached to the dialogue: each step is computed on the thread
+ * of the controller, in {@link #start(Dialogue, FirstTurn, Duration, DialogueContext)
+ * start()} and {@link #doTurn(InputTurn, Duration)}. After each
+ * {@link OutputTurn}, the state of the dialogue is serialized and saved in the
+ * store under the session id. A dialogue can therefore be resumed on any server
+ * sharing the store with {@link #resume(Dialogue, byte[], DialogueContext)}.
+ * The checkpoint is removed when the dialogue ends, but not when the dialogue
+ * channel is {@link #stop() stopped} so that the sessions of a server being
+ * shut down can be resumed elsewhere.
+ * <p>
+ * The state is serialized with Java serialization and deserialized with the
+ * class loader of the dialogue. An error while serializing the state ends the
+ * dialogue with an {@link ErrorStep}. An error while saving the checkpoint in
+ * the store is only logged: the dialogue goes on but cannot fail over until the
+ * next successful save.
+ * <p>
+ * Since the steps are computed synchronously, the time-outs do not apply.
+ * {@link #doTurn(OutputTurn, Duration)} is not supported: the dialogue returns
+ * {@link Transition Transitions} instead.
+ *
+ * @param <F> type of {@link FirstTurn}
+ * @param <L> type of {@link LastTurn}
+ * @param <O> type of {@link OutputTurn}
+ * @param <I> type of {@link InputTurn}
+ * @param <C> type of {@link DialogueContext}
+ * @see CheckpointedDialogue
+ * @see DialogueServlet#setSessionStore(SessionStore)
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class CheckpointingDialogueChannel<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
+        implements ControllerDialogueChannel<I, O, F, L, C> {
+
+    private final SessionStore mSessionStore;
+    private final String mSessionId;
+
+    private CheckpointedDialogue<I, O, F, L, C, Serializable> mDialogue;
+    private C mContext;
+    private Serializable mState;
+
+    private final List<DialogueChannelListener<I, O>> mListener = new ArrayList<DialogueChannelListener<I, O>>();
+    private Logger mLogger = NOPLogger.NOP_LOGGER;
+
+    private volatile boolean mStopped;
+    private volatile boolean mDialogueStarted;
+    private volatile boolean mDialogueDone;
+
+    /**
+     * @param sessionStore The store in which the checkpoints are saved. Cannot
+     *            be <code>null</code>.
+     * @param sessionId The id under which the checkpoints are saved. Cannot be
+     *            <code>null</code>.
+     */
+    public CheckpointingDialogueChannel(SessionStore sessionStore, String sessionId) {
+        Assert.notNull(sessionStore, "sessionStore");
+        Assert.notNull(sessionId, "sessionId");
+        mSessionStore = sessionStore;
+        mSessionId = sessionId;
+    }
+
+    /**
+     * Time-outs do not apply to this dialogue channel.
+     */
+    @Override
+    public void setDefaultReceiveFromDialogueTimeout(Duration defaultReceiveFromDialogueTimeout) {}
+
+    /**
+     * Time-outs do not apply to this dialogue channel.
+     */
+    @Override
+    public void setDefaultReceiveFromControllerTimeout(Duration defaultReceiveFromControllerTimeout) {}
+
+    @Override
+    public void setLogger(Logger logger) {
+        Assert.notNull(logger, "logger");
+        mLogger = logger;
+    }
+
+    /**
+     * Starts a {@link CheckpointedDialogue} and returns its first step.
+     *
+     * @param dialogue Dialogue to start. Must be a
+     *            {@link CheckpointedDialogue}.
+     * @param timeout ignored
+     * @throws IllegalArgumentException if the dialogue is not a
+     *             {@link CheckpointedDialogue}.
+     */
+    @Override
+    public synchronized Step<O, L> start(Dialogue<I, O, F, L, C> dialogue, F firstTurn, Duration timeout, C context) {
+        Assert.notNull(firstTurn, "firstTurn");
+        Assert.notNull(context, "context");
+        markStarted(dialogue, context);
+        mLogger.info("Dialogue started.");
+
+        Transition<O, L, Serializable> transition;
+        try {
+            transition = mDialogue.start(firstTurn, context);
+        } catch (Throwable throwable) {
+            return dialogueFailed(throwable);
+        }
+        return processTransition(transition);
+    }
+
+    /**
+     * Resumes a {@link CheckpointedDialogue} from a checkpoint saved by another
+     * instance of this class, possibly on another server. The dialogue then
+     * waits for the input turn following the last saved output turn, to be
+     * given to {@link #doTurn(InputTurn, Duration)}.
+     *
+     * @param dialogue A new instance of the dialogue. Must be a
+     *            {@link CheckpointedDialogue}.
+     * @param checkpoint The checkpoint, as loaded from the store. Cannot be
+     *            <code>null</code>.
+     * @param context Dialogue context passed to the dialogue. Cannot be
+     *            <code>null</code>.
+     * @throws IllegalArgumentException if the dialogue is not a
+     *             {@link CheckpointedDialogue}.
+     * @throws IOException if the checkpoint cannot be read
+     * @throws ClassNotFoundException if a class of the state cannot be found
+     */
+    public void resume(Dialogue<I, O, F, L, C> dialogue, byte[] checkpoint, C context) throws IOException,
+            ClassNotFoundException {
+        Assert.notNull(checkpoint, "checkpoint");
+        Assert.notNull(context, "context");
+        Serializable state = deserialize(checkpoint, dialogue.getClass().getClassLoader());
+        markStarted(dialogue, context);
+        mState = state;
+        mLogger.info("Dialogue resumed from checkpoint.");
+    }
+
+    private void markStarted(Dialogue<I, O, F, L, C> dialogue, C context) {
+        if (!(dialogue instanceof CheckpointedDialogue))
+            throw new IllegalArgumentException("Dialogue "
+                                               + dialogue.getClass().getName()
+                                               + " does not implement "
+                                               + CheckpointedDialogue.class.getName()
+                                               + ".");
+
+        synchronized (this) {
+            if (mDialogueStarted) throw new IllegalStateException("Dialogue already started");
+            mDialogueStarted = true;
+            mDialogue = asCheckpointedDialogue(dialogue);
+            mContext = context;
+        }
+
+        for (DialogueChannelListener<I, O> listener : mListener) {
+            listener.onStart(this);
+        }
+    }
+
+    //the type of the state is only known by the dialogue: it is handled as a Serializable
+    @SuppressWarnings("unchecked")
+    private CheckpointedDialogue<I, O, F, L, C, Serializable> asCheckpointedDialogue(Dialogue<I, O, F, L, C> dialogue) {
+        return (CheckpointedDialogue<I, O, F, L, C, Serializable>) dialogue;
+    }
+
+    /**
+     * Starts the dialogue. The returned stage is already completed since the
+     * step is computed on the calling thread.
+     */
+    @Override
+    public CompletionStage<Step<O, L>> startAsync(Dialogue<I, O, F, L, C> dialogue, F firstTurn, C context) {
+        return CompletableFuture.completedFuture(start(dialogue, firstTurn, null, context));
+    }
+
+    @Override
+    public boolean isDialogueStarted() {
+        return mDialogueStarted;
+    }
+
+    @Override
+    public boolean isDialogueDone() {
+        return mDialogueDone;
+    }
+
+    @Override
+    public boolean isDialogueActive() {
+        return mDialogueStarted && !mDialogueDone;
+    }
+
+    /**
+     * Stops the dialogue. The last checkpoint is kept in the store.
+     */
+    @Override
+    public void stop() {
+        mStopped = true;
+    }
+
+    /**
+     * Returns immediately: no thread is attached to the dialogue.
+     */
+    @Override
+    public void join(Duration timeout) {}
+
+    /**
+     * Not supported: a {@link CheckpointedDialogue} returns its output turns in
+     * {@link Transition Transitions}.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public I doTurn(O outputTurn, Duration timeout) {
+        throw new UnsupportedOperationException("Checkpointed dialogues must return their output turns in transitions.");
+    }
+
+    /**
+     * Resumes the dialogue with the input turn and returns its next step.
+     *
+     * @param timeout ignored
+     */
+    @Override
+    public synchronized Step<O, L> doTurn(I inputTurn, Duration timeout) {
+        Assert.notNull(inputTurn, "inputTurn");
+        mLogger.trace("InputTurn: {}", inputTurn);
+        verifyState();
+        if (mState == null) throw new IllegalStateException("Dialogue is not waiting for a turn");
+
+        Serializable state = mState;
+        mState = null;
+        Transition<O, L, Serializable> transition;
+        try {
+            transition = mDialogue.resume(state, inputTurn, mContext);
+        } catch (Throwable throwable) {
+            return dialogueFailed(throwable);
+        }
+        return processTransition(transition);
+    }
+
+    /**
+     * Resumes the dialogue. The returned stage is already completed since the
+     * step is computed on the calling thread.
+     */
+    @Override
+    public CompletionStage<Step<O, L>> doTurnAsync(I inputTurn) {
+        return CompletableFuture.completedFuture(doTurn(inputTurn, null));
+    }
+
+    private void verifyState() {
+        if (!mDialogueStarted) throw new IllegalStateException("Dialogue is not started");
+        if (mDialogueDone) throw new IllegalStateException("Dialogue is done");
+        if (mStopped) throw new IllegalStateException("Dialogue is stopped");
+    }
+
+    private Step<O, L> processTransition(Transition<O, L, Serializable> transition) {
+        if (transition == null) return dialogueFailed(new IllegalStateException("Dialogue returned no transition."));
+
+        if (transition.isLastTurn()) {
+            removeCheckpoint();
+            Step<O, L> lastStep = new LastTurnStep<O, L>(transition.getLastTurn());
+            mLogger.trace("Last step: {}", lastStep);
+            dialogueEnded();
+            return lastStep;
+        }
+
+        byte[] checkpoint;
+        try {
+            checkpoint = serialize(transition.getState());
+        } catch (IOException exception) {
+            return dialogueFailed(exception);
+        }
+
+        try {
+            mSessionStore.save(mSessionId, checkpoint);
+        } catch (IOException exception) {
+            mLogger.error("Unable to save checkpoint.", exception);
+        }
+
+        mState = transition.getState();
+        O outputTurn = transition.getOutputTurn();
+        mLogger.trace("OutputTurn: {}", outputTurn);
+        return new OutputTurnStep<O, L>(outputTurn);
+    }
+
+    private Step<O, L> dialogueFailed(Throwable throwable) {
+        mLogger.error("Error in dialogue.", throwable);
+        removeCheckpoint();
+        dialogueEnded();
+        return new ErrorStep<O, L>(throwable);
+    }
+
+    private void removeCheckpoint() {
+        try {
+            mSessionStore.remove(mSessionId);
+        } catch (IOException exception) {
+            mLogger.warn("Unable to remove checkpoint.", exception);
+        }
+    }
+
+    private void dialogueEnded() {
+        mDialogueDone = true;
+        mState = null;
+        for (DialogueChannelListener<I, O> listener : mListener) {
+            listener.onStop(this);
+        }
+        mLogger.info("Dialogue ended.");
+    }
+
+    private static byte[] serialize(Serializable state) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
+        objectOutputStream.writeObject(state);
+        objectOutputStream.close();
+        return outputStream.toByteArray();
+    }
+
+    private static Serializable deserialize(byte[] checkpoint, ClassLoader classLoader) throws IOException,
+            ClassNotFoundException {
+        ObjectInputStream objectInputStream = new DialogueObjectInputStream(new ByteArrayInputStream(checkpoint),
+                                                                            classLoader);
+        try {
+            Object state = objectInputStream.readObject();
+            if (!(state instanceof Serializable)) throw new InvalidObjectException("Checkpoint holds no state.");
+            return (Serializable) state;
+        } finally {
+            objectInputStream.close();
+        }
+    }
+
+    @Override
+    public void addListener(DialogueChannelListener<I, O> listener) {
+        mListener.add(listener);
+    }
+
+    @Override
+    public void removeListener(DialogueChannelListener<I, O> listener) {
+        mListener.remove(listener);
+    }
+
+    /**
+     * Resolves the classes of the state with the class loader of the dialogue,
+     * which may not be visible from the class loader of Rivr.
+     */
+    private static final class DialogueObjectInputStream extends ObjectInputStream {
+        private final ClassLoader mClassLoader;
+
+        public DialogueObjectInputStream(InputStream inputStream, ClassLoader classLoader) throws IOException {
+            super(inputStream);
+            mClassLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass objectStreamClass) throws IOException,
+                ClassNotFoundException {
+            if (mClassLoader != null) {
+                try {
+                    return Class.forName(objectStreamClass.getName(), false, mClassLoader);
+                } catch (ClassNotFoundException exception) {
+                    //fall back to the default resolution (e.g. primitive types)
+                }
+            }
+            return super.resolveClass(objectStreamClass);
+        }
+    }
+}
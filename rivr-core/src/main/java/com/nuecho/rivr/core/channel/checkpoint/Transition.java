@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.checkpoint;
+
+import java.io.*;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Result of a step of a {@link CheckpointedDialogue}: either an
+ * {@link OutputTurn} with the state in which the dialogue waits for the next
+ * input turn, or the {@link LastTurn} ending the dialogue.
+ *
+ * @param <O> type of {@link OutputTurn}
+ * @param <L> type of {@link LastTurn}
+ * @param <S> type of the dialogue state
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class Transition<O extends OutputTurn, L extends LastTurn, S extends Serializable> {
+
+    private final O mOutputTurn;
+    private final S mState;
+    private final L mLastTurn;
+
+    private Transition(O outputTurn, S state, L lastTurn) {
+        mOutputTurn = outputTurn;
+        mState = state;
+        mLastTurn = lastTurn;
+    }
+
+    /**
+     * Creates a transition sending an output turn and waiting for the next
+     * input turn.
+     *
+     * @param outputTurn the output turn. Cannot be <code>null</code>.
+     * @param state the state passed to
+     *            {@link CheckpointedDialogue#resume(Serializable, InputTurn, com.nuecho.rivr.core.dialogue.DialogueContext)
+     *            resume()} with the input turn. Cannot be <code>null</code>.
+     *            Must not be modified afterwards since it may be serialized
+     *            after this method returns.
+     */
+    public static <O extends OutputTurn, L extends LastTurn, S extends Serializable> Transition<O, L, S> outputTurn(O outputTurn,
+                                                                                                                 S state) {
+        Assert.notNull(outputTurn, "outputTurn");
+        Assert.notNull(state, "state");
+        return new Transition<O, L, S>(outputTurn, state, null);
+    }
+
+    /**
+     * Creates a transition ending the dialogue.
+     *
+     * @param lastTurn the last turn. Cannot be <code>null</code>.
+     */
+    public static <O extends OutputTurn, L extends LastTurn, S extends Serializable> Transition<O, L, S> lastTurn(L lastTurn) {
+        Assert.notNull(lastTurn, "lastTurn");
+        return new Transition<O, L, S>(null, null, lastTurn);
+    }
+
+    /**
+     * @return the output turn, or <code>null</code> if the dialogue ends
+     */
+    public O getOutputTurn() {
+        return mOutputTurn;
+    }
+
+    /**
+     * @return the state, or <code>null</code> if the dialogue ends
+     */
+    public S getState() {
+        return mState;
+    }
+
+    /**
+     * @return the last turn, or <code>null</code> if the dialogue continues
+     */
+    public L getLastTurn() {
+        return mLastTurn;
+    }
+
+    public boolean isLastTurn() {
+        return mLastTurn != null;
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this);
+        builder.appendItem("mOutputTurn", mOutputTurn);
+        builder.appendItem("mState", mState);
+        builder.appendItem("mLastTurn", mLastTurn);
+        return builder.getString();
+    }
+}
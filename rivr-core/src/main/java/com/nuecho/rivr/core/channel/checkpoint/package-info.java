@@ -0,0 +1,6 @@
+/**
+ * Implementation of the dialogue channel running dialogues written as state
+ * machines, whose state is checkpointed in a session store after each turn.
+ */
+package com.nuecho.rivr.core.channel.checkpoint;
+
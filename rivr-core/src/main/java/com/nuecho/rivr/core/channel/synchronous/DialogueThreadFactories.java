@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.channel.synchronous;
+
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+
+/**
+ * Provides the {@link ThreadFactory} implementations used by the
+ * {@link SynchronousDialogueChannel} to create dialogue threads.
+ * <p>
+ * Two kinds of threads are supported:
+ * <ul>
+ * <li><i>platform</i> threads: regular threads, each one having its own native
+ * stack. Always available.</li>
+ * <li><i>virtual</i> threads: lightweight threads scheduled by the JVM. Since a
+ * dialogue thread spends most of its time blocked while waiting for the next
+ * input turn, virtual threads allow a much larger number of concurrent
+ * dialogues. Only available when running on Java 21 or later.</li>
+ * </ul>
+ * Virtual threads are looked up by reflection so that Rivr can still be
+ * compiled and run on Java 8.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class DialogueThreadFactories {
+
+    private static final ThreadFactory PLATFORM_THREAD_FACTORY = new PlatformThreadFactory();
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory();
+
+    private DialogueThreadFactories() {
+        //utility class: instantiation forbidden
+    }
+
+    /**
+     * Gets the factory creating a platform thread for each dialogue.
+     *
+     * @return the platform thread factory.
+     */
+    public static ThreadFactory platformThreadFactory() {
+        return PLATFORM_THREAD_FACTORY;
+    }
+
+    /**
+     * Gets the factory creating a virtual thread for each dialogue.
+     *
+     * @return the virtual thread factory.
+     * @throws UnsupportedOperationException if virtual threads are not
+     *             supported by the running JVM.
+     */
+    public static ThreadFactory virtualThreadFactory() {
+        if (VIRTUAL_THREAD_FACTORY == null)
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM (Java 21+ required).");
+        return VIRTUAL_THREAD_FACTORY;
+    }
+
+    /**
+     * Tells if virtual threads are supported by the running JVM.
+     *
+     * @return <code>true</code> if virtual threads can be created,
+     *         <code>false</code> otherwise.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /**
+     * Gets the default dialogue thread factory: virtual threads if supported by
+     * the running JVM, platform threads otherwise.
+     *
+     * @return the default thread factory.
+     */
+    public static ThreadFactory defaultThreadFactory() {
+        return isVirtualThreadSupported() ? VIRTUAL_THREAD_FACTORY : PLATFORM_THREAD_FACTORY;
+    }
+
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factoryMethod = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            ThreadFactory threadFactory = (ThreadFactory) factoryMethod.invoke(builder);
+
+            // ensures virtual threads can actually be created (i.e. they are not disabled or in preview)
+            threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {}
+            });
+
+            return threadFactory;
+        } catch (Exception exception) {
+            return null;
+        } catch (LinkageError error) {
+            return null;
+        }
+    }
+
+    private static final class PlatformThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable);
+        }
+    }
+}
@@ -6,6 +6,7 @@ package com.nuecho.rivr.core.channel.synchronous;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.slf4j.*;
 import org.slf4j.helpers.*;
@@ -13,6 +14,7 @@ import org.slf4j.helpers.*;
 import com.nuecho.rivr.core.channel.*;
 import com.nuecho.rivr.core.channel.synchronous.step.*;
 import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.metrics.*;
 import com.nuecho.rivr.core.servlet.*;
 import com.nuecho.rivr.core.util.*;
 
@@ -82,6 +84,20 @@ import com.nuecho.rivr.core.util.*;
  * should not block. For this reason, the default value for this property is
  * <b>5 seconds</b>. This property can be set with the
  * {@link #setSendTimeout(Duration)} property.
+ * <h2>Dialogue thread</h2>
+ * <p>
+ * The dialogue runs in a thread created by the {@link ThreadFactory} set with
+ * {@link #setDialogueThreadFactory(ThreadFactory)}. If not set, the
+ * {@link DialogueThreadFactories#defaultThreadFactory() default factory} is
+ * used: virtual threads on Java 21+, platform threads otherwise.
+ * <h2>Asynchronous controller</h2>
+ * <p>
+ * A controller that must not block while the dialogue computes its next step
+ * (such as the {@link DialogueServlet} processing requests asynchronously) uses
+ * {@link #startAsync(Dialogue, FirstTurn, DialogueContext)} and
+ * {@link #doTurnAsync(InputTurn)} instead. The returned stage is completed
+ * directly by the dialogue thread when it hands off its next step, so no
+ * controller thread waits on the dialogue.
  * <p>
  *
  * @param <F> type of {@link FirstTurn}
@@ -97,13 +113,14 @@ import com.nuecho.rivr.core.util.*;
  * @author Nu Echo Inc.
  */
 public final class SynchronousDialogueChannel<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
-        implements DialogueChannel<I, O> {
+        implements ControllerDialogueChannel<I, O, F, L, C> {
 
     private NamedSynchronousQueue<Step<O, L>> mFromDialogueToController = new NamedSynchronousQueue<Step<O, L>>("dialogue to controller",
                                                                                                                 true);
     private NamedSynchronousQueue<I> mFromControllerToDialogue = new NamedSynchronousQueue<I>("controller to dialogue",
                                                                                               true);
     private Thread mDialogueThread;
+    private ThreadFactory mDialogueThreadFactory = DialogueThreadFactories.defaultThreadFactory();
 
     private Duration mSendTimeout = Duration.seconds(5);
 
@@ -112,6 +129,9 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
 
     private final List<DialogueChannelListener<I, O>> mListener = new ArrayList<DialogueChannelListener<I, O>>();
     private Logger mLogger = NOPLogger.NOP_LOGGER;
+    private DialogueMetrics mDialogueMetrics = NoOpDialogueMetrics.INSTANCE;
+
+    private final AtomicReference<CompletableFuture<Step<O, L>>> mPendingStep = new AtomicReference<CompletableFuture<Step<O, L>>>();
 
     private volatile boolean mStopped;
     private volatile boolean mDialogueStarted;
@@ -168,6 +188,7 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      * @param defaultReceiveFromDialogueTimeout The default timeout to use when
      *            not specified by the controller. Cannot be <code>null</code>.
      */
+    @Override
     public void setDefaultReceiveFromDialogueTimeout(Duration defaultReceiveFromDialogueTimeout) {
         Assert.notNull(defaultReceiveFromDialogueTimeout, "defaultReceiveFromDialogueTimeout");
         mDefaultReceiveFromDialogueTimeout = defaultReceiveFromDialogueTimeout;
@@ -192,6 +213,7 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      *            when not specified by the dialogue. Cannot be
      *            <code>null</code>.
      */
+    @Override
     public void setDefaultReceiveFromControllerTimeout(Duration defaultReceiveFromControllerTimeout) {
         Assert.notNull(defaultReceiveFromControllerTimeout, "defaultReceiveFromControllerTimeout");
         mDefaultReceiveFromControllerTimeout = defaultReceiveFromControllerTimeout;
@@ -202,11 +224,49 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      *
      * @param logger The logger. Cannot be <code>null</code>.
      */
+    @Override
     public void setLogger(Logger logger) {
         Assert.notNull(logger, "logger");
         mLogger = logger;
     }
 
+    /**
+     * Gets the factory used to create the dialogue thread.
+     *
+     * @return the dialogue thread factory.
+     * @since 1.0.13
+     */
+    public ThreadFactory getDialogueThreadFactory() {
+        return mDialogueThreadFactory;
+    }
+
+    /**
+     * Sets the factory used to create the dialogue thread. Must be called
+     * before {@link #start(Dialogue, FirstTurn, Duration, DialogueContext)}.
+     *
+     * @param dialogueThreadFactory The thread factory. Cannot be
+     *            <code>null</code>.
+     * @see DialogueThreadFactories
+     * @since 1.0.13
+     */
+    public void setDialogueThreadFactory(ThreadFactory dialogueThreadFactory) {
+        Assert.notNull(dialogueThreadFactory, "dialogueThreadFactory");
+        mDialogueThreadFactory = dialogueThreadFactory;
+    }
+
+    /**
+     * Sets the metrics notified of the dialogue thread lifecycle and of the
+     * time the dialogue waits for input turns. Must be called before
+     * {@link #start(Dialogue, FirstTurn, Duration, DialogueContext)}.
+     *
+     * @param dialogueMetrics the metrics. Cannot be <code>null</code>.
+     * @since 1.0.13
+     */
+    public void setDialogueMetrics(DialogueMetrics dialogueMetrics) {
+        Assert.notNull(dialogueMetrics, "dialogueMetrics");
+        mDialogueMetrics = dialogueMetrics;
+    }
+
     /**
      * Starts a {@link Dialogue} in a new thread.
      *
@@ -226,12 +286,44 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      *             specified by <code>timeout</code> parameter.
      * @throws InterruptedException if the dialogue has been interrupted.
      */
-    public Step<O, L> start(final Dialogue<I, O, F, L, C> dialogue, final F firstTurn, Duration timeout, final C context)
+    @Override
+    public Step<O, L> start(Dialogue<I, O, F, L, C> dialogue, F firstTurn, Duration timeout, C context)
             throws Timeout, InterruptedException {
+        startDialogueThread(dialogue, firstTurn, context);
+
+        if (timeout == null) {
+            timeout = mDefaultReceiveFromDialogueTimeout;
+        }
+        return receive(mFromDialogueToController, timeout);
+    }
+
+    /**
+     * Starts a {@link Dialogue} in a new thread without waiting for its first
+     * step. The returned stage is completed by the dialogue thread.
+     *
+     * @param dialogue Dialogue to start. Cannot be <code>null</code>.
+     * @param firstTurn First turn used passed to
+     *            {@link Dialogue#run(FirstTurn, DialogueContext)} method of the
+     *            dialogue. Cannot be <code>null</code>.
+     * @param context Dialogue context to pass to
+     *            {@link Dialogue#run(FirstTurn, DialogueContext)} method of the
+     *            dialogue. Cannot be <code>null</code>.
+     * @return a stage completed with the first Step of the dialogue.
+     * @since 1.0.13
+     */
+    @Override
+    public CompletionStage<Step<O, L>> startAsync(Dialogue<I, O, F, L, C> dialogue, F firstTurn, C context) {
+        CompletableFuture<Step<O, L>> step = new CompletableFuture<Step<O, L>>();
+        mPendingStep.set(step);
+        startDialogueThread(dialogue, firstTurn, context);
+        return step;
+    }
 
+    private void startDialogueThread(final Dialogue<I, O, F, L, C> dialogue, final F firstTurn, final C context) {
         Runnable runnable = new Runnable() {
             @Override
             public void run() {
+                mDialogueMetrics.dialogueThreadStarted();
                 mDialogueStarted = true;
                 for (DialogueChannelListener<I, O> listener : mListener) {
                     listener.onStart(SynchronousDialogueChannel.this);
@@ -249,7 +341,7 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
                 try {
                     if (!mStopped) {
                         mLogger.trace("Last step: {}", lastStep);
-                        send(mFromDialogueToController, lastStep, mSendTimeout);
+                        sendToController(lastStep);
                     }
                 } catch (Timeout exception) {
                     mLogger.warn("Timeout while sending last step.", exception);
@@ -266,15 +358,15 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
                         listener.onStop(SynchronousDialogueChannel.this);
                     }
                     mLogger.info("Dialogue ended.");
+                    mDialogueMetrics.dialogueThreadEnded();
                 }
             }
         };
 
-        mDialogueThread = new Thread(runnable, "Dialogue " + context.getDialogueId());
+        mDialogueThread = mDialogueThreadFactory.newThread(runnable);
+        mDialogueThread.setName("Dialogue " + context.getDialogueId());
         mDialogueThread.start();
         mLogger.info("Dialogue started.");
-
-        return receive(mFromDialogueToController, timeout);
     }
 
     /**
@@ -283,6 +375,7 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      * @return <code>true</code> if the dialogue has started, <code>false</code>
      *         otherwise.
      */
+    @Override
     public boolean isDialogueStarted() {
         return mDialogueStarted;
     }
@@ -293,6 +386,7 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      * @return <code>true</code> if the dialogue has ended, <code>false</code>
      *         otherwise.
      */
+    @Override
     public boolean isDialogueDone() {
         return mDialogueDone;
     }
@@ -303,6 +397,7 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      * @return <code>true</code> if the dialogue has started but not ended yet,
      *         <code>false</code> otherwise.
      */
+    @Override
     public boolean isDialogueActive() {
         return mDialogueStarted && !mDialogueDone;
     }
@@ -323,8 +418,13 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
     /**
      * Stops the dialogue.
      */
+    @Override
     public void stop() {
         mStopped = true;
+        CompletableFuture<Step<O, L>> pendingStep = mPendingStep.getAndSet(null);
+        if (pendingStep != null) {
+            pendingStep.completeExceptionally(new DialogueChannelStopped());
+        }
         mDialogueThread.interrupt();
     }
 
@@ -336,6 +436,7 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      * @throws InterruptedException if the current thread was interrupted while
      *             waiting for the dialogue thread to terminate.
      */
+    @Override
     public void join(Duration timeout) throws InterruptedException {
         mDialogueThread.join(timeout.getMilliseconds());
     }
@@ -364,7 +465,19 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
         if (timeout == null) {
             timeout = mDefaultReceiveFromControllerTimeout;
         }
-        return exchange(mFromDialogueToController, mFromControllerToDialogue, turnStep, mSendTimeout, timeout);
+        long waitStartTime = System.nanoTime();
+        try {
+            sendToController(turnStep);
+            return receive(mFromControllerToDialogue, timeout);
+        } catch (Timeout exception) {
+            mDialogueMetrics.timeoutOccurred();
+            throw exception;
+        } catch (InterruptedException interruptedException) {
+            if (mStopped) throw new DialogueChannelStopped();
+            else throw interruptedException;
+        } finally {
+            mDialogueMetrics.recordDialogueWaitTime(System.nanoTime() - waitStartTime);
+        }
     }
 
     /**
@@ -381,6 +494,7 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
      *             for the dialogue step.
      * @return the {@link Step} wrapping the dialogue next step
      */
+    @Override
     public Step<O, L> doTurn(I turn, Duration timeout) throws Timeout, InterruptedException {
         verifyState();
         mLogger.trace("InputTurn: {}", turn);
@@ -390,6 +504,48 @@ public final class SynchronousDialogueChannel<I extends InputTurn, O extends Out
         return exchange(mFromControllerToDialogue, mFromDialogueToController, turn, mSendTimeout, timeout);
     }
 
+    /**
+     * Sends an input turn to the dialogue without waiting for the next step.
+     * The returned stage is completed by the dialogue thread.
+     *
+     * @param turn the input turn to send to the dialogue
+     * @return a stage completed with the next {@link Step} of the dialogue
+     * @throws Timeout If the dialogue did not accept the input turn within
+     *             the <code>sendTimeout</code>.
+     * @throws InterruptedException if the thread was interrupted wile sending
+     *             the input turn.
+     * @since 1.0.13
+     */
+    @Override
+    public CompletionStage<Step<O, L>> doTurnAsync(I turn) throws Timeout, InterruptedException {
+        verifyState();
+        mLogger.trace("InputTurn: {}", turn);
+        CompletableFuture<Step<O, L>> step = new CompletableFuture<Step<O, L>>();
+        if (!mPendingStep.compareAndSet(null, step))
+            throw new IllegalStateException("Controller is already waiting for a step");
+
+        try {
+            send(mFromControllerToDialogue, turn, mSendTimeout);
+        } catch (InterruptedException interruptedException) {
+            mPendingStep.compareAndSet(step, null);
+            if (mStopped) throw new DialogueChannelStopped();
+            else throw interruptedException;
+        } catch (Timeout timeout) {
+            mPendingStep.compareAndSet(step, null);
+            throw timeout;
+        }
+        return step;
+    }
+
+    private void sendToController(Step<O, L> step) throws Timeout, InterruptedException {
+        CompletableFuture<Step<O, L>> pendingStep = mPendingStep.getAndSet(null);
+        if (pendingStep != null) {
+            pendingStep.complete(step);
+        } else {
+            send(mFromDialogueToController, step, mSendTimeout);
+        }
+    }
+
     private void verifyState() {
         if (mDialogueThread == null) throw new IllegalStateException("Dialogue is not set");
         if (!mDialogueThread.isAlive()) throw new IllegalStateException("Dialogue is not started");
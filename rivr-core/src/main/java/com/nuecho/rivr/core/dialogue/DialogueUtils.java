@@ -4,7 +4,10 @@
 
 package com.nuecho.rivr.core.dialogue;
 
+import java.util.concurrent.*;
+
 import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.asynchronous.*;
 import com.nuecho.rivr.core.util.*;
 
 /**
@@ -59,4 +62,64 @@ public final class DialogueUtils {
         return context.getDialogueChannel().doTurn(outputTurn, timeout);
     }
 
+    /**
+     * Performs a non-blocking turn exchange with default timeout.
+     *
+     * @param <I> input turn type.
+     * @param <O> output turn type.
+     * @param outputTurn the output turn to return to the controller (i.e. the
+     *            servlet).
+     * @param context the dialogue context.
+     * @return a stage completed with the input turn provided by the
+     *         controller.
+     * @see AsynchronousDialogue
+     * @since 1.0.13
+     */
+    public static <I extends InputTurn, O extends OutputTurn> CompletionStage<I> doTurnAsync(O outputTurn,
+                                                                                         DialogueContext<I, O> context) {
+        return doTurnAsync(outputTurn, context, null);
+    }
+
+    /**
+     * Performs a non-blocking turn exchange with specified timeout. If the
+     * dialogue channel is an {@link AsynchronousDialogueChannel}, the returned
+     * stage is completed once the controller provides the input turn. With any
+     * other dialogue channel, the turn exchange is performed synchronously and
+     * the returned stage is already completed.
+     *
+     * @param <I> input turn type.
+     * @param <O> output turn type.
+     * @param outputTurn the output turn to return to the controller (i.e. the
+     *            servlet).
+     * @param context the dialogue context.
+     * @param timeout maximum delay for the controller to provide the input
+     *            turn.
+     * @return a stage completed with the input turn provided by the
+     *         controller, or completed exceptionally with a {@link Timeout} if
+     *         the controller did not provided the input turn within the
+     *         allocated time.
+     * @see AsynchronousDialogue
+     * @since 1.0.13
+     */
+    public static <I extends InputTurn, O extends OutputTurn> CompletionStage<I> doTurnAsync(O outputTurn,
+                                                                                         DialogueContext<I, O> context,
+                                                                                         Duration timeout) {
+        DialogueChannel<I, O> dialogueChannel = context.getDialogueChannel();
+        if (dialogueChannel instanceof AsynchronousDialogueChannel) {
+            AsynchronousDialogueChannel<I, O, ?, ?, ?> asynchronousDialogueChannel = (AsynchronousDialogueChannel<I, O, ?, ?, ?>) dialogueChannel;
+            return asynchronousDialogueChannel.doTurnAsync(outputTurn, timeout);
+        }
+
+        CompletableFuture<I> inputTurn = new CompletableFuture<I>();
+        try {
+            inputTurn.complete(dialogueChannel.doTurn(outputTurn, timeout));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            inputTurn.completeExceptionally(exception);
+        } catch (Throwable throwable) {
+            inputTurn.completeExceptionally(throwable);
+        }
+        return inputTurn;
+    }
+
 }
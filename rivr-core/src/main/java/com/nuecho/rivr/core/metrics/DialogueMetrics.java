@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.metrics;
+
+import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.synchronous.*;
+import com.nuecho.rivr.core.channel.synchronous.step.*;
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.servlet.session.*;
+
+/**
+ * Receives the measurements made by the dialogue engine. An implementation can
+ * aggregate them in process (see {@link SimpleDialogueMetrics}) or forward
+ * them to a metrics library. Rivr has no dependency on any such library.
+ * <p>
+ * Methods are called from request threads, dialogue threads and the session
+ * clean-up thread, possibly concurrently. Implementations must therefore be
+ * thread-safe and should return quickly. Durations are in nanoseconds.
+ *
+ * @see DialogueServlet#setDialogueMetrics(DialogueMetrics)
+ * @see NoOpDialogueMetrics
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface DialogueMetrics {
+
+    /**
+     * Called when a session is added to the {@link SessionContainer}.
+     */
+    void sessionAdded();
+
+    /**
+     * Called when a session is removed from the {@link SessionContainer}.
+     */
+    void sessionRemoved();
+
+    /**
+     * Called by a dialogue thread of a {@link SynchronousDialogueChannel} when
+     * it starts.
+     */
+    void dialogueThreadStarted();
+
+    /**
+     * Called by a dialogue thread of a {@link SynchronousDialogueChannel} just
+     * before it ends.
+     */
+    void dialogueThreadEnded();
+
+    /**
+     * Records the time the controller waited for the next step of the
+     * dialogue.
+     *
+     * @param nanoseconds the waiting time
+     */
+    void recordControllerWaitTime(long nanoseconds);
+
+    /**
+     * Records the time the dialogue waited for the next input turn from the
+     * controller.
+     *
+     * @param nanoseconds the waiting time
+     */
+    void recordDialogueWaitTime(long nanoseconds);
+
+    /**
+     * Records the time taken to render a turn and to write it to the response.
+     *
+     * @param stepRendererClass class of the {@link StepRenderer}
+     * @param turnClass class of the rendered {@link OutputTurn} or
+     *            {@link LastTurn}
+     * @param nanoseconds the rendering time
+     */
+    void recordRenderingTime(Class<?> stepRendererClass, Class<?> turnClass, long nanoseconds);
+
+    /**
+     * Records the number of bytes written in the body of a response.
+     *
+     * @param bytes the size of the response body
+     */
+    void recordResponseSize(long bytes);
+
+    /**
+     * Records the time taken by the {@link InputTurnFactory} to create the
+     * first turn or an input turn from a request.
+     *
+     * @param nanoseconds the creation time
+     */
+    void recordInputTurnCreationTime(long nanoseconds);
+
+    /**
+     * Called when the controller or the dialogue gives up waiting for the
+     * other side (see {@link Timeout}).
+     */
+    void timeoutOccurred();
+
+    /**
+     * Called when the dialogue ends with an {@link ErrorStep}.
+     */
+    void errorStepOccurred();
+}
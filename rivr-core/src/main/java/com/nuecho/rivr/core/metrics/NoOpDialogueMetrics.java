@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.metrics;
+
+/**
+ * {@link DialogueMetrics} discarding all measurements. This is the default
+ * implementation.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class NoOpDialogueMetrics implements DialogueMetrics {
+
+    public static final NoOpDialogueMetrics INSTANCE = new NoOpDialogueMetrics();
+
+    private NoOpDialogueMetrics() {}
+
+    @Override
+    public void sessionAdded() {}
+
+    @Override
+    public void sessionRemoved() {}
+
+    @Override
+    public void dialogueThreadStarted() {}
+
+    @Override
+    public void dialogueThreadEnded() {}
+
+    @Override
+    public void recordControllerWaitTime(long nanoseconds) {}
+
+    @Override
+    public void recordDialogueWaitTime(long nanoseconds) {}
+
+    @Override
+    public void recordRenderingTime(Class<?> stepRendererClass, Class<?> turnClass, long nanoseconds) {}
+
+    @Override
+    public void recordResponseSize(long bytes) {}
+
+    @Override
+    public void recordInputTurnCreationTime(long nanoseconds) {}
+
+    @Override
+    public void timeoutOccurred() {}
+
+    @Override
+    public void errorStepOccurred() {}
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.metrics;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link DialogueMetrics} aggregating the measurements in memory. The current
+ * values can be written in the Prometheus text exposition format with
+ * {@link #writeTo(Writer)}.
+ * <p>
+ * Gauges report the current value, counters the number of events since the
+ * creation of this object. Durations and sizes are reported as summaries
+ * without quantiles (<code>_count</code> and <code>_sum</code>). The maximum
+ * observed value is reported by a separate gauge suffixed with
+ * <code>_max</code>. Durations are in seconds.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class SimpleDialogueMetrics implements DialogueMetrics {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double NANOSECONDS_PER_SECOND = 1e9;
+
+    private final AtomicLong mActiveSessions = new AtomicLong();
+    private final AtomicLong mActiveDialogueThreads = new AtomicLong();
+    private final Summary mControllerWaitTime = new Summary();
+    private final Summary mDialogueWaitTime = new Summary();
+    private final ConcurrentMap<RenderingKey, Summary> mRenderingTimes = new ConcurrentHashMap<RenderingKey, Summary>();
+    private final Summary mResponseSize = new Summary();
+    private final Summary mInputTurnCreationTime = new Summary();
+    private final LongAdder mTimeouts = new LongAdder();
+    private final LongAdder mErrorSteps = new LongAdder();
+
+    @Override
+    public void sessionAdded() {
+        mActiveSessions.incrementAndGet();
+    }
+
+    @Override
+    public void sessionRemoved() {
+        mActiveSessions.decrementAndGet();
+    }
+
+    @Override
+    public void dialogueThreadStarted() {
+        mActiveDialogueThreads.incrementAndGet();
+    }
+
+    @Override
+    public void dialogueThreadEnded() {
+        mActiveDialogueThreads.decrementAndGet();
+    }
+
+    @Override
+    public void recordControllerWaitTime(long nanoseconds) {
+        mControllerWaitTime.record(nanoseconds);
+    }
+
+    @Override
+    public void recordDialogueWaitTime(long nanoseconds) {
+        mDialogueWaitTime.record(nanoseconds);
+    }
+
+    @Override
+    public void recordRenderingTime(Class<?> stepRendererClass, Class<?> turnClass, long nanoseconds) {
+        RenderingKey key = new RenderingKey(getName(stepRendererClass), getName(turnClass));
+        Summary summary = mRenderingTimes.get(key);
+        if (summary == null) {
+            Summary newSummary = new Summary();
+            summary = mRenderingTimes.putIfAbsent(key, newSummary);
+            if (summary == null) {
+                summary = newSummary;
+            }
+        }
+        summary.record(nanoseconds);
+    }
+
+    @Override
+    public void recordResponseSize(long bytes) {
+        mResponseSize.record(bytes);
+    }
+
+    @Override
+    public void recordInputTurnCreationTime(long nanoseconds) {
+        mInputTurnCreationTime.record(nanoseconds);
+    }
+
+    @Override
+    public void timeoutOccurred() {
+        mTimeouts.increment();
+    }
+
+    @Override
+    public void errorStepOccurred() {
+        mErrorSteps.increment();
+    }
+
+    /**
+     * Writes the current values in the Prometheus text exposition format
+     * (version 0.0.4). The matching content type is {@link #CONTENT_TYPE}.
+     *
+     * @param writer the writer. Cannot be <code>null</code>. Not closed by this
+     *            method.
+     * @throws IOException if an error occurs while writing.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        Assert.notNull(writer, "writer");
+
+        writeGauge(writer, "rivr_sessions_active", "Sessions in the session container.", mActiveSessions.get());
+        writeGauge(writer,
+                   "rivr_dialogue_threads_active",
+                   "Running dialogue threads of synchronous dialogue channels.",
+                   mActiveDialogueThreads.get());
+
+        writeSummary(writer,
+                     "rivr_controller_wait_seconds",
+                     "Time the controller waited for the next step of the dialogue.",
+                     mControllerWaitTime,
+                     NANOSECONDS_PER_SECOND);
+        writeSummary(writer,
+                     "rivr_dialogue_wait_seconds",
+                     "Time the dialogue waited for the next input turn.",
+                     mDialogueWaitTime,
+                     NANOSECONDS_PER_SECOND);
+
+        Map<String, Summary> renderingTimes = new TreeMap<String, Summary>();
+        for (Map.Entry<RenderingKey, Summary> entry : mRenderingTimes.entrySet()) {
+            renderingTimes.put(entry.getKey().toLabels(), entry.getValue());
+        }
+        writeSummaries(writer,
+                       "rivr_rendering_seconds",
+                       "Time taken to render a turn and write the response.",
+                       renderingTimes,
+                       NANOSECONDS_PER_SECOND);
+
+        writeSummary(writer, "rivr_response_bytes", "Size of the response bodies.", mResponseSize, 1);
+        writeSummary(writer,
+                     "rivr_input_turn_creation_seconds",
+                     "Time taken to create the first turn or an input turn from a request.",
+                     mInputTurnCreationTime,
+                     NANOSECONDS_PER_SECOND);
+
+        writeCounter(writer, "rivr_timeouts_total", "Timeouts on the controller or dialogue side.", mTimeouts.sum());
+        writeCounter(writer, "rivr_error_steps_total", "Dialogues ended with an error step.", mErrorSteps.sum());
+        writer.flush();
+    }
+
+    private static void writeGauge(Writer writer, String name, String help, long value) throws IOException {
+        writeHeader(writer, name, help, "gauge");
+        writeSample(writer, name, "", Long.toString(value));
+    }
+
+    private static void writeCounter(Writer writer, String name, String help, long value) throws IOException {
+        writeHeader(writer, name, help, "counter");
+        writeSample(writer, name, "", Long.toString(value));
+    }
+
+    private static void writeSummary(Writer writer, String name, String help, Summary summary, double unitDivisor)
+            throws IOException {
+        writeSummaries(writer, name, help, Collections.singletonMap("", summary), unitDivisor);
+    }
+
+    /**
+     * Writes a summary family and the family of its maximum values, which must
+     * be a distinct gauge in the exposition format.
+     */
+    private static void writeSummaries(Writer writer,
+                                       String name,
+                                       String help,
+                                       Map<String, Summary> summariesByLabels,
+                                       double unitDivisor) throws IOException {
+        writeHeader(writer, name, help, "summary");
+        for (Map.Entry<String, Summary> entry : summariesByLabels.entrySet()) {
+            Summary summary = entry.getValue();
+            writeSample(writer, name + "_count", entry.getKey(), Long.toString(summary.getCount()));
+            writeSample(writer, name + "_sum", entry.getKey(), Double.toString(summary.getTotal() / unitDivisor));
+        }
+
+        String maxName = name + "_max";
+        writeHeader(writer, maxName, "Maximum of " + name + ".", "gauge");
+        for (Map.Entry<String, Summary> entry : summariesByLabels.entrySet()) {
+            writeSample(writer, maxName, entry.getKey(), Double.toString(entry.getValue().getMax() / unitDivisor));
+        }
+    }
+
+    private static void writeHeader(Writer writer, String name, String help, String type) throws IOException {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    private static void writeSample(Writer writer, String name, String labels, String value) throws IOException {
+        writer.write(name);
+        if (!labels.isEmpty()) {
+            writer.write("{" + labels + "}");
+        }
+        writer.write(" " + value + "\n");
+    }
+
+    private static String getName(Class<?> type) {
+        String simpleName = type.getSimpleName();
+        return simpleName.isEmpty() ? type.getName() : simpleName;
+    }
+
+    private static String escapeLabelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Count, total and maximum of recorded values.
+     */
+    private static final class Summary {
+        private final LongAdder mCount = new LongAdder();
+        private final LongAdder mTotal = new LongAdder();
+        private final AtomicLong mMax = new AtomicLong();
+
+        public void record(long value) {
+            mCount.increment();
+            mTotal.add(value);
+            long max = mMax.get();
+            while (value > max && !mMax.compareAndSet(max, value)) {
+                max = mMax.get();
+            }
+        }
+
+        public long getCount() {
+            return mCount.sum();
+        }
+
+        public long getTotal() {
+            return mTotal.sum();
+        }
+
+        public long getMax() {
+            return mMax.get();
+        }
+    }
+
+    private static final class RenderingKey {
+        private final String mStepRenderer;
+        private final String mTurn;
+
+        public RenderingKey(String stepRenderer, String turn) {
+            mStepRenderer = stepRenderer;
+            mTurn = turn;
+        }
+
+        public String toLabels() {
+            return "renderer=\"" + escapeLabelValue(mStepRenderer) + "\",turn=\"" + escapeLabelValue(mTurn) + "\"";
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mStepRenderer.hashCode() + mTurn.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof RenderingKey)) return false;
+            RenderingKey other = (RenderingKey) obj;
+            return mStepRenderer.equals(other.mStepRenderer) && mTurn.equals(other.mTurn);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Metrics recorded by the dialogue engine.
+ */
+package com.nuecho.rivr.core.metrics;
+
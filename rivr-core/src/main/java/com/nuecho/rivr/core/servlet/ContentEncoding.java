@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet;
+
+import java.util.*;
+
+/**
+ * HTTP content codings supported for compressed responses.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public enum ContentEncoding {
+
+    GZIP("gzip"), DEFLATE("deflate");
+
+    private static final String WILDCARD = "*";
+    private static final String QUALITY_PARAMETER = "q=";
+
+    private final String mToken;
+
+    private ContentEncoding(String token) {
+        mToken = token;
+    }
+
+    /**
+     * @return the token of this coding, as found in the
+     *         <code>Accept-Encoding</code> and <code>Content-Encoding</code>
+     *         headers
+     */
+    public String getToken() {
+        return mToken;
+    }
+
+    /**
+     * Tells if this coding is accepted, i.e. listed (explicitly or by
+     * <code>*</code>) with a non-zero quality value.
+     *
+     * @param acceptEncoding the value of the <code>Accept-Encoding</code>
+     *            header, may be <code>null</code>
+     */
+    public boolean isAcceptedBy(String acceptEncoding) {
+        return getQuality(acceptEncoding) > 0;
+    }
+
+    /**
+     * Chooses the coding of a response: the accepted coding with the highest
+     * quality value, {@link #GZIP} being preferred on equal values.
+     *
+     * @param acceptEncoding the value of the <code>Accept-Encoding</code>
+     *            header, may be <code>null</code>
+     * @return the coding, or <code>null</code> if none is accepted
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        ContentEncoding chosenEncoding = null;
+        double chosenQuality = 0;
+        for (ContentEncoding encoding : values()) {
+            double quality = encoding.getQuality(acceptEncoding);
+            if (quality > chosenQuality) {
+                chosenEncoding = encoding;
+                chosenQuality = quality;
+            }
+        }
+        return chosenEncoding;
+    }
+
+    private double getQuality(String acceptEncoding) {
+        if (acceptEncoding == null) return 0;
+
+        double wildcardQuality = 0;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String token = parameters[0].trim();
+            if (token.equalsIgnoreCase(mToken)) return getQuality(parameters);
+            if (token.equals(WILDCARD)) {
+                wildcardQuality = getQuality(parameters);
+            }
+        }
+        return wildcardQuality;
+    }
+
+    private static double getQuality(String[] parameters) {
+        for (int index = 1; index < parameters.length; index++) {
+            String parameter = parameters[index].trim().toLowerCase(Locale.US);
+            if (parameter.startsWith(QUALITY_PARAMETER)) {
+                try {
+                    return Double.parseDouble(parameter.substring(QUALITY_PARAMETER.length()).trim());
+                } catch (NumberFormatException exception) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -6,6 +6,10 @@ package com.nuecho.rivr.core.servlet;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.zip.*;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
@@ -13,15 +17,19 @@ import javax.servlet.http.*;
 import org.slf4j.*;
 
 import com.nuecho.rivr.core.channel.*;
+import com.nuecho.rivr.core.channel.asynchronous.*;
+import com.nuecho.rivr.core.channel.checkpoint.*;
 import com.nuecho.rivr.core.channel.synchronous.*;
 import com.nuecho.rivr.core.channel.synchronous.step.*;
 import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.metrics.*;
 import com.nuecho.rivr.core.servlet.session.*;
 import com.nuecho.rivr.core.util.*;
 
 /**
  * Abstract servlet interacting with a web client acting as the controller of a
- * {@link SynchronousDialogueChannel}.
+ * {@link SynchronousDialogueChannel} (or of an
+ * {@link AsynchronousDialogueChannel} if enabled).
  * <p>
  * This abstract servlet must be extended in order to provide a specific
  * implementation. For each session,
@@ -63,6 +71,11 @@ import com.nuecho.rivr.core.util.*;
  * for 10 seconds. Default value: <code>2 m</code></dd>
  * </dl>
  * <dl>
+ * <dt>com.nuecho.rivr.core.sessionContainerShardCount</dt>
+ * <dd>Number of shards of the session container, each one having its own
+ * clean-up thread. Default value: the number of available processors.</dd>
+ * </dl>
+ * <dl>
  * <dt>com.nuecho.rivr.core.webappServerSessionTrackingEnabled</dt>
  * <dd>Whether a {@link javax.servlet.http.HttpSession} should be created for
  * each dialogue or not. This is useful for load-balancers using JSESSIONID
@@ -70,6 +83,101 @@ import com.nuecho.rivr.core.util.*;
  * <code>true</code> or <code>false</code>. Default value:
  * <code>true</code></dd>
  * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.httpSessionKeepAliveInterval</dt>
+ * <dd>Minimum time between two accesses to the {@link javax.servlet.http.HttpSession}
+ * associated with a dialogue, made to keep it from expiring. Should be well
+ * below the session time-out of the web container. Value specified must be
+ * followed by unit (ms, s, m, h, d, y), e.g. <code>10s</code> for 10 seconds.
+ * Default value: <code>1 m</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.affinityCookieName</dt>
+ * <dd>Name of a cookie holding the session id, set on the first response of
+ * each dialogue (and again when a session is restored from the session store).
+ * It allows a load balancer to keep the requests of a dialogue on the same
+ * server without creating an {@link javax.servlet.http.HttpSession}, i.e. with
+ * <code>webappServerSessionTrackingEnabled</code> set to <code>false</code>.
+ * Default value: none (no cookie).</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.virtualDialogueThreadsEnabled</dt>
+ * <dd>Whether dialogues should run in virtual threads (<code>true</code>) or
+ * in platform threads (<code>false</code>). Virtual threads require Java 21 or
+ * later. Default value: virtual threads if supported by the JVM, platform
+ * threads otherwise.</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.asynchronousDialogueChannelEnabled</dt>
+ * <dd>Whether dialogues should be run by an {@link AsynchronousDialogueChannel}
+ * instead of a {@link SynchronousDialogueChannel}. In that case, dialogues must
+ * implement {@link AsynchronousDialogue}. Value should be <code>true</code> or
+ * <code>false</code>. Default value: <code>false</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.asynchronousDialoguePoolSize</dt>
+ * <dd>Number of threads shared by all dialogues run by an
+ * {@link AsynchronousDialogueChannel}. Default value: twice the number of
+ * available processors.</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.asynchronousRequestProcessingEnabled</dt>
+ * <dd>Whether requests should be processed asynchronously (Servlet 3.0
+ * <code>startAsync()</code>). When enabled, the container thread is released
+ * while the dialogue computes its next step and the response is rendered on
+ * a container thread once the step is handed off. Requires a Servlet 3.0 container and the
+ * servlet to be declared with <code>&lt;async-supported&gt;true&lt;/async-supported&gt;</code>
+ * (otherwise requests are processed synchronously). Value should be
+ * <code>true</code> or <code>false</code>. Default value:
+ * <code>false</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.sessionStoreDirectory</dt>
+ * <dd>Directory in which a {@link FileSessionStore} keeps the checkpoints of
+ * the sessions, usually shared by the servers of a cluster. When set,
+ * dialogues are run by a {@link CheckpointingDialogueChannel} and must
+ * implement {@link CheckpointedDialogue}. See
+ * {@link #setSessionStore(SessionStore)}. Default value: none (sessions are
+ * only kept in memory).</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.nodeId</dt>
+ * <dd>Id of this server, prefixed to the session ids so that a load balancer
+ * can route the requests of a session to the server which created it. Can only
+ * contain ASCII letters and digits, <code>'-'</code> and <code>'_'</code>. See
+ * {@link RandomSessionIdGenerator}. Default value: none (no prefix).</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.responseCompressionEnabled</dt>
+ * <dd>If <code>true</code>, step responses are compressed (gzip or deflate)
+ * when the client accepts it. See
+ * {@link #setResponseCompressionEnabled(boolean)}. Values: <code>true</code>
+ * or <code>false</code>. Default value: <code>false</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.responseCompressionThreshold</dt>
+ * <dd>Minimum size, in bytes, of a step response for it to be compressed.
+ * Default value: <code>2048</code></dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.responseLogSamplingInterval</dt>
+ * <dd>When the <code>com.nuecho.rivr.servlet.responses</code> logger is
+ * enabled for debug, only one step response out of this number is logged. See
+ * {@link #setResponseLogSamplingInterval(int)}. Default value: <code>1</code>
+ * (every response)</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.responseLogSlowThreshold</dt>
+ * <dd>When set, only the sampled step responses whose request took at least
+ * this duration to process are logged. See
+ * {@link #setResponseLogSlowThreshold(Duration)}. Default value: none (every
+ * sampled response)</dd>
+ * </dl>
+ * <dl>
+ * <dt>com.nuecho.rivr.core.responseLogMaximumLength</dt>
+ * <dd>Maximum number of bytes of a step response content to log. Longer
+ * contents are truncated. Default value: none (the whole content)</dd>
+ * </dl>
  *
  * @param <F> type of {@link FirstTurn}
  * @param <L> type of {@link LastTurn}
@@ -99,10 +207,45 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
     private static final String INITIAL_ARGUMENT_DIALOGUE_TIMEOUT = INITIAL_ARGUMENT_PREFIX + "dialogueTimeout";
     private static final String INITIAL_ARGUMENT_SESSION_TIMEOUT = INITIAL_ARGUMENT_PREFIX + "sessionTimeout";
     private static final String INITIAL_ARGUMENT_SESSION_SCAN_PERIOD = INITIAL_ARGUMENT_PREFIX + "sessionScanPeriod";
+    private static final String INITIAL_ARGUMENT_SESSION_CONTAINER_SHARD_COUNT = INITIAL_ARGUMENT_PREFIX
+                                                                                + "sessionContainerShardCount";
     private static final String INITIAL_ARGUMENT_CONTROLLER_TIMEOUT = INITIAL_ARGUMENT_PREFIX + "controllerTimeout";
 
     private static final String INITIAL_ARGUMENT_ENABLE_WEBAPP_SERVER_SESSION_TRACKING = INITIAL_ARGUMENT_PREFIX
                                                                                          + "webappServerSessionTrackingEnabled";
+    private static final String INITIAL_ARGUMENT_HTTP_SESSION_KEEP_ALIVE_INTERVAL = INITIAL_ARGUMENT_PREFIX
+                                                                                   + "httpSessionKeepAliveInterval";
+    private static final String INITIAL_ARGUMENT_AFFINITY_COOKIE_NAME = INITIAL_ARGUMENT_PREFIX + "affinityCookieName";
+    private static final String INITIAL_ARGUMENT_VIRTUAL_DIALOGUE_THREADS_ENABLED = INITIAL_ARGUMENT_PREFIX
+                                                                                    + "virtualDialogueThreadsEnabled";
+    private static final String INITIAL_ARGUMENT_ASYNCHRONOUS_DIALOGUE_CHANNEL_ENABLED = INITIAL_ARGUMENT_PREFIX
+                                                                                        + "asynchronousDialogueChannelEnabled";
+    private static final String INITIAL_ARGUMENT_ASYNCHRONOUS_DIALOGUE_POOL_SIZE = INITIAL_ARGUMENT_PREFIX
+                                                                                   + "asynchronousDialoguePoolSize";
+
+    private static final String INITIAL_ARGUMENT_ASYNCHRONOUS_REQUEST_PROCESSING_ENABLED = INITIAL_ARGUMENT_PREFIX
+                                                                                          + "asynchronousRequestProcessingEnabled";
+    private static final String INITIAL_ARGUMENT_SESSION_STORE_DIRECTORY = INITIAL_ARGUMENT_PREFIX
+                                                                           + "sessionStoreDirectory";
+    private static final String INITIAL_ARGUMENT_NODE_ID = INITIAL_ARGUMENT_PREFIX + "nodeId";
+    private static final String INITIAL_ARGUMENT_RESPONSE_COMPRESSION_ENABLED = INITIAL_ARGUMENT_PREFIX
+                                                                                + "responseCompressionEnabled";
+    private static final String INITIAL_ARGUMENT_RESPONSE_COMPRESSION_THRESHOLD = INITIAL_ARGUMENT_PREFIX
+                                                                                  + "responseCompressionThreshold";
+    private static final String INITIAL_ARGUMENT_RESPONSE_LOG_SAMPLING_INTERVAL = INITIAL_ARGUMENT_PREFIX
+                                                                                  + "responseLogSamplingInterval";
+    private static final String INITIAL_ARGUMENT_RESPONSE_LOG_SLOW_THRESHOLD = INITIAL_ARGUMENT_PREFIX
+                                                                               + "responseLogSlowThreshold";
+    private static final String INITIAL_ARGUMENT_RESPONSE_LOG_MAXIMUM_LENGTH = INITIAL_ARGUMENT_PREFIX
+                                                                               + "responseLogMaximumLength";
+
+    private static final String REQUEST_START_TIME_ATTRIBUTE = "com.nuecho.rivr.requestStartTime";
+
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    private static final String VARY_HEADER = "Vary";
+
+    private static final String ASYNCHRONOUS_DIALOGUE_THREAD_NAME_PREFIX = "Asynchronous dialogue pool ";
 
     private ErrorHandler<L> mErrorHandler;
     private DialogueFactory<I, O, F, L, C> mDialogueFactory;
@@ -110,14 +253,32 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
     private ILoggerFactory mLoggerFactory;
     private SessionContainer<I, O, F, L, C> mSessionContainer;
     private InputTurnFactory<I, F> mInputTurnFactory;
+    private ThreadFactory mDialogueThreadFactory = DialogueThreadFactories.defaultThreadFactory();
+    private boolean mAsynchronousDialogueChannelEnabled;
+    private int mAsynchronousDialoguePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+    private ScheduledExecutorService mAsynchronousDialogueExecutor;
+    private boolean mAsynchronousRequestProcessingEnabled;
+    private DialogueMetrics mDialogueMetrics = NoOpDialogueMetrics.INSTANCE;
+    private SessionStore mSessionStore;
+    private SessionIdGenerator mSessionIdGenerator;
 
     private Duration mDialogueTimeout = Duration.seconds(10);
     private Duration mControllerTimeout = Duration.minutes(5);
 
     private Duration mSessionTimeout = Duration.minutes(30);
     private Duration mSessionScanPeriod = Duration.minutes(2);
+    private int mSessionContainerShardCount = Runtime.getRuntime().availableProcessors();
 
     private boolean mWebappServerSessionTrackingEnabled = true;
+    private Duration mHttpSessionKeepAliveInterval = Duration.minutes(1);
+    private String mAffinityCookieName;
+    private boolean mResponseCompressionEnabled;
+    private int mResponseCompressionThreshold = 2048;
+    private ResponseCompressor mResponseCompressor;
+    private int mResponseLogSamplingInterval = 1;
+    private Duration mResponseLogSlowThreshold = Duration.ZERO;
+    private int mResponseLogMaximumLength = Integer.MAX_VALUE;
+    private final AtomicLong mResponseLogCounter = new AtomicLong();
     private Logger mLogger;
     private Logger mResponseLogger;
 
@@ -192,10 +353,17 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
             setSessionTimeout(sessionTimeout);
         }
 
+        Integer sessionContainerShardCount = getInteger(INITIAL_ARGUMENT_SESSION_CONTAINER_SHARD_COUNT);
+        if (sessionContainerShardCount != null) {
+            setSessionContainerShardCount(sessionContainerShardCount);
+        }
+
         mSessionContainer = new SessionContainer<I, O, F, L, C>(sessionContainerLogger,
                                                                 mSessionTimeout,
                                                                 mSessionScanPeriod,
-                                                                SESSION_CONTAINER_NAME);
+                                                                SESSION_CONTAINER_NAME,
+                                                                mSessionContainerShardCount);
+        mSessionContainer.setDialogueMetrics(mDialogueMetrics);
 
         Duration dialogueTimeout = getDuration(INITIAL_ARGUMENT_DIALOGUE_TIMEOUT);
         if (dialogueTimeout != null) {
@@ -212,6 +380,108 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
             setWebappServerSessionTrackingEnabled(enableWebappServerSessionTracking);
         }
 
+        Duration httpSessionKeepAliveInterval = getDuration(INITIAL_ARGUMENT_HTTP_SESSION_KEEP_ALIVE_INTERVAL);
+        if (httpSessionKeepAliveInterval != null) {
+            setHttpSessionKeepAliveInterval(httpSessionKeepAliveInterval);
+        }
+
+        String affinityCookieName = getServletConfig().getInitParameter(INITIAL_ARGUMENT_AFFINITY_COOKIE_NAME);
+        if (affinityCookieName != null) {
+            setAffinityCookieName(affinityCookieName.trim());
+        }
+
+        Boolean virtualDialogueThreadsEnabled = getBoolean(INITIAL_ARGUMENT_VIRTUAL_DIALOGUE_THREADS_ENABLED);
+        if (virtualDialogueThreadsEnabled != null) {
+            if (!virtualDialogueThreadsEnabled.booleanValue()) {
+                setDialogueThreadFactory(DialogueThreadFactories.platformThreadFactory());
+            } else if (DialogueThreadFactories.isVirtualThreadSupported()) {
+                setDialogueThreadFactory(DialogueThreadFactories.virtualThreadFactory());
+            } else throw new ServletException("Virtual dialogue threads requested by init-arg '"
+                                              + INITIAL_ARGUMENT_VIRTUAL_DIALOGUE_THREADS_ENABLED
+                                              + "' but not supported by this JVM.");
+        }
+
+        Boolean asynchronousDialogueChannelEnabled = getBoolean(INITIAL_ARGUMENT_ASYNCHRONOUS_DIALOGUE_CHANNEL_ENABLED);
+        if (asynchronousDialogueChannelEnabled != null) {
+            setAsynchronousDialogueChannelEnabled(asynchronousDialogueChannelEnabled);
+        }
+
+        Integer asynchronousDialoguePoolSize = getInteger(INITIAL_ARGUMENT_ASYNCHRONOUS_DIALOGUE_POOL_SIZE);
+        if (asynchronousDialoguePoolSize != null) {
+            setAsynchronousDialoguePoolSize(asynchronousDialoguePoolSize);
+        }
+
+        Boolean asynchronousRequestProcessingEnabled = getBoolean(INITIAL_ARGUMENT_ASYNCHRONOUS_REQUEST_PROCESSING_ENABLED);
+        if (asynchronousRequestProcessingEnabled != null) {
+            setAsynchronousRequestProcessingEnabled(asynchronousRequestProcessingEnabled);
+        }
+
+        String sessionStoreDirectory = getServletConfig().getInitParameter(INITIAL_ARGUMENT_SESSION_STORE_DIRECTORY);
+        if (sessionStoreDirectory != null) {
+            try {
+                setSessionStore(new FileSessionStore(new File(sessionStoreDirectory)));
+            } catch (IOException exception) {
+                throw new ServletException("Unable to create session store for init-arg '"
+                                           + INITIAL_ARGUMENT_SESSION_STORE_DIRECTORY
+                                           + "'.", exception);
+            }
+        }
+
+        if (mSessionStore != null) {
+            if (mAsynchronousDialogueChannelEnabled)
+                throw new ServletException("A session store cannot be used with the asynchronous dialogue channel.");
+            mSessionContainer.setSessionStore(mSessionStore);
+        }
+
+        String nodeId = getServletConfig().getInitParameter(INITIAL_ARGUMENT_NODE_ID);
+        if (nodeId != null) {
+            try {
+                setSessionIdGenerator(new RandomSessionIdGenerator(nodeId.trim()));
+            } catch (IllegalArgumentException exception) {
+                throw new ServletException("Invalid node id for init-arg '" + INITIAL_ARGUMENT_NODE_ID + "'.", exception);
+            }
+        }
+
+        if (mSessionIdGenerator == null) {
+            mSessionIdGenerator = new RandomSessionIdGenerator();
+        }
+
+        if (mAsynchronousDialogueChannelEnabled) {
+            mAsynchronousDialogueExecutor = createAsynchronousDialogueExecutor();
+        }
+
+        Boolean responseCompressionEnabled = getBoolean(INITIAL_ARGUMENT_RESPONSE_COMPRESSION_ENABLED);
+        if (responseCompressionEnabled != null) {
+            setResponseCompressionEnabled(responseCompressionEnabled);
+        }
+
+        Integer responseCompressionThreshold = getInteger(INITIAL_ARGUMENT_RESPONSE_COMPRESSION_THRESHOLD);
+        if (responseCompressionThreshold != null) {
+            setResponseCompressionThreshold(responseCompressionThreshold);
+        }
+
+        Integer responseLogSamplingInterval = getInteger(INITIAL_ARGUMENT_RESPONSE_LOG_SAMPLING_INTERVAL);
+        if (responseLogSamplingInterval != null) {
+            setResponseLogSamplingInterval(responseLogSamplingInterval);
+        }
+
+        Duration responseLogSlowThreshold = getDuration(INITIAL_ARGUMENT_RESPONSE_LOG_SLOW_THRESHOLD);
+        if (responseLogSlowThreshold != null) {
+            setResponseLogSlowThreshold(responseLogSlowThreshold);
+        }
+
+        Integer responseLogMaximumLength = getInteger(INITIAL_ARGUMENT_RESPONSE_LOG_MAXIMUM_LENGTH);
+        if (responseLogMaximumLength != null) {
+            setResponseLogMaximumLength(responseLogMaximumLength);
+        }
+
+        if (mResponseCompressionEnabled) {
+            //fastest level: the response is compressed on each turn, on the request thread
+            mResponseCompressor = new ResponseCompressor(mResponseCompressionThreshold,
+                                                         Deflater.BEST_SPEED,
+                                                         Runtime.getRuntime().availableProcessors() * 2);
+        }
+
         mLogger.info("Dialogue servlet initialized.");
 
     }
@@ -227,6 +497,9 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
         if (mSessionContainer != null) {
             mSessionContainer.stop();
         }
+        if (mAsynchronousDialogueExecutor != null) {
+            mAsynchronousDialogueExecutor.shutdownNow();
+        }
         destroyDialogueServlet();
 
         mLogger.info("Dialogue servlet destroyed.");
@@ -244,23 +517,62 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
         }
     }
 
-    private Boolean getBoolean(String key) throws ServletException {
+    /**
+     * Gets a boolean init-arg of the servlet.
+     *
+     * @param key the name of the init-arg
+     * @return the value of the init-arg, or <code>null</code> if it is not set
+     * @throws ServletException if the value is neither <code>true</code> nor
+     *             <code>false</code>
+     * @since 1.0.13
+     */
+    protected final Boolean getBoolean(String key) throws ServletException {
         ServletConfig servletConfig = getServletConfig();
         String booleanString = servletConfig.getInitParameter(key);
         if (booleanString == null) return null;
+        booleanString = booleanString.trim();
         if (booleanString.equalsIgnoreCase(TRUE)) return Boolean.TRUE;
         if (booleanString.equalsIgnoreCase(FALSE)) return Boolean.FALSE;
         throw new ServletException("Unable to parse boolean for init-arg '"
                                    + key
-                                   + "'.  Should be '"
+                                   + "'. Should be '"
                                    + TRUE
-                                   + "' of '"
+                                   + "' or '"
                                    + FALSE
                                    + "' but not '"
                                    + booleanString
                                    + "'.");
     }
 
+    private Integer getInteger(String key) throws ServletException {
+        ServletConfig servletConfig = getServletConfig();
+        String integerString = servletConfig.getInitParameter(key);
+        if (integerString == null) return null;
+        try {
+            return Integer.valueOf(integerString.trim());
+        } catch (NumberFormatException exception) {
+            throw new ServletException("Unable to parse integer for init-arg '" + key + "'", exception);
+        }
+    }
+
+    private ScheduledExecutorService createAsynchronousDialogueExecutor() {
+        ThreadFactory poolThreadFactory = new ThreadFactory() {
+            private int mThreadIndex;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, ASYNCHRONOUS_DIALOGUE_THREAD_NAME_PREFIX + mThreadIndex++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(mAsynchronousDialoguePoolSize,
+                                                                               poolThreadFactory);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
     private void ensureFieldIsSet(Object fieldValue, String fieldName) {
         if (fieldValue == null) throw new IllegalStateException(fieldName + " is not set.");
     }
@@ -283,22 +595,32 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
                                     HttpServletRequest request,
                                     final HttpServletResponse response,
                                     Session<I, O, F, L, C> session) throws IOException, StepRendererException {
-        ServletResponseContent responseContent = getStepRenderer(request, session).createDocumentForOutputTurn(outputTurn,
-                                                                                                               request,
-                                                                                                               response,
-                                                                                                               session.getDialogueContext());
-        commitToResponse(response, responseContent);
+        long startTime = System.nanoTime();
+        StepRenderer<I, O, L, C> stepRenderer = getStepRenderer(request, session);
+        ServletResponseContent responseContent = stepRenderer.createDocumentForOutputTurn(outputTurn,
+                                                                                          request,
+                                                                                          response,
+                                                                                          session.getDialogueContext());
+        commitToResponse(request, response, responseContent);
+        mDialogueMetrics.recordRenderingTime(stepRenderer.getClass(),
+                                             outputTurn.getClass(),
+                                             System.nanoTime() - startTime);
     }
 
     protected void renderLastTurn(L result,
                                   HttpServletRequest request,
                                   HttpServletResponse response,
                                   Session<I, O, F, L, C> session) throws IOException, StepRendererException {
-        ServletResponseContent responseContent = getStepRenderer(request, session).createDocumentForLastTurn(result,
-                                                                                                             request,
-                                                                                                             response,
-                                                                                                             session.getDialogueContext());
-        commitToResponse(response, responseContent);
+        long startTime = System.nanoTime();
+        StepRenderer<I, O, L, C> stepRenderer = getStepRenderer(request, session);
+        ServletResponseContent responseContent = stepRenderer.createDocumentForLastTurn(result,
+                                                                                        request,
+                                                                                        response,
+                                                                                        session.getDialogueContext());
+        commitToResponse(request, response, responseContent);
+        mDialogueMetrics.recordRenderingTime(stepRenderer.getClass(),
+                                             result.getClass(),
+                                             System.nanoTime() - startTime);
         session.stop();
     }
 
@@ -307,13 +629,18 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
                                HttpServletResponse response,
                                Session<I, O, F, L, C> session) throws IOException, StepRendererException {
 
+        long startTime = System.nanoTime();
         L fatalErrorTurn = mErrorHandler.handleError(error);
 
-        ServletResponseContent responseContent = getStepRenderer(request, session).createDocumentForLastTurn(fatalErrorTurn,
-                                                                                                             request,
-                                                                                                             response,
-                                                                                                             session.getDialogueContext());
-        commitToResponse(response, responseContent);
+        StepRenderer<I, O, L, C> stepRenderer = getStepRenderer(request, session);
+        ServletResponseContent responseContent = stepRenderer.createDocumentForLastTurn(fatalErrorTurn,
+                                                                                        request,
+                                                                                        response,
+                                                                                        session.getDialogueContext());
+        commitToResponse(request, response, responseContent);
+        mDialogueMetrics.recordRenderingTime(stepRenderer.getClass(),
+                                             fatalErrorTurn.getClass(),
+                                             System.nanoTime() - startTime);
         session.stop();
     }
 
@@ -374,11 +701,156 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
         mSessionScanPeriod = sessionScanPeriod;
     }
 
+    /**
+     * Sets the number of shards of the session container. Sessions are spread
+     * over the shards by hash of their id and each shard has its own clean-up
+     * thread. Must be called before the servlet is initialized.
+     *
+     * @param sessionContainerShardCount the number of shards. Must be
+     *            positive.
+     * @since 1.0.13
+     */
+    public final void setSessionContainerShardCount(int sessionContainerShardCount) {
+        Assert.positive(sessionContainerShardCount, "sessionContainerShardCount");
+        mSessionContainerShardCount = sessionContainerShardCount;
+    }
+
     public final void setErrorHandler(ErrorHandler<L> errorHandler) {
         Assert.notNull(errorHandler, "errorHandler");
         mErrorHandler = errorHandler;
     }
 
+    /**
+     * Sets the factory used to create dialogue threads. By default, virtual
+     * threads are used if supported by the JVM (Java 21+), platform threads
+     * otherwise.
+     *
+     * @param dialogueThreadFactory the thread factory. Cannot be
+     *            <code>null</code>.
+     * @see DialogueThreadFactories
+     * @since 1.0.13
+     */
+    public final void setDialogueThreadFactory(ThreadFactory dialogueThreadFactory) {
+        Assert.notNull(dialogueThreadFactory, "dialogueThreadFactory");
+        mDialogueThreadFactory = dialogueThreadFactory;
+    }
+
+    /**
+     * Indicates if dialogues should be run by an
+     * {@link AsynchronousDialogueChannel} instead of a
+     * {@link SynchronousDialogueChannel}. When enabled, dialogues must
+     * implement {@link AsynchronousDialogue}. Must be called before the
+     * servlet is initialized.
+     *
+     * @param asynchronousDialogueChannelEnabled <code>true</code> to use an
+     *            {@link AsynchronousDialogueChannel} for each dialogue.
+     * @since 1.0.13
+     */
+    public final void setAsynchronousDialogueChannelEnabled(boolean asynchronousDialogueChannelEnabled) {
+        mAsynchronousDialogueChannelEnabled = asynchronousDialogueChannelEnabled;
+    }
+
+    /**
+     * Sets the number of threads shared by the dialogues run by an
+     * {@link AsynchronousDialogueChannel}. Must be called before the servlet is
+     * initialized.
+     *
+     * @param asynchronousDialoguePoolSize the number of threads. Must be
+     *            positive.
+     * @since 1.0.13
+     */
+    public final void setAsynchronousDialoguePoolSize(int asynchronousDialoguePoolSize) {
+        Assert.positive(asynchronousDialoguePoolSize, "asynchronousDialoguePoolSize");
+        mAsynchronousDialoguePoolSize = asynchronousDialoguePoolSize;
+    }
+
+    /**
+     * Indicates if requests should be processed asynchronously using the
+     * Servlet 3.0 <code>startAsync()</code> mechanism. When enabled, the
+     * container thread is not blocked while the dialogue computes its next
+     * step: once the step is handed off, the response is rendered and
+     * completed on a container thread, with <code>AsyncContext.start()</code>,
+     * rather than on the dialogue thread or a thread of the asynchronous
+     * dialogue pool. The servlet must be declared with
+     * <code>&lt;async-supported&gt;true&lt;/async-supported&gt;</code>, otherwise
+     * requests are still processed synchronously.
+     *
+     * @param asynchronousRequestProcessingEnabled <code>true</code> to process
+     *            requests asynchronously.
+     * @since 1.0.13
+     */
+    public final void setAsynchronousRequestProcessingEnabled(boolean asynchronousRequestProcessingEnabled) {
+        mAsynchronousRequestProcessingEnabled = asynchronousRequestProcessingEnabled;
+    }
+
+    /**
+     * Sets the store in which the checkpoints of the sessions are saved, so
+     * that a session can be resumed by another server after a fail-over or a
+     * restart. When set, dialogues are run by a
+     * {@link CheckpointingDialogueChannel} and must implement
+     * {@link CheckpointedDialogue}. Cannot be combined with the
+     * {@link #setAsynchronousDialogueChannelEnabled(boolean) asynchronous
+     * dialogue channel}. Must be called before the servlet is initialized.
+     * <p>
+     * When a request refers to a session which is not in the session
+     * container but has a checkpoint in the store, the session is restored: a
+     * new dialogue is created by the {@link DialogueFactory} (with the
+     * initialization info of this request rather than the first one) and
+     * resumed from the checkpoint with the input turn of the request.
+     *
+     * @param sessionStore the store, or <code>null</code> to keep the sessions
+     *            in memory only.
+     * @see FileSessionStore
+     * @see MemorySessionStore
+     * @since 1.0.13
+     */
+    public final void setSessionStore(SessionStore sessionStore) {
+        mSessionStore = sessionStore;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public final SessionStore getSessionStore() {
+        return mSessionStore;
+    }
+
+    /**
+     * Sets the generator of the ids of new sessions. Must be called before the
+     * servlet is initialized. By default, a {@link RandomSessionIdGenerator}
+     * is used, with the node id given by the
+     * <code>com.nuecho.rivr.core.nodeId</code> init-arg if any.
+     *
+     * @param sessionIdGenerator the generator. Cannot be <code>null</code>.
+     * @since 1.0.13
+     */
+    public final void setSessionIdGenerator(SessionIdGenerator sessionIdGenerator) {
+        Assert.notNull(sessionIdGenerator, "sessionIdGenerator");
+        mSessionIdGenerator = sessionIdGenerator;
+    }
+
+    /**
+     * Sets the metrics receiving the measurements made by the servlet, the
+     * session container and the dialogue channels. Must be called before the
+     * servlet is initialized, i.e. from {@link #initDialogueServlet()}. By
+     * default, measurements are discarded.
+     *
+     * @param dialogueMetrics the metrics. Cannot be <code>null</code>.
+     * @see SimpleDialogueMetrics
+     * @since 1.0.13
+     */
+    public final void setDialogueMetrics(DialogueMetrics dialogueMetrics) {
+        Assert.notNull(dialogueMetrics, "dialogueMetrics");
+        mDialogueMetrics = dialogueMetrics;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public final DialogueMetrics getDialogueMetrics() {
+        return mDialogueMetrics;
+    }
+
     /**
      * Indicates if the servlet should create an HttpSession object for each
      * dialogue. Note: Nothing is stored in the <code>HttpSession</code>.
@@ -395,6 +867,124 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
         mWebappServerSessionTrackingEnabled = enableWebappServerSessionTracking;
     }
 
+    /**
+     * Sets the minimum time between two accesses to the
+     * <code>HttpSession</code> associated with a dialogue (see
+     * {@link #setWebappServerSessionTrackingEnabled(boolean)}). The
+     * <code>HttpSession</code> is only accessed to keep it from expiring, and
+     * each access may trigger replication or persistence work in clustered web
+     * containers. The interval should be well below the session time-out of
+     * the web container. Default: 1 minute.
+     *
+     * @param httpSessionKeepAliveInterval the interval. Cannot be
+     *            <code>null</code>. A value of Duration.ZERO (or equivalent)
+     *            means to access the <code>HttpSession</code> on each request.
+     * @since 1.0.13
+     */
+    public final void setHttpSessionKeepAliveInterval(Duration httpSessionKeepAliveInterval) {
+        Assert.notNull(httpSessionKeepAliveInterval, "httpSessionKeepAliveInterval");
+        mHttpSessionKeepAliveInterval = httpSessionKeepAliveInterval;
+    }
+
+    /**
+     * Sets the name of a cookie holding the session id, set on the first
+     * response of each dialogue and when a session is restored from the
+     * {@link #setSessionStore(SessionStore) session store}. A load balancer can
+     * use it to keep the requests of a dialogue on the same server without an
+     * <code>HttpSession</code> being created.
+     *
+     * @param affinityCookieName the cookie name, or <code>null</code> for no
+     *            cookie.
+     * @since 1.0.13
+     */
+    public final void setAffinityCookieName(String affinityCookieName) {
+        if (affinityCookieName != null) {
+            Assert.notEmpty(affinityCookieName, "affinityCookieName");
+        }
+        mAffinityCookieName = affinityCookieName;
+    }
+
+    /**
+     * Indicates whether step responses are compressed when the client accepts
+     * it, as advertised by its <code>Accept-Encoding</code> header. Responses
+     * smaller than the
+     * {@link #setResponseCompressionThreshold(int) compression threshold} are
+     * sent as is. Must be called before the servlet is initialized.
+     *
+     * @param responseCompressionEnabled <code>true</code> to compress
+     *            responses, <code>false</code> otherwise
+     * @since 1.0.13
+     */
+    public final void setResponseCompressionEnabled(boolean responseCompressionEnabled) {
+        mResponseCompressionEnabled = responseCompressionEnabled;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public final boolean isResponseCompressionEnabled() {
+        return mResponseCompressionEnabled;
+    }
+
+    /**
+     * Sets the minimum size of a step response for it to be compressed, below
+     * which compression costs more than it saves. Must be called before the
+     * servlet is initialized.
+     *
+     * @param responseCompressionThreshold the size, in bytes. Cannot be
+     *            negative.
+     * @since 1.0.13
+     */
+    public final void setResponseCompressionThreshold(int responseCompressionThreshold) {
+        Assert.notNegative(responseCompressionThreshold, "responseCompressionThreshold");
+        mResponseCompressionThreshold = responseCompressionThreshold;
+    }
+
+    /**
+     * Sets the proportion of step responses logged when the
+     * <code>com.nuecho.rivr.servlet.responses</code> logger is enabled for
+     * debug. Only the responses which are logged are captured, as they are
+     * written to the client.
+     *
+     * @param responseLogSamplingInterval one response out of this number is
+     *            logged. Must be positive. A value of <code>1</code> means to
+     *            log every response.
+     * @since 1.0.13
+     */
+    public final void setResponseLogSamplingInterval(int responseLogSamplingInterval) {
+        Assert.positive(responseLogSamplingInterval, "responseLogSamplingInterval");
+        mResponseLogSamplingInterval = responseLogSamplingInterval;
+    }
+
+    /**
+     * Restricts the logging of step responses to slow requests. The time is
+     * measured from the moment the servlet starts processing the request until
+     * the response is written. Sampled responses are still captured and are
+     * discarded if the request was faster.
+     *
+     * @param responseLogSlowThreshold the minimum processing time of a request
+     *            for its response to be logged. Cannot be <code>null</code>. A
+     *            value of <code>Duration.ZERO</code> (or equivalent) means to
+     *            log every sampled response.
+     * @since 1.0.13
+     */
+    public final void setResponseLogSlowThreshold(Duration responseLogSlowThreshold) {
+        Assert.notNull(responseLogSlowThreshold, "responseLogSlowThreshold");
+        mResponseLogSlowThreshold = responseLogSlowThreshold;
+    }
+
+    /**
+     * Sets the maximum number of bytes of a step response captured for
+     * logging. Longer contents are logged truncated, along with their length.
+     *
+     * @param responseLogMaximumLength the number of bytes. Must be positive.
+     * @since 1.0.13
+     */
+    public final void setResponseLogMaximumLength(int responseLogMaximumLength) {
+        Assert.positive(responseLogMaximumLength, "responseLogMaximumLength");
+        mResponseLogMaximumLength = responseLogMaximumLength;
+    }
+
     private void process(HttpServletRequest request, HttpServletResponse response) throws ServletException {
         Session<I, O, F, L, C> session;
         try {
@@ -411,18 +1001,32 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
 
     private void process(HttpServletRequest request, HttpServletResponse response, Session<I, O, F, L, C> session)
             throws ServletException {
+        if (mResponseLogger.isDebugEnabled() && mResponseLogSlowThreshold.getMilliseconds() > 0) {
+            request.setAttribute(REQUEST_START_TIME_ATTRIBUTE, System.nanoTime());
+        }
+
+        if (mAffinityCookieName != null && session.getDialogueContext() == null) {
+            addAffinityCookie(request, response, session);
+        }
+
+        if (mAsynchronousRequestProcessingEnabled && request.isAsyncSupported()) {
+            new AsynchronousRequestProcessing(request, response, session).start();
+            return;
+        }
+
         try {
 
             Step<O, L> step;
-            C dialogueContext = session.getDialogueContext();
+            Dialogue<I, O, F, L, C> dialogue = initializeDialogue(request, response, session);
 
             try {
-                if (dialogueContext == null) {
-                    step = startDialogue(request, response, session);
+                if (dialogue != null) {
+                    step = startDialogue(request, response, session, dialogue);
                 } else {
                     step = continueDialogue(request, response, session);
                 }
             } catch (Timeout exception) {
+                mDialogueMetrics.timeoutOccurred();
                 renderError(exception, request, response, session);
                 return;
             } catch (InterruptedException exception) {
@@ -431,39 +1035,110 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
                 return;
             }
 
-            if (step instanceof OutputTurnStep) {
-                OutputTurnStep<O, L> outputTurnStep = (OutputTurnStep<O, L>) step;
-                renderOutputTurn(outputTurnStep.getOutputTurn(), request, response, session);
-            } else if (step instanceof LastTurnStep) {
-                LastTurnStep<O, L> lastTurnStep = (LastTurnStep<O, L>) step;
-                renderLastTurn(lastTurnStep.getLastTurn(), request, response, session);
-            } else if (step instanceof ErrorStep) {
-                ErrorStep<O, L> errorStep = (ErrorStep<O, L>) step;
-                Throwable throwable = errorStep.getThrowable();
-                renderError(throwable, request, response, session);
-            }
+            renderStep(step, request, response, session);
         } catch (Exception exception) {
             throw new ServletException("Error while rendering step.", exception);
         }
     }
 
+    private void renderStep(Step<O, L> step,
+                            HttpServletRequest request,
+                            HttpServletResponse response,
+                            Session<I, O, F, L, C> session) throws IOException, StepRendererException {
+        if (step instanceof OutputTurnStep) {
+            OutputTurnStep<O, L> outputTurnStep = (OutputTurnStep<O, L>) step;
+            renderOutputTurn(outputTurnStep.getOutputTurn(), request, response, session);
+        } else if (step instanceof LastTurnStep) {
+            LastTurnStep<O, L> lastTurnStep = (LastTurnStep<O, L>) step;
+            renderLastTurn(lastTurnStep.getLastTurn(), request, response, session);
+        } else if (step instanceof ErrorStep) {
+            ErrorStep<O, L> errorStep = (ErrorStep<O, L>) step;
+            mDialogueMetrics.errorStepOccurred();
+            Throwable throwable = errorStep.getThrowable();
+            renderError(throwable, request, response, session);
+        }
+    }
+
     private Step<O, L> continueDialogue(HttpServletRequest request,
                                         HttpServletResponse response,
                                         Session<I, O, F, L, C> session) throws ServletException, Timeout,
             InterruptedException {
         Assert.notNull(session, "session");
         I inputTurn = createInputTurn(request, response);
-        SynchronousDialogueChannel<I, O, F, L, C> dialogueChannel = session.getDialogueChannel();
+        ControllerDialogueChannel<I, O, F, L, C> dialogueChannel = session.getDialogueChannel();
         Assert.notNull(dialogueChannel, "dialogueChannel");
-        return dialogueChannel.doTurn(inputTurn, mDialogueTimeout);
+        long waitStartTime = System.nanoTime();
+        try {
+            return dialogueChannel.doTurn(inputTurn, mDialogueTimeout);
+        } finally {
+            mDialogueMetrics.recordControllerWaitTime(System.nanoTime() - waitStartTime);
+        }
     }
 
     private Step<O, L> startDialogue(HttpServletRequest request,
                                      HttpServletResponse response,
-                                     Session<I, O, F, L, C> session) throws ServletException, Timeout,
+                                     Session<I, O, F, L, C> session,
+                                     Dialogue<I, O, F, L, C> dialogue) throws ServletException, Timeout,
             InterruptedException {
-        SynchronousDialogueChannel<I, O, F, L, C> dialogueChannel;
-        dialogueChannel = new SynchronousDialogueChannel<I, O, F, L, C>();
+        F firstTurn = createFirstTurn(request, response);
+        long waitStartTime = System.nanoTime();
+        try {
+            return session.getDialogueChannel().start(dialogue,
+                                                      firstTurn,
+                                                      mDialogueTimeout,
+                                                      session.getDialogueContext());
+        } finally {
+            mDialogueMetrics.recordControllerWaitTime(System.nanoTime() - waitStartTime);
+        }
+    }
+
+    /**
+     * Initializes the dialogue of a session on its first request. The dialogue
+     * of a session restored from the session store is resumed, and is then
+     * ready to receive the input turn of the request. This is done under the
+     * session lock so that concurrent requests for a restored session resume
+     * its dialogue only once and all continue it.
+     *
+     * @return the dialogue to start, or <code>null</code> if the dialogue is
+     *         to be continued
+     */
+    private Dialogue<I, O, F, L, C> initializeDialogue(HttpServletRequest request,
+                                                       HttpServletResponse response,
+                                                       Session<I, O, F, L, C> session) throws ServletException {
+        //the dialogue context is set before the dialogue is resumed: only check it under the lock
+        synchronized (session) {
+            if (session.getDialogueContext() != null) return null;
+
+            byte[] checkpoint = session.takeCheckpoint();
+            if (checkpoint == null) return createDialogue(request, response, session);
+
+            resumeDialogue(request, response, session, checkpoint);
+            return null;
+        }
+    }
+
+    private void resumeDialogue(HttpServletRequest request,
+                                HttpServletResponse response,
+                                Session<I, O, F, L, C> session,
+                                byte[] checkpoint) throws ServletException {
+        Dialogue<I, O, F, L, C> dialogue = createDialogue(request, response, session);
+        CheckpointingDialogueChannel<I, O, F, L, C> dialogueChannel;
+        dialogueChannel = (CheckpointingDialogueChannel<I, O, F, L, C>) session.getDialogueChannel();
+        try {
+            dialogueChannel.resume(dialogue, checkpoint, session.getDialogueContext());
+        } catch (IOException exception) {
+            session.stop();
+            throw new ServletException("Unable to resume dialogue from checkpoint.", exception);
+        } catch (ClassNotFoundException exception) {
+            session.stop();
+            throw new ServletException("Unable to resume dialogue from checkpoint.", exception);
+        }
+    }
+
+    private Dialogue<I, O, F, L, C> createDialogue(HttpServletRequest request,
+                                                   HttpServletResponse response,
+                                                   Session<I, O, F, L, C> session) throws ServletException {
+        ControllerDialogueChannel<I, O, F, L, C> dialogueChannel = createDialogueChannel(session);
         session.setDialogueChannel(dialogueChannel);
 
         Logger logger = mLoggerFactory.getLogger(DIALOGUE_LOGGER_NAME);
@@ -476,19 +1151,33 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
 
         DialogueInitializationInfo<I, O, C> initializationInfo;
         initializationInfo = createInitializationInfo(request, response, dialogueContext);
-        Dialogue<I, O, F, L, C> dialogue;
         try {
-            dialogue = mDialogueFactory.create(initializationInfo);
+            return mDialogueFactory.create(initializationInfo);
         } catch (DialogueFactoryException exception) {
             throw new ServletException("Unable to create dialogue.", exception);
         }
-        F firstTurn = createFirstTurn(request, response);
-        return dialogueChannel.start(dialogue, firstTurn, mDialogueTimeout, dialogueContext);
+    }
+
+    private ControllerDialogueChannel<I, O, F, L, C> createDialogueChannel(Session<I, O, F, L, C> session) {
+        if (mSessionStore != null)
+            return new CheckpointingDialogueChannel<I, O, F, L, C>(mSessionStore, session.getId());
+
+        if (mAsynchronousDialogueChannelEnabled) {
+            AsynchronousDialogueChannel<I, O, F, L, C> dialogueChannel;
+            dialogueChannel = new AsynchronousDialogueChannel<I, O, F, L, C>(mAsynchronousDialogueExecutor);
+            dialogueChannel.setDialogueMetrics(mDialogueMetrics);
+            return dialogueChannel;
+        }
+
+        SynchronousDialogueChannel<I, O, F, L, C> dialogueChannel = new SynchronousDialogueChannel<I, O, F, L, C>();
+        dialogueChannel.setDialogueThreadFactory(mDialogueThreadFactory);
+        dialogueChannel.setDialogueMetrics(mDialogueMetrics);
+        return dialogueChannel;
     }
 
     private C createContext(HttpServletRequest request,
                             Session<I, O, F, L, C> session,
-                            SynchronousDialogueChannel<I, O, F, L, C> dialogueChannel,
+                            ControllerDialogueChannel<I, O, F, L, C> dialogueChannel,
                             Logger logger) {
         C dialogueContext = mDialogueContextFactory.createDialogueContext(request,
                                                                           session.getId(),
@@ -517,20 +1206,72 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
                 pathInfo = pathInfo.substring(0, firstSlash);
             }
 
-            return getExistingSession(pathInfo);
+            try {
+                return getExistingSession(pathInfo);
+            } catch (SessionNotFoundException exception) {
+                Session<I, O, F, L, C> session = restoreSession(request, pathInfo);
+                if (session == null) throw exception;
+                return session;
+            }
         } else {
-            String sessionId = UUID.randomUUID().toString();
+            String sessionId = mSessionIdGenerator.generateSessionId();
 
             Session<I, O, F, L, C> session = new Session<I, O, F, L, C>(mSessionContainer, sessionId);
             mSessionContainer.addSession(session);
-            if (mWebappServerSessionTrackingEnabled) {
-                session.setAssociatedHttpSession(request.getSession());
-            }
+            associateHttpSession(request, session);
 
             return session;
         }
     }
 
+    /**
+     * Restores a session from its checkpoint in the session store. Its
+     * dialogue is resumed when the request is processed.
+     *
+     * @return the restored session, or <code>null</code> if there is no
+     *         session store or no checkpoint for this session
+     */
+    private Session<I, O, F, L, C> restoreSession(HttpServletRequest request, String sessionId) {
+        if (mSessionStore == null) return null;
+
+        byte[] checkpoint;
+        try {
+            checkpoint = mSessionStore.load(sessionId);
+        } catch (IOException exception) {
+            mLogger.error("Unable to load checkpoint of session [{}].", sessionId, exception);
+            return null;
+        }
+
+        if (checkpoint == null) return null;
+
+        Session<I, O, F, L, C> session = new Session<I, O, F, L, C>(mSessionContainer, sessionId);
+        session.setCheckpoint(checkpoint);
+        //a concurrent request for the same session may have restored it first
+        Session<I, O, F, L, C> restoredSession = mSessionContainer.addSessionIfAbsent(session);
+        if (restoredSession != null) return restoredSession;
+        associateHttpSession(request, session);
+
+        mLogger.info("Session [{}] restored from checkpoint.", sessionId);
+        return session;
+    }
+
+    private void associateHttpSession(HttpServletRequest request, Session<I, O, F, L, C> session) {
+        session.setHttpSessionKeepAliveInterval(mHttpSessionKeepAliveInterval);
+        if (mWebappServerSessionTrackingEnabled) {
+            session.setAssociatedHttpSession(request.getSession());
+        }
+    }
+
+    private void addAffinityCookie(HttpServletRequest request,
+                                   HttpServletResponse response,
+                                   Session<I, O, F, L, C> session) {
+        Cookie cookie = new Cookie(mAffinityCookieName, session.getId());
+        String contextPath = request.getContextPath();
+        cookie.setPath(contextPath == null || contextPath.isEmpty() ? "/" : contextPath);
+        cookie.setSecure(request.isSecure());
+        response.addCookie(cookie);
+    }
+
     protected Session<I, O, F, L, C> getExistingSession(String sessionId) throws SessionNotFoundException {
         Session<I, O, F, L, C> session = mSessionContainer.getSession(sessionId);
 
@@ -540,37 +1281,388 @@ public abstract class DialogueServlet<I extends InputTurn, O extends OutputTurn,
     }
 
     private I createInputTurn(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+        long startTime = System.nanoTime();
         try {
             return mInputTurnFactory.createInputTurn(request, response);
         } catch (InputTurnFactoryException exception) {
             throw new ServletException(exception);
+        } finally {
+            mDialogueMetrics.recordInputTurnCreationTime(System.nanoTime() - startTime);
         }
     }
 
     private F createFirstTurn(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+        long startTime = System.nanoTime();
         try {
             return mInputTurnFactory.createFirstTurn(request, response);
         } catch (InputTurnFactoryException exception) {
             throw new ServletException(exception);
+        } finally {
+            mDialogueMetrics.recordInputTurnCreationTime(System.nanoTime() - startTime);
+        }
+    }
+
+    private void commitToResponse(HttpServletRequest request,
+                                  HttpServletResponse response,
+                                  ServletResponseContent responseContent) throws IOException {
+        try {
+            writeResponse(request, response, responseContent);
+        } finally {
+            if (responseContent instanceof ReleasableServletResponseContent) {
+                ((ReleasableServletResponseContent) responseContent).release();
+            }
         }
     }
 
-    private void commitToResponse(final HttpServletResponse response, ServletResponseContent responseContent)
-            throws IOException {
+    private void writeResponse(HttpServletRequest request,
+                               HttpServletResponse response,
+                               ServletResponseContent responseContent) throws IOException {
         ServletOutputStream outputStream = response.getOutputStream();
 
-        if (mResponseLogger.isDebugEnabled()) {
-            mResponseLogger.debug("Content-length: {}", responseContent.getContentLength());
-            mResponseLogger.debug("Content-type: {}", responseContent.getContentType());
-            mResponseLogger.debug("Content: {}", responseContent.getContentAsString());
+        //only asked once: the length of some contents is not known before they are written
+        Integer contentLength = responseContent.getContentLength();
+        response.setContentType(responseContent.getContentType());
+
+        CapturedResponseContent capturedResponseContent = null;
+        if (mResponseLogger.isDebugEnabled() && isResponseSampled()) {
+            capturedResponseContent = new CapturedResponseContent(responseContent, mResponseLogMaximumLength);
+            responseContent = capturedResponseContent;
         }
 
-        response.setContentType(responseContent.getContentType());
-        Integer contentLength = responseContent.getContentLength();
-        if (contentLength != null) {
-            response.setContentLength(contentLength);
+        ContentEncoding contentEncoding = null;
+        if (mResponseCompressor != null) {
+            response.addHeader(VARY_HEADER, ACCEPT_ENCODING_HEADER);
+            if (mResponseCompressor.isCompressible(contentLength)) {
+                contentEncoding = ContentEncoding.negotiate(request.getHeader(ACCEPT_ENCODING_HEADER));
+            }
+        }
+
+        CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+        try {
+            if (contentEncoding == null) {
+                //without a content length, the container uses the chunked transfer coding
+                if (contentLength != null) {
+                    response.setContentLength(contentLength);
+                }
+                responseContent.writeTo(countingOutputStream);
+            } else if (contentLength == null) {
+                response.setHeader(CONTENT_ENCODING_HEADER, contentEncoding.getToken());
+                mResponseCompressor.compressTo(responseContent, contentEncoding, countingOutputStream);
+            } else {
+                ResponseCompressor.Compression compression = mResponseCompressor.compress(responseContent,
+                                                                                          contentEncoding);
+                try {
+                    response.setHeader(CONTENT_ENCODING_HEADER, contentEncoding.getToken());
+                    response.setContentLength(compression.getLength());
+                    compression.writeCompressedContentTo(countingOutputStream);
+                } finally {
+                    compression.release();
+                }
+            }
+        } finally {
+            if (capturedResponseContent != null) {
+                try {
+                    logResponse(request, capturedResponseContent, contentEncoding, countingOutputStream.getCount());
+                } finally {
+                    capturedResponseContent.release();
+                }
+            }
         }
+        mDialogueMetrics.recordResponseSize(countingOutputStream.getCount());
+    }
+
+    private boolean isResponseSampled() {
+        return mResponseLogSamplingInterval == 1
+               || mResponseLogCounter.getAndIncrement() % mResponseLogSamplingInterval == 0;
+    }
+
+    private void logResponse(HttpServletRequest request,
+                             CapturedResponseContent capturedResponseContent,
+                             ContentEncoding contentEncoding,
+                             long responseSize) {
+        long thresholdInMilliseconds = mResponseLogSlowThreshold.getMilliseconds();
+        if (thresholdInMilliseconds > 0) {
+            Object startTime = request.getAttribute(REQUEST_START_TIME_ATTRIBUTE);
+            if (!(startTime instanceof Long)) return;
+            long processingTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - (Long) startTime);
+            if (processingTime < thresholdInMilliseconds) return;
+            mResponseLogger.debug("Processing time: {} ms", processingTime);
+        }
+
+        mResponseLogger.debug("Content-length: {}", capturedResponseContent.getCapturedLength());
+        mResponseLogger.debug("Content-type: {}", capturedResponseContent.getContentType());
+        if (contentEncoding != null) {
+            mResponseLogger.debug("Content-encoding: {} ({} bytes)", contentEncoding.getToken(), responseSize);
+        }
+        mResponseLogger.debug("Content: {}", capturedResponseContent.getCapturedContent());
+    }
+
+    /**
+     * Counts the bytes of the response body for the metrics.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long mCount;
+
+        public CountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            out.write(value);
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            mCount += length;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+    }
+
+    /**
+     * Response content keeping a copy of the first bytes written, up to a
+     * maximum length, for the response logger. The bytes are captured as they
+     * are written to the client instead of being rendered again by
+     * {@link ServletResponseContent#getContentAsString()}.
+     */
+    private static final class CapturedResponseContent implements ServletResponseContent {
+        private final ServletResponseContent mResponseContent;
+        private final int mMaximumLength;
+        private final ResponseBuffer mCapture = new ResponseBuffer();
+        private long mCapturedLength;
+
+        public CapturedResponseContent(ServletResponseContent responseContent, int maximumLength) {
+            mResponseContent = responseContent;
+            mMaximumLength = maximumLength;
+        }
+
+        @Override
+        public String getContentType() {
+            return mResponseContent.getContentType();
+        }
+
+        @Override
+        public Integer getContentLength() {
+            return mResponseContent.getContentLength();
+        }
+
+        @Override
+        public String getContentAsString() {
+            return mResponseContent.getContentAsString();
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            mResponseContent.writeTo(new CapturingOutputStream(outputStream));
+        }
+
+        /**
+         * @return the number of bytes written, including those not captured
+         */
+        public long getCapturedLength() {
+            return mCapturedLength;
+        }
+
+        public String getCapturedContent() {
+            String content;
+            try {
+                content = new String(mCapture.toByteArray(), Encoding.UTF_8.getId());
+            } catch (UnsupportedEncodingException exception) {
+                throw new AssertionError("Missing " + Encoding.UTF_8.getId() + " encoding.");
+            }
+
+            if (mCapturedLength > mCapture.size()) return content + "... (truncated)";
+            return content;
+        }
+
+        public void release() {
+            mCapture.release();
+        }
+
+        private void capture(byte[] buffer, int offset, int length) {
+            int count = Math.min(length, mMaximumLength - mCapture.size());
+            if (count > 0) {
+                mCapture.write(buffer, offset, count);
+            }
+            mCapturedLength += length;
+        }
+
+        private final class CapturingOutputStream extends FilterOutputStream {
+            private final byte[] mSingleByte = new byte[1];
+
+            public CapturingOutputStream(OutputStream outputStream) {
+                super(outputStream);
+            }
+
+            @Override
+            public void write(int value) throws IOException {
+                out.write(value);
+                mSingleByte[0] = (byte) value;
+                capture(mSingleByte, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                out.write(buffer, offset, length);
+                capture(buffer, offset, length);
+            }
+        }
+    }
+
+    /**
+     * Processing of a request using the Servlet 3.0 asynchronous support. The
+     * input turn is created on the container thread, then the request is put
+     * in asynchronous mode and the container thread is released. Whichever
+     * comes first, the step handed off by the dialogue channel or the
+     * container signaling the <code>dialogueTimeout</code>, completes the
+     * request. The response is always rendered on a container thread: the
+     * step is dispatched with <code>AsyncContext.start()</code> so that the
+     * dialogue thread is not used (and, on the last turn, not interrupted by
+     * <code>session.stop()</code>) while rendering.
+     * <p>
+     * This class is only loaded when asynchronous request processing is
+     * enabled so that the servlet can still be deployed in a Servlet 2.5
+     * container otherwise.
+     */
+    private final class AsynchronousRequestProcessing implements AsyncListener {
+
+        private final HttpServletRequest mRequest;
+        private final HttpServletResponse mResponse;
+        private final Session<I, O, F, L, C> mSession;
+        private final AtomicBoolean mCompleted = new AtomicBoolean();
+        private AsyncContext mAsyncContext;
+        private long mWaitStartTime;
+
+        public AsynchronousRequestProcessing(HttpServletRequest request,
+                                             HttpServletResponse response,
+                                             Session<I, O, F, L, C> session) {
+            mRequest = request;
+            mResponse = response;
+            mSession = session;
+        }
+
+        public void start() throws ServletException {
+            CompletionStage<Step<O, L>> step;
+            Dialogue<I, O, F, L, C> dialogue = initializeDialogue(mRequest, mResponse, mSession);
+            if (dialogue != null) {
+                F firstTurn = createFirstTurn(mRequest, mResponse);
+                startAsync();
+                step = mSession.getDialogueChannel().startAsync(dialogue, firstTurn, mSession.getDialogueContext());
+            } else {
+                ControllerDialogueChannel<I, O, F, L, C> dialogueChannel = mSession.getDialogueChannel();
+                Assert.notNull(dialogueChannel, "dialogueChannel");
+                I inputTurn = createInputTurn(mRequest, mResponse);
+                startAsync();
+                try {
+                    step = dialogueChannel.doTurnAsync(inputTurn);
+                } catch (Timeout exception) {
+                    complete(null, exception);
+                    return;
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    complete(null, exception);
+                    return;
+                } catch (RuntimeException exception) {
+                    complete(null, exception);
+                    return;
+                }
+            }
+
+            step.whenComplete(new BiConsumer<Step<O, L>, Throwable>() {
+                @Override
+                public void accept(Step<O, L> result, Throwable throwable) {
+                    dispatch(result, throwable);
+                }
+            });
+        }
+
+        private void startAsync() {
+            mAsyncContext = mRequest.startAsync(mRequest, mResponse);
+            mAsyncContext.setTimeout(mDialogueTimeout.getMilliseconds());
+            mAsyncContext.addListener(this);
+            mWaitStartTime = System.nanoTime();
+        }
+
+        /**
+         * Completes the request on the current thread, a container thread.
+         */
+        private void complete(Step<O, L> step, Throwable throwable) {
+            if (!acquire()) return;
+            render(step, throwable);
+        }
+
+        /**
+         * Completes the request with the step handed off by the dialogue
+         * channel, on a container thread.
+         */
+        private void dispatch(final Step<O, L> step, final Throwable throwable) {
+            if (!acquire()) return;
+            mAsyncContext.start(new Runnable() {
+                @Override
+                public void run() {
+                    render(step, throwable);
+                }
+            });
+        }
+
+        /**
+         * Ensures the request is completed only once and records the time
+         * waited for the step, rendering excluded.
+         */
+        private boolean acquire() {
+            if (!mCompleted.compareAndSet(false, true)) return false;
+            mDialogueMetrics.recordControllerWaitTime(System.nanoTime() - mWaitStartTime);
+            return true;
+        }
+
+        private void render(Step<O, L> step, Throwable throwable) {
+            MDC.put(MDC_KEY_DIALOGUE_ID, mSession.getId());
+            try {
+                if (throwable == null) {
+                    renderStep(step, mRequest, mResponse, mSession);
+                } else {
+                    if (throwable instanceof CompletionException && throwable.getCause() != null) {
+                        throwable = throwable.getCause();
+                    }
+                    if (throwable instanceof Timeout) {
+                        mDialogueMetrics.timeoutOccurred();
+                    }
+                    renderError(throwable, mRequest, mResponse, mSession);
+                }
+            } catch (Exception exception) {
+                mLogger.error("Error while rendering step.", exception);
+                if (!mResponse.isCommitted()) {
+                    try {
+                        mResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    } catch (IOException ioException) {
+                        mLogger.warn("Unable to send error response.", ioException);
+                    }
+                }
+            } finally {
+                mAsyncContext.complete();
+                MDC.remove(MDC_KEY_DIALOGUE_ID);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            complete(null, new Timeout("Timed-out after " + mDialogueTimeout + " while waiting for dialogue step."));
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            complete(null, event.getThrowable());
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {}
 
-        responseContent.writeTo(outputStream);
+        @Override
+        public void onStartAsync(AsyncEvent event) {}
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet;
+
+/**
+ * {@link ServletResponseContent} holding resources, typically a pooled
+ * {@link ResponseBuffer}, which are released by the {@link DialogueServlet}
+ * once the response has been written.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface ReleasableServletResponseContent extends ServletResponseContent {
+
+    /**
+     * Releases the resources held by this content. The content cannot be used
+     * afterwards. Calling this method more than once has no effect.
+     */
+    void release();
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Growable byte buffer in which a {@link ServletResponseContent} is rendered.
+ * Unlike a {@link ByteArrayOutputStream}, the content is held in fixed-size
+ * chunks: growing the buffer never copies the content, and writing it to the
+ * response needs no intermediate array.
+ * <p>
+ * Chunks are taken from a pool shared by all buffers and returned to it by
+ * {@link #release()}. A buffer which is not released is simply garbage
+ * collected. The pool keeps at most {@value #MAXIMUM_POOLED_CHUNKS} chunks
+ * of {@value #CHUNK_SIZE} bytes.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class ResponseBuffer extends OutputStream {
+
+    public static final int CHUNK_SIZE = 8192;
+    public static final int MAXIMUM_POOLED_CHUNKS = 512;
+
+    private static final BlockingQueue<byte[]> CHUNK_POOL = new ArrayBlockingQueue<byte[]>(MAXIMUM_POOLED_CHUNKS);
+
+    private final List<byte[]> mChunks = new ArrayList<byte[]>();
+    private int mSize;
+    private boolean mReleased;
+
+    /**
+     * @return the number of bytes in the buffer
+     */
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public void write(int value) {
+        ensureNotReleased();
+        int offset = mSize % CHUNK_SIZE;
+        byte[] chunk = offset == 0 ? addChunk() : mChunks.get(mChunks.size() - 1);
+        chunk[offset] = (byte) value;
+        mSize++;
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) {
+        ensureNotReleased();
+        Assert.notNull(buffer, "buffer");
+        if (offset < 0 || length < 0 || offset + length > buffer.length) throw new IndexOutOfBoundsException();
+
+        while (length > 0) {
+            int chunkOffset = mSize % CHUNK_SIZE;
+            byte[] chunk = chunkOffset == 0 ? addChunk() : mChunks.get(mChunks.size() - 1);
+            int count = Math.min(length, CHUNK_SIZE - chunkOffset);
+            System.arraycopy(buffer, offset, chunk, chunkOffset, count);
+            mSize += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Writes the content of the buffer to a stream, chunk by chunk.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        ensureNotReleased();
+        int remaining = mSize;
+        for (byte[] chunk : mChunks) {
+            int count = Math.min(remaining, CHUNK_SIZE);
+            outputStream.write(chunk, 0, count);
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Copies the content of the buffer in a new array. Only meant for
+     * occasional uses, e.g. logging.
+     */
+    public byte[] toByteArray() {
+        ensureNotReleased();
+        byte[] content = new byte[mSize];
+        int position = 0;
+        for (byte[] chunk : mChunks) {
+            int count = Math.min(mSize - position, CHUNK_SIZE);
+            System.arraycopy(chunk, 0, content, position, count);
+            position += count;
+        }
+        return content;
+    }
+
+    /**
+     * Finds the last occurrence of a byte.
+     *
+     * @return the index of the byte, or <code>-1</code> if it is not found
+     */
+    public int lastIndexOf(byte value) {
+        ensureNotReleased();
+        for (int index = mSize - 1; index >= 0; index--) {
+            if (mChunks.get(index / CHUNK_SIZE)[index % CHUNK_SIZE] == value) return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Discards the end of the content.
+     *
+     * @param size the new size. Cannot be negative or larger than the current
+     *            size.
+     */
+    public void truncate(int size) {
+        ensureNotReleased();
+        Assert.between(0, size, mSize);
+        int chunkCount = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        while (mChunks.size() > chunkCount) {
+            CHUNK_POOL.offer(mChunks.remove(mChunks.size() - 1));
+        }
+        mSize = size;
+    }
+
+    /**
+     * Returns the chunks of this buffer to the pool. The buffer cannot be used
+     * afterwards. Calling this method more than once has no effect.
+     */
+    public void release() {
+        if (mReleased) return;
+        mReleased = true;
+        for (byte[] chunk : mChunks) {
+            if (!CHUNK_POOL.offer(chunk)) {
+                break;
+            }
+        }
+        mChunks.clear();
+        mSize = 0;
+    }
+
+    private byte[] addChunk() {
+        byte[] chunk = CHUNK_POOL.poll();
+        if (chunk == null) {
+            chunk = new byte[CHUNK_SIZE];
+        }
+        mChunks.add(chunk);
+        return chunk;
+    }
+
+    private void ensureNotReleased() {
+        if (mReleased) throw new IllegalStateException("Buffer has been released.");
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Compresses response contents with pooled {@link Deflater deflaters} and
+ * buffers. A deflater holds a sizable amount of native memory and is costly
+ * to create, so it is reused across responses along with the buffers in
+ * which the compressed content is accumulated when the content length must
+ * be known before the body is written. Contents whose length is unknown are
+ * compressed directly to the response instead.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+final class ResponseCompressor {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    //larger buffers are not returned to the pool so that one unusually large
+    //response does not hold memory for the life of the servlet
+    private static final int MAXIMUM_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final byte[] GZIP_HEADER = new byte[] {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final int mThreshold;
+    private final int mLevel;
+    private final BlockingQueue<Compression> mGzipPool;
+    private final BlockingQueue<Compression> mDeflatePool;
+
+    public ResponseCompressor(int threshold, int level, int poolSize) {
+        mThreshold = threshold;
+        mLevel = level;
+        mGzipPool = new ArrayBlockingQueue<Compression>(poolSize);
+        mDeflatePool = new ArrayBlockingQueue<Compression>(poolSize);
+    }
+
+    /**
+     * Tells if a response content is large enough to be compressed, given its
+     * {@link ServletResponseContent#getContentLength() length}. A content
+     * whose length is unknown is compressed.
+     */
+    public boolean isCompressible(Integer contentLength) {
+        return contentLength == null || contentLength.intValue() >= mThreshold;
+    }
+
+    /**
+     * Compresses a response content. The returned compression must be
+     * {@link Compression#release() released} once written.
+     */
+    public Compression compress(ServletResponseContent responseContent, ContentEncoding contentEncoding)
+            throws IOException {
+        Compression compression = acquire(contentEncoding);
+        try {
+            responseContent.writeTo(compression);
+            compression.finish();
+        } catch (IOException exception) {
+            compression.release();
+            throw exception;
+        } catch (RuntimeException exception) {
+            compression.release();
+            throw exception;
+        }
+
+        return compression;
+    }
+
+    /**
+     * Compresses a response content directly to a stream, as it is written.
+     * Used when the content length is unknown, in which case the response is
+     * sent with chunked transfer coding anyway.
+     */
+    public void compressTo(ServletResponseContent responseContent,
+                           ContentEncoding contentEncoding,
+                           OutputStream outputStream) throws IOException {
+        Compression compression = acquire(contentEncoding);
+        try {
+            compression.setOutputStream(outputStream);
+            responseContent.writeTo(compression);
+            compression.finish();
+        } finally {
+            compression.release();
+        }
+    }
+
+    private Compression acquire(ContentEncoding contentEncoding) {
+        BlockingQueue<Compression> pool = getPool(contentEncoding);
+        Compression compression = pool.poll();
+        if (compression == null) {
+            compression = new Compression(pool, contentEncoding, mLevel);
+        }
+        return compression;
+    }
+
+    private BlockingQueue<Compression> getPool(ContentEncoding contentEncoding) {
+        switch (contentEncoding) {
+            case GZIP:
+                return mGzipPool;
+            case DEFLATE:
+                return mDeflatePool;
+            default:
+                throw new IllegalArgumentException("Unsupported content encoding: " + contentEncoding);
+        }
+    }
+
+    /**
+     * Stream compressing the bytes written to it into a buffer or, if set,
+     * into an output stream, in the gzip format or in the zlib format (the
+     * <code>deflate</code> content coding). Not thread-safe: only used by one
+     * response at a time.
+     */
+    static final class Compression extends OutputStream {
+
+        private final BlockingQueue<Compression> mPool;
+        private final ContentEncoding mContentEncoding;
+        private final Deflater mDeflater;
+        private final CRC32 mCrc;
+        private final byte[] mChunk = new byte[CHUNK_SIZE];
+        private final byte[] mSingleByte = new byte[1];
+        private ByteArrayOutputStream mBuffer = new ByteArrayOutputStream(CHUNK_SIZE);
+        private OutputStream mOutputStream = mBuffer;
+        private boolean mStarted;
+
+        Compression(BlockingQueue<Compression> pool, ContentEncoding contentEncoding, int level) {
+            mPool = pool;
+            mContentEncoding = contentEncoding;
+            boolean gzip = contentEncoding == ContentEncoding.GZIP;
+            mDeflater = new Deflater(level, gzip);
+            mCrc = gzip ? new CRC32() : null;
+        }
+
+        void setOutputStream(OutputStream outputStream) {
+            mOutputStream = outputStream;
+        }
+
+        private void start() throws IOException {
+            mStarted = true;
+            if (mCrc != null) {
+                mOutputStream.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+            }
+        }
+
+        public ContentEncoding getContentEncoding() {
+            return mContentEncoding;
+        }
+
+        /**
+         * @return the size of the compressed content, in bytes
+         */
+        public int getLength() {
+            return mBuffer.size();
+        }
+
+        /**
+         * Writes the compressed content.
+         */
+        public void writeCompressedContentTo(OutputStream outputStream) throws IOException {
+            mBuffer.writeTo(outputStream);
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            mSingleByte[0] = (byte) value;
+            write(mSingleByte, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) return;
+            if (!mStarted) {
+                start();
+            }
+
+            mDeflater.setInput(buffer, offset, length);
+            while (!mDeflater.needsInput()) {
+                deflate();
+            }
+
+            if (mCrc != null) {
+                mCrc.update(buffer, offset, length);
+            }
+        }
+
+        void finish() throws IOException {
+            if (!mStarted) {
+                start();
+            }
+
+            mDeflater.finish();
+            while (!mDeflater.finished()) {
+                deflate();
+            }
+
+            if (mCrc != null) {
+                writeIntLittleEndian(mCrc.getValue());
+                writeIntLittleEndian(mDeflater.getBytesRead());
+            }
+        }
+
+        private void deflate() throws IOException {
+            int length = mDeflater.deflate(mChunk, 0, mChunk.length);
+            mOutputStream.write(mChunk, 0, length);
+        }
+
+        private void writeIntLittleEndian(long value) throws IOException {
+            mOutputStream.write((int) (value & 0xff));
+            mOutputStream.write((int) ((value >> 8) & 0xff));
+            mOutputStream.write((int) ((value >> 16) & 0xff));
+            mOutputStream.write((int) ((value >> 24) & 0xff));
+        }
+
+        /**
+         * Resets this compression and returns it to its pool, or frees its
+         * deflater if the pool is full. Must not be used afterwards.
+         */
+        public void release() {
+            if (mBuffer.size() > MAXIMUM_POOLED_BUFFER_SIZE) {
+                mBuffer = new ByteArrayOutputStream(CHUNK_SIZE);
+            } else {
+                mBuffer.reset();
+            }
+
+            mOutputStream = mBuffer;
+            mStarted = false;
+            mDeflater.reset();
+            if (mCrc != null) {
+                mCrc.reset();
+            }
+
+            if (!mPool.offer(this)) {
+                mDeflater.end();
+            }
+        }
+    }
+}
@@ -8,6 +8,12 @@ import java.io.*;
 
 /**
  * Encapsulates servlet response (content, type and length)
+ * <p>
+ * A content may be rendered in advance or written to the response stream as it
+ * is rendered. In the latter case, its length is usually unknown before it is
+ * written: {@link #getContentLength()} then returns <code>null</code> and the
+ * response is sent without a <code>Content-Length</code> header, with the
+ * chunked transfer coding.
  *
  * @author Nu Echo Inc.
  */
@@ -30,7 +36,9 @@ public interface ServletResponseContent {
     void writeTo(OutputStream outputStream) throws IOException;
 
     /**
-     * Get the string representation of the response.
+     * Get the string representation of the response. This may require
+     * decoding or even rendering the content again and is not used when the
+     * response is written.
      *
      * @return the string representation of the response.
      * @since 1.0.3
@@ -38,9 +46,11 @@ public interface ServletResponseContent {
     String getContentAsString();
 
     /**
-     * Get the size of the response.
+     * Get the size of the response. Called once, before the response is
+     * written. An implementation should return <code>null</code> rather than
+     * render its content only to know its length.
      *
-     * @return size, in bytes, of the response.
+     * @return size, in bytes, of the response, or <code>null</code> if unknown.
      * @since 1.0.2
      */
     Integer getContentLength();
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.session;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link SessionStore} keeping each checkpoint in a file of a directory,
+ * typically on a file system shared by the servers of a cluster. A checkpoint
+ * is written to a temporary file which is then atomically renamed, so a
+ * checkpoint being read is always complete.
+ * <p>
+ * Checkpoints of sessions which were neither ended nor expired on a running
+ * server (e.g. when all servers were stopped) stay in the directory. They can
+ * be deleted with {@link #purge(Duration)}.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class FileSessionStore implements SessionStore {
+
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final Path mDirectory;
+
+    /**
+     * @param directory the directory in which the checkpoints are kept. Cannot
+     *            be <code>null</code>. Created if it does not exist.
+     * @throws IOException if the directory cannot be created
+     */
+    public FileSessionStore(File directory) throws IOException {
+        Assert.notNull(directory, "directory");
+        mDirectory = directory.toPath();
+        Files.createDirectories(mDirectory);
+    }
+
+    public File getDirectory() {
+        return mDirectory.toFile();
+    }
+
+    @Override
+    public void save(String sessionId, byte[] checkpoint) throws IOException {
+        Assert.notNull(checkpoint, "checkpoint");
+        Path file = getFile(sessionId);
+        Path temporaryFile = Files.createTempFile(mDirectory, file.getFileName().toString(), TEMPORARY_FILE_SUFFIX);
+        try {
+            Files.write(temporaryFile, checkpoint);
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    @Override
+    public byte[] load(String sessionId) throws IOException {
+        try {
+            return Files.readAllBytes(getFile(sessionId));
+        } catch (NoSuchFileException exception) {
+            return null;
+        }
+    }
+
+    @Override
+    public void remove(String sessionId) throws IOException {
+        Files.deleteIfExists(getFile(sessionId));
+    }
+
+    /**
+     * Deletes the checkpoints (and leftover temporary files) which have not
+     * been saved for a given time, usually longer than the session time-out.
+     *
+     * @param maximumAge the maximum age of the files to keep. Cannot be
+     *            <code>null</code>.
+     * @return the number of deleted files
+     * @throws IOException if the directory cannot be read
+     */
+    public int purge(Duration maximumAge) throws IOException {
+        Assert.notNull(maximumAge, "maximumAge");
+        long oldestTime = System.currentTimeMillis() - maximumAge.getMilliseconds();
+        int count = 0;
+        DirectoryStream<Path> files = Files.newDirectoryStream(mDirectory);
+        try {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (!fileName.endsWith(CHECKPOINT_SUFFIX) && !fileName.endsWith(TEMPORARY_FILE_SUFFIX)) {
+                    continue;
+                }
+
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()
+                        && attributes.lastModifiedTime().toMillis() < oldestTime
+                        && Files.deleteIfExists(file)) {
+                        count++;
+                    }
+                } catch (NoSuchFileException exception) {
+                    //removed concurrently
+                }
+            }
+        } finally {
+            files.close();
+        }
+        return count;
+    }
+
+    private Path getFile(String sessionId) {
+        Assert.notNull(sessionId, "sessionId");
+        return mDirectory.resolve(encode(sessionId) + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Session ids come from the request path: any character which is not safe
+     * in a file name is escaped so an id cannot designate a file outside of the
+     * directory.
+     */
+    private static String encode(String sessionId) {
+        StringBuilder builder = new StringBuilder(sessionId.length());
+        for (int index = 0; index < sessionId.length(); index++) {
+            char character = sessionId.charAt(index);
+            if (character >= 'a' && character <= 'z'
+                || character >= 'A' && character <= 'Z'
+                || character >= '0' && character <= '9'
+                || character == '-'
+                || character == '_') {
+                builder.append(character);
+            } else {
+                builder.append('%').append(String.format("%04x", (int) character));
+            }
+        }
+        return builder.toString();
+    }
+}
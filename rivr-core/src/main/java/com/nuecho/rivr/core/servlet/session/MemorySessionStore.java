@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.session;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link SessionStore} keeping the checkpoints in memory. The checkpoints do not
+ * survive the JVM: this store is meant for tests and for applications sharing
+ * an instance between servlets of the same JVM.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class MemorySessionStore implements SessionStore {
+
+    private final ConcurrentMap<String, byte[]> mCheckpoints = new ConcurrentHashMap<String, byte[]>();
+
+    @Override
+    public void save(String sessionId, byte[] checkpoint) {
+        Assert.notNull(sessionId, "sessionId");
+        Assert.notNull(checkpoint, "checkpoint");
+        mCheckpoints.put(sessionId, checkpoint);
+    }
+
+    @Override
+    public byte[] load(String sessionId) {
+        Assert.notNull(sessionId, "sessionId");
+        return mCheckpoints.get(sessionId);
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        Assert.notNull(sessionId, "sessionId");
+        mCheckpoints.remove(sessionId);
+    }
+
+    /**
+     * @return the ids of the sessions having a checkpoint
+     */
+    public Set<String> getSessionIds() {
+        return new HashSet<String>(mCheckpoints.keySet());
+    }
+}
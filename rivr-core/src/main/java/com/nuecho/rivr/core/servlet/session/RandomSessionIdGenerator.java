@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.session;
+
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Default {@link SessionIdGenerator}. Session ids are random (version 4)
+ * {@link UUID UUIDs}, optionally prefixed by the id of the node which created
+ * the session and a {@link #NODE_ID_SEPARATOR}, e.g.
+ * <code>node7.0f8fad5b-d9cb-469f-a165-70867728950e</code>. A load balancer can
+ * then route the requests of a session to its node by looking at the first
+ * path segment of the URI, without sharing any state with the servers (see
+ * {@link #getNodeId(String)}).
+ * <p>
+ * Unlike {@link UUID#randomUUID()}, which draws from a single
+ * {@link SecureRandom} shared by the whole JVM, the random bits are drawn from
+ * a few independently seeded <code>SHA1PRNG</code> generators, chosen at random
+ * for each id. The generators are seeded once, so no entropy is consumed and
+ * concurrent session creations rarely contend on the same generator.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class RandomSessionIdGenerator implements SessionIdGenerator {
+
+    public static final char NODE_ID_SEPARATOR = '.';
+
+    private static final String ALGORITHM = "SHA1PRNG";
+
+    private final String mPrefix;
+    private final SecureRandom[] mRandoms;
+
+    /**
+     * Creates a generator of session ids without node id.
+     */
+    public RandomSessionIdGenerator() {
+        this(null);
+    }
+
+    /**
+     * @param nodeId the id of this node, prefixed to the session ids, or
+     *            <code>null</code> for no prefix. Can only contain ASCII
+     *            letters and digits, <code>'-'</code> and <code>'_'</code>.
+     * @throws IllegalArgumentException if the node id is empty or contains
+     *             other characters
+     */
+    public RandomSessionIdGenerator(String nodeId) {
+        if (nodeId != null) {
+            Assert.notEmpty(nodeId, "nodeId");
+            for (int index = 0; index < nodeId.length(); index++) {
+                if (!isNodeIdCharacter(nodeId.charAt(index)))
+                    throw new IllegalArgumentException("Invalid character '"
+                                                       + nodeId.charAt(index)
+                                                       + "' in node id '"
+                                                       + nodeId
+                                                       + "'.");
+            }
+            mPrefix = nodeId + NODE_ID_SEPARATOR;
+        } else {
+            mPrefix = "";
+        }
+
+        mRandoms = new SecureRandom[Runtime.getRuntime().availableProcessors()];
+        for (int index = 0; index < mRandoms.length; index++) {
+            mRandoms[index] = createSecureRandom();
+        }
+    }
+
+    private static SecureRandom createSecureRandom() {
+        SecureRandom random;
+        try {
+            random = SecureRandom.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException exception) {
+            random = new SecureRandom();
+        }
+        random.nextBytes(new byte[1]); // self-seeds now rather than on the first session
+        return random;
+    }
+
+    /**
+     * Gets the id of the node which created a session.
+     *
+     * @param sessionId the session id. Cannot be <code>null</code>.
+     * @return the node id, or <code>null</code> if the session id has no node
+     *         id
+     */
+    public static String getNodeId(String sessionId) {
+        Assert.notNull(sessionId, "sessionId");
+        int separatorIndex = sessionId.indexOf(NODE_ID_SEPARATOR);
+        if (separatorIndex <= 0) return null;
+        return sessionId.substring(0, separatorIndex);
+    }
+
+    @Override
+    public String generateSessionId() {
+        SecureRandom random = mRandoms[ThreadLocalRandom.current().nextInt(mRandoms.length)];
+        long mostSignificantBits;
+        long leastSignificantBits;
+        synchronized (random) {
+            mostSignificantBits = random.nextLong();
+            leastSignificantBits = random.nextLong();
+        }
+
+        mostSignificantBits = mostSignificantBits & ~0xf000L | 0x4000L; // version 4
+        leastSignificantBits = leastSignificantBits & ~(0xcL << 60) | 0x8L << 60; // IETF variant
+        return mPrefix + new UUID(mostSignificantBits, leastSignificantBits).toString();
+    }
+
+    private static boolean isNodeIdCharacter(char character) {
+        return character >= 'a' && character <= 'z'
+               || character >= 'A' && character <= 'Z'
+               || character >= '0' && character <= '9'
+               || character == '-'
+               || character == '_';
+    }
+}
@@ -7,7 +7,6 @@ package com.nuecho.rivr.core.servlet.session;
 import javax.servlet.http.*;
 
 import com.nuecho.rivr.core.channel.*;
-import com.nuecho.rivr.core.channel.synchronous.*;
 import com.nuecho.rivr.core.dialogue.*;
 import com.nuecho.rivr.core.servlet.*;
 import com.nuecho.rivr.core.util.*;
@@ -21,6 +20,11 @@ import com.nuecho.rivr.core.util.*;
  * load balancers. Web container generates JSESSIONID cookies for session
  * tracking purpose but this information is also used by load balancer equipment
  * between the HTTP user agent and the server to preserve server stickyness.
+ * The {@link HttpSession} is only touched to keep it from expiring: Rivr's own
+ * session time-out remains authoritative. Since touching the
+ * <code>HttpSession</code> may trigger replication or persistence work in
+ * clustered web containers, it is done at most once per
+ * {@link #setHttpSessionKeepAliveInterval(Duration) keep-alive interval}.
  * 
  * @param <F> type of {@link FirstTurn}
  * @param <L> type of {@link LastTurn}
@@ -33,13 +37,16 @@ import com.nuecho.rivr.core.util.*;
  */
 public final class Session<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
         implements DialogueChannelListener<I, O> {
-    private SynchronousDialogueChannel<I, O, F, L, C> mDialogueChannel;
+    private volatile ControllerDialogueChannel<I, O, F, L, C> mDialogueChannel;
 
-    private C mDialogueContext;
+    private volatile C mDialogueContext;
 
     private final SessionContainer<I, O, F, L, C> mContainer;
     private final String mId;
-    private HttpSession mAssociatedHttpSession;
+    private volatile HttpSession mAssociatedHttpSession;
+    private Duration mHttpSessionKeepAliveInterval = Duration.ZERO;
+    private volatile long mLastKeepAliveTime;
+    private byte[] mCheckpoint;
 
     public Session(SessionContainer<I, O, F, L, C> container, String sessionId) {
         mContainer = container;
@@ -59,7 +66,7 @@ public final class Session<I extends InputTurn, O extends OutputTurn, F extends
             mDialogueChannel.stop();
         }
 
-        mContainer.removeSession(mId);
+        mContainer.removeSession(this);
 
         if (mAssociatedHttpSession != null) {
             try {
@@ -72,8 +79,17 @@ public final class Session<I extends InputTurn, O extends OutputTurn, F extends
     }
 
     public void keepAlive() {
-        if (mAssociatedHttpSession != null) {
-            mAssociatedHttpSession.getAttributeNames();
+        HttpSession associatedHttpSession = mAssociatedHttpSession;
+        if (associatedHttpSession == null) return;
+
+        long now = System.currentTimeMillis();
+        if (now - mLastKeepAliveTime < mHttpSessionKeepAliveInterval.getMilliseconds()) return;
+        mLastKeepAliveTime = now;
+
+        try {
+            associatedHttpSession.getAttributeNames();
+        } catch (IllegalStateException exception) {
+            //invalidated by the web container: Rivr's session time-out prevails
         }
     }
 
@@ -81,11 +97,11 @@ public final class Session<I extends InputTurn, O extends OutputTurn, F extends
         return mId;
     }
 
-    public SynchronousDialogueChannel<I, O, F, L, C> getDialogueChannel() {
+    public ControllerDialogueChannel<I, O, F, L, C> getDialogueChannel() {
         return mDialogueChannel;
     }
 
-    public void setDialogueChannel(SynchronousDialogueChannel<I, O, F, L, C> dialogueChannel) {
+    public void setDialogueChannel(ControllerDialogueChannel<I, O, F, L, C> dialogueChannel) {
         mDialogueChannel = dialogueChannel;
         mDialogueChannel.addListener(this);
     }
@@ -99,9 +115,48 @@ public final class Session<I extends InputTurn, O extends OutputTurn, F extends
     }
 
     public void setAssociatedHttpSession(HttpSession associatedHttpSession) {
+        mLastKeepAliveTime = System.currentTimeMillis();
         mAssociatedHttpSession = associatedHttpSession;
     }
 
+    /**
+     * Sets the minimum time between two accesses to the associated
+     * {@link HttpSession} by {@link #keepAlive()}. Should be well below the
+     * time-out of the <code>HttpSession</code>.
+     *
+     * @param httpSessionKeepAliveInterval the interval. Cannot be
+     *            <code>null</code>. A value of Duration.ZERO (or equivalent)
+     *            means to access the <code>HttpSession</code> on each call.
+     * @since 1.0.13
+     */
+    public void setHttpSessionKeepAliveInterval(Duration httpSessionKeepAliveInterval) {
+        Assert.notNull(httpSessionKeepAliveInterval, "httpSessionKeepAliveInterval");
+        mHttpSessionKeepAliveInterval = httpSessionKeepAliveInterval;
+    }
+
+    /**
+     * Takes the checkpoint from which the dialogue of a session restored from
+     * a {@link SessionStore} must be resumed. The checkpoint is returned only
+     * once: the dialogue must be resumed while holding the lock of the session
+     * so that concurrent requests see it resumed.
+     *
+     * @return the checkpoint, or <code>null</code> if the session was not
+     *         restored or if its dialogue has already been resumed
+     * @since 1.0.13
+     */
+    public synchronized byte[] takeCheckpoint() {
+        byte[] checkpoint = mCheckpoint;
+        mCheckpoint = null;
+        return checkpoint;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public synchronized void setCheckpoint(byte[] checkpoint) {
+        mCheckpoint = checkpoint;
+    }
+
     @Override
     public String toString() {
         ToStringBuilder builder = new ToStringBuilder(this);
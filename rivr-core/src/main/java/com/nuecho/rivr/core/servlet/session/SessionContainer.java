@@ -4,12 +4,15 @@
 
 package com.nuecho.rivr.core.servlet.session;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.slf4j.*;
 
 import com.nuecho.rivr.core.channel.*;
 import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.metrics.*;
 import com.nuecho.rivr.core.servlet.*;
 import com.nuecho.rivr.core.util.*;
 
@@ -19,11 +22,24 @@ import com.nuecho.rivr.core.util.*;
  * Rivr has its own SessionContainer independent from the Web server. This
  * solves many issues related to cookies and encoding of session ID in the URI.
  * <p>
- * A clean-up thread checks periodically that every session has not timed-out.
+ * Sessions are spread by hash of their id over a number of shards, by default
+ * one per available processor. Each shard keeps its sessions in a concurrent
+ * map and has its own clean-up thread checking periodically that its sessions
+ * have not timed-out. Each session records its own last access time, so
+ * request threads never contend on a global lock. A clean-up thread does not
+ * scan every session: an expiry index ordered by deadline is kept alongside the
+ * map and each scan only visits the sessions whose deadline is reached. A
+ * visited session which has been accessed since it was indexed is simply
+ * re-indexed with its new deadline.
+ * <p>
+ * When the container is {@link #stop() stopped}, the shards stop their sessions
+ * in parallel and the dialogues are then given a single shared delay to
+ * terminate.
+ * <p>
  * The scan period and the session time-out value can be specified in the
  * {@link #SessionContainer(Logger, Duration, Duration, String) constructor},
  * although they are normally specified via the {@link DialogueServlet}.
- * 
+ *
  * @see DialogueServlet#setSessionScanPeriod(Duration)
  * @see DialogueServlet#setSessionTimeout(Duration)
  * @author Nu Echo Inc.
@@ -35,155 +51,407 @@ import com.nuecho.rivr.core.util.*;
  */
 public final class SessionContainer<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>> {
 
+    private static final Duration DIALOGUE_TERMINATION_TIMEOUT = Duration.seconds(10);
+
     private final Logger mLogger;
     private final Duration mSessionTimeout;
     private final Duration mTimeoutCheckScanPeriod;
     private final String mName;
 
-    private final Map<String, Session<I, O, F, L, C>> mSessions = new HashMap<String, Session<I, O, F, L, C>>();
-    private final Map<String, Long> mLastAccess = new HashMap<String, Long>();
-    private boolean mStopped;
-    private Thread mTimeoutCheckScanThread;
+    private final List<Shard> mShards;
+    private volatile boolean mStopped;
+    private volatile DialogueMetrics mDialogueMetrics = NoOpDialogueMetrics.INSTANCE;
+    private volatile SessionStore mSessionStore;
 
     public SessionContainer(Logger logger, Duration sessionTimeout, Duration timeoutCheckScanPeriod, String name) {
+        this(logger, sessionTimeout, timeoutCheckScanPeriod, name, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param shardCount the number of shards, each one having its own clean-up
+     *            thread. Must be positive.
+     * @since 1.0.13
+     */
+    public SessionContainer(Logger logger,
+                            Duration sessionTimeout,
+                            Duration timeoutCheckScanPeriod,
+                            String name,
+                            int shardCount) {
+        Assert.positive(shardCount, "shardCount");
         mLogger = logger;
         mSessionTimeout = sessionTimeout;
         mTimeoutCheckScanPeriod = timeoutCheckScanPeriod;
         mName = name;
-        launchThread();
-    }
 
-    private void launchThread() {
-
-        Runnable cleanUpRunnable = new Runnable() {
+        List<Shard> shards = new ArrayList<Shard>(shardCount);
+        for (int index = 0; index < shardCount; index++) {
+            shards.add(new Shard());
+        }
+        mShards = Collections.unmodifiableList(shards);
 
-            @Override
-            public void run() {
+        for (int index = 0; index < shardCount; index++) {
+            String threadName = shardCount == 1
+                    ? "Session cleanup thread for " + mName
+                    : "Session cleanup thread " + index + " for " + mName;
+            mShards.get(index).launchThread(threadName);
+        }
+    }
 
-                while (!mStopped) {
-                    try {
-                        Iterator<String> sessionIdsIterator = mSessions.keySet().iterator();
+    //the whole id is hashed: a node id prefix (see RandomSessionIdGenerator) is the same
+    //for all the sessions created by this server and cannot be used to partition them
+    private Shard getShard(String sessionId) {
+        int hash = sessionId.hashCode();
+        hash ^= hash >>> 16;
+        return mShards.get((hash & Integer.MAX_VALUE) % mShards.size());
+    }
 
-                        long currentTime = System.currentTimeMillis();
-                        while (sessionIdsIterator.hasNext()) {
-                            String sessionId = sessionIdsIterator.next();
-                            Long lastAccess = mLastAccess.get(sessionId);
-                            if (lastAccess != null) {
-                                if (currentTime - lastAccess > mSessionTimeout.getMilliseconds()) {
-                                    Session<I, O, F, L, C> sessionContext = mSessions.get(sessionId);
-                                    sessionContext.stop();
-                                }
-                            }
-                        }
+    private void removeCheckpoint(String sessionId) {
+        SessionStore sessionStore = mSessionStore;
+        if (sessionStore == null) return;
 
-                        Thread.sleep(mTimeoutCheckScanPeriod.getMilliseconds());
-                    } catch (InterruptedException interruptedException) {
-                        if (mStopped) {
-                            //Interrupts can be swallowed if you know the thread is about to exit
-                        } else {
-                            Thread.currentThread().interrupt();
-                        }
-                    } catch (Throwable throwable) {
-                        mLogger.error("Error during session time-out check.", throwable);
-                    }
-                }
+        try {
+            sessionStore.remove(sessionId);
+        } catch (IOException exception) {
+            mLogger.warn("Unable to remove checkpoint of expired session {}.", sessionId, exception);
+        }
+    }
 
-                Iterator<String> sessionIdsIterator = mSessions.keySet().iterator();
+    /**
+     * Sets the metrics notified when sessions are added and removed.
+     *
+     * @param dialogueMetrics the metrics. Cannot be <code>null</code>.
+     * @since 1.0.13
+     */
+    public void setDialogueMetrics(DialogueMetrics dialogueMetrics) {
+        Assert.notNull(dialogueMetrics, "dialogueMetrics");
+        mDialogueMetrics = dialogueMetrics;
+    }
 
-                //stopping all sessions
-                while (sessionIdsIterator.hasNext()) {
-                    mSessions.get(sessionIdsIterator.next()).stop();
-                }
-            }
-        };
+    /**
+     * Sets the store from which the checkpoint of a session is removed when the
+     * session expires. Checkpoints are kept when the container is stopped so
+     * that the sessions can be resumed by another server.
+     *
+     * @param sessionStore the store, or <code>null</code> if checkpoints are
+     *            not used.
+     * @since 1.0.13
+     */
+    public void setSessionStore(SessionStore sessionStore) {
+        mSessionStore = sessionStore;
+    }
 
-        mTimeoutCheckScanThread = new Thread(cleanUpRunnable, "Session cleanup thread for " + mName);
-        mTimeoutCheckScanThread.setDaemon(true);
-        mTimeoutCheckScanThread.start();
+    /**
+     * @since 1.0.13
+     */
+    public int getShardCount() {
+        return mShards.size();
     }
 
     public void addSession(Session<I, O, F, L, C> session) {
-        String sessionId = session.getId();
-        mSessions.put(sessionId, session);
-        updateLastAccessTime(sessionId);
+        getShard(session.getId()).addSession(session);
+    }
+
+    /**
+     * Adds a session unless a session with the same id is already in the
+     * container.
+     *
+     * @return the session already in the container, or <code>null</code> if
+     *         the session has been added
+     * @since 1.0.13
+     */
+    public Session<I, O, F, L, C> addSessionIfAbsent(Session<I, O, F, L, C> session) {
+        return getShard(session.getId()).addSessionIfAbsent(session);
     }
 
     public void removeSession(String sessionId) {
-        mSessions.remove(sessionId);
-        mLastAccess.remove(sessionId);
+        getShard(sessionId).removeSession(sessionId);
     }
 
-    public Session<I, O, F, L, C> getSession(String sessionId) {
-        updateLastAccessTime(sessionId);
-        Session<I, O, F, L, C> session = mSessions.get(sessionId);
-        if (session != null) {
-            session.keepAlive();
-        }
-        return session;
+    /**
+     * Removes a session, only if it is still the session held by the container
+     * for its id.
+     *
+     * @since 1.0.13
+     */
+    public void removeSession(Session<I, O, F, L, C> session) {
+        getShard(session.getId()).removeSession(session);
     }
 
-    private void updateLastAccessTime(String sessionId) {
-        mLastAccess.put(sessionId, System.currentTimeMillis());
+    public Session<I, O, F, L, C> getSession(String sessionId) {
+        return getShard(sessionId).getSession(sessionId);
     }
 
     public synchronized void stop() {
         if (!mStopped) {
+            long deadline = System.currentTimeMillis() + DIALOGUE_TERMINATION_TIMEOUT.getMilliseconds();
 
-            final Collection<Session<I, O, F, L, C>> sessions = new HashSet<Session<I, O, F, L, C>>(mSessions.values());
+            List<Thread> stoppingThreads = new ArrayList<Thread>(mShards.size());
+            final Collection<Session<I, O, F, L, C>> sessions = new ConcurrentLinkedQueue<Session<I, O, F, L, C>>();
+            for (int index = 0; index < mShards.size(); index++) {
+                final Shard shard = mShards.get(index);
+                Runnable stopSessions = new Runnable() {
+                    @Override
+                    public void run() {
+                        sessions.addAll(shard.stopSessions());
+                    }
+                };
+                String threadName = mShards.size() == 1
+                        ? "Session container/stopping sessions of " + mName
+                        : "Session container/stopping sessions of shard " + index + " of " + mName;
+                Thread stoppingThread = new Thread(stopSessions, threadName);
+                stoppingThread.start();
+                stoppingThreads.add(stoppingThread);
+            }
 
-            for (Session<I, O, F, L, C> session : sessions) {
-                try {
-                    mLogger.info("Stopping session {}.", session.getId());
-                    session.stop();
-                } catch (Throwable throwable) {
-                    mLogger.error("Unable to stop session {}.", session.getId(), throwable);
+            try {
+                for (Thread stoppingThread : stoppingThreads) {
+                    join(stoppingThread, deadline);
+                }
+
+                // all dialogues have been told to stop: they terminate concurrently
+                for (Session<I, O, F, L, C> session : sessions) {
+                    ControllerDialogueChannel<I, O, F, L, C> dialogueChannel = session.getDialogueChannel();
+                    if (dialogueChannel == null) {
+                        continue;
+                    }
+
+                    long remainingTime = deadline - System.currentTimeMillis();
+                    if (remainingTime > 0) {
+                        dialogueChannel.join(Duration.milliseconds(remainingTime));
+                    }
+
+                    if (!dialogueChannel.isDialogueDone()) {
+                        mLogger.warn("Dialogue {} is still not terminated.  Possible leak detected.", session.getId());
+                    }
+                }
+            } catch (InterruptedException exception) {
+                mLogger.error("Stopped waiting for dialogue threads to terminate.");
+                Thread.currentThread().interrupt();
+            } finally {
+                mStopped = true;
+                for (Shard shard : mShards) {
+                    shard.interruptThread();
                 }
             }
+        }
+    }
+
+    private static void join(Thread thread, long deadline) throws InterruptedException {
+        long remainingTime = deadline - System.currentTimeMillis();
+        if (remainingTime > 0) {
+            thread.join(remainingTime);
+        }
+    }
+
+    public Collection<String> getSessionIds() {
+        Collection<String> sessionIds = new HashSet<String>();
+        for (Shard shard : mShards) {
+            sessionIds.addAll(shard.getSessionIds());
+        }
+        return sessionIds;
+    }
+
+    /**
+     * Sessions of a shard, with their expiry index and their clean-up thread.
+     */
+    private final class Shard {
+        private final ConcurrentMap<String, SessionEntry<I, O, F, L, C>> mSessions = new ConcurrentHashMap<String, SessionEntry<I, O, F, L, C>>();
+        private final DelayQueue<SessionEntry<I, O, F, L, C>> mExpirationQueue = new DelayQueue<SessionEntry<I, O, F, L, C>>();
+        private Thread mTimeoutCheckScanThread;
+
+        public void launchThread(String name) {
+
+            Runnable cleanUpRunnable = new Runnable() {
 
-            Runnable waitForDialoguesToTerminate = new Runnable() {
                 @Override
                 public void run() {
-                    for (Session<I, O, F, L, C> session : sessions) {
-                        String sessionId = session.getId();
+
+                    while (!mStopped) {
                         try {
-                            mLogger.info("Waiting for dialogue thread {} to terminate.", sessionId);
-                            session.getDialogueChannel().join(Duration.seconds(10));
-                            mLogger.info("Dialogue thread {} terminated.", sessionId);
-                        } catch (InterruptedException throwable) {
-                            mLogger.error("Stopped waiting for dialogue threads to terminate.", sessionId);
-                            return;
+                            stopExpiredSessions();
+                            Thread.sleep(mTimeoutCheckScanPeriod.getMilliseconds());
+                        } catch (InterruptedException interruptedException) {
+                            if (mStopped) {
+                                //Interrupts can be swallowed if you know the thread is about to exit
+                            } else {
+                                Thread.currentThread().interrupt();
+                            }
+                        } catch (Throwable throwable) {
+                            mLogger.error("Error during session time-out check.", throwable);
+                        }
+                    }
+
+                    //stopping all sessions
+                    for (SessionEntry<I, O, F, L, C> entry : mSessions.values()) {
+                        Session<I, O, F, L, C> session = entry.getSession();
+                        if (session != null) {
+                            session.stop();
                         }
                     }
                 }
             };
 
-            Thread waitForDialoguesToTerminateThread = new Thread(waitForDialoguesToTerminate,
-                                                                  "Session container/waiting for dialogue termination");
+            mTimeoutCheckScanThread = new Thread(cleanUpRunnable, name);
+            mTimeoutCheckScanThread.setDaemon(true);
+            mTimeoutCheckScanThread.start();
+        }
+
+        public void interruptThread() {
+            mTimeoutCheckScanThread.interrupt();
+        }
 
-            waitForDialoguesToTerminateThread.start();
-            try {
-                waitForDialoguesToTerminateThread.join(Duration.seconds(10).getMilliseconds());
-                if (waitForDialoguesToTerminateThread.isAlive()) {
-                    waitForDialoguesToTerminateThread.interrupt();
-                    waitForDialoguesToTerminateThread.join(Duration.seconds(2).getMilliseconds());
+        private void stopExpiredSessions() {
+            long sessionTimeout = mSessionTimeout.getMilliseconds();
+            SessionEntry<I, O, F, L, C> entry;
+            while ((entry = mExpirationQueue.poll()) != null) {
+                Session<I, O, F, L, C> session = entry.getSession();
+                if (session == null) {
+                    continue; // session already removed
                 }
 
-                for (Session<I, O, F, L, C> session : sessions) {
-                    if (!session.getDialogueChannel().isDialogueDone()) {
-                        mLogger.warn("Dialogue {} is still not terminated.  Possible leak detected.", session.getId());
+                long expirationTime = entry.getLastAccessTime() + sessionTimeout;
+                if (System.currentTimeMillis() > expirationTime) {
+                    session.stop();
+                    //the id may already be used by a session restored from the checkpoint
+                    if (!mSessions.containsKey(session.getId())) {
+                        removeCheckpoint(session.getId());
                     }
+                } else {
+                    entry.setExpirationTime(expirationTime);
+                    mExpirationQueue.offer(entry);
                 }
+            }
+        }
 
-            } catch (InterruptedException exception) {
-                waitForDialoguesToTerminateThread.interrupt();
-            } finally {
-                mStopped = true;
-                mTimeoutCheckScanThread.interrupt();
+        /**
+         * Stops all the sessions of the shard.
+         *
+         * @return the stopped sessions
+         */
+        public Collection<Session<I, O, F, L, C>> stopSessions() {
+            Collection<Session<I, O, F, L, C>> sessions = new ArrayList<Session<I, O, F, L, C>>();
+            for (SessionEntry<I, O, F, L, C> entry : mSessions.values()) {
+                Session<I, O, F, L, C> session = entry.getSession();
+                if (session == null) {
+                    continue;
+                }
+
+                sessions.add(session);
+                try {
+                    mLogger.info("Stopping session {}.", session.getId());
+                    session.stop();
+                } catch (Throwable throwable) {
+                    mLogger.error("Unable to stop session {}.", session.getId(), throwable);
+                }
+            }
+            return sessions;
+        }
+
+        public void addSession(Session<I, O, F, L, C> session) {
+            SessionEntry<I, O, F, L, C> entry = createEntry(session);
+            if (mSessions.put(session.getId(), entry) == null) {
+                mDialogueMetrics.sessionAdded();
+            }
+            mExpirationQueue.offer(entry);
+        }
+
+        public Session<I, O, F, L, C> addSessionIfAbsent(Session<I, O, F, L, C> session) {
+            SessionEntry<I, O, F, L, C> entry = createEntry(session);
+            SessionEntry<I, O, F, L, C> existingEntry = mSessions.putIfAbsent(session.getId(), entry);
+            if (existingEntry != null) return existingEntry.getSession();
+
+            mDialogueMetrics.sessionAdded();
+            mExpirationQueue.offer(entry);
+            return null;
+        }
+
+        private SessionEntry<I, O, F, L, C> createEntry(Session<I, O, F, L, C> session) {
+            SessionEntry<I, O, F, L, C> entry = new SessionEntry<I, O, F, L, C>(session);
+            entry.setExpirationTime(entry.getLastAccessTime() + mSessionTimeout.getMilliseconds());
+            return entry;
+        }
+
+        public void removeSession(String sessionId) {
+            SessionEntry<I, O, F, L, C> entry = mSessions.remove(sessionId);
+            if (entry != null) {
+                release(entry);
+            }
+        }
+
+        public void removeSession(Session<I, O, F, L, C> session) {
+            SessionEntry<I, O, F, L, C> entry = mSessions.get(session.getId());
+            if (entry != null && entry.getSession() == session && mSessions.remove(session.getId(), entry)) {
+                release(entry);
+            }
+        }
+
+        private void release(SessionEntry<I, O, F, L, C> entry) {
+            entry.release(); // entry may stay in the expiration queue until its deadline
+            mDialogueMetrics.sessionRemoved();
+        }
+
+        public Session<I, O, F, L, C> getSession(String sessionId) {
+            SessionEntry<I, O, F, L, C> entry = mSessions.get(sessionId);
+            if (entry == null) return null;
+
+            entry.updateLastAccessTime();
+            Session<I, O, F, L, C> session = entry.getSession();
+            if (session != null) {
+                session.keepAlive();
             }
+            return session;
+        }
+
+        public Set<String> getSessionIds() {
+            return mSessions.keySet();
         }
     }
 
-    public Collection<String> getSessionIds() {
-        return new HashSet<String>(mSessions.keySet());
+    /**
+     * Entry of the session map, also used as element of the expiration queue.
+     * The expiration time is only changed by the clean-up thread while the
+     * entry is out of the queue, whereas the last access time is updated by
+     * request threads. The session is released when removed from the map.
+     */
+    private static final class SessionEntry<I extends InputTurn, O extends OutputTurn, F extends FirstTurn, L extends LastTurn, C extends DialogueContext<I, O>>
+            implements Delayed {
+        private volatile Session<I, O, F, L, C> mSession;
+        private volatile long mLastAccessTime = System.currentTimeMillis();
+        private long mExpirationTime;
+
+        public SessionEntry(Session<I, O, F, L, C> session) {
+            mSession = session;
+        }
+
+        public Session<I, O, F, L, C> getSession() {
+            return mSession;
+        }
+
+        public void release() {
+            mSession = null;
+        }
+
+        public long getLastAccessTime() {
+            return mLastAccessTime;
+        }
+
+        public void updateLastAccessTime() {
+            mLastAccessTime = System.currentTimeMillis();
+        }
+
+        public void setExpirationTime(long expirationTime) {
+            mExpirationTime = expirationTime;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(mExpirationTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            long otherExpirationTime = ((SessionEntry<?, ?, ?, ?, ?>) other).mExpirationTime;
+            return mExpirationTime < otherExpirationTime ? -1 : mExpirationTime > otherExpirationTime ? 1 : 0;
+        }
     }
-}
\ No newline at end of file
+}
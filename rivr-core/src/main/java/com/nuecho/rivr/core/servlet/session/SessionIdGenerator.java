@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.session;
+
+import com.nuecho.rivr.core.servlet.*;
+
+/**
+ * Generates the ids of the sessions created by the {@link DialogueServlet}.
+ * <p>
+ * The id is the first segment of the path of the URIs used by the dialogue, so
+ * it must not contain a slash and should only contain characters which do not
+ * need to be escaped in a URI path. It must be unique and hard to guess since
+ * anyone knowing it can interact with the dialogue.
+ * <p>
+ * Implementations must be thread-safe.
+ *
+ * @see RandomSessionIdGenerator
+ * @see DialogueServlet#setSessionIdGenerator(SessionIdGenerator)
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface SessionIdGenerator {
+
+    /**
+     * @return a new session id
+     */
+    String generateSessionId();
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.servlet.session;
+
+import java.io.*;
+
+import com.nuecho.rivr.core.channel.checkpoint.*;
+import com.nuecho.rivr.core.servlet.*;
+
+/**
+ * External storage for the checkpoints of the sessions, allowing a session to
+ * be resumed by another server after a fail-over or a restart. A checkpoint is
+ * an opaque byte array written by the {@link CheckpointingDialogueChannel}
+ * after each turn of a {@link CheckpointedDialogue}.
+ * <p>
+ * When several servers share the sessions, the store must be shared as well
+ * (network file system, database, distributed cache, etc.). Implementations
+ * must be thread-safe.
+ *
+ * @see MemorySessionStore
+ * @see FileSessionStore
+ * @see DialogueServlet#setSessionStore(SessionStore)
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface SessionStore {
+
+    /**
+     * Saves the checkpoint of a session, replacing the previous one.
+     *
+     * @param sessionId the session id. Cannot be <code>null</code>.
+     * @param checkpoint the checkpoint. Cannot be <code>null</code>. Must not
+     *            be modified by the store.
+     * @throws IOException if the checkpoint cannot be saved
+     */
+    void save(String sessionId, byte[] checkpoint) throws IOException;
+
+    /**
+     * Loads the checkpoint of a session.
+     *
+     * @param sessionId the session id. Cannot be <code>null</code>.
+     * @return the last checkpoint saved for the session, or <code>null</code>
+     *         if there is none
+     * @throws IOException if the checkpoint cannot be loaded
+     */
+    byte[] load(String sessionId) throws IOException;
+
+    /**
+     * Removes the checkpoint of a session. Does nothing if there is none.
+     *
+     * @param sessionId the session id. Cannot be <code>null</code>.
+     * @throws IOException if the checkpoint cannot be removed
+     */
+    void remove(String sessionId) throws IOException;
+}
@@ -14,6 +14,11 @@ import org.w3c.dom.ls.*;
 
 /**
  * XML DOM manipulation utility class.
+ * <p>
+ * {@link DocumentBuilder} and {@link LSSerializer} instances are not
+ * thread-safe. They are kept in bounded {@link ObjectPool pools} so that
+ * concurrent requests never share an instance and so that the factory lookup
+ * and the serializer configuration are not repeated for every document.
  * 
  * @author Nu Echo Inc.
  */
@@ -21,15 +26,39 @@ public final class DomUtils {
 
     private static final String FORMAT_PRETTY_PRINT_DOM_CONFIG_PARAMETER = "format-pretty-print";
 
+    private static final int POOL_CAPACITY = Runtime.getRuntime().availableProcessors() * 4;
+
     private static final DOMImplementationLS DOM_IMPLEMENTATION;
-    private static final DocumentBuilder DOCUMENT_BUILDER;
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+
+    private static final ObjectPool<DocumentBuilder> DOCUMENT_BUILDER_POOL = new ObjectPool<DocumentBuilder>(POOL_CAPACITY) {
+        @Override
+        protected DocumentBuilder create() {
+            try {
+                synchronized (DOCUMENT_BUILDER_FACTORY) {
+                    return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+                }
+            } catch (ParserConfigurationException exception) {
+                throw new AssertionError(exception);
+            }
+        }
+    };
 
-    static {
-        try {
-            DOCUMENT_BUILDER = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } catch (ParserConfigurationException exception) {
-            throw new AssertionError(exception);
+    private static final ObjectPool<LSSerializer> SERIALIZER_POOL = new ObjectPool<LSSerializer>(POOL_CAPACITY) {
+        @Override
+        protected LSSerializer create() {
+            LSSerializer xmlSerializer = DOM_IMPLEMENTATION.createLSSerializer();
+
+            if (xmlSerializer.getDomConfig().canSetParameter(FORMAT_PRETTY_PRINT_DOM_CONFIG_PARAMETER, Boolean.TRUE)) {
+                xmlSerializer.getDomConfig().setParameter(FORMAT_PRETTY_PRINT_DOM_CONFIG_PARAMETER, Boolean.TRUE);
+            }
+            return xmlSerializer;
         }
+    };
+
+    static {
+        // fails early if no document builder can be created
+        DOCUMENT_BUILDER_POOL.release(DOCUMENT_BUILDER_POOL.acquire());
 
         try {
             DOMImplementationRegistry registry = DOMImplementationRegistry.newInstance();
@@ -51,7 +80,10 @@ public final class DomUtils {
     }
 
     public static Document createDocument() {
-        return DOCUMENT_BUILDER.newDocument();
+        DocumentBuilder documentBuilder = DOCUMENT_BUILDER_POOL.acquire();
+        Document document = documentBuilder.newDocument();
+        DOCUMENT_BUILDER_POOL.release(documentBuilder);
+        return document;
     }
 
     public static Element appendNewElement(Node parent, String elementName) {
@@ -77,44 +109,36 @@ public final class DomUtils {
 
     public static void writeToOutputStream(Node node, OutputStream outputStream, Encoding encoding) throws IOException {
 
-        LSSerializer xmlSerializer = getSerializer();
-
         LSOutput destination = DOM_IMPLEMENTATION.createLSOutput();
         destination.setByteStream(outputStream);
         destination.setEncoding(encoding.getId());
 
-        try {
-            xmlSerializer.write(node, destination);
-        } catch (LSException exception) {
-            throw new IOException("Error while writing document to output stream.", exception);
-        }
+        write(node, destination);
     }
 
     public static String writeToString(Node node) throws IOException {
 
-        LSSerializer xmlSerializer = getSerializer();
-
         StringWriter stringWriter = new StringWriter();
 
         LSOutput destination = DOM_IMPLEMENTATION.createLSOutput();
         destination.setCharacterStream(stringWriter);
 
-        try {
-            xmlSerializer.write(node, destination);
-        } catch (LSException exception) {
-            throw new IOException("Error while writing document to output stream.", exception);
-        }
+        write(node, destination);
 
         return stringWriter.toString();
     }
 
-    private static LSSerializer getSerializer() {
-        LSSerializer xmlSerializer = DOM_IMPLEMENTATION.createLSSerializer();
+    private static void write(Node node, LSOutput destination) throws IOException {
+        LSSerializer xmlSerializer = SERIALIZER_POOL.acquire();
 
-        if (xmlSerializer.getDomConfig().canSetParameter(FORMAT_PRETTY_PRINT_DOM_CONFIG_PARAMETER, Boolean.TRUE)) {
-            xmlSerializer.getDomConfig().setParameter(FORMAT_PRETTY_PRINT_DOM_CONFIG_PARAMETER, Boolean.TRUE);
+        try {
+            xmlSerializer.write(node, destination);
+        } catch (LSException exception) {
+            // serializer not returned to the pool: its state is unknown
+            throw new IOException("Error while writing document to output stream.", exception);
         }
-        return xmlSerializer;
+
+        SERIALIZER_POOL.release(xmlSerializer);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.core.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Bounded pool of reusable objects which are expensive to create or configure
+ * and which cannot be shared between threads.
+ * <p>
+ * {@link #acquire()} never blocks: when the pool is empty, a new object is
+ * created. {@link #release(Object)} keeps the object only if the pool has not
+ * reached its capacity, so the number of idle objects is bounded while the
+ * number of objects in use is not.
+ * <p>
+ * This class is thread-safe and does not rely on thread-local storage, so it
+ * behaves the same way with platform threads and virtual threads.
+ *
+ * @param <T> type of pooled objects
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public abstract class ObjectPool<T> {
+
+    private final Queue<T> mIdleObjects = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger mIdleCount = new AtomicInteger();
+    private final int mCapacity;
+
+    /**
+     * @param capacity maximum number of idle objects kept by the pool. Must be
+     *            positive.
+     */
+    protected ObjectPool(int capacity) {
+        Assert.positive(capacity, "capacity");
+        mCapacity = capacity;
+    }
+
+    /**
+     * Creates a new object when the pool is empty.
+     *
+     * @return the new object. Cannot be <code>null</code>.
+     */
+    protected abstract T create();
+
+    /**
+     * Takes an idle object from the pool or creates a new one.
+     *
+     * @return an object for exclusive use by the caller until it is released.
+     */
+    public final T acquire() {
+        T object = mIdleObjects.poll();
+        if (object == null) return create();
+        mIdleCount.decrementAndGet();
+        return object;
+    }
+
+    /**
+     * Returns an object to the pool. The object must not be used by the caller
+     * afterward. Objects in an inconsistent state (e.g. following an error)
+     * should not be released.
+     *
+     * @param object the object to return to the pool. Cannot be
+     *            <code>null</code>.
+     */
+    public final void release(T object) {
+        Assert.notNull(object, "object");
+        if (mIdleCount.incrementAndGet() > mCapacity) {
+            mIdleCount.decrementAndGet();
+            return;
+        }
+        mIdleObjects.offer(object);
+    }
+
+    public final int getCapacity() {
+        return mCapacity;
+    }
+}
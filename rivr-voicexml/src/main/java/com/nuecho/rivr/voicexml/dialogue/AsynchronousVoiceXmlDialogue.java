@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.dialogue;
+
+import com.nuecho.rivr.core.channel.asynchronous.*;
+import com.nuecho.rivr.voicexml.turn.first.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+import com.nuecho.rivr.voicexml.turn.last.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+
+/**
+ * VoiceXML specialization of {@link AsynchronousDialogue}.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface AsynchronousVoiceXmlDialogue
+        extends
+        VoiceXmlDialogue,
+        AsynchronousDialogue<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext> {}
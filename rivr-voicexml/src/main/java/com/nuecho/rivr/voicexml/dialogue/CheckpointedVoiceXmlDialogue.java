@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.dialogue;
+
+import java.io.*;
+
+import com.nuecho.rivr.core.channel.checkpoint.*;
+import com.nuecho.rivr.voicexml.turn.first.*;
+import com.nuecho.rivr.voicexml.turn.input.*;
+import com.nuecho.rivr.voicexml.turn.last.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+
+/**
+ * VoiceXML specialization of {@link CheckpointedDialogue}.
+ *
+ * @param <S> type of the dialogue state
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public interface CheckpointedVoiceXmlDialogue<S extends Serializable>
+        extends
+        VoiceXmlDialogue,
+        CheckpointedDialogue<VoiceXmlInputTurn, VoiceXmlOutputTurn, VoiceXmlFirstTurn, VoiceXmlLastTurn, VoiceXmlDialogueContext, S> {}
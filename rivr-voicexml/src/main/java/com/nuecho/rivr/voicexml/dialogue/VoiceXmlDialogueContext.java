@@ -12,6 +12,7 @@ import com.nuecho.rivr.core.channel.*;
 import com.nuecho.rivr.core.dialogue.*;
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.rendering.voicexml.errorhandling.*;
+import com.nuecho.rivr.voicexml.servlet.*;
 import com.nuecho.rivr.voicexml.turn.input.*;
 import com.nuecho.rivr.voicexml.turn.output.*;
 import com.nuecho.rivr.voicexml.turn.output.fetch.*;
@@ -45,6 +46,8 @@ public final class VoiceXmlDialogueContext implements DialogueContext<VoiceXmlIn
 
     private final String mContextPath;
     private final String mServletPath;
+    private boolean mRootDocumentShared;
+    private StaticResources mStaticResources;
     private int mTurnIndex;
 
     private final DialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> mDialogueChannel;
@@ -82,6 +85,62 @@ public final class VoiceXmlDialogueContext implements DialogueContext<VoiceXmlIn
         return mServletPath;
     }
 
+    /**
+     * Indicates whether the documents of this dialogue refer to the
+     * application root document shared by all dialogues rather than to a root
+     * document specific to this dialogue.
+     *
+     * @see VoiceXmlDialogueServlet#setRootDocumentShared(boolean)
+     * @since 1.0.13
+     */
+    public void setRootDocumentShared(boolean rootDocumentShared) {
+        mRootDocumentShared = rootDocumentShared;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public boolean isRootDocumentShared() {
+        return mRootDocumentShared;
+    }
+
+    /**
+     * Gets the path of the application root document referred to by the
+     * documents of this dialogue.
+     *
+     * @since 1.0.13
+     */
+    public String getRootDocumentPath() {
+        if (mRootDocumentShared) return mContextPath + mServletPath + VoiceXmlDialogueServlet.SHARED_ROOT_PATH;
+        return mContextPath + mServletPath + VoiceXmlDialogueServlet.ROOT_PATH + mDialogueId;
+    }
+
+    /**
+     * @see VoiceXmlDialogueServlet#getStaticResources()
+     * @since 1.0.13
+     */
+    public void setStaticResources(StaticResources staticResources) {
+        mStaticResources = staticResources;
+    }
+
+    /**
+     * Gets the versioned path of a static resource served by the dialogue
+     * servlet, to be used as the URI of a grammar, an audio file or any other
+     * resource referred to by the documents of this dialogue.
+     *
+     * @param name the resource name. Cannot be <code>null</code> or empty.
+     * @return the path, including the context path and the servlet path, or
+     *         <code>null</code> if there is no such resource
+     * @see StaticResources#getVersionedPath(String)
+     * @since 1.0.13
+     */
+    public String getStaticResourcePath(String name) {
+        if (mStaticResources == null) return null;
+        String versionedPath = mStaticResources.getVersionedPath(name);
+        if (versionedPath == null) return null;
+        return mContextPath + mServletPath + versionedPath;
+    }
+
     public String getLanguage() {
         return mLanguage;
     }
@@ -137,6 +196,7 @@ public final class VoiceXmlDialogueContext implements DialogueContext<VoiceXmlIn
         builder.appendItem("mDialogueId", mDialogueId);
         builder.appendItem("mContextPath", mContextPath);
         builder.appendItem("mServletPath", mServletPath);
+        builder.appendItem("mRootDocumentShared", mRootDocumentShared);
         builder.appendItem("mTurnIndex", mTurnIndex);
         builder.appendItem("mFatalErrorFormFactory", mFatalErrorFormFactory);
         return builder.getString();
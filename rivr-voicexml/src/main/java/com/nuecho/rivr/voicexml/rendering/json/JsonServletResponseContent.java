@@ -14,15 +14,18 @@ import com.nuecho.rivr.voicexml.util.json.*;
 
 /**
  * Wraps a JSON value in a {@link ServletResponseContent}.
- * 
+ * <p>
+ * The JSON text is held in a pooled {@link ResponseBuffer}, returned to the
+ * pool when the content is {@link #release() released}.
+ *
  * @author Nu Echo Inc.
  */
-public class JsonServletResponseContent implements ServletResponseContent {
+public class JsonServletResponseContent implements ReleasableServletResponseContent {
 
     private static final String JSON_MIME_TYPE = "application/json";
     private static final String HTML_MIME_TYPE = "text/html";
 
-    private final byte[] mContent;
+    private final ResponseBuffer mContent;
     private final JsonpMode mJsonpMode;
 
     enum JsonpMode {
@@ -31,11 +34,43 @@ public class JsonServletResponseContent implements ServletResponseContent {
 
     public JsonServletResponseContent(JsonStructure jsonData, JsonpMode jsonpMode, String jsonpCallback)
             throws IOException {
+        this(jsonData, null, null, jsonpMode, jsonpCallback);
+    }
+
+    /**
+     * Adds a string property to a JSON object whose value is the UTF-8 encoded
+     * text of another response content, e.g. a VoiceXML document. The text is
+     * escaped as it is written, without being decoded.
+     *
+     * @since 1.0.13
+     */
+    JsonServletResponseContent(JsonObject jsonData,
+                               String contentProperty,
+                               ServletResponseContent content,
+                               JsonpMode jsonpMode,
+                               String jsonpCallback) throws IOException {
+        this((JsonStructure) jsonData, contentProperty, content, jsonpMode, jsonpCallback);
+    }
+
+    private JsonServletResponseContent(JsonStructure jsonData,
+                                       String contentProperty,
+                                       ServletResponseContent content,
+                                       JsonpMode jsonpMode,
+                                       String jsonpCallback) throws IOException {
         Assert.notNull(jsonpMode, "jsonpMode");
         Assert.notNull(jsonData, "jsonData");
 
         mJsonpMode = jsonpMode;
-        mContent = buildContent(jsonData, jsonpCallback);
+        mContent = new ResponseBuffer();
+        try {
+            buildContent(jsonData, contentProperty, content, jsonpCallback);
+        } catch (IOException exception) {
+            mContent.release();
+            throw exception;
+        } catch (RuntimeException exception) {
+            mContent.release();
+            throw exception;
+        }
     }
 
     @Override
@@ -48,22 +83,24 @@ public class JsonServletResponseContent implements ServletResponseContent {
 
     @Override
     public void writeTo(OutputStream outputStream) throws IOException {
-        outputStream.write(mContent);
+        mContent.writeTo(outputStream);
     }
 
     @Override
     public String getContentAsString() {
         try {
-            return new String(mContent, Encoding.UTF_8.getId());
+            return new String(mContent.toByteArray(), Encoding.UTF_8.getId());
         } catch (UnsupportedEncodingException exception) {
             throw new AssertionError("Missing " + Encoding.UTF_8.getId() + " encoding.");
         }
     }
 
-    private byte[] buildContent(JsonStructure jsonData, String jsonpCallback) throws IOException {
+    private void buildContent(JsonStructure jsonData,
+                              String contentProperty,
+                              ServletResponseContent content,
+                              String jsonpCallback) throws IOException {
 
-        ByteArrayOutputStream binaryArrayOutputStream = new ByteArrayOutputStream();
-        Writer writer = new OutputStreamWriter(binaryArrayOutputStream, Encoding.UTF_8.getId());
+        Writer writer = new OutputStreamWriter(mContent, Encoding.UTF_8.getId());
 
         if (mJsonpMode == JsonpMode.TEXTAREA) {
             writer.write("<textarea>");
@@ -76,6 +113,11 @@ public class JsonServletResponseContent implements ServletResponseContent {
 
         JsonUtils.write(writer, jsonData);
 
+        if (contentProperty != null) {
+            writer.flush();
+            appendContentProperty(((JsonObject) jsonData).isEmpty(), contentProperty, content);
+        }
+
         if (mJsonpMode != JsonpMode.DISABLED) {
             writer.write(')');
         }
@@ -85,7 +127,30 @@ public class JsonServletResponseContent implements ServletResponseContent {
         }
 
         writer.flush();
-        return binaryArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Reopens the JSON object just written to add the content property.
+     */
+    private void appendContentProperty(boolean emptyObject, String contentProperty, ServletResponseContent content)
+            throws IOException {
+        int objectEnd = mContent.lastIndexOf((byte) '}');
+        if (objectEnd == -1) throw new IOException("Unable to find the end of the JSON object.");
+        mContent.truncate(objectEnd);
+
+        if (!emptyObject) {
+            mContent.write(',');
+        }
+
+        JsonStringOutputStream jsonStringOutputStream = new JsonStringOutputStream(mContent);
+        mContent.write('"');
+        jsonStringOutputStream.write(contentProperty.getBytes(Encoding.UTF_8.getId()));
+        mContent.write('"');
+        mContent.write(':');
+        mContent.write('"');
+        content.writeTo(jsonStringOutputStream);
+        mContent.write('"');
+        mContent.write('}');
     }
 
     /**
@@ -93,7 +158,88 @@ public class JsonServletResponseContent implements ServletResponseContent {
      */
     @Override
     public Integer getContentLength() {
-        return mContent.length;
+        return mContent.size();
     }
 
+    /**
+     * @since 1.0.13
+     */
+    @Override
+    public void release() {
+        mContent.release();
+    }
+
+    /**
+     * Escapes UTF-8 encoded text for a JSON string: quotation marks, reverse
+     * solidi and control characters are escaped, the other bytes, including
+     * multi-byte sequences, are written as is.
+     */
+    private static final class JsonStringOutputStream extends FilterOutputStream {
+
+        private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+        public JsonStringOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            byte byteValue = (byte) value;
+            if (needsEscaping(byteValue)) {
+                writeEscaped(byteValue);
+            } else {
+                out.write(byteValue);
+            }
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            int runStart = offset;
+            int end = offset + length;
+            for (int index = offset; index < end; index++) {
+                byte value = buffer[index];
+                if (needsEscaping(value)) {
+                    out.write(buffer, runStart, index - runStart);
+                    writeEscaped(value);
+                    runStart = index + 1;
+                }
+            }
+            out.write(buffer, runStart, end - runStart);
+        }
+
+        private static boolean needsEscaping(byte value) {
+            return value >= 0 && value < 0x20 || value == '"' || value == '\\';
+        }
+
+        private void writeEscaped(byte value) throws IOException {
+            out.write('\\');
+            switch (value) {
+                case '"':
+                case '\\':
+                    out.write(value);
+                    break;
+                case '\b':
+                    out.write('b');
+                    break;
+                case '\f':
+                    out.write('f');
+                    break;
+                case '\n':
+                    out.write('n');
+                    break;
+                case '\r':
+                    out.write('r');
+                    break;
+                case '\t':
+                    out.write('t');
+                    break;
+                default:
+                    out.write('u');
+                    out.write('0');
+                    out.write('0');
+                    out.write(HEX_DIGITS[value >> 4]);
+                    out.write(HEX_DIGITS[value & 0xf]);
+            }
+        }
+    }
 }
@@ -93,20 +93,6 @@ public class JsonStepRenderer implements
                                                        JsonObjectBuilder builder,
                                                        ServletResponseContent voiceXmlServletResponseContent)
             throws StepRendererException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        try {
-            voiceXmlServletResponseContent.writeTo(byteArrayOutputStream);
-        } catch (IOException exception1) {
-            throw new StepRendererException("Error while wirting VoiceXML document");
-        }
-
-        try {
-            String voiceXml = new String(byteArrayOutputStream.toByteArray(), "utf-8");
-            JsonUtils.add(builder, VOICE_XML_PROPERTY, voiceXml);
-        } catch (UnsupportedEncodingException exception) {
-            throw new AssertionError("Missing UTF-8 encoding");
-        }
-
         String callback = request.getParameter(CALLBACK_PARAMETER);
         String textarea = request.getParameter(TEXTAREA_PARAMETER);
 
@@ -114,9 +100,18 @@ public class JsonStepRenderer implements
                 ? textarea != null ? JsonpMode.TEXTAREA : JsonpMode.NORMAL
                 : JsonpMode.DISABLED;
         try {
-            return new JsonServletResponseContent(builder.build(), jsonpMode, callback);
+            // the VoiceXML document is escaped into the JSON response without being decoded
+            return new JsonServletResponseContent(builder.build(),
+                                                  VOICE_XML_PROPERTY,
+                                                  voiceXmlServletResponseContent,
+                                                  jsonpMode,
+                                                  callback);
         } catch (IOException exception) {
             throw new StepRendererException("Unable to create response.", exception);
+        } finally {
+            if (voiceXmlServletResponseContent instanceof ReleasableServletResponseContent) {
+                ((ReleasableServletResponseContent) voiceXmlServletResponseContent).release();
+            }
         }
     }
 
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.w3c.dom.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
+import com.nuecho.rivr.voicexml.turn.output.grammar.*;
+
+/**
+ * Named XML content reused by the turns of all dialogues, typically a large
+ * SRGS grammar or a recurring SSML prompt. Its DOM is neither imported nor
+ * walked for each turn:
+ * <ul>
+ * <li>its serialized form is computed once and used by the JSON
+ * representation of the grammars and prompts referring to it;</li>
+ * <li>in VoiceXML documents streamed by {@link VoiceXmlWriter}, its markup is
+ * rendered once for each position in which it appears and then written as is.
+ * </li>
+ * </ul>
+ * <p>
+ * Fragments are kept in a registry by name. They are usually registered with
+ * {@link InlineXmlGrammar#shared(String, Document)} and
+ * {@link SpeechSynthesis#shared(String, DocumentFragment)}. Registering the
+ * same node again under the same name returns the registered fragment, along
+ * with its pre-rendered markup, so that turns can be built with these methods
+ * on each turn. Their DOM must not be modified once registered.
+ * <p>
+ * Documents rendered as a DOM (when a
+ * {@link com.nuecho.rivr.voicexml.turn.VoiceXmlDocumentAdapter} is used) still
+ * import the nodes of the fragment.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class SharedXmlFragment {
+
+    private static final ConcurrentMap<String, SharedXmlFragment> REGISTRY = new ConcurrentHashMap<String, SharedXmlFragment>();
+
+    private final String mName;
+    private final Node mNode;
+    private final VoiceXmlWriter.ChildNodesMarkup mContentMarkup;
+
+    //serialized node, computed once
+    private volatile String mSerializedNode;
+
+    private SharedXmlFragment(String name, Node node, Node contentParent) {
+        mName = name;
+        mNode = node;
+        mContentMarkup = new VoiceXmlWriter.ChildNodesMarkup(contentParent);
+    }
+
+    /**
+     * Registers a document, e.g. an XML grammar. The document element is
+     * written by the renderer; only its children are pre-rendered.
+     *
+     * @param name the fragment name. Cannot be <code>null</code>.
+     * @param document the document. Cannot be <code>null</code> and must have
+     *            a document element. Must not be modified afterwards.
+     * @return the registered fragment, which is the fragment already
+     *         registered under this name if it holds the same document
+     * @throws IllegalArgumentException if a fragment holding another node is
+     *             already registered under this name. Use
+     *             {@link #reregister(String, Document)} to replace it.
+     */
+    public static SharedXmlFragment register(String name, Document document) {
+        Assert.notNull(name, "name");
+        Assert.notNull(document, "document");
+        Element documentElement = document.getDocumentElement();
+        Assert.notNull(documentElement, "documentElement");
+        return register(name, document, documentElement);
+    }
+
+    /**
+     * Registers a document fragment, e.g. SSML content.
+     *
+     * @param name the fragment name. Cannot be <code>null</code>.
+     * @param documentFragment the document fragment. Cannot be
+     *            <code>null</code>. Must not be modified afterwards.
+     * @return the registered fragment, which is the fragment already
+     *         registered under this name if it holds the same document
+     *         fragment
+     * @throws IllegalArgumentException if a fragment holding another node is
+     *             already registered under this name. Use
+     *             {@link #reregister(String, DocumentFragment)} to replace it.
+     */
+    public static SharedXmlFragment register(String name, DocumentFragment documentFragment) {
+        Assert.notNull(name, "name");
+        Assert.notNull(documentFragment, "documentFragment");
+        return register(name, documentFragment, documentFragment);
+    }
+
+    /**
+     * Registers a document, replacing the fragment registered under this name
+     * if there is one. The grammars and prompts already referring to the
+     * replaced fragment are not affected.
+     *
+     * @param name the fragment name. Cannot be <code>null</code>.
+     * @param document the document. Cannot be <code>null</code> and must have
+     *            a document element. Must not be modified afterwards.
+     * @return the registered fragment
+     */
+    public static SharedXmlFragment reregister(String name, Document document) {
+        Assert.notNull(name, "name");
+        Assert.notNull(document, "document");
+        Element documentElement = document.getDocumentElement();
+        Assert.notNull(documentElement, "documentElement");
+        return reregister(new SharedXmlFragment(name, document, documentElement));
+    }
+
+    /**
+     * Registers a document fragment, replacing the fragment registered under
+     * this name if there is one. The grammars and prompts already referring to
+     * the replaced fragment are not affected.
+     *
+     * @param name the fragment name. Cannot be <code>null</code>.
+     * @param documentFragment the document fragment. Cannot be
+     *            <code>null</code>. Must not be modified afterwards.
+     * @return the registered fragment
+     */
+    public static SharedXmlFragment reregister(String name, DocumentFragment documentFragment) {
+        Assert.notNull(name, "name");
+        Assert.notNull(documentFragment, "documentFragment");
+        return reregister(new SharedXmlFragment(name, documentFragment, documentFragment));
+    }
+
+    private static SharedXmlFragment register(String name, Node node, Node contentParent) {
+        SharedXmlFragment fragment = REGISTRY.get(name);
+        if (fragment == null) {
+            fragment = new SharedXmlFragment(name, node, contentParent);
+            SharedXmlFragment existingFragment = REGISTRY.putIfAbsent(name, fragment);
+            if (existingFragment == null) return fragment;
+            fragment = existingFragment;
+        }
+
+        if (fragment.mNode != node)
+            throw new IllegalArgumentException("Another node is already registered as shared fragment '" + name + "'.");
+        return fragment;
+    }
+
+    private static SharedXmlFragment reregister(SharedXmlFragment fragment) {
+        REGISTRY.put(fragment.mName, fragment);
+        return fragment;
+    }
+
+    /**
+     * @param name the fragment name. Cannot be <code>null</code>.
+     * @return the fragment registered under this name, or <code>null</code> if
+     *         there is none
+     */
+    public static SharedXmlFragment get(String name) {
+        Assert.notNull(name, "name");
+        return REGISTRY.get(name);
+    }
+
+    /**
+     * @return the names of the registered fragments
+     */
+    public static Set<String> getNames() {
+        return Collections.unmodifiableSet(new HashSet<String>(REGISTRY.keySet()));
+    }
+
+    /**
+     * Removes a fragment from the registry. The grammars and prompts already
+     * referring to it are not affected.
+     *
+     * @param name the fragment name. Cannot be <code>null</code>.
+     */
+    public static void unregister(String name) {
+        Assert.notNull(name, "name");
+        REGISTRY.remove(name);
+    }
+
+    /**
+     * Removes all fragments from the registry.
+     */
+    public static void clearRegistry() {
+        REGISTRY.clear();
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return the {@link Document} or the {@link DocumentFragment} of this
+     *         fragment. Must not be modified.
+     */
+    public Node getNode() {
+        return mNode;
+    }
+
+    /**
+     * Gets the serialized form of the fragment, as written by
+     * {@link DomUtils#writeToString(Node)}.
+     *
+     * @return the serialized fragment, or <code>null</code> if it cannot be
+     *         serialized
+     */
+    public String getSerializedNode() {
+        String serializedNode = mSerializedNode;
+        if (serializedNode == null) {
+            try {
+                // DOM implementations do not support concurrent reads
+                synchronized (mContentMarkup) {
+                    serializedNode = DomUtils.writeToString(mNode);
+                }
+            } catch (IOException exception) {
+                return null;
+            }
+            mSerializedNode = serializedNode;
+        }
+        return serializedNode;
+    }
+
+    /**
+     * Writes the content of the fragment: the children of the document element
+     * for a {@link Document}, the children of the {@link DocumentFragment}
+     * otherwise.
+     */
+    void writeContent(VoiceXmlWriter writer) throws IOException {
+        writer.writeChildNodes(mContentMarkup);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import java.io.*;
+
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.*;
+
+/**
+ * {@link ServletResponseContent} writing the VoiceXML document of a
+ * {@link VoiceXmlDocumentTurn} directly to the response stream with a
+ * {@link VoiceXmlWriter}, without building a DOM.
+ * <p>
+ * The document is rendered when {@link #writeTo(OutputStream)} is called. The
+ * content length is therefore unknown beforehand and rendering errors are
+ * reported as {@link IOException}. {@link #getContentAsString()} renders the
+ * document again in memory, always indented, and should only be used for
+ * logging.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public class StreamingVoiceXmlServletResponseContent implements ServletResponseContent {
+
+    private final VoiceXmlDocumentTurn mTurn;
+    private final VoiceXmlDialogueContext mDialogueContext;
+    private final int mTurnIndex;
+    private final String mContentType;
+    private final boolean mIndenting;
+
+    /**
+     * @param turn the turn to render. Cannot be <code>null</code>. Must be
+     *            writable without DOM.
+     * @param dialogueContext the dialogue context. Cannot be <code>null</code>.
+     * @param turnIndex the index of the turn in the dialogue
+     * @param contentType the content type of the response. Cannot be
+     *            <code>null</code>.
+     * @param indenting <code>true</code> to indent the document written to the
+     *            response, <code>false</code> to write it in compact mode.
+     */
+    public StreamingVoiceXmlServletResponseContent(VoiceXmlDocumentTurn turn,
+                                                   VoiceXmlDialogueContext dialogueContext,
+                                                   int turnIndex,
+                                                   String contentType,
+                                                   boolean indenting) {
+        Assert.notNull(turn, "turn");
+        Assert.notNull(dialogueContext, "dialogueContext");
+        Assert.notNull(contentType, "contentType");
+        if (!turn.canWriteVoiceXmlDocument(dialogueContext))
+            throw new IllegalArgumentException("Turn '" + turn.getName() + "' cannot be written without DOM.");
+
+        mTurn = turn;
+        mDialogueContext = dialogueContext;
+        mTurnIndex = turnIndex;
+        mContentType = contentType;
+        mIndenting = indenting;
+    }
+
+    @Override
+    public String getContentType() {
+        return mContentType;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        write(new VoiceXmlWriter(outputStream, mIndenting));
+    }
+
+    @Override
+    public String getContentAsString() {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try {
+            write(new VoiceXmlWriter(byteArrayOutputStream, true));
+            return new String(byteArrayOutputStream.toByteArray(), Encoding.UTF_8.getId());
+        } catch (UnsupportedEncodingException exception) {
+            throw new AssertionError("Missing " + Encoding.UTF_8.getId() + " encoding.");
+        } catch (IOException exception) {
+            return "Unable to render VoiceXML document: " + exception.getMessage();
+        }
+    }
+
+    private void write(VoiceXmlWriter writer) throws IOException {
+        try {
+            mTurn.writeVoiceXmlDocument(writer, mDialogueContext, mTurnIndex);
+        } catch (VoiceXmlDocumentRenderingException exception) {
+            throw new IOException("Unable to render VoiceXML document.", exception);
+        }
+    }
+
+    /**
+     * @return <code>null</code> since the document is rendered while it is
+     *         written.
+     */
+    @Override
+    public Integer getContentLength() {
+        return null;
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.xml.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.turn.output.fetch.*;
+
+/**
+ * Invariant part of the VoiceXML documents written by
+ * {@link VoiceXmlWriter}: the <code>vxml</code> root element with the
+ * application-level script and properties, and, after the main form, the
+ * event handlers, the fatal error form and the submit form.
+ * <p>
+ * This markup only depends on the language, the properties, the fetch
+ * configuration and the fatal error form factory of the dialogue context, and
+ * on whether the document is indented. Skeletons are rendered once for each
+ * combination of these values and cached, so that only the root document path
+ * and the submit path are written for each turn. The cache holds at most
+ * {@value #CACHE_CAPACITY} skeletons; when it is full, other skeletons are
+ * written element by element, as they would be without cache.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class VoiceXmlDocumentSkeleton {
+
+    public static final int CACHE_CAPACITY = 256;
+
+    // private use character standing for the root document path and the
+    // submit path in the pre-rendered markup
+    private static final char PARAMETER_MARKER = '\uE000';
+    private static final String PARAMETER = String.valueOf(PARAMETER_MARKER);
+
+    private static final String VOICEXML_VERSION = "2.1";
+
+    private static final ConcurrentMap<Key, VoiceXmlDocumentSkeleton> CACHE = new ConcurrentHashMap<Key, VoiceXmlDocumentSkeleton>();
+
+    private final Key mKey;
+
+    // markup split around the parameters, null if not pre-rendered
+    private final String[] mStartMarkup;
+    private final String[] mEndMarkup;
+
+    private final VoiceXmlWriter.State mStartState;
+    private final VoiceXmlWriter.State mEndState;
+
+    private VoiceXmlDocumentSkeleton(Key key) {
+        this(key, null, null, null, null);
+    }
+
+    private VoiceXmlDocumentSkeleton(Key key,
+                                     String[] startMarkup,
+                                     VoiceXmlWriter.State startState,
+                                     String[] endMarkup,
+                                     VoiceXmlWriter.State endState) {
+        mKey = key;
+        mStartMarkup = startMarkup;
+        mStartState = startState;
+        mEndMarkup = endMarkup;
+        mEndState = endState;
+    }
+
+    /**
+     * Gets the skeleton of the documents of
+     * {@link com.nuecho.rivr.voicexml.turn.output.VoiceXmlOutputTurn
+     * VoiceXmlOutputTurns}.
+     *
+     * @param dialogueContext the dialogue context. Cannot be <code>null</code>
+     *            . Its fatal error form factory must be writable without DOM.
+     * @param indenting whether the document is indented
+     */
+    public static VoiceXmlDocumentSkeleton getOutputTurnSkeleton(VoiceXmlDialogueContext dialogueContext,
+                                                                 boolean indenting) {
+        return getSkeleton(new Key(dialogueContext, indenting, false));
+    }
+
+    /**
+     * Gets the skeleton of the documents of
+     * {@link com.nuecho.rivr.voicexml.turn.last.VoiceXmlLastTurn
+     * VoiceXmlLastTurns}.
+     *
+     * @param dialogueContext the dialogue context. Cannot be <code>null</code>
+     *            . Its fatal error form factory must be writable without DOM.
+     * @param indenting whether the document is indented
+     */
+    public static VoiceXmlDocumentSkeleton getLastTurnSkeleton(VoiceXmlDialogueContext dialogueContext,
+                                                               boolean indenting) {
+        return getSkeleton(new Key(dialogueContext, indenting, true));
+    }
+
+    /**
+     * Removes all cached skeletons.
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    private static VoiceXmlDocumentSkeleton getSkeleton(Key key) {
+        VoiceXmlDocumentSkeleton skeleton = CACHE.get(key);
+        if (skeleton != null) return skeleton;
+        if (CACHE.size() >= CACHE_CAPACITY) return new VoiceXmlDocumentSkeleton(key);
+
+        skeleton = render(key);
+        VoiceXmlDocumentSkeleton existingSkeleton = CACHE.putIfAbsent(key, skeleton);
+        return existingSkeleton != null ? existingSkeleton : skeleton;
+    }
+
+    /**
+     * Writes the start of the document, up to the opening of the main form.
+     * This must be the first thing written by the writer.
+     *
+     * @param writer the writer. Cannot be <code>null</code>. Must have the
+     *            indentation mode of this skeleton.
+     * @param dialogueContext the dialogue context. Cannot be <code>null</code>
+     *            .
+     */
+    public void writeDocumentStart(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext)
+            throws IOException {
+        Assert.notNull(writer, "writer");
+        Assert.notNull(dialogueContext, "dialogueContext");
+        if (writer.isIndenting() != mKey.mIndenting)
+            throw new IllegalArgumentException("Writer indentation mode does not match skeleton.");
+
+        String rootDocumentPath = dialogueContext.getRootDocumentPath();
+        if (mStartMarkup == null) {
+            writeStart(writer, mKey, rootDocumentPath);
+            return;
+        }
+
+        writer.writeMarkup(mStartMarkup[0]);
+        writer.writeAttributeValue(rootDocumentPath);
+        writer.writeMarkup(mStartMarkup[1]);
+        writer.setState(mStartState);
+    }
+
+    /**
+     * Closes the main form and writes the end of the document.
+     *
+     * @param writer the writer. Cannot be <code>null</code>.
+     * @param submitPath the path to which the input turn is submitted. Cannot
+     *            be <code>null</code> for output turns, ignored for last turns.
+     */
+    public void writeDocumentEnd(VoiceXmlWriter writer, String submitPath) throws IOException {
+        Assert.notNull(writer, "writer");
+        if (!mKey.mLastTurn) {
+            Assert.notNull(submitPath, "submitPath");
+        }
+
+        writer.writeEndElement();
+
+        if (mEndMarkup == null) {
+            writeEnd(writer, mKey, submitPath);
+            return;
+        }
+
+        writer.writeMarkup(mEndMarkup[0]);
+        for (int index = 1; index < mEndMarkup.length; index++) {
+            writer.writeAttributeValue(submitPath);
+            writer.writeMarkup(mEndMarkup[index]);
+        }
+        writer.setState(mEndState);
+        writer.flush();
+    }
+
+    private static VoiceXmlDocumentSkeleton render(Key key) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        VoiceXmlWriter writer = new VoiceXmlWriter(outputStream, key.mIndenting);
+        try {
+            writeStart(writer, key, PARAMETER);
+            writer.flush();
+            String startMarkup = outputStream.toString(Encoding.UTF_8.getId());
+            VoiceXmlWriter.State startState = writer.getState();
+
+            writer.writeEndElement();
+            writer.flush();
+            int endOffset = outputStream.size();
+
+            writeEnd(writer, key, PARAMETER);
+            byte[] bytes = outputStream.toByteArray();
+            String endMarkup = new String(bytes, endOffset, bytes.length - endOffset, Encoding.UTF_8.getId());
+            VoiceXmlWriter.State endState = writer.getState();
+
+            String[] splitStartMarkup = split(startMarkup, 1);
+            String[] splitEndMarkup = split(endMarkup, key.mLastTurn ? 0 : 2);
+
+            // a value of the dialogue context contains the marker
+            if (splitStartMarkup == null || splitEndMarkup == null) return new VoiceXmlDocumentSkeleton(key);
+
+            return new VoiceXmlDocumentSkeleton(key, splitStartMarkup, startState, splitEndMarkup, endState);
+        } catch (IOException exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    private static String[] split(String markup, int parameterCount) {
+        String[] parts = new String[parameterCount + 1];
+        int start = 0;
+        for (int index = 0; index < parameterCount; index++) {
+            int end = markup.indexOf(PARAMETER_MARKER, start);
+            if (end == -1) return null;
+            parts[index] = markup.substring(start, end);
+            start = end + 1;
+        }
+
+        if (markup.indexOf(PARAMETER_MARKER, start) != -1) return null;
+        parts[parameterCount] = markup.substring(start);
+        return parts;
+    }
+
+    private static void writeStart(VoiceXmlWriter writer, Key key, String rootDocumentPath) throws IOException {
+        writer.writeStartDocument();
+        writer.writeStartElement(VXML_ELEMENT);
+        writer.writeAttribute(XMLConstants.XMLNS_ATTRIBUTE, VOICEXML_NAMESPACE);
+        writer.writeAttribute(VERSION_ATTRIBUTE, VOICEXML_VERSION);
+        writer.writeAttribute(XML_LANGUAGE_ATTRIBUTE, key.mLanguage);
+        writer.writeAttribute(APPLICATION_ATTRIBUTE, rootDocumentPath);
+
+        StringBuilder script = new StringBuilder();
+        script.append(RIVR_SCOPE_OBJECT)
+              .append(".")
+              .append(LOCAL_ERROR_HANDLING_PROPERTY)
+              .append(" = ")
+              .append(FALSE)
+              .append("; ");
+
+        script.append(RIVR_INPUT_TURN_SCOPE_OBJECT).append(" = {};");
+        VoiceXmlWriterUtil.writeScript(writer, script.toString());
+
+        List<String> properties = key.mProperties;
+        for (int index = 0; index < properties.size(); index += 2) {
+            VoiceXmlWriterUtil.writeProperty(writer, properties.get(index), properties.get(index + 1));
+        }
+
+        VoiceXmlWriterUtil.writeFormStart(writer);
+    }
+
+    private static void writeEnd(VoiceXmlWriter writer, Key key, String submitPath) throws IOException {
+        if (key.mLastTurn) {
+            writeLastTurnEventHandler(writer);
+            VoiceXmlWriterUtil.writeFatalErrorHandlerForm(writer, key.mFatalErrorElementName);
+        } else {
+            writeOutputTurnEventHandler(writer);
+            VoiceXmlWriterUtil.writeFatalErrorHandlerForm(writer, key.mFatalErrorElementName);
+            VoiceXmlWriterUtil.writeSubmitForm(writer, submitPath, key.mSubmitFetchConfiguration);
+        }
+        writer.writeEndDocument();
+    }
+
+    private static void writeOutputTurnEventHandler(VoiceXmlWriter writer) throws IOException {
+        writer.writeStartElement(CATCH_ELEMENT);
+
+        writer.writeStartElement(IF_ELEMENT);
+        writer.writeAttribute(COND_ATTRIBUTE, "_event.substring(0, 5) == \"error\"");
+
+        writer.writeStartElement(IF_ELEMENT);
+        writer.writeAttribute(COND_ATTRIBUTE, RIVR_SCOPE_OBJECT + "." + LOCAL_ERROR_HANDLING_PROPERTY);
+        VoiceXmlWriterUtil.writeGotoFatalHandler(writer);
+
+        writer.writeStartElement(ELSE_ELEMENT);
+        writer.writeEndElement();
+
+        VoiceXmlWriterUtil.writeScript(writer, RIVR_SCOPE_OBJECT + "." + LOCAL_ERROR_HANDLING_PROPERTY + "=" + TRUE);
+        writer.writeEndElement();
+        writer.writeEndElement();
+
+        VoiceXmlWriterUtil.writeScript(writer, getEventHandlerScript());
+        VoiceXmlWriterUtil.writeGotoSubmit(writer);
+        writer.writeEndElement();
+    }
+
+    private static void writeLastTurnEventHandler(VoiceXmlWriter writer) throws IOException {
+        writer.writeStartElement(CATCH_ELEMENT);
+        writer.writeAttribute(EVENT_ATTRIBUTE, ERROR_EVENT_NAME);
+        VoiceXmlWriterUtil.writeGotoFatalHandler(writer);
+        writer.writeEndElement();
+    }
+
+    /**
+     * Values of the dialogue context that determine the skeleton, taken when
+     * the key is created so that later changes to the context do not affect
+     * cached skeletons.
+     */
+    private static final class Key {
+        private final boolean mIndenting;
+        private final boolean mLastTurn;
+        private final String mLanguage;
+        private final String mFatalErrorElementName;
+
+        // application-level properties: names and values, alternately
+        private final List<String> mProperties;
+
+        private final DocumentFetchConfiguration mSubmitFetchConfiguration;
+
+        private final int mHashCode;
+
+        Key(VoiceXmlDialogueContext dialogueContext, boolean indenting, boolean lastTurn) {
+            Assert.notNull(dialogueContext, "dialogueContext");
+            mIndenting = indenting;
+            mLastTurn = lastTurn;
+            mLanguage = dialogueContext.getLanguage();
+
+            mFatalErrorElementName = VoiceXmlWriterUtil.getFatalErrorElementName(dialogueContext.getFatalErrorFormFactory());
+            if (mFatalErrorElementName == null)
+                throw new IllegalStateException("Fatal error form factory cannot be used without DOM.");
+
+            mProperties = new ArrayList<String>();
+            DefaultFetchConfiguration defaultFetchConfiguration = dialogueContext.getFetchConfiguration();
+            addFetchProperties(defaultFetchConfiguration);
+
+            Map<String, String> properties = dialogueContext.getProperties();
+            if (properties != null) {
+                for (Map.Entry<String, String> property : properties.entrySet()) {
+                    addProperty(property.getKey(), property.getValue());
+                }
+            }
+
+            if (lastTurn || defaultFetchConfiguration == null) {
+                mSubmitFetchConfiguration = null;
+            } else {
+                mSubmitFetchConfiguration = copy(defaultFetchConfiguration.getDocumentFetchConfiguration());
+            }
+
+            mHashCode = computeHashCode();
+        }
+
+        private void addFetchProperties(DefaultFetchConfiguration defaultFetchConfiguration) {
+            if (defaultFetchConfiguration == null) return;
+
+            addProperty(FETCH_AUDIO_PROPERTY, defaultFetchConfiguration.getDefaultFetchAudio());
+            addDurationProperty(FETCH_TIMEOUT_PROPERTY, defaultFetchConfiguration.getDefaultFetchTimeout());
+
+            addResourceFetchProperties(defaultFetchConfiguration.getDefaultAudioFetchConfiguration());
+            addResourceFetchProperties(defaultFetchConfiguration.getDefaultGrammarFetchConfiguration());
+            addResourceFetchProperties(defaultFetchConfiguration.getDefaultObjectFetchConfiguration());
+            addResourceFetchProperties(defaultFetchConfiguration.getDefaultScriptFetchConfiguration());
+        }
+
+        private void addResourceFetchProperties(ResourceDefaultFetchConfiguration fetchConfiguration) {
+            if (fetchConfiguration == null) return;
+
+            String resourceType = fetchConfiguration.getResourceType().name();
+            FetchHint fetchHint = fetchConfiguration.getFetchHint();
+            if (fetchHint != null) {
+                addProperty(resourceType + FETCH_HINT_PROPERTY_SUFFIX, fetchHint.name());
+            }
+            addCacheControlDurationProperty(resourceType + MAX_AGE_PROPERTY_SUFFIX, fetchConfiguration.getMaxAge());
+            addCacheControlDurationProperty(resourceType + MAX_STALE_PROPERTY_SUFFIX,
+                                            fetchConfiguration.getMaxStale());
+        }
+
+        private void addDurationProperty(String name, Duration value) {
+            if (value != null) {
+                addProperty(name, value.getMilliseconds() + MILLISECOND_UNIT_SUFFIX);
+            }
+        }
+
+        private void addCacheControlDurationProperty(String name, Duration value) {
+            if (value != null) {
+                addProperty(name, String.valueOf(value.getMilliseconds() / 1000));
+            }
+        }
+
+        private void addProperty(String name, String value) {
+            Assert.notNull(name, "propertyName");
+            if (value != null) {
+                mProperties.add(name);
+                mProperties.add(value);
+            }
+        }
+
+        private static DocumentFetchConfiguration copy(DocumentFetchConfiguration fetchConfiguration) {
+            if (fetchConfiguration == null) return null;
+
+            // only the attributes written on submit elements are copied
+            DocumentFetchConfiguration copy = new DocumentFetchConfiguration();
+            copy.setTimeOut(fetchConfiguration.getTimeOut());
+            copy.setFetchAudio(fetchConfiguration.getFetchAudio());
+            return copy;
+        }
+
+        private int computeHashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + (mIndenting ? 1231 : 1237);
+            result = prime * result + (mLastTurn ? 1231 : 1237);
+            result = prime * result + (mLanguage == null ? 0 : mLanguage.hashCode());
+            result = prime * result + mFatalErrorElementName.hashCode();
+            result = prime * result + mProperties.hashCode();
+            result = prime * result + (mSubmitFetchConfiguration == null ? 0 : mSubmitFetchConfiguration.hashCode());
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null) return false;
+            if (getClass() != obj.getClass()) return false;
+            Key other = (Key) obj;
+            if (mIndenting != other.mIndenting) return false;
+            if (mLastTurn != other.mLastTurn) return false;
+            if (mHashCode != other.mHashCode) return false;
+            if (mLanguage == null) {
+                if (other.mLanguage != null) return false;
+            } else if (!mLanguage.equals(other.mLanguage)) return false;
+            if (!mFatalErrorElementName.equals(other.mFatalErrorElementName)) return false;
+            if (!mProperties.equals(other.mProperties)) return false;
+            if (mSubmitFetchConfiguration == null) {
+                if (other.mSubmitFetchConfiguration != null) return false;
+            } else if (!mSubmitFetchConfiguration.equals(other.mSubmitFetchConfiguration)) return false;
+            return true;
+        }
+    }
+}
@@ -14,7 +14,6 @@ import org.w3c.dom.*;
 
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.dialogue.*;
-import com.nuecho.rivr.voicexml.servlet.*;
 import com.nuecho.rivr.voicexml.turn.*;
 import com.nuecho.rivr.voicexml.turn.output.*;
 import com.nuecho.rivr.voicexml.turn.output.audio.*;
@@ -215,12 +214,7 @@ public final class VoiceXmlDomUtil {
     public static Document createDocument(VoiceXmlDialogueContext voiceXmlDialogueContext) {
         Element vxmlElement = createVoiceXmlDocumentRoot(voiceXmlDialogueContext);
 
-        String rootDocumentPath = voiceXmlDialogueContext.getContextPath()
-                                  + voiceXmlDialogueContext.getServletPath()
-                                  + VoiceXmlDialogueServlet.ROOT_PATH
-                                  + voiceXmlDialogueContext.getDialogueId();
-
-        vxmlElement.setAttribute(APPLICATION_ATTRIBUTE, rootDocumentPath);
+        vxmlElement.setAttribute(APPLICATION_ATTRIBUTE, voiceXmlDialogueContext.getRootDocumentPath());
 
         StringBuilder script = new StringBuilder();
         script.append(RIVR_SCOPE_OBJECT)
@@ -351,7 +345,7 @@ public final class VoiceXmlDomUtil {
                     Document document = promptElement.getOwnerDocument();
 
                     for (int childNodeIndex = 0; childNodeIndex < childNodes.getLength(); childNodeIndex++) {
-                        Node node = document.importNode(childNodes.item(childNodeIndex).cloneNode(true), true);
+                        Node node = document.importNode(childNodes.item(childNodeIndex), true);
                         promptElement.appendChild(node);
                     }
                     lastItemWasText = false;
@@ -550,6 +544,21 @@ public final class VoiceXmlDomUtil {
         DomUtils.appendNewText(scriptElement, script);
     }
 
+    /**
+     * @return the script adding the current event to the input turn.
+     * @since 1.0.13
+     */
+    public static String getEventHandlerScript() {
+        StringBuilder addEventScript = new StringBuilder();
+        addEventScript.append(RIVR_SCOPE_OBJECT)
+                      .append(".addEventResult(")
+                      .append(EVENT_NAME_VARIABLE)
+                      .append(", ")
+                      .append(EVENT_MESSAGE_VARIABLE)
+                      .append(")");
+        return addEventScript.toString();
+    }
+
     public static void addSubmitForm(VoiceXmlDialogueContext dialogueContext, Document document, VoiceXmlOutputTurn turn) {
         Element vxmlElement = document.getDocumentElement();
         Element formElement = DomUtils.appendNewElement(vxmlElement, FORM_ELEMENT);
@@ -23,6 +23,19 @@ import com.nuecho.rivr.voicexml.turn.output.*;
  * VoiceXML specialization of {@link StepRenderer}. {@link VoiceXmlOutputTurn
  * VoiceXmlOutputTurns} and {@link VoiceXmlLastTurn VoiceXmlLastTurns} are
  * converted to VoiceXML documents.
+ * <p>
+ * When neither the renderer nor the turn has {@link VoiceXmlDocumentAdapter
+ * VoiceXmlDocumentAdapters} and the turn supports it, the document is written
+ * directly to the response by a {@link VoiceXmlWriter} without building a DOM
+ * (see {@link StreamingVoiceXmlServletResponseContent}). Otherwise, the
+ * document is built as a DOM so that adapters can be applied. Both produce the
+ * same output.
+ * <p>
+ * Documents are indented unless the renderer is created in compact mode, in
+ * which case they are written without indentation to reduce the response
+ * size. The content returned by
+ * {@link ServletResponseContent#getContentAsString()} is always indented,
+ * while the responses logged by the servlet are logged as sent.
  * 
  * @author Nu Echo Inc.
  */
@@ -32,8 +45,22 @@ public class VoiceXmlStepRenderer implements
     private static final String VOICE_XML_MIME_TYPE = "application/voicexml+xml";
 
     private final List<VoiceXmlDocumentAdapter> mVoiceXmlDocumentAdapters;
+    private final boolean mCompactOutput;
 
     public VoiceXmlStepRenderer(List<? extends VoiceXmlDocumentAdapter> voiceXmlDocumentAdapters) {
+        this(voiceXmlDocumentAdapters, false);
+    }
+
+    /**
+     * @param voiceXmlDocumentAdapters adapters applied to the rendered
+     *            documents. May be <code>null</code>.
+     * @param compactOutput <code>true</code> to write documents without
+     *            indentation.
+     * @since 1.0.13
+     */
+    public VoiceXmlStepRenderer(List<? extends VoiceXmlDocumentAdapter> voiceXmlDocumentAdapters,
+                                boolean compactOutput) {
+        mCompactOutput = compactOutput;
         if (voiceXmlDocumentAdapters != null) {
             mVoiceXmlDocumentAdapters = new ArrayList<VoiceXmlDocumentAdapter>(voiceXmlDocumentAdapters);
         } else {
@@ -62,6 +89,18 @@ public class VoiceXmlStepRenderer implements
     private ServletResponseContent renderTurn(VoiceXmlDocumentTurn turn, VoiceXmlDialogueContext voiceXmlDialogueContext)
             throws StepRendererException {
         Assert.notNull(turn, "turn");
+
+        if ((mVoiceXmlDocumentAdapters == null || mVoiceXmlDocumentAdapters.isEmpty())
+            && turn.canWriteVoiceXmlDocument(voiceXmlDialogueContext)) {
+            int turnIndex = voiceXmlDialogueContext.getTurnIndex();
+            voiceXmlDialogueContext.incrementTurnIndex();
+            return new StreamingVoiceXmlServletResponseContent(turn,
+                                                               voiceXmlDialogueContext,
+                                                               turnIndex,
+                                                               VOICE_XML_MIME_TYPE,
+                                                               !mCompactOutput);
+        }
+
         Document voiceXmlDocument;
         try {
             voiceXmlDocument = turn.getVoiceXmlDocument(voiceXmlDialogueContext);
@@ -81,10 +120,17 @@ public class VoiceXmlStepRenderer implements
 
         voiceXmlDialogueContext.incrementTurnIndex();
         try {
-            return new XmlDocumentServletResponseContent(voiceXmlDocument, VOICE_XML_MIME_TYPE);
+            return new XmlDocumentServletResponseContent(voiceXmlDocument, VOICE_XML_MIME_TYPE, !mCompactOutput);
         } catch (IOException exception) {
             throw new StepRendererException("Unable to create response.", exception);
         }
     }
 
+    /**
+     * @since 1.0.13
+     */
+    public boolean isCompactOutput() {
+        return mCompactOutput;
+    }
+
 }
@@ -0,0 +1,935 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.xml.*;
+
+import org.w3c.dom.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Streaming XML writer used to render VoiceXML documents without building a
+ * DOM. Elements, attributes and character data are encoded in UTF-8 and
+ * written to the underlying {@link OutputStream} as they are produced. DOM
+ * nodes (e.g. SSML fragments or inline XML grammars) can be mixed with
+ * streamed content using {@link #writeNode(Node)}.
+ * <p>
+ * The output is indented with 4 spaces per level, attributes are sorted by
+ * name and whitespace-only text is dropped. Text is kept inline when it is
+ * the only content of an element and goes on its own line otherwise. These
+ * rules are those of the pretty-printing <code>LSSerializer</code> of recent
+ * JDKs; unlike the <code>LSSerializer</code>, they do not depend on the JDK
+ * version, so a document written by this class is byte-identical whether it is
+ * streamed or built as a DOM and then written with
+ * {@link #writeNode(Node)}.
+ * <p>
+ * In compact mode, the document is written without indentation nor line
+ * breaks between elements. The other rules are unchanged.
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class VoiceXmlWriter {
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final String XMLNS_PREFIX = XMLConstants.XMLNS_ATTRIBUTE + ":";
+    private static final int INDENT_AMOUNT = 4;
+    private static final char LINE_SEPARATOR = '\n';
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer mWriter;
+    private final boolean mIndenting;
+
+    private final StringBuilder mPendingText = new StringBuilder();
+
+    private final List<String> mElementNames = new ArrayList<String>();
+    private final IntStack mChildCounts = new IntStack();
+
+    // namespace bindings in scope: prefix, uri and depth of the declaring
+    // element
+    private final List<String> mNamespacePrefixes = new ArrayList<String>();
+    private final List<String> mNamespaceUris = new ArrayList<String>();
+    private final IntStack mNamespaceDepths = new IntStack();
+
+    // attributes of the start tag not written yet
+    private final List<String> mNamespaceDeclarationNames = new ArrayList<String>();
+    private final List<String> mNamespaceDeclarationValues = new ArrayList<String>();
+    private final List<String> mAttributeNames = new ArrayList<String>();
+    private final List<String> mAttributeValues = new ArrayList<String>();
+
+    private boolean mStartTagOpen;
+    private boolean mStartNewLine;
+    private boolean mPreviousWasText;
+    private int mChildCount;
+
+    /**
+     * Creates an indenting writer.
+     *
+     * @param outputStream the stream receiving the UTF-8 encoded document.
+     *            Cannot be <code>null</code>.
+     */
+    public VoiceXmlWriter(OutputStream outputStream) {
+        this(outputStream, true);
+    }
+
+    /**
+     * @param outputStream the stream receiving the UTF-8 encoded document.
+     *            Cannot be <code>null</code>.
+     * @param indenting <code>true</code> to indent the document,
+     *            <code>false</code> to write it in compact mode.
+     */
+    public VoiceXmlWriter(OutputStream outputStream, boolean indenting) {
+        this(createWriter(outputStream), indenting);
+    }
+
+    private VoiceXmlWriter(Writer writer, boolean indenting) {
+        mWriter = writer;
+        mIndenting = indenting;
+    }
+
+    private static Writer createWriter(OutputStream outputStream) {
+        Assert.notNull(outputStream, "outputStream");
+        Charset charset = Charset.forName(Encoding.UTF_8.getId());
+        return new BufferedWriter(new OutputStreamWriter(outputStream, charset), BUFFER_SIZE);
+    }
+
+    public boolean isIndenting() {
+        return mIndenting;
+    }
+
+    /**
+     * Writes the XML declaration. Must be called before anything else.
+     */
+    public void writeStartDocument() throws IOException {
+        mWriter.write(XML_DECLARATION);
+    }
+
+    /**
+     * Closes all open elements and flushes the output. The underlying stream
+     * is not closed.
+     */
+    public void writeEndDocument() throws IOException {
+        while (!mElementNames.isEmpty()) {
+            writeEndElement();
+        }
+        if (mIndenting) {
+            mWriter.write(LINE_SEPARATOR);
+        }
+        mWriter.flush();
+    }
+
+    /**
+     * Opens a new element. Attributes can then be added with
+     * {@link #writeAttribute(String, String)} until some content is written.
+     *
+     * @param name the qualified name of the element. Cannot be
+     *            <code>null</code>.
+     */
+    public void writeStartElement(String name) throws IOException {
+        Assert.notNull(name, "name");
+        mChildCount++;
+        flushText();
+        closeStartTag();
+
+        if (isIndentingContent() && mStartNewLine) {
+            indent(mElementNames.size());
+        }
+        mStartNewLine = true;
+
+        mWriter.write('<');
+        mWriter.write(name);
+
+        mElementNames.add(name);
+        mChildCounts.push(mChildCount);
+        mChildCount = 0;
+        mStartTagOpen = true;
+        mPreviousWasText = false;
+    }
+
+    /**
+     * Opens a new element having the name and the attributes of a DOM element.
+     * Namespace declarations are added as needed. Additional attributes can
+     * then be added (or attributes of the DOM element overridden) with
+     * {@link #writeAttribute(String, String)}. The children of the DOM element
+     * are not written.
+     *
+     * @param element the DOM element. Cannot be <code>null</code>.
+     */
+    public void writeStartElement(Element element) throws IOException {
+        Assert.notNull(element, "element");
+        writeStartElement(element.getNodeName());
+
+        // namespace declarations of namespace-aware elements precede the other
+        // attributes
+        String namespaceUri = element.getNamespaceURI();
+        NamedNodeMap attributes = element.getAttributes();
+        for (int index = 0; index < attributes.getLength(); index++) {
+            Node attribute = attributes.item(index);
+            String name = attribute.getNodeName();
+            if (namespaceUri != null && isNamespaceDeclaration(name)) {
+                mNamespaceDeclarationNames.add(name);
+                mNamespaceDeclarationValues.add(attribute.getNodeValue());
+                bindNamespace(getDeclaredPrefix(name), attribute.getNodeValue());
+            } else {
+                writeAttribute(name, attribute.getNodeValue());
+            }
+        }
+
+        if (namespaceUri != null) {
+            String prefix = element.getPrefix();
+            if (prefix == null) {
+                prefix = XMLConstants.DEFAULT_NS_PREFIX;
+            }
+
+            if (!namespaceUri.equals(getNamespaceUri(prefix))) {
+                String declarationName = prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLNS_PREFIX + prefix;
+                mNamespaceDeclarationNames.add(declarationName);
+                mNamespaceDeclarationValues.add(namespaceUri);
+                bindNamespace(prefix, namespaceUri);
+            }
+        }
+    }
+
+    /**
+     * Adds an attribute to the element just opened. If the element already has
+     * an attribute with the same name, its value is replaced.
+     *
+     * @param name the qualified name of the attribute. Cannot be
+     *            <code>null</code>.
+     * @param value the attribute value. If <code>null</code>, no attribute is
+     *            added.
+     * @throws IllegalStateException if some content has been written since the
+     *             element was opened.
+     */
+    public void writeAttribute(String name, String value) {
+        Assert.notNull(name, "name");
+        if (!mStartTagOpen) throw new IllegalStateException("No start tag open for attribute '" + name + "'.");
+        if (value == null) return;
+
+        if (isNamespaceDeclaration(name)) {
+            bindNamespace(getDeclaredPrefix(name), value);
+        }
+
+        int index = mAttributeNames.indexOf(name);
+        if (index == -1) {
+            mAttributeNames.add(name);
+            mAttributeValues.add(value);
+        } else {
+            mAttributeValues.set(index, value);
+        }
+    }
+
+    /**
+     * Closes the last open element.
+     */
+    public void writeEndElement() throws IOException {
+        if (mElementNames.isEmpty()) throw new IllegalStateException("No element to close.");
+        flushText();
+
+        int depth = mElementNames.size();
+        String name = mElementNames.remove(depth - 1);
+        if (mStartTagOpen) {
+            writeAttributes();
+            mWriter.write("/>");
+            mStartTagOpen = false;
+        } else {
+            if (mChildCount > 1 || !mPreviousWasText) {
+                indent(depth - 1);
+            }
+            mWriter.write("</");
+            mWriter.write(name);
+            mWriter.write('>');
+        }
+
+        unbindNamespaces(depth);
+        mChildCount = mChildCounts.pop();
+        mPreviousWasText = false;
+    }
+
+    /**
+     * Writes character data. Consecutive calls are merged into a single text.
+     * Text made of whitespace only is dropped.
+     *
+     * @param text the text. If <code>null</code>, nothing is written.
+     */
+    public void writeText(String text) throws IOException {
+        if (text == null || isWhitespace(text)) return;
+        closeStartTag();
+        appendEscapedText(text);
+    }
+
+    /**
+     * Writes a CDATA section. Occurrences of <code>]]&gt;</code> are split
+     * over two sections.
+     *
+     * @param data the content of the section. If <code>null</code> or empty,
+     *            nothing is written.
+     */
+    public void writeCData(String data) throws IOException {
+        if (data == null || data.isEmpty()) return;
+        flushText();
+        closeStartTag();
+
+        if (isIndentingContent() && mChildCount > 1) {
+            indent(mElementNames.size());
+        }
+
+        mWriter.write("<![CDATA[");
+        int start = 0;
+        int end;
+        while ((end = data.indexOf("]]>", start)) != -1) {
+            mWriter.write(data, start, end + 2 - start);
+            mWriter.write("]]><![CDATA[");
+            start = end + 2;
+        }
+        mWriter.write(data, start, data.length() - start);
+        mWriter.write("]]>");
+        mPreviousWasText = true;
+    }
+
+    /**
+     * Writes a comment. Consecutive dashes are separated by a space.
+     *
+     * @param comment the comment text. Cannot be <code>null</code>.
+     */
+    public void writeComment(String comment) throws IOException {
+        Assert.notNull(comment, "comment");
+        mChildCount++;
+        flushText();
+        closeStartTag();
+
+        if (isIndentingContent()) {
+            indent(mElementNames.size());
+        }
+
+        mWriter.write("<!--");
+        boolean wasDash = false;
+        for (int index = 0; index < comment.length(); index++) {
+            char character = comment.charAt(index);
+            if (wasDash && character == '-') {
+                mWriter.write(' ');
+            }
+            mWriter.write(character);
+            wasDash = character == '-';
+        }
+
+        if (wasDash) {
+            mWriter.write(' ');
+        }
+        mWriter.write("-->");
+        mStartNewLine = true;
+    }
+
+    /**
+     * Writes a processing instruction.
+     *
+     * @param target the processing instruction target. Cannot be
+     *            <code>null</code>.
+     * @param data the processing instruction data. May be <code>null</code>.
+     */
+    public void writeProcessingInstruction(String target, String data) throws IOException {
+        Assert.notNull(target, "target");
+        mChildCount++;
+        flushText();
+        closeStartTag();
+
+        if (isIndentingContent()) {
+            indent(mElementNames.size());
+        }
+
+        mWriter.write("<?");
+        mWriter.write(target);
+        if (data != null && !data.isEmpty()) {
+            mWriter.write(' ');
+            mWriter.write(data);
+        }
+        mWriter.write("?>");
+        mStartNewLine = true;
+    }
+
+    /**
+     * Writes a DOM node and its descendants. Writing a {@link Document} or a
+     * {@link DocumentFragment} writes its children.
+     *
+     * @param node the node to write. Cannot be <code>null</code>.
+     */
+    public void writeNode(Node node) throws IOException {
+        Assert.notNull(node, "node");
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                writeStartElement((Element) node);
+                writeChildNodes(node);
+                writeEndElement();
+                break;
+            case Node.TEXT_NODE:
+                writeText(node.getNodeValue());
+                break;
+            case Node.CDATA_SECTION_NODE:
+                writeCData(node.getNodeValue());
+                break;
+            case Node.COMMENT_NODE:
+                writeComment(node.getNodeValue());
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                writeProcessingInstruction(((ProcessingInstruction) node).getTarget(), node.getNodeValue());
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                closeStartTag();
+                mPendingText.append('&').append(node.getNodeName()).append(';');
+                break;
+            case Node.DOCUMENT_NODE:
+            case Node.DOCUMENT_FRAGMENT_NODE:
+                writeChildNodes(node);
+                break;
+            default:
+                // document type, entities and notations are not written
+                break;
+        }
+    }
+
+    /**
+     * Writes the children of a DOM node.
+     *
+     * @param node the parent node. Cannot be <code>null</code>.
+     */
+    public void writeChildNodes(Node node) throws IOException {
+        Assert.notNull(node, "node");
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            writeNode(child);
+        }
+    }
+
+    /**
+     * Writes the children of a DOM node using markup rendered once for each
+     * context in which they are written. The output is the same as with
+     * {@link #writeChildNodes(Node)}, but the nodes are only walked the first
+     * time they are written in a given context.
+     */
+    void writeChildNodes(ChildNodesMarkup childNodesMarkup) throws IOException {
+        Assert.notNull(childNodesMarkup, "childNodesMarkup");
+        if (!childNodesMarkup.mHasContent) return;
+
+        // the first child would close the start tag; the pending attributes
+        // are then written and do not have to be part of the context
+        closeStartTag();
+
+        Context context = new Context(this);
+        Rendering rendering = childNodesMarkup.getRendering(context, this);
+        mWriter.write(rendering.mMarkup);
+        rendering.restore(this);
+    }
+
+    /**
+     * Flushes the output written so far to the underlying stream.
+     */
+    public void flush() throws IOException {
+        mWriter.flush();
+    }
+
+    /**
+     * Writes markup as is. The markup must be consistent with the state of the
+     * writer, which must then be updated with {@link #setState(State)}.
+     */
+    void writeMarkup(String markup) throws IOException {
+        mWriter.write(markup);
+    }
+
+    /**
+     * Writes an attribute value escaped as by
+     * {@link #writeAttribute(String, String)}, without the quotes.
+     */
+    void writeAttributeValue(String value) throws IOException {
+        for (int index = 0; index < value.length(); index++) {
+            char character = value.charAt(index);
+            switch (character) {
+                case '&':
+                    mWriter.write("&amp;");
+                    break;
+                case '<':
+                    mWriter.write("&lt;");
+                    break;
+                case '>':
+                    mWriter.write("&gt;");
+                    break;
+                case '"':
+                    mWriter.write("&quot;");
+                    break;
+                case '\n':
+                case '\t':
+                case '\r':
+                    writeCharacterReference(mWriter, character);
+                    break;
+                default:
+                    index = writeCharacter(mWriter, value, index);
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the writer state, i.e. everything but the output
+     * written so far.
+     */
+    State getState() {
+        return new State(this);
+    }
+
+    /**
+     * Restores a state previously taken from a writer having the same
+     * indentation mode.
+     */
+    void setState(State state) {
+        if (state.mIndenting != mIndenting) throw new IllegalArgumentException("Incompatible indentation mode.");
+        state.restore(this);
+    }
+
+    private boolean isIndentingContent() {
+        return mIndenting && !mElementNames.isEmpty();
+    }
+
+    private void indent(int depth) throws IOException {
+        if (!mIndenting) return;
+
+        if (mStartNewLine) {
+            mWriter.write(LINE_SEPARATOR);
+        }
+
+        for (int index = depth * INDENT_AMOUNT; index > 0; index--) {
+            mWriter.write(' ');
+        }
+    }
+
+    private void closeStartTag() throws IOException {
+        if (!mStartTagOpen) return;
+        writeAttributes();
+        mWriter.write('>');
+        mStartTagOpen = false;
+    }
+
+    private void writeAttributes() throws IOException {
+        for (int index = 0; index < mNamespaceDeclarationNames.size(); index++) {
+            writeAttributeString(mNamespaceDeclarationNames.get(index), mNamespaceDeclarationValues.get(index));
+        }
+
+        int attributeCount = mAttributeNames.size();
+        if (attributeCount == 1) {
+            writeAttributeString(mAttributeNames.get(0), mAttributeValues.get(0));
+        } else if (attributeCount > 1) {
+            SortedMap<String, String> sortedAttributes = new TreeMap<String, String>();
+            for (int index = 0; index < attributeCount; index++) {
+                sortedAttributes.put(mAttributeNames.get(index), mAttributeValues.get(index));
+            }
+
+            for (Map.Entry<String, String> attribute : sortedAttributes.entrySet()) {
+                writeAttributeString(attribute.getKey(), attribute.getValue());
+            }
+        }
+
+        mNamespaceDeclarationNames.clear();
+        mNamespaceDeclarationValues.clear();
+        mAttributeNames.clear();
+        mAttributeValues.clear();
+    }
+
+    private void writeAttributeString(String name, String value) throws IOException {
+        mWriter.write(' ');
+        mWriter.write(name);
+        mWriter.write("=\"");
+        writeAttributeValue(value);
+        mWriter.write('"');
+    }
+
+    private void appendEscapedText(String text) throws IOException {
+        for (int index = 0; index < text.length(); index++) {
+            char character = text.charAt(index);
+            switch (character) {
+                case '&':
+                    mPendingText.append("&amp;");
+                    break;
+                case '<':
+                    mPendingText.append("&lt;");
+                    break;
+                case '>':
+                    mPendingText.append("&gt;");
+                    break;
+                case '\r':
+                    mPendingText.append("&#13;");
+                    break;
+                case '\n':
+                case '\t':
+                    mPendingText.append(character);
+                    break;
+                default:
+                    if (needsCharacterReference(character) || Character.isHighSurrogate(character)
+                        && index + 1 < text.length()
+                        && Character.isLowSurrogate(text.charAt(index + 1))) {
+                        int codePoint = text.codePointAt(index);
+                        mPendingText.append("&#").append(codePoint).append(';');
+                        index += Character.charCount(codePoint) - 1;
+                    } else {
+                        mPendingText.append(character);
+                    }
+            }
+        }
+    }
+
+    private void flushText() throws IOException {
+        if (mPendingText.length() == 0) return;
+        mChildCount++;
+
+        int start = 0;
+        if (isIndentingContent() && mChildCount > 1) {
+            indent(mElementNames.size());
+            mStartNewLine = true;
+            while (start < mPendingText.length() && mPendingText.charAt(start) == LINE_SEPARATOR) {
+                start++;
+            }
+        }
+
+        mWriter.append(mPendingText, start, mPendingText.length());
+        mPendingText.setLength(0);
+        mPreviousWasText = true;
+    }
+
+    private void bindNamespace(String prefix, String uri) {
+        mNamespacePrefixes.add(prefix);
+        mNamespaceUris.add(uri);
+        mNamespaceDepths.push(mElementNames.size());
+    }
+
+    private void unbindNamespaces(int depth) {
+        while (!mNamespaceDepths.isEmpty() && mNamespaceDepths.peek() == depth) {
+            mNamespaceDepths.pop();
+            mNamespacePrefixes.remove(mNamespacePrefixes.size() - 1);
+            mNamespaceUris.remove(mNamespaceUris.size() - 1);
+        }
+    }
+
+    private static boolean isNamespaceDeclaration(String attributeName) {
+        return attributeName.equals(XMLConstants.XMLNS_ATTRIBUTE) || attributeName.startsWith(XMLNS_PREFIX);
+    }
+
+    private static String getDeclaredPrefix(String namespaceDeclarationName) {
+        if (namespaceDeclarationName.equals(XMLConstants.XMLNS_ATTRIBUTE)) return XMLConstants.DEFAULT_NS_PREFIX;
+        return namespaceDeclarationName.substring(XMLNS_PREFIX.length());
+    }
+
+    private String getNamespaceUri(String prefix) {
+        for (int index = mNamespacePrefixes.size() - 1; index >= 0; index--) {
+            if (mNamespacePrefixes.get(index).equals(prefix)) return mNamespaceUris.get(index);
+        }
+
+        if (prefix.equals(XMLConstants.XML_NS_PREFIX)) return XMLConstants.XML_NS_URI;
+        return null;
+    }
+
+    private static int writeCharacter(Writer writer, String string, int index) throws IOException {
+        char character = string.charAt(index);
+        if (needsCharacterReference(character)) {
+            writeCharacterReference(writer, character);
+        } else if (Character.isHighSurrogate(character)
+                   && index + 1 < string.length()
+                   && Character.isLowSurrogate(string.charAt(index + 1))) {
+            writeCharacterReference(writer, string.codePointAt(index));
+            return index + 1;
+        } else {
+            writer.write(character);
+        }
+        return index;
+    }
+
+    private static void writeCharacterReference(Writer writer, int codePoint) throws IOException {
+        writer.write("&#");
+        writer.write(Integer.toString(codePoint));
+        writer.write(';');
+    }
+
+    private static boolean needsCharacterReference(char character) {
+        // C0 controls other than tab, line feed and carriage return, delete and
+        // C1 controls
+        return character < 0x20 && character != '\t' && character != '\n' && character != '\r'
+               || character >= 0x7F
+               && character <= 0x9F;
+    }
+
+    private static boolean isWhitespace(String text) {
+        for (int index = 0; index < text.length(); index++) {
+            char character = text.charAt(index);
+            if (character != ' ' && character != '\t' && character != '\n' && character != '\r') return false;
+        }
+        return true;
+    }
+
+    /**
+     * Immutable snapshot of the state of a {@link VoiceXmlWriter}.
+     */
+    static final class State {
+        private final boolean mIndenting;
+        private final String mPendingText;
+        private final List<String> mElementNames;
+        private final IntStack mChildCounts;
+        private final List<String> mNamespacePrefixes;
+        private final List<String> mNamespaceUris;
+        private final IntStack mNamespaceDepths;
+        private final List<String> mNamespaceDeclarationNames;
+        private final List<String> mNamespaceDeclarationValues;
+        private final List<String> mAttributeNames;
+        private final List<String> mAttributeValues;
+        private final boolean mStartTagOpen;
+        private final boolean mStartNewLine;
+        private final boolean mPreviousWasText;
+        private final int mChildCount;
+
+        State(VoiceXmlWriter writer) {
+            mIndenting = writer.mIndenting;
+            mPendingText = writer.mPendingText.toString();
+            mElementNames = new ArrayList<String>(writer.mElementNames);
+            mChildCounts = writer.mChildCounts.copy();
+            mNamespacePrefixes = new ArrayList<String>(writer.mNamespacePrefixes);
+            mNamespaceUris = new ArrayList<String>(writer.mNamespaceUris);
+            mNamespaceDepths = writer.mNamespaceDepths.copy();
+            mNamespaceDeclarationNames = new ArrayList<String>(writer.mNamespaceDeclarationNames);
+            mNamespaceDeclarationValues = new ArrayList<String>(writer.mNamespaceDeclarationValues);
+            mAttributeNames = new ArrayList<String>(writer.mAttributeNames);
+            mAttributeValues = new ArrayList<String>(writer.mAttributeValues);
+            mStartTagOpen = writer.mStartTagOpen;
+            mStartNewLine = writer.mStartNewLine;
+            mPreviousWasText = writer.mPreviousWasText;
+            mChildCount = writer.mChildCount;
+        }
+
+        void restore(VoiceXmlWriter writer) {
+            writer.mPendingText.setLength(0);
+            writer.mPendingText.append(mPendingText);
+            set(writer.mElementNames, mElementNames);
+            writer.mChildCounts.set(mChildCounts);
+            set(writer.mNamespacePrefixes, mNamespacePrefixes);
+            set(writer.mNamespaceUris, mNamespaceUris);
+            writer.mNamespaceDepths.set(mNamespaceDepths);
+            set(writer.mNamespaceDeclarationNames, mNamespaceDeclarationNames);
+            set(writer.mNamespaceDeclarationValues, mNamespaceDeclarationValues);
+            set(writer.mAttributeNames, mAttributeNames);
+            set(writer.mAttributeValues, mAttributeValues);
+            writer.mStartTagOpen = mStartTagOpen;
+            writer.mStartNewLine = mStartNewLine;
+            writer.mPreviousWasText = mPreviousWasText;
+            writer.mChildCount = mChildCount;
+        }
+
+        private static void set(List<String> target, List<String> source) {
+            target.clear();
+            target.addAll(source);
+        }
+    }
+
+    /**
+     * Markup of the children of a DOM node that is never modified, rendered
+     * once for each writer {@link Context}. At most {@value #CONTEXT_CAPACITY}
+     * renderings are kept; in other contexts, the children are rendered each
+     * time they are written.
+     * <p>
+     * This class is thread-safe.
+     */
+    static final class ChildNodesMarkup {
+        static final int CONTEXT_CAPACITY = 16;
+
+        private final Node mNode;
+        private final boolean mHasContent;
+        private final ConcurrentMap<Context, Rendering> mRenderings = new ConcurrentHashMap<Context, Rendering>();
+
+        ChildNodesMarkup(Node node) {
+            Assert.notNull(node, "node");
+            mNode = node;
+            mHasContent = hasContent(node);
+        }
+
+        private Rendering getRendering(Context context, VoiceXmlWriter writer) throws IOException {
+            Rendering rendering = mRenderings.get(context);
+            if (rendering != null) return rendering;
+
+            rendering = render(writer);
+            if (mRenderings.size() < CONTEXT_CAPACITY) {
+                mRenderings.putIfAbsent(context, rendering);
+            }
+            return rendering;
+        }
+
+        private Rendering render(VoiceXmlWriter writer) throws IOException {
+            StringWriter markup = new StringWriter();
+            VoiceXmlWriter renderingWriter = new VoiceXmlWriter(markup, writer.mIndenting);
+            writer.getState().restore(renderingWriter);
+
+            // DOM implementations do not support concurrent reads
+            synchronized (this) {
+                renderingWriter.writeChildNodes(mNode);
+            }
+            renderingWriter.flush();
+            return new Rendering(markup.toString(), renderingWriter);
+        }
+
+        /**
+         * Tells whether writing the children of a node writes anything. Text
+         * made of whitespace only, empty CDATA sections and document types
+         * are not written.
+         */
+        private static boolean hasContent(Node node) {
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                switch (child.getNodeType()) {
+                    case Node.ELEMENT_NODE:
+                    case Node.COMMENT_NODE:
+                    case Node.PROCESSING_INSTRUCTION_NODE:
+                    case Node.ENTITY_REFERENCE_NODE:
+                        return true;
+                    case Node.TEXT_NODE:
+                        if (!isWhitespace(child.getNodeValue())) return true;
+                        break;
+                    case Node.CDATA_SECTION_NODE:
+                        if (!child.getNodeValue().isEmpty()) return true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Part of the state of a {@link VoiceXmlWriter} with a closed start tag
+     * that determines how a balanced sequence of nodes is written: the names
+     * of the open elements and the declaring depths of the namespace bindings
+     * do not matter, only their number and the bindings themselves.
+     */
+    private static final class Context {
+        private final boolean mIndenting;
+        private final String mPendingText;
+        private final int mDepth;
+        private final List<String> mNamespacePrefixes;
+        private final List<String> mNamespaceUris;
+        private final boolean mStartNewLine;
+        private final boolean mPreviousWasText;
+        private final int mChildCount;
+        private final int mHashCode;
+
+        Context(VoiceXmlWriter writer) {
+            mIndenting = writer.mIndenting;
+            mPendingText = writer.mPendingText.toString();
+            mDepth = writer.mElementNames.size();
+            mNamespacePrefixes = new ArrayList<String>(writer.mNamespacePrefixes);
+            mNamespaceUris = new ArrayList<String>(writer.mNamespaceUris);
+            mStartNewLine = writer.mStartNewLine;
+            mPreviousWasText = writer.mPreviousWasText;
+            mChildCount = writer.mChildCount;
+            mHashCode = computeHashCode();
+        }
+
+        private int computeHashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + (mIndenting ? 1231 : 1237);
+            result = prime * result + mPendingText.hashCode();
+            result = prime * result + mDepth;
+            result = prime * result + mNamespacePrefixes.hashCode();
+            result = prime * result + mNamespaceUris.hashCode();
+            result = prime * result + (mStartNewLine ? 1231 : 1237);
+            result = prime * result + (mPreviousWasText ? 1231 : 1237);
+            result = prime * result + mChildCount;
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null) return false;
+            if (getClass() != obj.getClass()) return false;
+            Context other = (Context) obj;
+            if (mHashCode != other.mHashCode) return false;
+            if (mIndenting != other.mIndenting) return false;
+            if (mDepth != other.mDepth) return false;
+            if (mStartNewLine != other.mStartNewLine) return false;
+            if (mPreviousWasText != other.mPreviousWasText) return false;
+            if (mChildCount != other.mChildCount) return false;
+            if (!mPendingText.equals(other.mPendingText)) return false;
+            if (!mNamespacePrefixes.equals(other.mNamespacePrefixes)) return false;
+            if (!mNamespaceUris.equals(other.mNamespaceUris)) return false;
+            return true;
+        }
+    }
+
+    /**
+     * Markup of a balanced sequence of nodes and the part of the writer state
+     * it changes.
+     */
+    private static final class Rendering {
+        private final String mMarkup;
+        private final String mPendingText;
+        private final boolean mStartNewLine;
+        private final boolean mPreviousWasText;
+        private final int mChildCount;
+
+        Rendering(String markup, VoiceXmlWriter writer) {
+            mMarkup = markup;
+            mPendingText = writer.mPendingText.toString();
+            mStartNewLine = writer.mStartNewLine;
+            mPreviousWasText = writer.mPreviousWasText;
+            mChildCount = writer.mChildCount;
+        }
+
+        void restore(VoiceXmlWriter writer) {
+            writer.mPendingText.setLength(0);
+            writer.mPendingText.append(mPendingText);
+            writer.mStartNewLine = mStartNewLine;
+            writer.mPreviousWasText = mPreviousWasText;
+            writer.mChildCount = mChildCount;
+        }
+    }
+
+    private static final class IntStack {
+        private int[] mValues = new int[16];
+        private int mSize;
+
+        IntStack copy() {
+            IntStack copy = new IntStack();
+            copy.set(this);
+            return copy;
+        }
+
+        void set(IntStack source) {
+            mValues = Arrays.copyOf(source.mValues, source.mValues.length);
+            mSize = source.mSize;
+        }
+
+        void push(int value) {
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize++] = value;
+        }
+
+        int pop() {
+            return mValues[--mSize];
+        }
+
+        int peek() {
+            return mValues[mSize - 1];
+        }
+
+        boolean isEmpty() {
+            return mSize == 0;
+        }
+    }
+}
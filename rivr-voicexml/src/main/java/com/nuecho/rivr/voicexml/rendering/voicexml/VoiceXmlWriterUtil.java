@@ -0,0 +1,438 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.rendering.voicexml;
+
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+
+import java.io.*;
+import java.text.*;
+import java.util.*;
+import java.util.Map.Entry;
+
+import org.w3c.dom.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.dialogue.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.errorhandling.*;
+import com.nuecho.rivr.voicexml.turn.*;
+import com.nuecho.rivr.voicexml.turn.output.*;
+import com.nuecho.rivr.voicexml.turn.output.audio.*;
+import com.nuecho.rivr.voicexml.turn.output.fetch.*;
+import com.nuecho.rivr.voicexml.turn.output.grammar.*;
+
+/**
+ * Streaming counterpart of {@link VoiceXmlDomUtil}: VoiceXML document
+ * generation methods writing to a {@link VoiceXmlWriter}. Each method produces
+ * the same markup as its {@link VoiceXmlDomUtil} equivalent.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class VoiceXmlWriterUtil {
+
+    private VoiceXmlWriterUtil() {
+        //utility class: instantiation forbidden
+    }
+
+    /**
+     * Opens the main form of the document. The caller is responsible for
+     * closing it.
+     */
+    public static void writeFormStart(VoiceXmlWriter writer) throws IOException {
+        writer.writeStartElement(FORM_ELEMENT);
+        writer.writeAttribute(ID_ATTRIBUTE, FORM_ID);
+    }
+
+    public static void writeAssignation(VoiceXmlWriter writer, String variableName, String expression)
+            throws IOException {
+        writer.writeStartElement(ASSIGN_ELEMENT);
+        writer.writeAttribute(NAME_ATTRIBUTE, variableName);
+        writer.writeAttribute(EXPR_ATTRIBUTE, expression);
+        writer.writeEndElement();
+    }
+
+    public static void writeRessourceFetchConfiguration(VoiceXmlWriter writer, FetchConfiguration fetchConfiguration) {
+        if (fetchConfiguration != null) {
+            writeCacheControlDurationAttribute(writer, MAX_AGE_ATTRIBUTE, fetchConfiguration.getMaxAge());
+            writeCacheControlDurationAttribute(writer, MAX_STALE_ATTRIBUTE, fetchConfiguration.getMaxStale());
+            FetchHint fetchHint = fetchConfiguration.getFetchHint();
+            if (fetchHint != null) {
+                writer.writeAttribute(FETCH_HINT_ATTRIBUTE, fetchHint.name());
+            }
+            writeDurationAttribute(writer, FETCH_TIMEOUT_ATTRIBUTE, fetchConfiguration.getTimeOut());
+        }
+    }
+
+    public static void writePrompt(VoiceXmlWriter writer,
+                                   String language,
+                                   VoiceXmlDialogueContext voiceXmlDialogueContext,
+                                   Boolean bargeIn,
+                                   List<? extends AudioItem> audioItems)
+            throws IOException, VoiceXmlDocumentRenderingException {
+        writer.writeStartElement(PROMPT_ATTRIBUTE);
+        writeBooleanAttribute(writer, BARGE_IN_PROPERTY, bargeIn);
+
+        String documentLanguage = voiceXmlDialogueContext.getLanguage();
+        if (language != null && !language.equals(documentLanguage)) {
+            writer.writeAttribute(XML_LANGUAGE_ATTRIBUTE, language);
+        }
+
+        writeAudioItems(writer, audioItems);
+        writer.writeEndElement();
+    }
+
+    public static void writeAudioItems(VoiceXmlWriter writer, List<? extends AudioItem> audioItems)
+            throws IOException, VoiceXmlDocumentRenderingException {
+        boolean lastItemWasText = false;
+        for (AudioItem audioItem : audioItems) {
+            if (audioItem instanceof AudioFile) {
+                AudioFile audioFile = (AudioFile) audioItem;
+                writer.writeStartElement(AUDIO_ELEMENT);
+
+                //src and expr are mutually exclusive, this is enforced in AudioFile.
+                writer.writeAttribute(SRC_ATTRIBUTE, audioFile.getLocation());
+                writer.writeAttribute(EXPR_ATTRIBUTE, audioFile.getExpression());
+                writeRessourceFetchConfiguration(writer, audioFile.getFetchConfiguration());
+
+                SpeechSynthesis alternate = audioFile.getAlternate();
+
+                if (alternate != null) {
+                    if (alternate.isSsml()) {
+                        writeSsml(writer, alternate);
+                        lastItemWasText = false;
+                    } else {
+                        writer.writeText(alternate.getText());
+                        lastItemWasText = true;
+                    }
+                }
+
+                writer.writeEndElement();
+            } else if (audioItem instanceof SpeechSynthesis) {
+                SpeechSynthesis speechSynthesis = (SpeechSynthesis) audioItem;
+
+                if (speechSynthesis.isSsml()) {
+                    writeSsml(writer, speechSynthesis);
+                    lastItemWasText = false;
+                } else {
+                    String spaceIfRequired = lastItemWasText ? " " : "";
+                    writer.writeText(spaceIfRequired + speechSynthesis.getText());
+                    lastItemWasText = true;
+                }
+            } else if (audioItem instanceof Pause) {
+                Pause pause = (Pause) audioItem;
+                writer.writeStartElement(BREAK_ELEMENT);
+                writeDurationAttribute(writer, TIME_ATTRIBUTE, pause.getDuration());
+                writer.writeEndElement();
+                lastItemWasText = false;
+            } else if (audioItem instanceof Mark) {
+                Mark mark = (Mark) audioItem;
+                writer.writeStartElement(MARK_ELEMENT);
+                writer.writeAttribute(NAME_ATTRIBUTE, mark.getName());
+                writer.writeEndElement();
+                lastItemWasText = false;
+            } else throw new VoiceXmlDocumentRenderingException("Cannot handle prompt rendering element of type '"
+                                                                + audioItem.getClass()
+                                                                + "'");
+        }
+    }
+
+    private static void writeSsml(VoiceXmlWriter writer, SpeechSynthesis speechSynthesis) throws IOException {
+        SharedXmlFragment sharedFragment = speechSynthesis.getSharedFragment();
+        if (sharedFragment != null) {
+            sharedFragment.writeContent(writer);
+        } else {
+            writer.writeChildNodes(speechSynthesis.getDocumentFragment());
+        }
+    }
+
+    public static void writeCacheControlDurationProperty(VoiceXmlWriter writer, String propertyName, Duration value)
+            throws IOException {
+        if (value != null) {
+            writeProperty(writer, propertyName, String.valueOf(value.getMilliseconds() / 1000));
+        }
+    }
+
+    public static void writeCacheControlDurationAttribute(VoiceXmlWriter writer, String attributeName, Duration value) {
+        if (value != null) {
+            writer.writeAttribute(attributeName, String.valueOf(value.getMilliseconds() / 1000));
+        }
+    }
+
+    public static void writeDurationProperty(VoiceXmlWriter writer, String propertyName, Duration value)
+            throws IOException {
+        if (value != null) {
+            writeProperty(writer, propertyName, value.getMilliseconds() + MILLISECOND_UNIT_SUFFIX);
+        }
+    }
+
+    public static void writeDurationAttribute(VoiceXmlWriter writer, String attributeName, Duration value) {
+        if (value != null) {
+            writer.writeAttribute(attributeName, value.getMilliseconds() + MILLISECOND_UNIT_SUFFIX);
+        }
+    }
+
+    public static void writeBooleanAttribute(VoiceXmlWriter writer, String attributeName, Boolean value) {
+        if (value != null) {
+            writer.writeAttribute(attributeName, value.booleanValue() ? TRUE : FALSE);
+        }
+    }
+
+    public static void writeNumberProperty(VoiceXmlWriter writer, String propertyName, Number value)
+            throws IOException {
+        if (value != null) {
+            writeProperty(writer, propertyName, value.toString());
+        }
+    }
+
+    public static void writeProperty(VoiceXmlWriter writer, String propertyName, String propertyValue)
+            throws IOException {
+        Assert.notNull(propertyName, "propertyName");
+
+        if (propertyValue != null) {
+            writer.writeStartElement(PROPERTY_ELEMENT);
+            writer.writeAttribute(NAME_ATTRIBUTE, propertyName);
+            writer.writeAttribute(VALUE_ELEMENT, propertyValue);
+            writer.writeEndElement();
+        }
+    }
+
+    public static void writeVariables(VoiceXmlWriter writer, VariableList variableList) throws IOException {
+        for (Entry<String, String> entry : variableList) {
+            writeVarElement(writer, entry.getKey(), entry.getValue());
+        }
+    }
+
+    public static void writeVarElement(VoiceXmlWriter writer, String name, String expr) throws IOException {
+        writer.writeStartElement(VAR_ELEMENT);
+        writer.writeAttribute(NAME_ATTRIBUTE, name);
+        writer.writeAttribute(EXPR_ATTRIBUTE, expr);
+        writer.writeEndElement();
+    }
+
+    /**
+     * Streaming counterpart of
+     * {@link VoiceXmlDomUtil#addNamelist(Element, Element, VariableList)}:
+     * writes a <code>var</code> element for each variable and returns the value
+     * of the <code>namelist</code> attribute to set on the element written
+     * next.
+     *
+     * @return the space-separated variable names or <code>null</code> if there
+     *         are no variables.
+     */
+    public static String writeNamelistVariables(VoiceXmlWriter writer, VariableList variables) throws IOException {
+        if (variables == null) return null;
+        if (variables.isEmpty()) return null;
+
+        List<String> variableNames = new ArrayList<String>();
+        for (Entry<String, String> entry : variables) {
+            variableNames.add(entry.getKey());
+            writeVarElement(writer, entry.getKey(), entry.getValue());
+        }
+
+        return StringUtils.join(variableNames, " ");
+    }
+
+    public static void writeDocumentFetchConfiguration(VoiceXmlWriter writer,
+                                                       VoiceXmlDialogueContext voiceXmlDialogueContext) {
+        DefaultFetchConfiguration defaultFetchConfiguration = voiceXmlDialogueContext.getFetchConfiguration();
+        if (defaultFetchConfiguration == null) return;
+
+        writeDocumentFetchConfiguration(writer, defaultFetchConfiguration.getDocumentFetchConfiguration());
+    }
+
+    public static void writeDocumentFetchConfiguration(VoiceXmlWriter writer,
+                                                       DocumentFetchConfiguration submitTurnFetchConfiguration) {
+        if (submitTurnFetchConfiguration == null) return;
+        writeDurationAttribute(writer, FETCH_TIMEOUT_PROPERTY, submitTurnFetchConfiguration.getTimeOut());
+        writer.writeAttribute(FETCH_AUDIO_ATTRIBUTE, submitTurnFetchConfiguration.getFetchAudio());
+    }
+
+    public static void writeGotoSubmit(VoiceXmlWriter writer) throws IOException {
+        writer.writeStartElement(GOTO_ELEMENT);
+        writer.writeAttribute(NEXT_ATTRIBUTE, "#" + SUBMIT_FORM_ID);
+        writer.writeEndElement();
+    }
+
+    public static void writeGotoFatalHandler(VoiceXmlWriter writer) throws IOException {
+        writer.writeStartElement(GOTO_ELEMENT);
+        writer.writeAttribute(NEXT_ATTRIBUTE, "#" + FATAL_ERROR_HANDLER_FORM_ID);
+        writer.writeEndElement();
+    }
+
+    public static void writeScript(VoiceXmlWriter writer, String script) throws IOException {
+        writer.writeStartElement(SCRIPT_ELEMENT);
+        writer.writeText(script);
+        writer.writeEndElement();
+    }
+
+    public static void writeSubmitForm(VoiceXmlWriter writer,
+                                       String submitPath,
+                                       DocumentFetchConfiguration fetchConfiguration) throws IOException {
+        writer.writeStartElement(FORM_ELEMENT);
+        writer.writeAttribute(ID_ATTRIBUTE, SUBMIT_FORM_ID);
+
+        writer.writeStartElement(BLOCK_ELEMENT);
+        writeVarElement(writer, INPUT_TURN_VARIABLE, RIVR_SCOPE_OBJECT
+                                                     + ".toJson("
+                                                     + RIVR_INPUT_TURN_SCOPE_OBJECT
+                                                     + ")");
+
+        writer.writeStartElement(IF_ELEMENT);
+        writer.writeAttribute(COND_ATTRIBUTE, RIVR_SCOPE_OBJECT
+                                              + ".hasRecording("
+                                              + RIVR_INPUT_TURN_SCOPE_OBJECT
+                                              + ")");
+        writeVarElement(writer, RECORDING_VARIABLE, RESULT_RECORDING_METADATA_DATA_SCOPE_OBJECT);
+        writeAssignation(writer, RESULT_RECORDING_METADATA_DATA_SCOPE_OBJECT, "undefined");
+
+        writeSubmitElementStart(writer, fetchConfiguration, submitPath, INPUT_TURN_VARIABLE, RECORDING_VARIABLE);
+        writer.writeAttribute(ENCTYPE_ATTRIBUTE, MULTIPART_FORM_DATA);
+        writer.writeEndElement();
+
+        writer.writeStartElement(ELSE_ELEMENT);
+        writer.writeEndElement();
+
+        writeSubmitElementStart(writer, fetchConfiguration, submitPath, INPUT_TURN_VARIABLE);
+        writer.writeEndElement();
+
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private static void writeSubmitElementStart(VoiceXmlWriter writer,
+                                                DocumentFetchConfiguration fetchConfiguration,
+                                                String submitPath,
+                                                String... nameList) throws IOException {
+        writer.writeStartElement(SUBMIT_ELEMENT);
+        writer.writeAttribute(NEXT_ATTRIBUTE, submitPath);
+        writer.writeAttribute(NAME_LIST_ATTRIBUTE, StringUtils.join(nameList, " "));
+        writer.writeAttribute(METHOD_ATTRIBUTE, SubmitMethod.post.name());
+        writeDocumentFetchConfiguration(writer, fetchConfiguration);
+    }
+
+    /**
+     * Tells if the fatal error form of the dialogue context can be written
+     * without DOM. This is the case for the {@link FatalErrorFormFactory}
+     * implementations provided by Rivr. Subclasses and other implementations
+     * require a DOM.
+     */
+    public static boolean canWriteFatalErrorHandlerForm(VoiceXmlDialogueContext dialogueContext) {
+        return getFatalErrorElementName(dialogueContext.getFatalErrorFormFactory()) != null;
+    }
+
+    static void writeFatalErrorHandlerForm(VoiceXmlWriter writer, String elementName) throws IOException {
+        writer.writeStartElement(FORM_ELEMENT);
+        writer.writeAttribute(ID_ATTRIBUTE, FATAL_ERROR_HANDLER_FORM_ID);
+        writer.writeStartElement(BLOCK_ELEMENT);
+        writer.writeStartElement(elementName);
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    static String getFatalErrorElementName(FatalErrorFormFactory fatalErrorFormFactory) {
+        Class<?> factoryClass = fatalErrorFormFactory.getClass();
+        if (factoryClass == ExitFatalErrorFormFactory.class) return EXIT_ELEMENT;
+        if (factoryClass == ReturnFatalErrorFormFactory.class) return RETURN_ELEMENT;
+        return null;
+    }
+
+    public static void writeDtmfRecognition(VoiceXmlWriter writer, DtmfRecognition dtmfRecognition)
+            throws IOException, VoiceXmlDocumentRenderingException {
+        if (dtmfRecognition == null) return;
+
+        writeGrammars(writer, dtmfRecognition.getGrammarItems(), DTMF_INPUT_MODE);
+
+        writeDurationProperty(writer, INTER_DIGIT_TIMEOUT_PROPERTY, dtmfRecognition.getInterDigitTimeout());
+
+        writeDurationProperty(writer, TERM_TIMEOUT_PROPERTY, dtmfRecognition.getTermTimeout());
+
+        writeProperty(writer, TERM_CHAR_PROPERTY, dtmfRecognition.getTermChar());
+
+        for (String propertyName : dtmfRecognition.getPropertyNames()) {
+            writeProperty(writer, propertyName, dtmfRecognition.getProperty(propertyName));
+        }
+    }
+
+    public static void writeSpeechRecognition(VoiceXmlWriter writer, SpeechRecognition speechRecognition)
+            throws IOException, VoiceXmlDocumentRenderingException {
+        if (speechRecognition == null) return;
+
+        writeGrammars(writer, speechRecognition.getGrammarItems(), VOICE_INPUT_MODE);
+
+        writeDurationProperty(writer, COMPLETE_TIMEOUT_PROPERTY, speechRecognition.getCompleteTimeout());
+
+        writeDurationProperty(writer, INCOMPLETE_TIMEOUT_PROPERTY, speechRecognition.getIncompleteTimeout());
+
+        writeDurationProperty(writer, MAX_SPEECH_TIMEOUT_PROPERTY, speechRecognition.getMaxSpeechTimeout());
+
+        writeNumberProperty(writer, MAX_N_BEST_PROPERTY, speechRecognition.getMaxNBest());
+
+        writeNumberProperty(writer, CONFIDENCE_LEVEL_PROPERTY, speechRecognition.getConfidenceLevel());
+
+        writeNumberProperty(writer, SENSITIVITY_PROPERTY, speechRecognition.getSensitivity());
+
+        writeNumberProperty(writer, SPEED_VERSUS_ACCURACY_PROPERTY, speechRecognition.getSpeedVersusAccuracy());
+
+        for (String propertyName : speechRecognition.getPropertyNames()) {
+            writeProperty(writer, propertyName, speechRecognition.getProperty(propertyName));
+        }
+    }
+
+    public static void writeGrammars(VoiceXmlWriter writer, List<? extends GrammarItem> grammarItems, String mode)
+            throws IOException, VoiceXmlDocumentRenderingException {
+        for (GrammarItem grammarItem : grammarItems) {
+            Node content = null;
+            SharedXmlFragment sharedContent = null;
+            String cdata = null;
+
+            if (grammarItem instanceof GrammarReference) {
+                GrammarReference grammarReference = (GrammarReference) grammarItem;
+                writer.writeStartElement(GRAMMAR_ELEMENT);
+                writer.writeAttribute(SRC_ATTRIBUTE, grammarReference.getUri());
+                writeRessourceFetchConfiguration(writer, grammarReference.getFetchConfiguration());
+            } else if (grammarItem instanceof InlineStringGrammar) {
+                InlineStringGrammar inlineStringGrammar = (InlineStringGrammar) grammarItem;
+                writer.writeStartElement(GRAMMAR_ELEMENT);
+                writer.writeAttribute(BASE_ATTRIBUTE, inlineStringGrammar.getBase());
+                writer.writeAttribute(XML_LANGUAGE_ATTRIBUTE, inlineStringGrammar.getLanguage());
+                writer.writeAttribute(ROOT_ATTRIBUTE, inlineStringGrammar.getRoot());
+                writer.writeAttribute(TAG_FORMAT_ATTRIBUTE, inlineStringGrammar.getTagFormat());
+                writer.writeAttribute(VERSION_ATTRIBUTE, inlineStringGrammar.getVersion());
+                cdata = inlineStringGrammar.getSource();
+            } else if (grammarItem instanceof InlineXmlGrammar) {
+                InlineXmlGrammar inlineXmlGrammar = (InlineXmlGrammar) grammarItem;
+                Element documentRootElement = inlineXmlGrammar.getDocument().getDocumentElement();
+                if (!documentRootElement.getTagName().equals(GRAMMAR_ELEMENT))
+                    throw new VoiceXmlDocumentRenderingException("XML grammar root element must be 'gramar'");
+
+                writer.writeStartElement(documentRootElement);
+                sharedContent = inlineXmlGrammar.getSharedFragment();
+                if (sharedContent == null) {
+                    content = documentRootElement;
+                }
+            } else throw new AssertionError("Unsupported grammar item: " + grammarItem);
+
+            Double weight = grammarItem.getWeight();
+            if (weight != null) {
+                DecimalFormat weigthDecimalFormat = new DecimalFormat("#.##########");
+                double weightDoubleValue = weight.doubleValue();
+                writer.writeAttribute(WEIGHT_ATTRIBUTE, weigthDecimalFormat.format(weightDoubleValue));
+            }
+
+            writer.writeAttribute(TYPE_ATTRIBUTE, grammarItem.getMediaType());
+            writer.writeAttribute(MODE_ATTRIBUTE, mode);
+
+            if (sharedContent != null) {
+                sharedContent.writeContent(writer);
+            } else if (content != null) {
+                writer.writeChildNodes(content);
+            }
+            writer.writeCData(cdata);
+            writer.writeEndElement();
+        }
+    }
+}
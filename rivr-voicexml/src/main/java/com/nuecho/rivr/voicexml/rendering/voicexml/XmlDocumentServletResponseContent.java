@@ -4,8 +4,6 @@
 
 package com.nuecho.rivr.voicexml.rendering.voicexml;
 
-import static com.nuecho.rivr.core.util.DomUtils.*;
-
 import java.io.*;
 
 import org.w3c.dom.*;
@@ -15,19 +13,52 @@ import com.nuecho.rivr.core.util.*;
 
 /**
  * {@link ServletResponseContent} wrapping a {@link Document org.w3c.Document}.
+ * The document is serialized with a {@link VoiceXmlWriter}. When the document
+ * is serialized in compact mode, {@link #getContentAsString()} still returns
+ * the indented document.
+ * <p>
+ * The serialized document is held in a pooled {@link ResponseBuffer}, returned
+ * to the pool when the content is {@link #release() released}.
  * 
  * @author Nu Echo Inc.
  */
-public class XmlDocumentServletResponseContent implements ServletResponseContent {
+public class XmlDocumentServletResponseContent implements ReleasableServletResponseContent {
 
-    private final byte[] mContent;
+    private final ResponseBuffer mContent;
     private final String mContentType;
+    private final Document mCompactDocument;
 
     public XmlDocumentServletResponseContent(Document document, String contentType) throws IOException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        writeToOutputStream(document, byteArrayOutputStream, Encoding.UTF_8);
-        mContent = byteArrayOutputStream.toByteArray();
+        this(document, contentType, true);
+    }
+
+    /**
+     * @param indenting <code>true</code> to indent the document,
+     *            <code>false</code> to serialize it in compact mode.
+     * @since 1.0.13
+     */
+    public XmlDocumentServletResponseContent(Document document, String contentType, boolean indenting)
+            throws IOException {
+        mContent = serialize(document, indenting);
         mContentType = contentType;
+        mCompactDocument = indenting ? null : document;
+    }
+
+    private static ResponseBuffer serialize(Document document, boolean indenting) throws IOException {
+        ResponseBuffer buffer = new ResponseBuffer();
+        try {
+            VoiceXmlWriter writer = new VoiceXmlWriter(buffer, indenting);
+            writer.writeStartDocument();
+            writer.writeNode(document);
+            writer.writeEndDocument();
+            return buffer;
+        } catch (IOException exception) {
+            buffer.release();
+            throw exception;
+        } catch (RuntimeException exception) {
+            buffer.release();
+            throw exception;
+        }
     }
 
     @Override
@@ -37,15 +68,23 @@ public class XmlDocumentServletResponseContent implements ServletResponseContent
 
     @Override
     public void writeTo(OutputStream outputStream) throws IOException {
-        outputStream.write(mContent);
+        mContent.writeTo(outputStream);
     }
 
     @Override
     public String getContentAsString() {
         try {
-            return new String(mContent, Encoding.UTF_8.getId());
+            if (mCompactDocument == null) return new String(mContent.toByteArray(), Encoding.UTF_8.getId());
+            ResponseBuffer indentedContent = serialize(mCompactDocument, true);
+            try {
+                return new String(indentedContent.toByteArray(), Encoding.UTF_8.getId());
+            } finally {
+                indentedContent.release();
+            }
         } catch (UnsupportedEncodingException exception) {
             throw new AssertionError("Missing " + Encoding.UTF_8.getId() + " encoding.");
+        } catch (IOException exception) {
+            return "Unable to serialize document: " + exception.getMessage();
         }
     }
 
@@ -54,6 +93,14 @@ public class XmlDocumentServletResponseContent implements ServletResponseContent
      */
     @Override
     public Integer getContentLength() {
-        return mContent.length;
+        return mContent.size();
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    @Override
+    public void release() {
+        mContent.release();
     }
 }
\ No newline at end of file
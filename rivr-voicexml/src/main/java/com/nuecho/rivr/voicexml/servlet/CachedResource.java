@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import java.io.*;
+import java.security.*;
+import java.util.zip.*;
+
+import javax.servlet.http.*;
+
+import com.nuecho.rivr.core.servlet.*;
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * Response content computed once and served as is, with a strong
+ * <code>ETag</code> derived from the content. Conditional requests whose
+ * <code>If-None-Match</code> header matches the <code>ETag</code> are answered
+ * with <code>304 Not Modified</code>.
+ * <p>
+ * Textual content large enough to benefit from it is also compressed once with
+ * gzip. This variant is served to clients accepting it and has its own
+ * <code>ETag</code>.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+final class CachedResource {
+
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String VARY = "Vary";
+    private static final String ETAG = "ETag";
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
+    //below this size, the gzip header and trailer outweigh the gain
+    private static final int GZIP_MINIMUM_SIZE = 256;
+
+    private final byte[] mContent;
+    private final String mContentType;
+    private final String mDigest;
+    private final String mETag;
+    private final byte[] mGzipContent;
+    private final String mGzipETag;
+
+    public CachedResource(byte[] content, String contentType) {
+        Assert.notNull(content, "content");
+        Assert.notNull(contentType, "contentType");
+        mContent = content;
+        mContentType = contentType;
+        mDigest = getDigest(content);
+        mETag = "\"" + mDigest + "\"";
+        mGzipContent = isCompressible(contentType) ? gzip(content) : null;
+        mGzipETag = mGzipContent == null ? null : "\"" + mDigest + GZIP_ETAG_SUFFIX + "\"";
+    }
+
+    /**
+     * @return the hexadecimal MD5 digest of the content
+     */
+    public String getDigest() {
+        return mDigest;
+    }
+
+    /**
+     * Writes the content, or only the headers if the request is a conditional
+     * request matching the <code>ETag</code>. The gzip variant is written if
+     * there is one and the request accepts it.
+     */
+    public void writeTo(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        byte[] content = mContent;
+        String eTag = mETag;
+        if (mGzipContent != null) {
+            response.setHeader(VARY, ACCEPT_ENCODING);
+            if (ContentEncoding.GZIP.isAcceptedBy(request.getHeader(ACCEPT_ENCODING))) {
+                content = mGzipContent;
+                eTag = mGzipETag;
+            }
+        }
+
+        response.setHeader(ETAG, eTag);
+        if (matches(request.getHeader(IF_NONE_MATCH), eTag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (content == mGzipContent) {
+            response.setHeader(CONTENT_ENCODING, ContentEncoding.GZIP.getToken());
+        }
+        response.setContentType(mContentType);
+        response.setContentLength(content.length);
+        response.getOutputStream().write(content);
+    }
+
+    /**
+     * Tells if an <code>If-None-Match</code> header matches an
+     * <code>ETag</code>, using the weak comparison required for this header.
+     */
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) return false;
+
+        for (String entityTag : ifNoneMatch.split(",")) {
+            entityTag = entityTag.trim();
+            if (entityTag.equals("*")) return true;
+            if (entityTag.startsWith(WEAK_ETAG_PREFIX)) {
+                entityTag = entityTag.substring(WEAK_ETAG_PREFIX.length());
+            }
+            if (entityTag.equals(eTag)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/")
+               || type.endsWith("+xml")
+               || type.contains("/xml")
+               || type.contains("javascript")
+               || type.contains("json");
+    }
+
+    private static byte[] gzip(byte[] content) {
+        if (content.length < GZIP_MINIMUM_SIZE) return null;
+
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(content.length / 2);
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+            gzipOutputStream.write(content);
+            gzipOutputStream.close();
+            byte[] gzipContent = outputStream.toByteArray();
+            return gzipContent.length < content.length ? gzipContent : null;
+        } catch (IOException exception) {
+            throw new AssertionError(exception); // no I/O on a ByteArrayOutputStream
+        }
+    }
+
+    private static String getDigest(byte[] content) {
+        try {
+            return StringUtils.bytesToHex(MessageDigest.getInstance("MD5").digest(content));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new AssertionError(exception); // MD5 is required on every Java platform
+        }
+    }
+}
@@ -33,7 +33,7 @@ public class DefaultVoiceXmlRootDocumentFactory implements VoiceXmlRootDocumentF
         createVarElement(vxmlElement, RIVR_VARIABLE, "new Object()");
 
         Element scriptElement = DomUtils.appendNewElement(vxmlElement, SCRIPT_ELEMENT);
-        scriptElement.setAttribute(SRC_ATTRIBUTE, contextPath + servletPath + VoiceXmlDialogueServlet.RIVR_SCRIPT);
+        scriptElement.setAttribute(SRC_ATTRIBUTE, contextPath + servletPath + VoiceXmlDialogueServlet.getRivrScriptPath());
         return vxmlElement.getOwnerDocument();
     }
 
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link RecordingSink} writing each uploaded file to a new file of a
+ * directory with {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}.
+ * The returned location is a <code>file:</code> URI. Stored files are never
+ * deleted by Rivr.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class DirectoryRecordingSink implements RecordingSink {
+
+    private static final String FILE_PREFIX = "recording-";
+    private static final String DEFAULT_FILE_SUFFIX = ".bin";
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+
+    private final File mDirectory;
+
+    /**
+     * Creates a sink storing files in the system temporary directory.
+     */
+    public DirectoryRecordingSink() {
+        this(new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param directory the directory in which files are created. Cannot be
+     *            <code>null</code>.
+     */
+    public DirectoryRecordingSink(File directory) {
+        Assert.notNull(directory, "directory");
+        mDirectory = directory;
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    @Override
+    public URI store(String parameterName,
+                     String fileName,
+                     String contentType,
+                     Map<String, String> headers,
+                     ReadableByteChannel content) throws IOException {
+        File file = File.createTempFile(FILE_PREFIX, getSuffix(fileName), mDirectory);
+        FileOutputStream outputStream = new FileOutputStream(file);
+        boolean stored = false;
+        try {
+            FileChannel channel = outputStream.getChannel();
+            long position = 0;
+            long transferred;
+            while ((transferred = channel.transferFrom(content, position, TRANSFER_SIZE)) > 0) {
+                position += transferred;
+            }
+            stored = true;
+        } finally {
+            outputStream.close();
+            if (!stored) {
+                file.delete();
+            }
+        }
+
+        return file.toURI();
+    }
+
+    private static String getSuffix(String fileName) {
+        if (fileName == null) return DEFAULT_FILE_SUFFIX;
+
+        int dotIndex = fileName.lastIndexOf('.');
+        if (dotIndex < 0) return DEFAULT_FILE_SUFFIX;
+
+        String suffix = fileName.substring(dotIndex);
+        if (!suffix.matches("\\.[A-Za-z0-9]{1,8}")) return DEFAULT_FILE_SUFFIX;
+        return suffix;
+    }
+}
@@ -4,16 +4,32 @@
 
 package com.nuecho.rivr.voicexml.servlet;
 
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
 import java.util.*;
 
 import javax.json.*;
 
+import org.apache.commons.fileupload.disk.*;
+
 import com.nuecho.rivr.voicexml.util.json.*;
 
 /**
  * HTTP-uploaded file via <code>multipart/form-data</code>, typically the audio
  * file of a recording. This class contains the content type, the headers and
- * the data (ie. a byte array).
+ * the data.
+ * <p>
+ * The data is either held in memory or, when it exceeds the threshold
+ * configured on the {@link VoiceXmlInputTurnFactory}, stored in a temporary
+ * file. In both cases, it can be read without being copied in memory with
+ * {@link #getInputStream()} or {@link #openChannel()}. A temporary file is
+ * deleted by {@link #delete()} or, failing that, when the
+ * <code>FileUpload</code> is garbage collected.
+ * <p>
+ * When a {@link RecordingSink} is used, the data is not held by the
+ * <code>FileUpload</code> at all: it only carries the location where the sink
+ * stored the data (see {@link #getLocation()}).
  * 
  * @author Nu Echo Inc.
  */
@@ -22,16 +38,47 @@ public final class FileUpload implements JsonSerializable {
     private static final String SIZE_PROPERTY = "size";
     private static final String TYPE_PROPERTY = "type";
     private static final String FILENAME_PROPERTY = "filename";
+    private static final String LOCATION_PROPERTY = "location";
 
     private final String mName;
     private final String mContentType;
     private final byte[] mContent;
+    private final DiskFileItem mFileItem;
+    private final URI mLocation;
+    private final long mStoredSize;
     private final Map<String, String> mHeaders;
 
+    //JSON representation computed once
+    private volatile JsonValue mJson;
+    private volatile String mString;
+
     public FileUpload(String name, String contentType, byte[] content, Map<String, String> headers) {
         mName = name;
         mContentType = contentType;
         mContent = content;
+        mFileItem = null;
+        mLocation = null;
+        mStoredSize = 0;
+        mHeaders = headers;
+    }
+
+    FileUpload(String name, String contentType, DiskFileItem fileItem, Map<String, String> headers) {
+        mName = name;
+        mContentType = contentType;
+        mContent = null;
+        mFileItem = fileItem;
+        mLocation = null;
+        mStoredSize = 0;
+        mHeaders = headers;
+    }
+
+    FileUpload(String name, String contentType, URI location, long storedSize, Map<String, String> headers) {
+        mName = name;
+        mContentType = contentType;
+        mContent = null;
+        mFileItem = null;
+        mLocation = location;
+        mStoredSize = storedSize;
         mHeaders = headers;
     }
 
@@ -43,10 +90,109 @@ public final class FileUpload implements JsonSerializable {
         return mContentType;
     }
 
+    /**
+     * Gets the data as a byte array. If the data is stored in a temporary file,
+     * the whole file is read in memory on each call: prefer
+     * {@link #getInputStream()} or {@link #openChannel()} for large files.
+     * 
+     * @return the data, or <code>null</code> if the file could not be read or
+     *         if the data was stored by a {@link RecordingSink}
+     */
     public byte[] getContent() {
+        if (mFileItem != null) return mFileItem.get();
         return mContent;
     }
 
+    /**
+     * Opens a new stream on the data. The caller is responsible for closing
+     * it. If the data was stored by a {@link RecordingSink}, the stream is
+     * opened from the {@link #getLocation() location}, which requires a URL
+     * handler for its scheme.
+     * 
+     * @throws IOException if the data cannot be opened
+     * @since 1.0.13
+     */
+    public InputStream getInputStream() throws IOException {
+        if (mFileItem != null) return mFileItem.getInputStream();
+        if (mLocation != null) return mLocation.toURL().openStream();
+        return new ByteArrayInputStream(mContent == null ? new byte[0] : mContent);
+    }
+
+    /**
+     * Opens a new channel on the data. When the data is stored in a temporary
+     * file, this is a {@link FileChannel} which allows the data to be
+     * transferred without being copied in user space. The caller is
+     * responsible for closing it.
+     * 
+     * @throws IOException if the data cannot be opened
+     * @since 1.0.13
+     */
+    public ReadableByteChannel openChannel() throws IOException {
+        File file = getFile();
+        if (file == null && mLocation != null && "file".equals(mLocation.getScheme())) {
+            file = new File(mLocation);
+        }
+        if (file != null) return new FileInputStream(file).getChannel();
+        return Channels.newChannel(getInputStream());
+    }
+
+    /**
+     * @return the size of the data in bytes
+     * @since 1.0.13
+     */
+    public long getSize() {
+        if (mFileItem != null) return mFileItem.getSize();
+        if (mLocation != null) return mStoredSize;
+        return mContent == null ? 0 : mContent.length;
+    }
+
+    /**
+     * @return <code>true</code> if the data is held in memory,
+     *         <code>false</code> if it is stored in a temporary file or by a
+     *         {@link RecordingSink}
+     * @since 1.0.13
+     */
+    public boolean isInMemory() {
+        if (mLocation != null) return false;
+        return mFileItem == null || mFileItem.isInMemory();
+    }
+
+    /**
+     * Gets the temporary file in which the data is stored. The file must not
+     * be modified. It is deleted by {@link #delete()} or when this object is
+     * garbage collected, so it should be copied or moved to be kept.
+     * 
+     * @return the temporary file, or <code>null</code> if the data is held in
+     *         memory or was stored by a {@link RecordingSink}
+     * @since 1.0.13
+     */
+    public File getFile() {
+        if (mFileItem == null || mFileItem.isInMemory()) return null;
+        return mFileItem.getStoreLocation();
+    }
+
+    /**
+     * Gets the location where a {@link RecordingSink} stored the data.
+     * 
+     * @return the location, or <code>null</code> if no sink was used
+     * @since 1.0.13
+     */
+    public URI getLocation() {
+        return mLocation;
+    }
+
+    /**
+     * Deletes the temporary file holding the data, if any. The data cannot be
+     * read afterwards. Data stored by a {@link RecordingSink} is not affected.
+     * 
+     * @since 1.0.13
+     */
+    public void delete() {
+        if (mFileItem != null) {
+            mFileItem.delete();
+        }
+    }
+
     public Set<String> getHeaderNames() {
         return Collections.unmodifiableSet(mHeaders.keySet());
     }
@@ -57,28 +203,49 @@ public final class FileUpload implements JsonSerializable {
 
     @Override
     public String toString() {
-        return asJson().toString();
+        String string = mString;
+        if (string == null) {
+            string = asJson().toString();
+            mString = string;
+        }
+        return string;
     }
 
     @Override
     public JsonValue asJson() {
+        JsonValue json = mJson;
+        if (json == null) {
+            json = createJson();
+            mJson = json;
+        }
+        return json;
+    }
+
+    private JsonValue createJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
         JsonUtils.add(builder, FILENAME_PROPERTY, mName);
         JsonUtils.add(builder, TYPE_PROPERTY, mContentType);
-        if (mContent != null) {
-            builder.add(SIZE_PROPERTY, (long) mContent.length);
+        if (mContent != null || mFileItem != null || mLocation != null) {
+            builder.add(SIZE_PROPERTY, getSize());
+        }
+        if (mLocation != null) {
+            JsonUtils.add(builder, LOCATION_PROPERTY, mLocation.toString());
         }
         //content is not serialized
         return builder.build();
     }
 
+    //data stored in a temporary file is never read to compute the hash code or
+    //to compare uploads: such uploads are only equal if they share the same file
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((mContentType == null) ? 0 : mContentType.hashCode());
-        result = prime * result + Arrays.hashCode(mContent);
+        long size = getSize();
+        result = prime * result + (int) (size ^ (size >>> 32));
         result = prime * result + ((mHeaders == null) ? 0 : mHeaders.hashCode());
+        result = prime * result + ((mLocation == null) ? 0 : mLocation.hashCode());
         result = prime * result + ((mName == null) ? 0 : mName.hashCode());
         return result;
     }
@@ -92,10 +259,16 @@ public final class FileUpload implements JsonSerializable {
         if (mContentType == null) {
             if (other.mContentType != null) return false;
         } else if (!mContentType.equals(other.mContentType)) return false;
-        if (!Arrays.equals(mContent, other.mContent)) return false;
+        if (getSize() != other.getSize()) return false;
+        if (isInMemory() && other.isInMemory()) {
+            if (!Arrays.equals(getContent(), other.getContent())) return false;
+        } else if (mFileItem != other.mFileItem) return false;
         if (mHeaders == null) {
             if (other.mHeaders != null) return false;
         } else if (!mHeaders.equals(other.mHeaders)) return false;
+        if (mLocation == null) {
+            if (other.mLocation != null) return false;
+        } else if (!mLocation.equals(other.mLocation)) return false;
         if (mName == null) {
             if (other.mName != null) return false;
         } else if (!mName.equals(other.mName)) return false;
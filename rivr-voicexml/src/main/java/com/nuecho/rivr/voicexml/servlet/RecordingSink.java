@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Destination of the files uploaded with an input turn, typically recordings.
+ * When a <code>RecordingSink</code> is set on the
+ * {@link VoiceXmlInputTurnFactory}, each uploaded file is handed to the sink
+ * while the multipart request is being parsed, instead of being held by the
+ * {@link FileUpload}. The resulting {@link FileUpload} only carries the
+ * location returned by the sink.
+ * <p>
+ * Implementations must be thread-safe.
+ * 
+ * @author Nu Echo Inc.
+ * @see DirectoryRecordingSink
+ * @since 1.0.13
+ */
+public interface RecordingSink {
+
+    /**
+     * Stores an uploaded file.
+     * 
+     * @param parameterName the name of the form field, e.g.
+     *            {@link VoiceXmlInputTurnFactory#RECORDING_PARAMETER}
+     * @param fileName the file name sent by the client, may be
+     *            <code>null</code>
+     * @param contentType the content type sent by the client, may be
+     *            <code>null</code>
+     * @param headers the headers of the multipart part
+     * @param content the data. Must be read until the end of stream. Must not
+     *            be closed.
+     * @return the location of the stored data. Cannot be <code>null</code>.
+     * @throws IOException if the data cannot be read or stored
+     */
+    URI store(String parameterName,
+              String fileName,
+              String contentType,
+              Map<String, String> headers,
+              ReadableByteChannel content) throws IOException;
+}
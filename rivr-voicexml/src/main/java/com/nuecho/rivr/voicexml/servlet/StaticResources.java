@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.servlet;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.util.*;
+
+/**
+ * Static resources served by a {@link VoiceXmlDialogueServlet}, e.g. grammars
+ * or audio manifests. A resource is loaded and hashed once, when it is added,
+ * and served from memory under
+ * {@link VoiceXmlDialogueServlet#STATIC_RESOURCES_PATH} followed by its name.
+ * <p>
+ * Documents should refer to a resource with its versioned path (see
+ * {@link #getVersionedPath(String)}), whose query string holds the digest of
+ * the content: responses to such requests can be cached indefinitely, since a
+ * new content yields a new path. Requests without the current digest are
+ * answered with an <code>ETag</code> and must be revalidated. Textual
+ * resources are also served gzip-compressed to the clients accepting it.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class StaticResources {
+
+    /**
+     * Name of the query parameter holding the digest of the content in a
+     * versioned path.
+     */
+    public static final String VERSION_PARAMETER = "v";
+
+    private final ConcurrentMap<String, CachedResource> mResources = new ConcurrentHashMap<String, CachedResource>();
+
+    StaticResources() {}
+
+    /**
+     * Adds a resource. If a resource is already registered under this name, it
+     * is replaced.
+     *
+     * @param name the resource name, e.g. <code>grammars/yes-no.grxml</code>.
+     *            Cannot be <code>null</code> or empty.
+     * @param contentType the content type. Cannot be <code>null</code>.
+     * @param content the content. Cannot be <code>null</code>. Must not be
+     *            modified afterwards.
+     * @return the versioned path of the resource
+     */
+    public String add(String name, String contentType, byte[] content) {
+        String path = getPath(name);
+        CachedResource resource = new CachedResource(content, contentType);
+        mResources.put(path, resource);
+        return getVersionedPath(path, resource);
+    }
+
+    /**
+     * Adds a resource read from a URL, typically a class path resource. If a
+     * resource is already registered under this name, it is replaced.
+     *
+     * @param name the resource name, e.g. <code>grammars/yes-no.grxml</code>.
+     *            Cannot be <code>null</code> or empty.
+     * @param contentType the content type. Cannot be <code>null</code>.
+     * @param location the location of the content. Cannot be
+     *            <code>null</code>.
+     * @return the versioned path of the resource
+     * @throws IOException if the content cannot be read
+     */
+    public String add(String name, String contentType, URL location) throws IOException {
+        Assert.notNull(location, "location");
+        return add(name, contentType, read(location));
+    }
+
+    /**
+     * Removes a resource.
+     *
+     * @param name the resource name. Cannot be <code>null</code> or empty.
+     */
+    public void remove(String name) {
+        mResources.remove(getPath(name));
+    }
+
+    /**
+     * @return the names of the resources
+     */
+    public Set<String> getNames() {
+        Set<String> names = new HashSet<String>();
+        for (String path : mResources.keySet()) {
+            names.add(path.substring(VoiceXmlDialogueServlet.STATIC_RESOURCES_PATH.length()));
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Gets the versioned path of a resource, relative to the servlet path,
+     * e.g. <code>/static/grammars/yes-no.grxml?v=0cc175b9c0f1b6a831c399e269772661</code>.
+     *
+     * @param name the resource name. Cannot be <code>null</code> or empty.
+     * @return the versioned path, or <code>null</code> if there is no resource
+     *         with this name
+     */
+    public String getVersionedPath(String name) {
+        String path = getPath(name);
+        CachedResource resource = mResources.get(path);
+        if (resource == null) return null;
+        return getVersionedPath(path, resource);
+    }
+
+    /**
+     * @param path the path relative to the servlet path
+     * @return the resource, or <code>null</code> if there is none
+     */
+    CachedResource get(String path) {
+        return mResources.get(path);
+    }
+
+    static String getVersionedPath(String path, CachedResource resource) {
+        return path + "?" + VERSION_PARAMETER + "=" + resource.getDigest();
+    }
+
+    static byte[] read(URL location) throws IOException {
+        InputStream inputStream = location.openStream();
+        try {
+            return IOUtils.toByteArray(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static String getPath(String name) {
+        Assert.notNull(name, "name");
+        if (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        Assert.notEmpty(name, "name");
+        return VoiceXmlDialogueServlet.STATIC_RESOURCES_PATH + name;
+    }
+}
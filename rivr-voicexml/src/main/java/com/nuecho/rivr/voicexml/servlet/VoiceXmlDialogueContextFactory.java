@@ -22,15 +22,42 @@ import com.nuecho.rivr.voicexml.turn.output.*;
 public final class VoiceXmlDialogueContextFactory implements
         DialogueContextFactory<VoiceXmlDialogueContext, VoiceXmlInputTurn, VoiceXmlOutputTurn> {
 
+    private boolean mRootDocumentShared;
+    private StaticResources mStaticResources;
+
+    /**
+     * Indicates whether the created contexts refer to the application root
+     * document shared by all dialogues.
+     *
+     * @see VoiceXmlDialogueContext#setRootDocumentShared(boolean)
+     * @since 1.0.13
+     */
+    public void setRootDocumentShared(boolean rootDocumentShared) {
+        mRootDocumentShared = rootDocumentShared;
+    }
+
+    /**
+     * Sets the static resources referred to by the created contexts.
+     *
+     * @see VoiceXmlDialogueContext#getStaticResourcePath(String)
+     * @since 1.0.13
+     */
+    public void setStaticResources(StaticResources staticResources) {
+        mStaticResources = staticResources;
+    }
+
     @Override
     public VoiceXmlDialogueContext createDialogueContext(HttpServletRequest request,
                                                          String dialogueId,
                                                          DialogueChannel<VoiceXmlInputTurn, VoiceXmlOutputTurn> dialogueChannel,
                                                          Logger logger) {
-        return new VoiceXmlDialogueContext(dialogueChannel,
-                                           logger,
-                                           dialogueId,
-                                           request.getContextPath(),
-                                           request.getServletPath());
+        VoiceXmlDialogueContext dialogueContext = new VoiceXmlDialogueContext(dialogueChannel,
+                                                                              logger,
+                                                                              dialogueId,
+                                                                              request.getContextPath(),
+                                                                              request.getServletPath());
+        dialogueContext.setRootDocumentShared(mRootDocumentShared);
+        dialogueContext.setStaticResources(mStaticResources);
+        return dialogueContext;
     }
 }
\ No newline at end of file
@@ -5,9 +5,11 @@
 package com.nuecho.rivr.voicexml.servlet;
 
 import java.io.*;
-import java.security.*;
+import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 
+import javax.json.spi.*;
 import javax.servlet.*;
 import javax.servlet.http.*;
 
@@ -15,6 +17,7 @@ import org.slf4j.*;
 import org.w3c.dom.*;
 
 import com.nuecho.rivr.core.dialogue.*;
+import com.nuecho.rivr.core.metrics.*;
 import com.nuecho.rivr.core.servlet.*;
 import com.nuecho.rivr.core.servlet.session.*;
 import com.nuecho.rivr.core.util.*;
@@ -26,13 +29,27 @@ import com.nuecho.rivr.voicexml.turn.first.*;
 import com.nuecho.rivr.voicexml.turn.input.*;
 import com.nuecho.rivr.voicexml.turn.last.*;
 import com.nuecho.rivr.voicexml.turn.output.*;
-import com.nuecho.rivr.voicexml.util.*;
+import com.nuecho.rivr.voicexml.util.json.*;
 
 /**
  * Implementation of the {@link DialogueServlet} specialized for VoiceXML. This
  * servlet handles requests from the VoiceXML platform and responds with
  * VoiceXML documents. It also intercepts special resources (
- * <code>/script</code> and <code>/root</code>).
+ * <code>/script</code>, <code>/root</code> and, if enabled,
+ * <code>/metrics</code>).
+ * <p>
+ * By default, the documents of each dialogue refer to an application root
+ * document of their own (<code>/root/</code><i>dialogueId</i>), which the
+ * VoiceXML browser therefore fetches for each call. When the shared root
+ * document is enabled, all dialogues refer to <code>/root</code>, served from
+ * bytes rendered once with an <code>ETag</code> and a
+ * <code>Cache-Control</code> header so that the browser can cache it.
+ * <p>
+ * The <code>rivr.js</code> script and the {@link StaticResources static
+ * resources} registered by the application (under <code>/static/</code>) are
+ * loaded and hashed once and served from memory. When requested with their
+ * versioned path, they are served with a long-lived
+ * <code>Cache-Control</code> header.
  * <h2>init args</h2>
  * <p> The following servlet initial arguments are supported:
  * <dl>
@@ -81,6 +98,62 @@ import com.nuecho.rivr.voicexml.util.*;
  * org.slf4j.LoggerFactory} can be found. Default: (none:
  * {@link org.slf4j.LoggerFactory#getILoggerFactory()} is used as the logger
  * factory).</dd>
+ * <dt>com.nuecho.rivr.voicexml.compactOutput</dt>
+ * <dd>If <code>true</code>, VoiceXML documents are sent without indentation,
+ * which reduces the size of the responses. Documents logged by the
+ * <code>com.nuecho.rivr.servlet.responses</code> logger are logged as sent,
+ * i.e. also without indentation.
+ * Values: <code>true</code> or <code>false</code>. Default:
+ * <code>false</code></dd>
+ * <dt>com.nuecho.rivr.voicexml.metricsEndpointEnabled</dt>
+ * <dd>If <code>true</code>, the measurements of the dialogue engine are
+ * aggregated by a {@link SimpleDialogueMetrics} and served in the Prometheus
+ * text format at <code>/metrics</code> (relative to the servlet path). The
+ * endpoint is not protected: access to it should be restricted by the web
+ * container or a front-end. Values: <code>true</code> or <code>false</code>.
+ * Default: <code>false</code></dd>
+ * <dt>com.nuecho.rivr.voicexml.fileUploadSizeThreshold</dt>
+ * <dd>Size, in bytes, above which an uploaded file (e.g. a recording) is
+ * stored in a temporary file instead of memory. Default:
+ * {@value VoiceXmlInputTurnFactory#DEFAULT_FILE_UPLOAD_SIZE_THRESHOLD}</dd>
+ * <dt>com.nuecho.rivr.voicexml.fileUploadRepository</dt>
+ * <dd>Directory in which the temporary files of uploaded files are created.
+ * Default: (none: the system temporary directory is used)</dd>
+ * <dt>com.nuecho.rivr.voicexml.recordingSink.class</dt>
+ * <dd>Class name of the {@link RecordingSink} to which uploaded files are
+ * handed while requests are parsed, e.g. {@link DirectoryRecordingSink}. This
+ * class must be public and non-abstract and have a public no-argument
+ * constructor. Default: (none: uploaded files are kept in memory or in
+ * temporary files)</dd>
+ * <dt>com.nuecho.rivr.voicexml.recordingSink.key</dt>
+ * <dd>As an alternative to
+ * <code>com.nuecho.rivr.voicexml.recordingSink.class</code>, this indicates the
+ * servlet context attribute name under which the {@link RecordingSink} can be
+ * found. Default: (none)</dd>
+ * <dt>com.nuecho.rivr.voicexml.jsonProvider.class</dt>
+ * <dd>Class name of the {@link JsonProvider javax.json.spi.JsonProvider} used
+ * to build, parse and write JSON. This class must be public and non-abstract
+ * and have a public no-argument constructor. The provider is global to the
+ * class loader of Rivr (see {@link JsonUtils#setProvider(JsonProvider)}).
+ * Default: (none: {@link JsonProvider#provider()} is used, i.e. the provider
+ * registered with the {@link java.util.ServiceLoader} or the reference
+ * implementation)</dd>
+ * <dt>com.nuecho.rivr.voicexml.jsonProvider.key</dt>
+ * <dd>As an alternative to
+ * <code>com.nuecho.rivr.voicexml.jsonProvider.class</code>, this indicates the
+ * servlet context attribute name under which the {@link JsonProvider
+ * javax.json.spi.JsonProvider} can be found. Default: (none)</dd>
+ * <dt>com.nuecho.rivr.voicexml.sharedRootDocumentEnabled</dt>
+ * <dd>If <code>true</code>, all dialogues refer to the same, cacheable,
+ * application root document (see {@link #setRootDocumentShared(boolean)}).
+ * Values: <code>true</code> or <code>false</code>. Default:
+ * <code>false</code></dd>
+ * <dt>com.nuecho.rivr.voicexml.staticResources</dt>
+ * <dd>Comma-separated list of files of the web application to serve as
+ * {@link StaticResources static resources}, e.g.
+ * <code>grammars/yes-no.grxml, audio/manifest.json</code>. Each file is
+ * registered under its path and its content type is given by the servlet
+ * context. Default: (none)</dd>
  * </dl>
  * <p>
  * <b>Important:</b> one of the following must be specified, they are mutually
@@ -105,12 +178,30 @@ public class VoiceXmlDialogueServlet
     private static final String INITIAL_ARGUMENT_DIALOGUE_FACTORY = INITIAL_ARGUMENT_PREFIX + "dialogueFactory";
     private static final String INITIAL_ARGUMENT_DIALOGUE = INITIAL_ARGUMENT_PREFIX + "dialogue";
     private static final String INITIAL_ARGUMENT_LOGGER_FACTORY = INITIAL_ARGUMENT_PREFIX + "loggerFactory";
+    private static final String INITIAL_ARGUMENT_COMPACT_OUTPUT = INITIAL_ARGUMENT_PREFIX + "compactOutput";
+    private static final String INITIAL_ARGUMENT_METRICS_ENDPOINT_ENABLED = INITIAL_ARGUMENT_PREFIX
+                                                                            + "metricsEndpointEnabled";
+    private static final String INITIAL_ARGUMENT_FILE_UPLOAD_SIZE_THRESHOLD = INITIAL_ARGUMENT_PREFIX
+                                                                              + "fileUploadSizeThreshold";
+    private static final String INITIAL_ARGUMENT_FILE_UPLOAD_REPOSITORY = INITIAL_ARGUMENT_PREFIX
+                                                                          + "fileUploadRepository";
+    private static final String INITIAL_ARGUMENT_RECORDING_SINK = INITIAL_ARGUMENT_PREFIX + "recordingSink";
+    private static final String INITIAL_ARGUMENT_JSON_PROVIDER = INITIAL_ARGUMENT_PREFIX + "jsonProvider";
+    private static final String INITIAL_ARGUMENT_SHARED_ROOT_DOCUMENT_ENABLED = INITIAL_ARGUMENT_PREFIX
+                                                                                + "sharedRootDocumentEnabled";
+    private static final String INITIAL_ARGUMENT_STATIC_RESOURCES = INITIAL_ARGUMENT_PREFIX + "staticResources";
 
     public static final String ROOT_PATH = "/root/";
+    public static final String SHARED_ROOT_PATH = "/root";
     public static final String RIVR_SCRIPT = "/scripts/rivr.js";
+    public static final String STATIC_RESOURCES_PATH = "/static/";
+    public static final String METRICS_PATH = "/metrics";
 
-    private static final String IF_NONE_MATCH = "If-None-Match";
-    private static final String ETAG = "ETag";
+    private static final String CACHE_CONTROL = "Cache-Control";
+    private static final String SHARED_ROOT_DOCUMENT_CACHE_CONTROL = "max-age=3600";
+    private static final String VERSIONED_RESOURCE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String UNVERSIONED_RESOURCE_CACHE_CONTROL = "no-cache";
+    private static final String DEFAULT_STATIC_RESOURCE_CONTENT_TYPE = "application/octet-stream";
 
     private VoiceXmlStepRenderer mVoiceXmlStepRenderer;
     private JsonStepRenderer mJsonStepRenderer;
@@ -120,10 +211,19 @@ public class VoiceXmlDialogueServlet
 
     private static final String ACCEPT_HEADER = "Accept";
 
+    private static final CachedResource RIVR_SCRIPT_RESOURCE = loadRivrScript();
+
     private VoiceXmlRootDocumentFactory mRootDocumentFactory = new DefaultVoiceXmlRootDocumentFactory();
 
     private List<? extends VoiceXmlDocumentAdapter> mVoiceXmlDocumentAdapters;
 
+    private boolean mCompactOutputEnabled;
+    private boolean mMetricsEndpointEnabled;
+    private boolean mRootDocumentShared;
+    private final ConcurrentMap<String, CachedResource> mSharedRootDocuments = new ConcurrentHashMap<String, CachedResource>();
+    private final StaticResources mStaticResources = new StaticResources();
+    private SimpleDialogueMetrics mEndpointMetrics;
+
     protected void initializeVoiceXmlDialogueServlet() {}
 
     @Override
@@ -136,8 +236,26 @@ public class VoiceXmlDialogueServlet
                 return;
             }
 
+            if (SHARED_ROOT_PATH.equals(pathInfo)) {
+                processSharedRootDocument(request, response);
+                return;
+            }
+
             if (RIVR_SCRIPT.equals(pathInfo)) {
-                processRessource(request, response, pathInfo);
+                processStaticResource(request, response, RIVR_SCRIPT_RESOURCE);
+                return;
+            }
+
+            if (pathInfo.startsWith(STATIC_RESOURCES_PATH)) {
+                CachedResource resource = mStaticResources.get(pathInfo);
+                if (resource != null) {
+                    processStaticResource(request, response, resource);
+                    return;
+                }
+            }
+
+            if (mEndpointMetrics != null && METRICS_PATH.equals(pathInfo)) {
+                processMetrics(response);
                 return;
             }
         }
@@ -152,13 +270,21 @@ public class VoiceXmlDialogueServlet
 
     @Override
     protected final void initDialogueServlet() throws DialogueServletInitializationException {
-        setInputTurnFactory(new VoiceXmlInputTurnFactory());
-        setDialogueContextFactory(new VoiceXmlDialogueContextFactory());
+        VoiceXmlInputTurnFactory inputTurnFactory = new VoiceXmlInputTurnFactory();
+        setInputTurnFactory(inputTurnFactory);
+        VoiceXmlDialogueContextFactory dialogueContextFactory = new VoiceXmlDialogueContextFactory();
+        setDialogueContextFactory(dialogueContextFactory);
         setErrorHandler(new DefaultErrorHandler());
-        initializeProperties();
+        initializeProperties(inputTurnFactory);
         initializeVoiceXmlDialogueServlet();
+        dialogueContextFactory.setRootDocumentShared(mRootDocumentShared);
+        dialogueContextFactory.setStaticResources(mStaticResources);
+
+        if (mMetricsEndpointEnabled) {
+            mEndpointMetrics = getEndpointMetrics();
+        }
 
-        mVoiceXmlStepRenderer = new VoiceXmlStepRenderer(mVoiceXmlDocumentAdapters);
+        mVoiceXmlStepRenderer = new VoiceXmlStepRenderer(mVoiceXmlDocumentAdapters, mCompactOutputEnabled);
         mJsonStepRenderer = new JsonStepRenderer(mVoiceXmlStepRenderer);
     }
 
@@ -169,13 +295,123 @@ public class VoiceXmlDialogueServlet
         mVoiceXmlDocumentAdapters = voiceXmlDocumentAdapters;
     }
 
-    private void initializeProperties() throws DialogueServletInitializationException {
+    /**
+     * Enables or disables compact output, i.e. VoiceXML documents sent without
+     * indentation. Must be called before the step renderer is created, i.e.
+     * from {@link #initializeVoiceXmlDialogueServlet()}.
+     *
+     * @since 1.0.13
+     */
+    public void setCompactOutputEnabled(boolean compactOutputEnabled) {
+        mCompactOutputEnabled = compactOutputEnabled;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public boolean isCompactOutputEnabled() {
+        return mCompactOutputEnabled;
+    }
+
+    /**
+     * Enables or disables the <code>/metrics</code> endpoint. When enabled, the
+     * dialogue metrics must be either unset or a {@link SimpleDialogueMetrics}.
+     * Must be called before the servlet is initialized, i.e. from
+     * {@link #initializeVoiceXmlDialogueServlet()}.
+     *
+     * @see #setDialogueMetrics(DialogueMetrics)
+     * @since 1.0.13
+     */
+    public void setMetricsEndpointEnabled(boolean metricsEndpointEnabled) {
+        mMetricsEndpointEnabled = metricsEndpointEnabled;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public boolean isMetricsEndpointEnabled() {
+        return mMetricsEndpointEnabled;
+    }
+
+    /**
+     * Indicates whether all dialogues refer to the same application root
+     * document, <code>/root</code> (relative to the servlet path), instead of
+     * one for each dialogue. The shared root document is rendered once by the
+     * {@link VoiceXmlRootDocumentFactory} for each context path and servlet
+     * path and served with an <code>ETag</code> and a
+     * <code>Cache-Control</code> header, so the VoiceXML browser needs not
+     * fetch it for each call. The root document factory must therefore not
+     * depend on anything else than these paths. Since documents with the same
+     * application root keep the application scope, a call going from one Rivr
+     * dialogue to another one sees the application variables of the first
+     * dialogue. Must be called before the servlet is initialized, i.e. from
+     * {@link #initializeVoiceXmlDialogueServlet()}.
+     *
+     * @since 1.0.13
+     */
+    public void setRootDocumentShared(boolean rootDocumentShared) {
+        mRootDocumentShared = rootDocumentShared;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public boolean isRootDocumentShared() {
+        return mRootDocumentShared;
+    }
+
+    /**
+     * Gets the static resources served by this servlet. Resources can be
+     * added at any time, typically from
+     * {@link #initializeVoiceXmlDialogueServlet()}.
+     *
+     * @see VoiceXmlDialogueContext#getStaticResourcePath(String)
+     * @since 1.0.13
+     */
+    public StaticResources getStaticResources() {
+        return mStaticResources;
+    }
+
+    /**
+     * Gets the versioned path of the <code>rivr.js</code> script, relative to
+     * the servlet path. Custom {@link VoiceXmlRootDocumentFactory root
+     * document factories} should refer to the script with this path so that
+     * it can be cached indefinitely.
+     *
+     * @since 1.0.13
+     */
+    public static String getRivrScriptPath() {
+        return StaticResources.getVersionedPath(RIVR_SCRIPT, RIVR_SCRIPT_RESOURCE);
+    }
+
+    private SimpleDialogueMetrics getEndpointMetrics() throws DialogueServletInitializationException {
+        DialogueMetrics dialogueMetrics = getDialogueMetrics();
+        if (dialogueMetrics instanceof SimpleDialogueMetrics) return (SimpleDialogueMetrics) dialogueMetrics;
+        if (dialogueMetrics != NoOpDialogueMetrics.INSTANCE)
+            throw new DialogueServletInitializationException("The metrics endpoint requires a "
+                                                             + SimpleDialogueMetrics.class.getName()
+                                                             + " but dialogue metrics are a "
+                                                             + dialogueMetrics.getClass().getName()
+                                                             + ".");
+
+        SimpleDialogueMetrics simpleDialogueMetrics = new SimpleDialogueMetrics();
+        setDialogueMetrics(simpleDialogueMetrics);
+        return simpleDialogueMetrics;
+    }
+
+    private void initializeProperties(VoiceXmlInputTurnFactory inputTurnFactory)
+            throws DialogueServletInitializationException {
 
         ILoggerFactory loggerFactory = find(INITIAL_ARGUMENT_LOGGER_FACTORY, ILoggerFactory.class);
         if (loggerFactory != null) {
             setLoggerFactory(loggerFactory);
         }
 
+        JsonProvider jsonProvider = find(INITIAL_ARGUMENT_JSON_PROVIDER, JsonProvider.class);
+        if (jsonProvider != null) {
+            JsonUtils.setProvider(jsonProvider);
+        }
+
         VoiceXmlDialogueFactory dialogueFactory = getDialogueFactory();
         if (dialogueFactory != null) {
             setDialogueFactory(dialogueFactory);
@@ -188,6 +424,101 @@ public class VoiceXmlDialogueServlet
             setErrorHandler(errorHandler);
         }
 
+        Boolean compactOutput = getBooleanInitArgument(INITIAL_ARGUMENT_COMPACT_OUTPUT);
+        if (compactOutput != null) {
+            setCompactOutputEnabled(compactOutput);
+        }
+
+        Boolean sharedRootDocumentEnabled = getBooleanInitArgument(INITIAL_ARGUMENT_SHARED_ROOT_DOCUMENT_ENABLED);
+        if (sharedRootDocumentEnabled != null) {
+            setRootDocumentShared(sharedRootDocumentEnabled);
+        }
+
+        Boolean metricsEndpointEnabled = getBooleanInitArgument(INITIAL_ARGUMENT_METRICS_ENDPOINT_ENABLED);
+        if (metricsEndpointEnabled != null) {
+            setMetricsEndpointEnabled(metricsEndpointEnabled);
+        }
+
+        String fileUploadSizeThreshold = getServletConfig().getInitParameter(INITIAL_ARGUMENT_FILE_UPLOAD_SIZE_THRESHOLD);
+        if (fileUploadSizeThreshold != null) {
+            inputTurnFactory.setFileUploadSizeThreshold(parseSize(fileUploadSizeThreshold,
+                                                                  INITIAL_ARGUMENT_FILE_UPLOAD_SIZE_THRESHOLD));
+        }
+
+        String fileUploadRepository = getServletConfig().getInitParameter(INITIAL_ARGUMENT_FILE_UPLOAD_REPOSITORY);
+        if (fileUploadRepository != null) {
+            File directory = new File(fileUploadRepository.trim());
+            if (!directory.isDirectory())
+                throw new DialogueServletInitializationException("Invalid init-arg '"
+                                                                 + INITIAL_ARGUMENT_FILE_UPLOAD_REPOSITORY
+                                                                 + "'. '"
+                                                                 + fileUploadRepository
+                                                                 + "' is not a directory.");
+            inputTurnFactory.setFileUploadRepository(directory);
+        }
+
+        RecordingSink recordingSink = find(INITIAL_ARGUMENT_RECORDING_SINK, RecordingSink.class);
+        if (recordingSink != null) {
+            inputTurnFactory.setRecordingSink(recordingSink);
+        }
+
+        String staticResources = getServletConfig().getInitParameter(INITIAL_ARGUMENT_STATIC_RESOURCES);
+        if (staticResources != null) {
+            addStaticResources(staticResources);
+        }
+
+    }
+
+    private void addStaticResources(String names) throws DialogueServletInitializationException {
+        ServletContext servletContext = getServletContext();
+        for (String name : names.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+
+            String path = name.startsWith("/") ? name : "/" + name;
+            String contentType = servletContext.getMimeType(path);
+            if (contentType == null) {
+                contentType = DEFAULT_STATIC_RESOURCE_CONTENT_TYPE;
+            }
+
+            try {
+                URL location = servletContext.getResource(path);
+                if (location == null)
+                    throw new DialogueServletInitializationException("Invalid init-arg '"
+                                                                     + INITIAL_ARGUMENT_STATIC_RESOURCES
+                                                                     + "'. Resource '"
+                                                                     + path
+                                                                     + "' not found.");
+                mStaticResources.add(name, contentType, location);
+            } catch (IOException exception) {
+                throw new DialogueServletInitializationException("Unable to read static resource '" + path + "'.",
+                                                                 exception);
+            }
+        }
+    }
+
+    private Boolean getBooleanInitArgument(String key) throws DialogueServletInitializationException {
+        try {
+            return getBoolean(key);
+        } catch (ServletException exception) {
+            throw new DialogueServletInitializationException(exception.getMessage(), exception);
+        }
+    }
+
+    private static int parseSize(String value, String key) throws DialogueServletInitializationException {
+        try {
+            int size = Integer.parseInt(value.trim());
+            if (size >= 0) return size;
+        } catch (NumberFormatException exception) {
+            //reported below
+        }
+        throw new DialogueServletInitializationException("Unable to parse size for init-arg '"
+                                                         + key
+                                                         + "'. Should be a non-negative number of bytes but not '"
+                                                         + value
+                                                         + "'.");
     }
 
     private void setImplicitDialogueFactory() throws DialogueServletInitializationException {
@@ -294,40 +625,77 @@ public class VoiceXmlDialogueServlet
         return mVoiceXmlStepRenderer;
     }
 
-    private void processRessource(HttpServletRequest request, HttpServletResponse response, String pathInfo)
-            throws IOException, ServletException {
-        InputStream inputStream = VoiceXmlDialogueServlet.class.getResourceAsStream(pathInfo.substring(1));
-        byte[] bytes = IOUtils.toByteArray(inputStream);
-        String eTag = getETag(bytes);
-        String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
-
-        if (eTag.equals(ifNoneMatch)) {
-            response.sendError(HttpServletResponse.SC_NOT_MODIFIED, "Not Modified");
+    private void processStaticResource(HttpServletRequest request,
+                                       HttpServletResponse response,
+                                       CachedResource resource) throws IOException {
+        String version = request.getParameter(StaticResources.VERSION_PARAMETER);
+        if (resource.getDigest().equals(version)) {
+            response.setHeader(CACHE_CONTROL, VERSIONED_RESOURCE_CACHE_CONTROL);
         } else {
-            response.setContentType(JAVASCRIPT_CONTENT_TYPE);
-            response.addHeader(ETAG, eTag);
-            response.getOutputStream().write(bytes);
+            response.setHeader(CACHE_CONTROL, UNVERSIONED_RESOURCE_CACHE_CONTROL);
+        }
+        resource.writeTo(request, response);
+    }
+
+    private static CachedResource loadRivrScript() {
+        URL location = VoiceXmlDialogueServlet.class.getResource(RIVR_SCRIPT.substring(1));
+        if (location == null) throw new IllegalStateException("Resource '" + RIVR_SCRIPT + "' not found.");
+        try {
+            return new CachedResource(StaticResources.read(location), JAVASCRIPT_CONTENT_TYPE);
+        } catch (IOException exception) {
+            throw new IllegalStateException("Unable to read resource '" + RIVR_SCRIPT + "'.", exception);
         }
     }
 
+    private void processMetrics(HttpServletResponse response) throws IOException {
+        response.setContentType(SimpleDialogueMetrics.CONTENT_TYPE);
+        response.setHeader(CACHE_CONTROL, "no-cache");
+        Writer writer = new OutputStreamWriter(response.getOutputStream(), Encoding.UTF_8.getId());
+        mEndpointMetrics.writeTo(writer);
+    }
+
     private void processRootDocument(HttpServletRequest request, HttpServletResponse response) throws ServletException,
             IOException {
 
         try {
             Document rootDocument = mRootDocumentFactory.getDocument(request);
             response.setContentType(VOICE_XML_CONTENT_TYPE);
-            DomUtils.writeToOutputStream(rootDocument, response.getOutputStream(), Encoding.UTF_8);
+            VoiceXmlWriter writer = new VoiceXmlWriter(response.getOutputStream(), !mCompactOutputEnabled);
+            writer.writeStartDocument();
+            writer.writeNode(rootDocument);
+            writer.writeEndDocument();
         } catch (VoiceXmlDocumentRenderingException exception) {
             throw new ServletException("Error while rendering root document.", exception);
         }
     }
 
-    private String getETag(byte[] bytes) throws ServletException {
+    private void processSharedRootDocument(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String key = request.getContextPath() + request.getServletPath();
+        CachedResource rootDocument = mSharedRootDocuments.get(key);
+        if (rootDocument == null) {
+            rootDocument = new CachedResource(renderRootDocument(request), VOICE_XML_CONTENT_TYPE);
+            CachedResource existingRootDocument = mSharedRootDocuments.putIfAbsent(key, rootDocument);
+            if (existingRootDocument != null) {
+                rootDocument = existingRootDocument;
+            }
+        }
+
+        response.setHeader(CACHE_CONTROL, SHARED_ROOT_DOCUMENT_CACHE_CONTROL);
+        rootDocument.writeTo(request, response);
+    }
+
+    private byte[] renderRootDocument(HttpServletRequest request) throws ServletException, IOException {
         try {
-            byte[] digest = MessageDigest.getInstance("MD5").digest(bytes);
-            return StringUtils.bytesToHex(digest);
-        } catch (NoSuchAlgorithmException exception) {
-            throw new ServletException("Could not create message digest.", exception);
+            Document rootDocument = mRootDocumentFactory.getDocument(request);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            VoiceXmlWriter writer = new VoiceXmlWriter(outputStream, !mCompactOutputEnabled);
+            writer.writeStartDocument();
+            writer.writeNode(rootDocument);
+            writer.writeEndDocument();
+            return outputStream.toByteArray();
+        } catch (VoiceXmlDocumentRenderingException exception) {
+            throw new ServletException("Error while rendering root document.", exception);
         }
     }
 
@@ -5,15 +5,22 @@
 package com.nuecho.rivr.voicexml.servlet;
 
 import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
 import java.util.regex.*;
 
 import javax.json.*;
+import javax.json.stream.*;
+import javax.json.stream.JsonParser.Event;
 import javax.servlet.*;
 import javax.servlet.http.*;
 
 import org.apache.commons.fileupload.*;
+import org.apache.commons.fileupload.disk.*;
 import org.apache.commons.fileupload.servlet.*;
+import org.apache.commons.fileupload.util.*;
 
 import com.nuecho.rivr.core.servlet.*;
 import com.nuecho.rivr.core.util.*;
@@ -24,8 +31,16 @@ import com.nuecho.rivr.voicexml.util.json.*;
 
 /**
  * VoiceXML specialization of {@link InputTurnFactory}.
+ * <p>
+ * Multipart requests are parsed as a stream. Uploaded files (typically
+ * recordings) are kept in memory up to a size threshold and written to a
+ * temporary file beyond it, so that large recordings are never entirely
+ * buffered on the heap. Alternatively, uploaded files can be handed to a
+ * {@link RecordingSink} as they are parsed.
  * 
  * @author Nu Echo Inc.
+ * @see FileUpload
+ * @see RecordingSink
  */
 public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXmlInputTurn, VoiceXmlFirstTurn> {
     public static final String INPUT_TURN_PARAMETER = "inputTurn";
@@ -63,8 +78,77 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
     //for subdialogue, script and object
     public static final String VALUE_PROPERTY = "value";
 
+    /**
+     * Default size, in bytes, above which an uploaded file is stored in a
+     * temporary file.
+     * 
+     * @since 1.0.13
+     */
+    public static final int DEFAULT_FILE_UPLOAD_SIZE_THRESHOLD = 64 * 1024;
+
     private static final Pattern CHAR_SET_PATTERN = Pattern.compile("charset\\s*=\\s*([^ ;]+)");
 
+    private volatile int mFileUploadSizeThreshold = DEFAULT_FILE_UPLOAD_SIZE_THRESHOLD;
+    private volatile File mFileUploadRepository;
+    private volatile RecordingSink mRecordingSink;
+
+    /**
+     * Sets the size, in bytes, above which an uploaded file is stored in a
+     * temporary file instead of memory. Use <code>0</code> to always store
+     * files on disk. Default: {@link #DEFAULT_FILE_UPLOAD_SIZE_THRESHOLD}.
+     * 
+     * @since 1.0.13
+     */
+    public void setFileUploadSizeThreshold(int fileUploadSizeThreshold) {
+        Assert.notNegative(fileUploadSizeThreshold, "fileUploadSizeThreshold");
+        mFileUploadSizeThreshold = fileUploadSizeThreshold;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public int getFileUploadSizeThreshold() {
+        return mFileUploadSizeThreshold;
+    }
+
+    /**
+     * Sets the directory in which temporary files are created for uploaded
+     * files exceeding the size threshold.
+     * 
+     * @param fileUploadRepository the directory, or <code>null</code> to use
+     *            the system temporary directory (the default)
+     * @since 1.0.13
+     */
+    public void setFileUploadRepository(File fileUploadRepository) {
+        mFileUploadRepository = fileUploadRepository;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public File getFileUploadRepository() {
+        return mFileUploadRepository;
+    }
+
+    /**
+     * Sets the sink to which uploaded files are handed while the request is
+     * parsed. When set, the size threshold and the repository are not used.
+     * 
+     * @param recordingSink the sink, or <code>null</code> to keep uploaded
+     *            files in the {@link FileUpload} (the default)
+     * @since 1.0.13
+     */
+    public void setRecordingSink(RecordingSink recordingSink) {
+        mRecordingSink = recordingSink;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public RecordingSink getRecordingSink() {
+        return mRecordingSink;
+    }
+
     @Override
     public VoiceXmlFirstTurn createFirstTurn(HttpServletRequest request, HttpServletResponse response)
             throws InputTurnFactoryException {
@@ -96,82 +180,126 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
                                                 + INPUT_TURN_PARAMETER
                                                 + "' parameter.");
 
-        JsonReader jsonReader = JsonUtils.createReader(result);
-        JsonObject resultObject = jsonReader.readObject();
         VoiceXmlInputTurn voiceXmlInputTurn = new VoiceXmlInputTurn();
         voiceXmlInputTurn.setFiles(files);
-
-        addEvents(resultObject, voiceXmlInputTurn);
-        addObject(resultObject, voiceXmlInputTurn);
-        addTransferStatusInfo(resultObject, voiceXmlInputTurn);
-        addRecognitionInfo(resultObject, voiceXmlInputTurn);
-        addRecordingInfo(resultObject, voiceXmlInputTurn, files);
+        parseInputTurn(result, voiceXmlInputTurn, files);
         return voiceXmlInputTurn;
     }
 
-    private static void addEvents(JsonObject resultObject, VoiceXmlInputTurn voiceXmlInputTurn) {
-        if (!resultObject.containsKey(EVENTS_PROPERTY)) return;
+    /**
+     * Fills the input turn from the events of a {@link JsonParser}, without
+     * building the whole JSON tree. The subdialogue/script/object value and
+     * the recognition result are only validated: they are built when the
+     * dialogue requests them.
+     */
+    private static void parseInputTurn(String inputTurn,
+                                       VoiceXmlInputTurn voiceXmlInputTurn,
+                                       Map<String, FileUpload> files) throws InputTurnFactoryException {
+        JsonParser parser = JsonUtils.createParser(inputTurn);
+        try {
+            expect(parser, parser.next(), Event.START_OBJECT, INPUT_TURN_PARAMETER);
+            while (parser.next() == Event.KEY_NAME) {
+                String property = parser.getString();
+                Event event = parser.next();
+                if (EVENTS_PROPERTY.equals(property)) {
+                    addEvents(parser, event, voiceXmlInputTurn);
+                } else if (VALUE_PROPERTY.equals(property)) {
+                    voiceXmlInputTurn.setLazyJsonValue(LazyJsonValue.read(inputTurn, parser, event));
+                } else if (TRANSFER_PROPERTY.equals(property)) {
+                    addTransferStatusInfo(parser, event, voiceXmlInputTurn);
+                } else if (RECOGNITION_PROPERTY.equals(property)) {
+                    addRecognitionInfo(inputTurn, parser, event, voiceXmlInputTurn);
+                } else if (RECORDING_META_DATA_PROPERTY.equals(property)) {
+                    addRecordingInfo(parser, event, voiceXmlInputTurn, files);
+                } else {
+                    JsonUtils.skipValue(parser, event);
+                }
+            }
+        } catch (JsonException exception) {
+            throw new InputTurnFactoryException("Unable to parse '" + INPUT_TURN_PARAMETER + "' parameter.", exception);
+        } finally {
+            parser.close();
+        }
+    }
 
-        List<JsonValue> eventObjects = resultObject.getJsonArray(EVENTS_PROPERTY);
-        List<VoiceXmlEvent> events = new ArrayList<VoiceXmlEvent>();
-        for (JsonValue jsonValue : eventObjects) {
-            JsonObject eventObject = (JsonObject) jsonValue;
+    private static void addEvents(JsonParser parser, Event event, VoiceXmlInputTurn voiceXmlInputTurn)
+            throws InputTurnFactoryException {
+        expect(parser, event, Event.START_ARRAY, EVENTS_PROPERTY);
 
-            String name = eventObject.getString(EVENT_NAME_PROPERTY);
-            String message = eventObject.getString(EVENT_MESSAGE_PROPERTY, null);
+        List<VoiceXmlEvent> events = new ArrayList<VoiceXmlEvent>();
+        Event eventObjectEvent;
+        while ((eventObjectEvent = parser.next()) != Event.END_ARRAY) {
+            expect(parser, eventObjectEvent, Event.START_OBJECT, EVENTS_PROPERTY);
+
+            String name = null;
+            String message = null;
+            while (parser.next() == Event.KEY_NAME) {
+                String property = parser.getString();
+                Event valueEvent = parser.next();
+                if (EVENT_NAME_PROPERTY.equals(property)) {
+                    name = readString(parser, valueEvent, EVENT_NAME_PROPERTY);
+                } else if (EVENT_MESSAGE_PROPERTY.equals(property)) {
+                    message = readOptionalString(parser, valueEvent);
+                } else {
+                    JsonUtils.skipValue(parser, valueEvent);
+                }
+            }
 
-            events.add(new VoiceXmlEvent(name, message));
+            events.add(new VoiceXmlEvent(require(name, EVENT_NAME_PROPERTY), message));
         }
 
         voiceXmlInputTurn.setEvents(events);
     }
 
-    private static void addObject(JsonObject resultObject, VoiceXmlInputTurn voiceXmlInputTurn) {
-        if (!resultObject.containsKey(VALUE_PROPERTY)) return;
-
-        JsonValue subdialogueResultJsonValue = resultObject.get(VALUE_PROPERTY);
-        voiceXmlInputTurn.setJsonValue(subdialogueResultJsonValue);
-    }
-
-    private static void addTransferStatusInfo(JsonObject resultObject, VoiceXmlInputTurn voiceXmlInputTurn) {
-        if (!resultObject.containsKey(TRANSFER_PROPERTY)) return;
-
-        JsonObject transferResultObject = resultObject.getJsonObject(TRANSFER_PROPERTY);
-
-        TransferStatus transferStatus = new TransferStatus(transferResultObject.getString(TRANSFER_STATUS_PROPERTY));
-
-        long durationValue;
-
-        if (transferResultObject.containsKey(TRANSFER_DURATION_PROPERTY)) {
-            durationValue = JsonUtils.getLongProperty(transferResultObject, TRANSFER_DURATION_PROPERTY);
-        } else {
-            durationValue = 0;
+    private static void addTransferStatusInfo(JsonParser parser, Event event, VoiceXmlInputTurn voiceXmlInputTurn)
+            throws InputTurnFactoryException {
+        expect(parser, event, Event.START_OBJECT, TRANSFER_PROPERTY);
+
+        String status = null;
+        long durationValue = 0;
+        while (parser.next() == Event.KEY_NAME) {
+            String property = parser.getString();
+            Event valueEvent = parser.next();
+            if (TRANSFER_STATUS_PROPERTY.equals(property)) {
+                status = readString(parser, valueEvent, TRANSFER_STATUS_PROPERTY);
+            } else if (TRANSFER_DURATION_PROPERTY.equals(property)) {
+                durationValue = readLong(parser, valueEvent, TRANSFER_DURATION_PROPERTY);
+            } else {
+                JsonUtils.skipValue(parser, valueEvent);
+            }
         }
 
+        TransferStatus transferStatus = new TransferStatus(require(status, TRANSFER_STATUS_PROPERTY));
         Duration duration = Duration.milliseconds(durationValue);
 
         voiceXmlInputTurn.setTransferResult(new TransferStatusInfo(transferStatus, duration));
     }
 
-    private static void addRecordingInfo(JsonObject resultObject,
+    private static void addRecordingInfo(JsonParser parser,
+                                         Event event,
                                          VoiceXmlInputTurn voiceXmlInputTurn,
-                                         Map<String, FileUpload> files) {
-        if (!resultObject.containsKey(RECORDING_META_DATA_PROPERTY)) return;
-
-        JsonObject recordingMetaData = resultObject.getJsonObject(RECORDING_META_DATA_PROPERTY);
-
-        Duration duration;
-        if (recordingMetaData.containsKey(DURATION_PROPERTY)) {
-            long durationInMilliseconds = JsonUtils.getLongProperty(recordingMetaData, DURATION_PROPERTY);
-            duration = Duration.milliseconds(durationInMilliseconds);
-        } else {
-            duration = null;
+                                         Map<String, FileUpload> files) throws InputTurnFactoryException {
+        expect(parser, event, Event.START_OBJECT, RECORDING_META_DATA_PROPERTY);
+
+        Duration duration = null;
+        boolean maxTime = false;
+        String dtmfTermChar = null;
+        while (parser.next() == Event.KEY_NAME) {
+            String property = parser.getString();
+            Event valueEvent = parser.next();
+            if (DURATION_PROPERTY.equals(property)) {
+                long durationInMilliseconds = readLong(parser, valueEvent, DURATION_PROPERTY);
+                duration = Duration.milliseconds(durationInMilliseconds);
+            } else if (MAX_TIME_PROPERTY.equals(property)) {
+                maxTime = valueEvent == Event.VALUE_TRUE;
+                JsonUtils.skipValue(parser, valueEvent);
+            } else if (TERM_CHAR_PROPERTY.equals(property)) {
+                dtmfTermChar = readOptionalString(parser, valueEvent);
+            } else {
+                JsonUtils.skipValue(parser, valueEvent);
+            }
         }
 
-        boolean maxTime = recordingMetaData.getBoolean(MAX_TIME_PROPERTY, false);
-
-        String dtmfTermChar = recordingMetaData.getString(TERM_CHAR_PROPERTY, null);
-
         FileUpload file;
         if (!files.containsKey(RECORDING_PARAMETER)) {
             file = null;
@@ -182,22 +310,93 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
         voiceXmlInputTurn.setRecordingInfo(new RecordingInfo(file, duration, maxTime, dtmfTermChar));
     }
 
-    private void addRecognitionInfo(JsonObject jsonObject, VoiceXmlInputTurn voiceXmlInputTurn) {
-
-        if (!jsonObject.containsKey(RECOGNITION_PROPERTY)) return;
+    private static void addRecognitionInfo(String inputTurn,
+                                           JsonParser parser,
+                                           Event event,
+                                           VoiceXmlInputTurn voiceXmlInputTurn) throws InputTurnFactoryException {
+        expect(parser, event, Event.START_OBJECT, RECOGNITION_PROPERTY);
 
-        JsonObject recognitionObject = jsonObject.getJsonObject(RECOGNITION_PROPERTY);
+        LazyJsonValue recognitionResult = null;
+        MarkInfo markInfo = null;
+        while (parser.next() == Event.KEY_NAME) {
+            String property = parser.getString();
+            Event valueEvent = parser.next();
+            if (RESULT_PROPERTY.equals(property)) {
+                expect(parser, valueEvent, Event.START_ARRAY, RESULT_PROPERTY);
+                recognitionResult = LazyJsonValue.read(inputTurn, parser, valueEvent);
+            } else if (MARK_PROPERTY.equals(property)) {
+                markInfo = readMarkInfo(parser, valueEvent);
+            } else {
+                JsonUtils.skipValue(parser, valueEvent);
+            }
+        }
 
-        JsonArray recognitionResultArray = recognitionObject.getJsonArray(RESULT_PROPERTY);
+        voiceXmlInputTurn.setRecognitionInfo(new RecognitionInfo(require(recognitionResult, RESULT_PROPERTY),
+                                                                 markInfo));
+    }
 
-        MarkInfo markInfo = null;
-        if (recognitionObject.containsKey(MARK_PROPERTY)) {
-            JsonObject markObject = recognitionObject.getJsonObject(MARK_PROPERTY);
-            long timeInMilliseconds = JsonUtils.getLongProperty(markObject, MARK_TIME_PROPERTY);
-            markInfo = new MarkInfo(markObject.getString(MARK_NAME_PROPERTY), Duration.milliseconds(timeInMilliseconds));
+    private static MarkInfo readMarkInfo(JsonParser parser, Event event) throws InputTurnFactoryException {
+        expect(parser, event, Event.START_OBJECT, MARK_PROPERTY);
+
+        String name = null;
+        Long timeInMilliseconds = null;
+        while (parser.next() == Event.KEY_NAME) {
+            String property = parser.getString();
+            Event valueEvent = parser.next();
+            if (MARK_NAME_PROPERTY.equals(property)) {
+                name = readString(parser, valueEvent, MARK_NAME_PROPERTY);
+            } else if (MARK_TIME_PROPERTY.equals(property)) {
+                timeInMilliseconds = readLong(parser, valueEvent, MARK_TIME_PROPERTY);
+            } else {
+                JsonUtils.skipValue(parser, valueEvent);
+            }
         }
 
-        voiceXmlInputTurn.setRecognitionInfo(new RecognitionInfo(recognitionResultArray, markInfo));
+        return new MarkInfo(require(name, MARK_NAME_PROPERTY),
+                            Duration.milliseconds(require(timeInMilliseconds, MARK_TIME_PROPERTY)));
+    }
+
+    private static String readString(JsonParser parser, Event event, String property)
+            throws InputTurnFactoryException {
+        expect(parser, event, Event.VALUE_STRING, property);
+        return parser.getString();
+    }
+
+    private static String readOptionalString(JsonParser parser, Event event) {
+        if (event == Event.VALUE_STRING) return parser.getString();
+        JsonUtils.skipValue(parser, event);
+        return null;
+    }
+
+    private static long readLong(JsonParser parser, Event event, String property) throws InputTurnFactoryException {
+        expect(parser, event, Event.VALUE_NUMBER, property);
+        return parser.getLong();
+    }
+
+    private static void expect(JsonParser parser, Event event, Event expectedEvent, String property)
+            throws InputTurnFactoryException {
+        if (event != expectedEvent)
+            throw new InputTurnFactoryException("Unable to process request. Unexpected "
+                                                + event
+                                                + " instead of "
+                                                + expectedEvent
+                                                + " for '"
+                                                + property
+                                                + "' in '"
+                                                + INPUT_TURN_PARAMETER
+                                                + "' parameter at "
+                                                + parser.getLocation()
+                                                + ".");
+    }
+
+    private static <T> T require(T value, String property) throws InputTurnFactoryException {
+        if (value == null)
+            throw new InputTurnFactoryException("Unable to process request. Missing '"
+                                                + property
+                                                + "' property in '"
+                                                + INPUT_TURN_PARAMETER
+                                                + "' parameter.");
+        return value;
     }
 
     private void processRequestParametersAndFiles(HttpServletRequest request,
@@ -205,28 +404,36 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
                                                   Map<String, FileUpload> files) throws InputTurnFactoryException {
         if (ServletFileUpload.isMultipartContent(request)) {
             ServletFileUpload servletFileUpload = new ServletFileUpload();
+            RecordingSink recordingSink = mRecordingSink;
+            DiskFileItemFactory fileItemFactory = new DiskFileItemFactory(mFileUploadSizeThreshold,
+                                                                          mFileUploadRepository);
             try {
                 FileItemIterator itemIterator = servletFileUpload.getItemIterator(request);
                 while (itemIterator.hasNext()) {
                     FileItemStream fileItemStream = itemIterator.next();
 
-                    byte[] bytes;
                     String parameterName = fileItemStream.getFieldName();
-                    try {
-                        InputStream stream = fileItemStream.openStream();
-                        bytes = IOUtils.toByteArray(stream);
-                    } catch (IOException exception) {
-                        throw new ServletException("Unable to read stream from " + parameterName, exception);
-                    }
-
                     if (!fileItemStream.isFormField()) {
-                        FileUpload fileUpload = new FileUpload(fileItemStream.getName(),
-                                                               fileItemStream.getContentType(),
-                                                               bytes,
-                                                               getHeaders(fileItemStream));
+                        FileUpload fileUpload;
+                        if (recordingSink != null) {
+                            fileUpload = store(fileItemStream, recordingSink);
+                        } else {
+                            fileUpload = new FileUpload(fileItemStream.getName(),
+                                                        fileItemStream.getContentType(),
+                                                        store(fileItemStream, fileItemFactory),
+                                                        getHeaders(fileItemStream));
+                        }
 
                         files.put(parameterName, fileUpload);
                     } else {
+                        byte[] bytes;
+                        try {
+                            InputStream stream = fileItemStream.openStream();
+                            bytes = IOUtils.toByteArray(stream);
+                        } catch (IOException exception) {
+                            throw new ServletException("Unable to read stream from " + parameterName, exception);
+                        }
+
                         String encoding = findEncoding(request, fileItemStream);
                         try {
                             parameters.put(parameterName, new String(bytes, encoding));
@@ -254,6 +461,44 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
 
     }
 
+    private static DiskFileItem store(FileItemStream fileItemStream, DiskFileItemFactory fileItemFactory)
+            throws ServletException {
+        DiskFileItem fileItem = (DiskFileItem) fileItemFactory.createItem(fileItemStream.getFieldName(),
+                                                                          fileItemStream.getContentType(),
+                                                                          false,
+                                                                          fileItemStream.getName());
+        try {
+            Streams.copy(fileItemStream.openStream(), fileItem.getOutputStream(), true);
+        } catch (IOException exception) {
+            fileItem.delete();
+            throw new ServletException("Unable to read stream from " + fileItemStream.getFieldName(), exception);
+        }
+        return fileItem;
+    }
+
+    private FileUpload store(FileItemStream fileItemStream, RecordingSink recordingSink) throws ServletException {
+        Map<String, String> headers = getHeaders(fileItemStream);
+        try {
+            CountingChannel content = new CountingChannel(Channels.newChannel(fileItemStream.openStream()));
+            URI location = recordingSink.store(fileItemStream.getFieldName(),
+                                               fileItemStream.getName(),
+                                               fileItemStream.getContentType(),
+                                               Collections.unmodifiableMap(headers),
+                                               content);
+            if (location == null)
+                throw new ServletException("Recording sink returned no location for "
+                                           + fileItemStream.getFieldName());
+
+            return new FileUpload(fileItemStream.getName(),
+                                  fileItemStream.getContentType(),
+                                  location,
+                                  content.getCount(),
+                                  headers);
+        } catch (IOException exception) {
+            throw new ServletException("Unable to store stream from " + fileItemStream.getFieldName(), exception);
+        }
+    }
+
     private String findEncoding(HttpServletRequest request, FileItemStream fileItemStream) {
 
         String encoding = null;
@@ -294,4 +539,42 @@ public final class VoiceXmlInputTurnFactory implements InputTurnFactory<VoiceXml
         }
         return headers;
     }
-}
\ No newline at end of file
+
+    /**
+     * Channel counting the bytes read from another channel. Closing it does not
+     * close the underlying channel.
+     */
+    private static final class CountingChannel implements ReadableByteChannel {
+        private final ReadableByteChannel mChannel;
+        private long mCount;
+        private boolean mOpen = true;
+
+        public CountingChannel(ReadableByteChannel channel) {
+            mChannel = channel;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer) throws IOException {
+            if (!mOpen) throw new ClosedChannelException();
+            int read = mChannel.read(buffer);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return mOpen;
+        }
+
+        @Override
+        public void close() {
+            mOpen = false;
+        }
+    }
+}
@@ -4,6 +4,7 @@
 
 package com.nuecho.rivr.voicexml.turn;
 
+import java.io.*;
 import java.util.*;
 
 import javax.json.*;
@@ -13,6 +14,7 @@ import org.w3c.dom.*;
 import com.nuecho.rivr.core.util.*;
 import com.nuecho.rivr.voicexml.dialogue.*;
 import com.nuecho.rivr.voicexml.rendering.voicexml.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.errorhandling.*;
 import com.nuecho.rivr.voicexml.turn.last.*;
 import com.nuecho.rivr.voicexml.turn.output.*;
 import com.nuecho.rivr.voicexml.util.json.*;
@@ -21,6 +23,15 @@ import com.nuecho.rivr.voicexml.util.json.*;
  * Base class for {@link VoiceXmlOutputTurn} and {@link VoiceXmlLastTurn}. A
  * {@link VoiceXmlDocumentTurn} has a <code>name</code> and a list (possibly
  * empty) of {@link VoiceXmlDocumentAdapter}.
+ * <p>
+ * The VoiceXML document of a turn is normally built as a DOM by
+ * {@link #getVoiceXmlDocument(VoiceXmlDialogueContext)}. Turns can also support
+ * streaming: when
+ * {@link #canWriteVoiceXmlDocument(VoiceXmlDialogueContext)} returns
+ * <code>true</code>, the document can be written directly to a
+ * {@link VoiceXmlWriter} by
+ * {@link #writeVoiceXmlDocument(VoiceXmlWriter, VoiceXmlDialogueContext, int)}
+ * . Both forms produce the same document.
  *
  * @author Nu Echo Inc.
  */
@@ -41,6 +52,37 @@ public abstract class VoiceXmlDocumentTurn implements JsonSerializable {
     protected abstract Document createVoiceXmlDocument(VoiceXmlDialogueContext dialogueContext)
             throws VoiceXmlDocumentRenderingException;
 
+    /**
+     * Tells if this turn implements
+     * {@link #renderVoiceXmlDocument(VoiceXmlWriter, VoiceXmlDialogueContext, int)}
+     * . Since subclasses may customize
+     * {@link #createVoiceXmlDocument(VoiceXmlDialogueContext)}, implementations
+     * should only return <code>true</code> for their exact class.
+     *
+     * @return <code>false</code> by default.
+     * @since 1.0.13
+     */
+    protected boolean canRenderVoiceXmlDocument() {
+        return false;
+    }
+
+    /**
+     * Writes the same document as
+     * {@link #createVoiceXmlDocument(VoiceXmlDialogueContext)} without building
+     * a DOM. Only called if {@link #canRenderVoiceXmlDocument()} returns
+     * <code>true</code>.
+     *
+     * @param writer the writer receiving the document
+     * @param dialogueContext the dialogue context
+     * @param turnIndex the index of this turn in the dialogue, used to build
+     *            the submit path
+     * @since 1.0.13
+     */
+    protected void renderVoiceXmlDocument(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext, int turnIndex)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot be rendered without DOM.");
+    }
+
     /**
      * Adds top level properties to the JSON representation of this turn
      *
@@ -68,6 +110,45 @@ public abstract class VoiceXmlDocumentTurn implements JsonSerializable {
         return document;
     }
 
+    /**
+     * Tells if the VoiceXML document of this turn can be written by
+     * {@link #writeVoiceXmlDocument(VoiceXmlWriter, VoiceXmlDialogueContext, int)}
+     * , i.e. if the turn supports streaming, has no
+     * {@link VoiceXmlDocumentAdapter} requiring the DOM and if the
+     * {@link FatalErrorFormFactory} of the dialogue context does not require
+     * the DOM either.
+     *
+     * @param dialogueContext the dialogue context. Cannot be <code>null</code>.
+     * @since 1.0.13
+     */
+    public final boolean canWriteVoiceXmlDocument(VoiceXmlDialogueContext dialogueContext) {
+        Assert.notNull(dialogueContext, "dialogueContext");
+        return mAdapters.isEmpty()
+               && canRenderVoiceXmlDocument()
+               && VoiceXmlWriterUtil.canWriteFatalErrorHandlerForm(dialogueContext);
+    }
+
+    /**
+     * Writes the VoiceXML document of this turn without building a DOM.
+     *
+     * @param writer the writer receiving the document. Cannot be
+     *            <code>null</code>.
+     * @param dialogueContext the dialogue context. Cannot be <code>null</code>.
+     * @param turnIndex the index of this turn in the dialogue
+     * @throws IllegalStateException if
+     *             {@link #canWriteVoiceXmlDocument(VoiceXmlDialogueContext)}
+     *             returns <code>false</code>.
+     * @since 1.0.13
+     */
+    public final void writeVoiceXmlDocument(VoiceXmlWriter writer,
+                                            VoiceXmlDialogueContext dialogueContext,
+                                            int turnIndex) throws VoiceXmlDocumentRenderingException, IOException {
+        Assert.notNull(writer, "writer");
+        if (!canWriteVoiceXmlDocument(dialogueContext))
+            throw new IllegalStateException("Turn '" + mName + "' cannot be written without DOM.");
+        renderVoiceXmlDocument(writer, dialogueContext, turnIndex);
+    }
+
     @Override
     public final String toString() {
         return asJson().toString();
@@ -25,17 +25,33 @@ public final class RecognitionInfo implements JsonSerializable {
 
     private static final String MARK_INFO_PROPERTY = "markInfo";
     private static final String RECOGNITION_RESULT_PROPERTY = "recognitionResult";
-    private final JsonArray mRecognitionResult;
+    private final LazyJsonValue mRecognitionResult;
     private final MarkInfo mMarkInfo;
 
+    //JSON representation computed once
+    private volatile JsonValue mJson;
+    private volatile String mString;
+
     public RecognitionInfo(JsonArray recognitionResult, MarkInfo markInfo) {
+        Assert.notNull(recognitionResult, RECOGNITION_RESULT_PROPERTY);
+        mRecognitionResult = new LazyJsonValue(recognitionResult);
+        mMarkInfo = markInfo;
+    }
+
+    /**
+     * @param recognitionResult the recognition result, built when
+     *            {@link #getRecognitionResult()} is first called. Must be a
+     *            JSON array.
+     * @since 1.0.13
+     */
+    public RecognitionInfo(LazyJsonValue recognitionResult, MarkInfo markInfo) {
         Assert.notNull(recognitionResult, RECOGNITION_RESULT_PROPERTY);
         mRecognitionResult = recognitionResult;
         mMarkInfo = markInfo;
     }
 
     public JsonArray getRecognitionResult() {
-        return mRecognitionResult;
+        return (JsonArray) mRecognitionResult.getValue();
     }
 
     public MarkInfo getMarkInfo() {
@@ -44,13 +60,27 @@ public final class RecognitionInfo implements JsonSerializable {
 
     @Override
     public String toString() {
-        return asJson().toString();
+        String string = mString;
+        if (string == null) {
+            string = asJson().toString();
+            mString = string;
+        }
+        return string;
     }
 
     @Override
     public JsonValue asJson() {
+        JsonValue json = mJson;
+        if (json == null) {
+            json = createJson();
+            mJson = json;
+        }
+        return json;
+    }
+
+    private JsonValue createJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
-        JsonUtils.add(builder, RECOGNITION_RESULT_PROPERTY, mRecognitionResult);
+        JsonUtils.add(builder, RECOGNITION_RESULT_PROPERTY, getRecognitionResult());
         JsonUtils.add(builder, MARK_INFO_PROPERTY, mMarkInfo);
         return builder.build();
     }
@@ -60,7 +90,7 @@ public final class RecognitionInfo implements JsonSerializable {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((mMarkInfo == null) ? 0 : mMarkInfo.hashCode());
-        result = prime * result + ((mRecognitionResult == null) ? 0 : mRecognitionResult.hashCode());
+        result = prime * result + getRecognitionResult().hashCode();
         return result;
     }
 
@@ -73,9 +103,7 @@ public final class RecognitionInfo implements JsonSerializable {
         if (mMarkInfo == null) {
             if (other.mMarkInfo != null) return false;
         } else if (!mMarkInfo.equals(other.mMarkInfo)) return false;
-        if (mRecognitionResult == null) {
-            if (other.mRecognitionResult != null) return false;
-        } else if (!mRecognitionResult.equals(other.mRecognitionResult)) return false;
+        if (!getRecognitionResult().equals(other.getRecognitionResult())) return false;
         return true;
     }
 }
\ No newline at end of file
@@ -3,6 +3,8 @@
  */
 package com.nuecho.rivr.voicexml.turn.input;
 
+import java.net.*;
+
 import javax.json.*;
 
 import com.nuecho.rivr.core.util.*;
@@ -33,6 +35,10 @@ public final class RecordingInfo implements JsonSerializable {
     private final boolean mMaxTime;
     private final String mDtmfTerm;
 
+    //JSON representation computed once
+    private volatile JsonValue mJson;
+    private volatile String mString;
+
     public RecordingInfo(FileUpload file, Duration duration, boolean maxTime, String dtmfTerm) {
         mFile = file;
         mDuration = duration;
@@ -44,6 +50,18 @@ public final class RecordingInfo implements JsonSerializable {
         return mFile;
     }
 
+    /**
+     * @return the location where the recording was stored by a
+     *         {@link RecordingSink}, or <code>null</code> if there is no
+     *         recorded file or if no sink was used
+     * @see FileUpload#getLocation()
+     * @since 1.0.13
+     */
+    public URI getLocation() {
+        if (mFile == null) return null;
+        return mFile.getLocation();
+    }
+
     public boolean isMaxTime() {
         return mMaxTime;
     }
@@ -58,15 +76,29 @@ public final class RecordingInfo implements JsonSerializable {
 
     @Override
     public String toString() {
-        return asJson().toString();
+        String string = mString;
+        if (string == null) {
+            string = asJson().toString();
+            mString = string;
+        }
+        return string;
     }
 
     @Override
     public JsonValue asJson() {
+        JsonValue json = mJson;
+        if (json == null) {
+            json = createJson();
+            mJson = json;
+        }
+        return json;
+    }
+
+    private JsonValue createJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
         JsonUtils.add(builder, DTMF_TERM_PROPERTY, mDtmfTerm);
         builder.add(MAX_TIME_PROPERTY, mMaxTime);
-        builder.add(DURATION_PROPERTY, mDuration.getMilliseconds());
+        JsonUtils.addDurationProperty(builder, DURATION_PROPERTY, mDuration);
         JsonUtils.add(builder, "file", mFile);
         return builder.build();
     }
@@ -35,18 +35,23 @@ public final class VoiceXmlInputTurn implements InputTurn, JsonSerializable {
     private static final String VALUE_PROPERTY = "value";
 
     private List<VoiceXmlEvent> mEvents = emptyList();
-    private JsonValue mJsonValue;
+    private LazyJsonValue mJsonValue;
     private RecognitionInfo mRecognitionInfo;
     private RecordingInfo mRecordingInfo;
     private TransferStatusInfo mTransferResult;
     private Map<String, FileUpload> mFiles;
 
+    //JSON representation computed once, reset by setters
+    private volatile JsonValue mJson;
+    private volatile String mString;
+
     public List<VoiceXmlEvent> getEvents() {
         return Collections.unmodifiableList(mEvents);
     }
 
     public JsonValue getJsonValue() {
-        return mJsonValue;
+        if (mJsonValue == null) return null;
+        return mJsonValue.getValue();
     }
 
     public RecognitionInfo getRecognitionInfo() {
@@ -64,41 +69,77 @@ public final class VoiceXmlInputTurn implements InputTurn, JsonSerializable {
     public void setEvents(List<VoiceXmlEvent> events) {
         Assert.notNull(events, "events");
         mEvents = new ArrayList<VoiceXmlEvent>(events);
+        invalidateJson();
     }
 
     public void setJsonValue(JsonValue jsonValue) {
+        mJsonValue = jsonValue == null ? null : new LazyJsonValue(jsonValue);
+        invalidateJson();
+    }
+
+    /**
+     * Sets the value, which is built when {@link #getJsonValue()} is first
+     * called.
+     * 
+     * @since 1.0.13
+     */
+    public void setLazyJsonValue(LazyJsonValue jsonValue) {
         mJsonValue = jsonValue;
+        invalidateJson();
     }
 
     public void setRecognitionInfo(RecognitionInfo recognitionInfo) {
         mRecognitionInfo = recognitionInfo;
+        invalidateJson();
     }
 
     public void setRecordingInfo(RecordingInfo recordingInfo) {
         mRecordingInfo = recordingInfo;
+        invalidateJson();
     }
 
     public void setTransferResult(TransferStatusInfo transferResult) {
         mTransferResult = transferResult;
+        invalidateJson();
     }
 
     public void setFiles(Map<String, FileUpload> files) {
         mFiles = new HashMap<String, FileUpload>(files);
+        invalidateJson();
     }
 
     public Map<String, FileUpload> getFiles() {
         return unmodifiableMap(mFiles);
     }
 
+    private void invalidateJson() {
+        mJson = null;
+        mString = null;
+    }
+
     @Override
     public String toString() {
-        return asJson().toString();
+        String string = mString;
+        if (string == null) {
+            string = asJson().toString();
+            mString = string;
+        }
+        return string;
     }
 
     @Override
     public JsonValue asJson() {
+        JsonValue json = mJson;
+        if (json == null) {
+            json = createJson();
+            mJson = json;
+        }
+        return json;
+    }
+
+    private JsonValue createJson() {
         JsonObjectBuilder builder = JsonUtils.createObjectBuilder();
-        JsonUtils.add(builder, VALUE_PROPERTY, mJsonValue);
+        JsonUtils.add(builder, VALUE_PROPERTY, getJsonValue());
         JsonUtils.add(builder, EVENTS_PROPERTY, JsonUtils.toJson(mEvents));
         JsonUtils.add(builder, RECOGNITION_INFO_PROPERTY, mRecognitionInfo);
         JsonUtils.add(builder, RECORDING_INFO_PROPERTY, mRecordingInfo);
@@ -112,7 +153,7 @@ public final class VoiceXmlInputTurn implements InputTurn, JsonSerializable {
         int result = 1;
         result = prime * result + ((mEvents == null) ? 0 : mEvents.hashCode());
         result = prime * result + ((mFiles == null) ? 0 : mFiles.hashCode());
-        result = prime * result + ((mJsonValue == null) ? 0 : mJsonValue.hashCode());
+        result = prime * result + ((mJsonValue == null) ? 0 : getJsonValue().hashCode());
         result = prime * result + ((mRecognitionInfo == null) ? 0 : mRecognitionInfo.hashCode());
         result = prime * result + ((mRecordingInfo == null) ? 0 : mRecordingInfo.hashCode());
         result = prime * result + ((mTransferResult == null) ? 0 : mTransferResult.hashCode());
@@ -133,7 +174,7 @@ public final class VoiceXmlInputTurn implements InputTurn, JsonSerializable {
         } else if (!mFiles.equals(other.mFiles)) return false;
         if (mJsonValue == null) {
             if (other.mJsonValue != null) return false;
-        } else if (!mJsonValue.equals(other.mJsonValue)) return false;
+        } else if (other.mJsonValue == null || !getJsonValue().equals(other.getJsonValue())) return false;
         if (mRecognitionInfo == null) {
             if (other.mRecognitionInfo != null) return false;
         } else if (!mRecognitionInfo.equals(other.mRecognitionInfo)) return false;
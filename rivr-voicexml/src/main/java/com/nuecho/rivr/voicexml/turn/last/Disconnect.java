@@ -5,6 +5,9 @@
 package com.nuecho.rivr.voicexml.turn.last;
 
 import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlWriterUtil.*;
+
+import java.io.*;
 
 import javax.json.*;
 
@@ -67,6 +70,22 @@ public class Disconnect extends VoiceXmlLastTurn {
         blockElement.appendChild(disconnectElement);
     }
 
+    @Override
+    protected boolean canRenderVoiceXmlDocument() {
+        return getClass() == Disconnect.class;
+    }
+
+    @Override
+    protected void writeVoiceXmlForm(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        writer.writeStartElement(BLOCK_ELEMENT);
+        String namelist = writeNamelistVariables(writer, mVariables);
+        writer.writeStartElement(DISCONNECT_ELEMENT);
+        writer.writeAttribute(NAME_LIST_ATTRIBUTE, namelist);
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
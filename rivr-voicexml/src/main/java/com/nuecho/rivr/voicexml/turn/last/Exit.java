@@ -5,6 +5,9 @@
 package com.nuecho.rivr.voicexml.turn.last;
 
 import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlWriterUtil.*;
+
+import java.io.*;
 
 import javax.json.*;
 
@@ -79,6 +82,26 @@ public class Exit extends VoiceXmlLastTurn {
         blockElement.appendChild(exitElement);
     }
 
+    @Override
+    protected boolean canRenderVoiceXmlDocument() {
+        return getClass() == Exit.class;
+    }
+
+    @Override
+    protected void writeVoiceXmlForm(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        writer.writeStartElement(BLOCK_ELEMENT);
+        String namelist = writeNamelistVariables(writer, mVariables);
+        writer.writeStartElement(EXIT_ELEMENT);
+        if (mVariables != null) {
+            writer.writeAttribute(NAME_LIST_ATTRIBUTE, namelist);
+        } else {
+            writer.writeAttribute(EXPR_ATTRIBUTE, mExpression);
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
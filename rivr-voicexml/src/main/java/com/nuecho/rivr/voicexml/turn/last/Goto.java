@@ -5,6 +5,9 @@
 package com.nuecho.rivr.voicexml.turn.last;
 
 import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlWriterUtil.*;
+
+import java.io.*;
 
 import javax.json.*;
 
@@ -72,6 +75,25 @@ public class Goto extends VoiceXmlLastTurn {
         }
     }
 
+    @Override
+    protected boolean canRenderVoiceXmlDocument() {
+        return getClass() == Goto.class;
+    }
+
+    @Override
+    protected void writeVoiceXmlForm(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        writer.writeStartElement(BLOCK_ELEMENT);
+        writer.writeStartElement(SUBMIT_ELEMENT);
+        writer.writeAttribute(NEXT_ATTRIBUTE, mUri);
+
+        if (mFetchConfiguration != null) {
+            writeDocumentFetchConfiguration(writer, dialogueContext);
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -5,6 +5,9 @@
 package com.nuecho.rivr.voicexml.turn.last;
 
 import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlWriterUtil.*;
+
+import java.io.*;
 
 import javax.json.*;
 
@@ -91,6 +94,28 @@ public class Return extends VoiceXmlLastTurn {
         blockElement.appendChild(returnElement);
     }
 
+    @Override
+    protected boolean canRenderVoiceXmlDocument() {
+        return getClass() == Return.class;
+    }
+
+    @Override
+    protected void writeVoiceXmlForm(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        writer.writeStartElement(BLOCK_ELEMENT);
+        String namelist = writeNamelistVariables(writer, mVariables);
+        writer.writeStartElement(RETURN_ELEMENT);
+
+        if (mVariables != null) {
+            writer.writeAttribute(NAME_LIST_ATTRIBUTE, namelist);
+        } else if (mEventName != null) {
+            writer.writeAttribute(EVENT_ATTRIBUTE, mEventName);
+            writer.writeAttribute(MESSAGE_ATTRIBUTE, mEventMessage);
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
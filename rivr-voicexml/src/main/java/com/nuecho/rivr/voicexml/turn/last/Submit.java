@@ -5,6 +5,9 @@
 package com.nuecho.rivr.voicexml.turn.last;
 
 import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlWriterUtil.*;
+
+import java.io.*;
 
 import javax.json.*;
 
@@ -107,6 +110,24 @@ public class Submit extends VoiceXmlLastTurn {
         blockElement.appendChild(submitElement);
     }
 
+    @Override
+    protected boolean canRenderVoiceXmlDocument() {
+        return getClass() == Submit.class;
+    }
+
+    @Override
+    protected void writeVoiceXmlForm(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        writer.writeStartElement(BLOCK_ELEMENT);
+        String namelist = writeNamelistVariables(writer, mVariables);
+        writer.writeStartElement(SUBMIT_ELEMENT);
+        writer.writeAttribute(NEXT_ATTRIBUTE, mUri);
+        writer.writeAttribute(NAME_LIST_ATTRIBUTE, namelist);
+        writeDocumentFetchConfiguration(writer, mFetchConfiguration);
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -6,6 +6,8 @@ package com.nuecho.rivr.voicexml.turn.last;
 
 import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
 
+import java.io.*;
+
 import org.w3c.dom.*;
 
 import com.nuecho.rivr.core.channel.*;
@@ -37,6 +39,16 @@ public abstract class VoiceXmlLastTurn extends VoiceXmlDocumentTurn implements L
         return document;
     }
 
+    @Override
+    protected void renderVoiceXmlDocument(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext, int turnIndex)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        VoiceXmlDocumentSkeleton skeleton = VoiceXmlDocumentSkeleton.getLastTurnSkeleton(dialogueContext,
+                                                                                         writer.isIndenting());
+        skeleton.writeDocumentStart(writer, dialogueContext);
+        writeVoiceXmlForm(writer, dialogueContext);
+        skeleton.writeDocumentEnd(writer, null);
+    }
+
     private void addEventHandlers(Element vxmlElement) {
         Element catchElement = DomUtils.appendNewElement(vxmlElement, CATCH_ELEMENT);
         catchElement.setAttribute(EVENT_ATTRIBUTE, ERROR_EVENT_NAME);
@@ -48,4 +60,20 @@ public abstract class VoiceXmlLastTurn extends VoiceXmlDocumentTurn implements L
                                                  VoiceXmlDialogueContext dialogueContext)
             throws VoiceXmlDocumentRenderingException;
 
+    /**
+     * Streaming counterpart of
+     * {@link #fillVoiceXmlDocument(Document, Element, VoiceXmlDialogueContext)}
+     * : writes the content of the main form. Must be implemented by
+     * subclasses for which {@link #canRenderVoiceXmlDocument()} returns
+     * <code>true</code>.
+     *
+     * @param writer the writer, positioned inside the main form
+     * @param dialogueContext the dialogue context
+     * @since 1.0.13
+     */
+    protected void writeVoiceXmlForm(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot be rendered without DOM.");
+    }
+
 }
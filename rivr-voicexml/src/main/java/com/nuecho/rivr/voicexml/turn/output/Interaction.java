@@ -5,8 +5,10 @@ package com.nuecho.rivr.voicexml.turn.output;
 
 import static com.nuecho.rivr.core.util.Assert.*;
 import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlWriterUtil.*;
 import static com.nuecho.rivr.voicexml.turn.input.VoiceXmlEvent.*;
 
+import java.io.*;
 import java.util.*;
 
 import javax.json.*;
@@ -242,16 +244,159 @@ public class Interaction extends VoiceXmlOutputTurn {
         }
     }
 
+    @Override
+    protected boolean canRenderVoiceXmlDocument() {
+        return getClass() == Interaction.class
+               && (!mPrompts.isEmpty() || mFinalRecognitionWindow != null || mFinalRecordingWindow != null);
+    }
+
+    @Override
+    protected void writeVoiceXmlForm(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        DtmfRecognition dtmfGlobalRecognition = factorizeGlobalDtmfRecognition();
+        SpeechRecognition speechGlobalRecognition = factorizeGlobalSpeechRecognition();
+
+        writeDtmfRecognition(writer, dtmfGlobalRecognition);
+        writeSpeechRecognition(writer, speechGlobalRecognition);
+
+        boolean hasAtLeastOneField = hasRecognitionPrompt() || mFinalRecognitionWindow != null;
+        boolean gotoSubmitInLastPrompt = !hasAtLeastOneField && mFinalRecordingWindow == null;
+
+        boolean recognitionMergedWithLastPrompt = false;
+        for (int interactionPromptIndex = 0; interactionPromptIndex < mPrompts.size(); interactionPromptIndex++) {
+            Prompt prompt = mPrompts.get(interactionPromptIndex);
+            DtmfRecognition dtmfRecognition = prompt.getDtmfRecognition();
+            SpeechRecognition speechRecognition = prompt.getSpeechRecognition();
+
+            boolean usingField;
+            boolean bargeIn = prompt.getDtmfRecognition() != null || prompt.getSpeechRecognition() != null;
+
+            String formItemName = PROMPT_FORM_ITEM_NAME_PREFIX + interactionPromptIndex;
+            if (dtmfRecognition == null && speechRecognition == null) {
+                writer.writeStartElement(BLOCK_ELEMENT);
+                writer.writeAttribute(NAME_ATTRIBUTE, formItemName);
+                usingField = false;
+            } else {
+                writer.writeStartElement(FIELD_ELEMENT);
+                writer.writeAttribute(NAME_ATTRIBUTE, formItemName);
+                writeBargeIn(writer, prompt, dtmfRecognition, speechRecognition);
+                usingField = true;
+            }
+
+            writeDtmfRecognition(writer, getLocalDtmfRecognition(dtmfRecognition, dtmfGlobalRecognition));
+
+            writeSpeechRecognition(writer, getLocalSpeechRecognition(speechRecognition, speechGlobalRecognition));
+
+            if (usingField) {
+                if (mFinalRecognitionWindow != null
+                    && interactionPromptIndex == mPrompts.size() - 1
+                    && same(mFinalRecognitionWindow.getDtmfRecognition(), prompt.getDtmfRecognition())
+                    && same(mFinalRecognitionWindow.getSpeechRecognition(), prompt.getSpeechRecognition())) {
+                    writeDurationProperty(writer, TIMEOUT_PROPERTY, mFinalRecognitionWindow.getNoInputTimeout());
+                    recognitionMergedWithLastPrompt = true;
+                } else {
+                    writeDurationProperty(writer, TIMEOUT_PROPERTY, Duration.ZERO);
+                }
+            }
+
+            writePrompt(writer, prompt.getLanguage(), dialogueContext, bargeIn, prompt.getAudioItems());
+
+            if (usingField && !recognitionMergedWithLastPrompt) {
+                writer.writeStartElement(NOINPUT_ELEMENT);
+                writeAssignation(writer, formItemName, TRUE);
+                writer.writeStartElement(REPROMPT_ELEMENT);
+                writer.writeEndElement();
+                writer.writeEndElement();
+            }
+
+            if (gotoSubmitInLastPrompt && interactionPromptIndex == mPrompts.size() - 1) {
+                writeGotoSubmit(writer);
+            }
+            writer.writeEndElement();
+        }
+
+        if (mFinalRecognitionWindow != null) {
+            if (!recognitionMergedWithLastPrompt) {
+                writer.writeStartElement(FIELD_ELEMENT);
+                writer.writeAttribute(NAME_ATTRIBUTE, RECOGNITION_FORM_ITEM_NAME);
+                writeDtmfRecognition(writer, getLocalDtmfRecognition(mFinalRecognitionWindow.getDtmfRecognition(),
+                                                                     dtmfGlobalRecognition));
+
+                writeSpeechRecognition(writer,
+                                       getLocalSpeechRecognition(mFinalRecognitionWindow.getSpeechRecognition(),
+                                                                 speechGlobalRecognition));
+
+                writeDurationProperty(writer, TIMEOUT_PROPERTY, mFinalRecognitionWindow.getNoInputTimeout());
+                writer.writeEndElement();
+            }
+        } else if (mFinalRecordingWindow != null) {
+            writer.writeStartElement(RECORD_ELEMENT);
+            writer.writeAttribute(NAME_ATTRIBUTE, RECORD_FORM_ITEM_NAME);
+
+            Recording recording = mFinalRecordingWindow.getRecording();
+            writeBooleanAttribute(writer, BEEP_ATTRIBUTE, recording.getBeep());
+            writeBooleanAttribute(writer, DTMFTERM_ATTRIBUTE, recording.getDtmfTerm());
+            writeDurationAttribute(writer, FINAL_SILENCE_ATTRIBUTE, recording.getFinalSilence());
+            writeDurationAttribute(writer, MAXTIME_ATTRIBUTE, recording.getMaximumTime());
+            writer.writeAttribute(TYPE_ATTRIBUTE, recording.getType());
+
+            writeDtmfRecognition(writer, recording.getDtmfTermRecognition());
+            writeDurationProperty(writer, TIMEOUT_PROPERTY, mFinalRecordingWindow.getNoInputTimeout());
+
+            writer.writeStartElement(FILLED_ELEMENT);
+            String clientSideAssignationDestination = recording.getClientSideAssignationDestination();
+            if (clientSideAssignationDestination != null) {
+                writeAssignation(writer, clientSideAssignationDestination, RECORD_FORM_ITEM_NAME);
+            }
+
+            writeScript(writer, getRecordingResultHandlerScript(recording));
+            writeGotoSubmit(writer);
+            writer.writeEndElement();
+
+            List<? extends AudioItem> acknowledgeAudioItems = mFinalRecordingWindow.getAcknowledgeAudioItems();
+            if (!acknowledgeAudioItems.isEmpty()) {
+                writePrompt(writer, null, dialogueContext, false, acknowledgeAudioItems);
+            }
+
+            writer.writeStartElement(CATCH_ELEMENT);
+            writer.writeAttribute(EVENT_ATTRIBUTE, CONNECTION_DISCONNECT);
+            writeScript(writer, getRecordingResultHandlerScript(recording));
+            writeEventHandlerScript(writer);
+            writeGotoSubmit(writer);
+            writer.writeEndElement();
+
+            writer.writeEndElement();
+        } else if (hasAtLeastOneField) {
+            writer.writeStartElement(BLOCK_ELEMENT);
+            writeGotoSubmit(writer);
+            writer.writeEndElement();
+        }
+
+        if (hasAtLeastOneField) {
+            writeFormLevelFilled(writer);
+        }
+    }
+
     private void addRecordingResultHandlerScript(Recording recording, Element parent) {
-        createScript(parent, RIVR_SCOPE_OBJECT
-                             + ".addRecordingResult(dialog."
-                             + RECORD_FORM_ITEM_NAME
-                             + ", dialog."
-                             + RECORD_FORM_ITEM_NAME
-                             + "$, "
-                             + recording.isPostAudioToServer()
-                             + ");");
+        createScript(parent, getRecordingResultHandlerScript(recording));
+    }
 
+    private static String getRecordingResultHandlerScript(Recording recording) {
+        return RIVR_SCOPE_OBJECT
+               + ".addRecordingResult(dialog."
+               + RECORD_FORM_ITEM_NAME
+               + ", dialog."
+               + RECORD_FORM_ITEM_NAME
+               + "$, "
+               + recording.isPostAudioToServer()
+               + ");";
+    }
+
+    private boolean hasRecognitionPrompt() {
+        for (Prompt prompt : mPrompts) {
+            if (prompt.getDtmfRecognition() != null || prompt.getSpeechRecognition() != null) return true;
+        }
+        return false;
     }
 
     private static void renderPrompts(Prompt prompt,
@@ -414,6 +559,24 @@ public class Interaction extends VoiceXmlOutputTurn {
         }
     }
 
+    private static void writeBargeIn(VoiceXmlWriter writer,
+                                     Prompt prompt,
+                                     DtmfRecognition dtmfRecognition,
+                                     SpeechRecognition speechRecognition) throws IOException {
+        BargeInType bargeInType = prompt.getBargeInType();
+        if (bargeInType != null) {
+            writeProperty(writer, BARGE_IN_TYPE_PROPERTY, bargeInType.name());
+        }
+
+        if (dtmfRecognition != null && speechRecognition != null) {
+            writeProperty(writer, INPUT_MODES_PROPERTY, DTMF_VOICE_INPUT_MODE);
+        } else if (dtmfRecognition == null) {
+            writeProperty(writer, INPUT_MODES_PROPERTY, VOICE_INPUT_MODE);
+        } else if (speechRecognition == null) {
+            writeProperty(writer, INPUT_MODES_PROPERTY, DTMF_INPUT_MODE);
+        }
+    }
+
     private static DtmfRecognition getLocalDtmfRecognition(DtmfRecognition dtmfRecognition,
                                                            DtmfRecognition globalDtmfRecognition) {
         if (dtmfRecognition == null) return null;
@@ -501,6 +664,22 @@ public class Interaction extends VoiceXmlOutputTurn {
         createGotoSubmit(filledElement);
     }
 
+    private void writeFormLevelFilled(VoiceXmlWriter writer) throws IOException, VoiceXmlDocumentRenderingException {
+        writer.writeStartElement(FILLED_ELEMENT);
+        writer.writeAttribute(MODE_ATTRIBUTE, ANY_MODE);
+
+        if (mFinalRecognitionWindow != null) {
+            List<? extends AudioItem> acknowledgeAudioItems = mFinalRecognitionWindow.getAcknowledgeAudioItems();
+            if (!acknowledgeAudioItems.isEmpty()) {
+                writeAudioItems(writer, acknowledgeAudioItems);
+            }
+        }
+
+        writeScript(writer, RIVR_SCOPE_OBJECT + ".addRecognitionResult()");
+        writeGotoSubmit(writer);
+        writer.writeEndElement();
+    }
+
     /**
      * Barge-in types.
      *
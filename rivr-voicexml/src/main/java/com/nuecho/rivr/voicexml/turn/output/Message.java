@@ -6,7 +6,9 @@ package com.nuecho.rivr.voicexml.turn.output;
 
 import static com.nuecho.rivr.core.util.Assert.*;
 import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlWriterUtil.*;
 
+import java.io.*;
 import java.util.*;
 
 import javax.json.*;
@@ -114,6 +116,20 @@ public class Message extends VoiceXmlOutputTurn {
         createGotoSubmit(blockElement);
     }
 
+    @Override
+    protected boolean canRenderVoiceXmlDocument() {
+        return getClass() == Message.class;
+    }
+
+    @Override
+    protected void writeVoiceXmlForm(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        writer.writeStartElement(BLOCK_ELEMENT);
+        writePrompt(writer, mLanguage, dialogueContext, mBargeIn, mAudioItems);
+        writeGotoSubmit(writer);
+        writer.writeEndElement();
+    }
+
     /**
      * Builder used to ease the creation of instances of {@link Message}.
      */
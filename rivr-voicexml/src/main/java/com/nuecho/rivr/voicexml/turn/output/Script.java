@@ -5,7 +5,9 @@
 package com.nuecho.rivr.voicexml.turn.output;
 
 import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
+import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlWriterUtil.*;
 
+import java.io.*;
 import java.util.Map.Entry;
 
 import javax.json.*;
@@ -86,6 +88,11 @@ public class Script extends VoiceXmlOutputTurn {
             DomUtils.appendNewText(scriptElement, mCode);
         }
 
+        createScript(blockElement, getResultScript());
+        createGotoSubmit(blockElement);
+    }
+
+    private String getResultScript() {
         StringBuffer scriptBuffer = new StringBuffer();
 
         scriptBuffer.append(RIVR_SCOPE_OBJECT + ".addValueResult({");
@@ -104,8 +111,28 @@ public class Script extends VoiceXmlOutputTurn {
         }
         scriptBuffer.append("});");
 
-        createScript(blockElement, scriptBuffer.toString());
-        createGotoSubmit(blockElement);
+        return scriptBuffer.toString();
+    }
+
+    @Override
+    protected boolean canRenderVoiceXmlDocument() {
+        return getClass() == Script.class;
+    }
+
+    @Override
+    protected void writeVoiceXmlForm(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        writeVariables(writer, mVariables);
+
+        writer.writeStartElement(BLOCK_ELEMENT);
+
+        if (mCode != null) {
+            writeScript(writer, mCode);
+        }
+
+        writeScript(writer, getResultScript());
+        writeGotoSubmit(writer);
+        writer.writeEndElement();
     }
 
     /**
@@ -5,6 +5,8 @@ package com.nuecho.rivr.voicexml.turn.output;
 
 import static com.nuecho.rivr.voicexml.rendering.voicexml.VoiceXmlDomUtil.*;
 
+import java.io.*;
+
 import javax.json.*;
 
 import org.w3c.dom.*;
@@ -57,6 +59,16 @@ public abstract class VoiceXmlOutputTurn extends VoiceXmlDocumentTurn implements
         return document;
     }
 
+    @Override
+    protected void renderVoiceXmlDocument(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext, int turnIndex)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        VoiceXmlDocumentSkeleton skeleton = VoiceXmlDocumentSkeleton.getOutputTurnSkeleton(dialogueContext,
+                                                                                           writer.isIndenting());
+        skeleton.writeDocumentStart(writer, dialogueContext);
+        writeVoiceXmlForm(writer, dialogueContext);
+        skeleton.writeDocumentEnd(writer, getSubmitPath(dialogueContext, turnIndex, getName()));
+    }
+
     private static void addEventHandler(Element vxmlElement) {
         Element catchElement = DomUtils.appendNewElement(vxmlElement, CATCH_ELEMENT);
 
@@ -82,19 +94,36 @@ public abstract class VoiceXmlOutputTurn extends VoiceXmlDocumentTurn implements
     }
 
     protected static void addEventHandlerScript(Element parent) {
-        StringBuilder addEventScript = new StringBuilder();
-        addEventScript.append(RIVR_SCOPE_OBJECT)
-                      .append(".addEventResult(")
-                      .append(EVENT_NAME_VARIABLE)
-                      .append(", ")
-                      .append(EVENT_MESSAGE_VARIABLE)
-                      .append(")");
-
-        createScript(parent, addEventScript.toString());
+        createScript(parent, getEventHandlerScript());
+    }
+
+    /**
+     * Streaming counterpart of {@link #addEventHandlerScript(Element)}.
+     *
+     * @since 1.0.13
+     */
+    protected static void writeEventHandlerScript(VoiceXmlWriter writer) throws IOException {
+        VoiceXmlWriterUtil.writeScript(writer, getEventHandlerScript());
     }
 
     protected abstract void fillVoiceXmlDocument(Document document,
                                                  Element formElement,
                                                  VoiceXmlDialogueContext dialogueContext)
             throws VoiceXmlDocumentRenderingException;
+
+    /**
+     * Streaming counterpart of
+     * {@link #fillVoiceXmlDocument(Document, Element, VoiceXmlDialogueContext)}
+     * : writes the content of the main form. Must be implemented by
+     * subclasses for which {@link #canRenderVoiceXmlDocument()} returns
+     * <code>true</code>.
+     *
+     * @param writer the writer, positioned inside the main form
+     * @param dialogueContext the dialogue context
+     * @since 1.0.13
+     */
+    protected void writeVoiceXmlForm(VoiceXmlWriter writer, VoiceXmlDialogueContext dialogueContext)
+            throws VoiceXmlDocumentRenderingException, IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot be rendered without DOM.");
+    }
 }
\ No newline at end of file
@@ -3,16 +3,24 @@
  */
 package com.nuecho.rivr.voicexml.turn.output.audio;
 
+import java.io.*;
+
 import javax.json.*;
 
 import org.w3c.dom.*;
 
 import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.*;
 import com.nuecho.rivr.voicexml.util.json.*;
 
 /**
  * A {@link SpeechSynthesis} represents a text that will be spoken using a
  * synthesis voice. It can be either a string of text or a SSML document.
+ * <p>
+ * SSML content reused by many turns should be created with
+ * {@link #shared(String, DocumentFragment)} or {@link #shared(String)}: the
+ * SSML nodes are then serialized once for all of them instead of being copied
+ * in each VoiceXML document.
  * 
  * @author Nu Echo Inc.
  * @see <a
@@ -25,6 +33,10 @@ public final class SpeechSynthesis extends AudioItem {
 
     private final String mText;
     private final DocumentFragment mDocumentFragment;
+    private final SharedXmlFragment mSharedFragment;
+
+    //serialized SSML fragment, computed once
+    private volatile String mSerializedDocumentFragment;
 
     /**
      * @param text The synthesis text. Not empty.
@@ -33,15 +45,66 @@ public final class SpeechSynthesis extends AudioItem {
         Assert.notEmpty(text, "text");
         mText = text;
         mDocumentFragment = null;
+        mSharedFragment = null;
     }
 
     /**
-     * @param documentFragment The SSML document. Not null.
+     * @param documentFragment The SSML document. Not null. Must not be modified
+     *            afterwards since its serialized form is computed only once.
      */
     public SpeechSynthesis(DocumentFragment documentFragment) {
         Assert.notNull(documentFragment, "documentFragment");
         mDocumentFragment = documentFragment;
         mText = null;
+        mSharedFragment = null;
+    }
+
+    /**
+     * @param sharedFragment The shared fragment holding the SSML document. Not
+     *            null. Its node must be a {@link DocumentFragment}.
+     * @since 1.0.13
+     */
+    public SpeechSynthesis(SharedXmlFragment sharedFragment) {
+        Assert.notNull(sharedFragment, "sharedFragment");
+        if (!(sharedFragment.getNode() instanceof DocumentFragment))
+            throw new IllegalArgumentException("Shared fragment '"
+                                               + sharedFragment.getName()
+                                               + "' is not a document fragment.");
+        mDocumentFragment = (DocumentFragment) sharedFragment.getNode();
+        mText = null;
+        mSharedFragment = sharedFragment;
+    }
+
+    /**
+     * Registers a SSML document as a {@link SharedXmlFragment} and creates a
+     * speech synthesis referring to it. If the document fragment is already
+     * registered under this name, the registered fragment is reused.
+     *
+     * @param name The name of the shared fragment. Not null.
+     * @param documentFragment The SSML document. Not null. Must not be
+     *            modified afterwards.
+     * @throws IllegalArgumentException if another node is already registered
+     *             under this name.
+     * @see SharedXmlFragment#register(String, DocumentFragment)
+     * @since 1.0.13
+     */
+    public static SpeechSynthesis shared(String name, DocumentFragment documentFragment) {
+        return new SpeechSynthesis(SharedXmlFragment.register(name, documentFragment));
+    }
+
+    /**
+     * Creates a speech synthesis referring to a registered
+     * {@link SharedXmlFragment}.
+     *
+     * @param name The name of the shared fragment. Not null.
+     * @throws IllegalArgumentException if no fragment is registered under
+     *             this name or if it is not a document fragment.
+     * @since 1.0.13
+     */
+    public static SpeechSynthesis shared(String name) {
+        SharedXmlFragment sharedFragment = SharedXmlFragment.get(name);
+        if (sharedFragment == null) throw new IllegalArgumentException("No shared fragment named '" + name + "'.");
+        return new SpeechSynthesis(sharedFragment);
     }
 
     @Override
@@ -61,10 +124,24 @@ public final class SpeechSynthesis extends AudioItem {
         return mDocumentFragment != null;
     }
 
+    /**
+     * @return the shared fragment holding the SSML document, or
+     *         <code>null</code> if the SSML document is not shared
+     * @since 1.0.13
+     */
+    public SharedXmlFragment getSharedFragment() {
+        return mSharedFragment;
+    }
+
     @Override
     protected void addJsonProperties(JsonObjectBuilder builder) {
         if (isSsml()) {
-            JsonUtils.addXmlNodeProperty(builder, SSML_PROPERTY, "SSML fragment", mDocumentFragment);
+            String ssml = getSerializedDocumentFragment();
+            if (ssml != null) {
+                builder.add(SSML_PROPERTY, ssml);
+            } else {
+                JsonUtils.addXmlNodeProperty(builder, SSML_PROPERTY, "SSML fragment", mDocumentFragment);
+            }
         } else {
             builder.addNull(SSML_PROPERTY);
         }
@@ -72,6 +149,21 @@ public final class SpeechSynthesis extends AudioItem {
         JsonUtils.add(builder, TEXT_PROPERTY, mText);
     }
 
+    private String getSerializedDocumentFragment() {
+        if (mSharedFragment != null) return mSharedFragment.getSerializedNode();
+
+        String serializedDocumentFragment = mSerializedDocumentFragment;
+        if (serializedDocumentFragment == null) {
+            try {
+                serializedDocumentFragment = DomUtils.writeToString(mDocumentFragment);
+            } catch (IOException exception) {
+                return null;
+            }
+            mSerializedDocumentFragment = serializedDocumentFragment;
+        }
+        return serializedDocumentFragment;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
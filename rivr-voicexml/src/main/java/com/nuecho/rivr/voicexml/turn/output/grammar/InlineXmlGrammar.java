@@ -3,16 +3,24 @@
  */
 package com.nuecho.rivr.voicexml.turn.output.grammar;
 
+import java.io.*;
+
 import javax.json.*;
 
 import org.w3c.dom.*;
 
 import com.nuecho.rivr.core.util.*;
+import com.nuecho.rivr.voicexml.rendering.voicexml.*;
 import com.nuecho.rivr.voicexml.util.json.*;
 
 /**
  * An {@link InlineXmlGrammar} represents an XML source grammar inlined in the
  * VoiceXML document.
+ * <p>
+ * Grammars reused by many turns should be created with
+ * {@link #shared(String, Document)} or {@link #shared(String)}: the grammar
+ * document is then serialized once for all of them instead of being copied
+ * in each VoiceXML document.
  * 
  * @author Nu Echo Inc.
  */
@@ -21,19 +29,79 @@ public final class InlineXmlGrammar extends GrammarItem {
     private static final String INLINE_XML_ELEMENT_TYPE = "inlineXml";
 
     private final Document mDocument;
+    private final SharedXmlFragment mSharedFragment;
+
+    //serialized grammar document, computed once
+    private volatile String mSerializedDocument;
 
     /**
-     * @param document The XML source of the grammar. Not null.
+     * @param document The XML source of the grammar. Not null. Must not be
+     *            modified afterwards since its serialized form is computed only
+     *            once.
      */
     public InlineXmlGrammar(Document document) {
         Assert.notNull(document, "document");
         mDocument = document;
+        mSharedFragment = null;
+    }
+
+    /**
+     * @param sharedFragment The shared fragment holding the XML source of the
+     *            grammar. Not null. Its node must be a {@link Document}.
+     * @since 1.0.13
+     */
+    public InlineXmlGrammar(SharedXmlFragment sharedFragment) {
+        Assert.notNull(sharedFragment, "sharedFragment");
+        if (!(sharedFragment.getNode() instanceof Document))
+            throw new IllegalArgumentException("Shared fragment '" + sharedFragment.getName() + "' is not a document.");
+        mDocument = (Document) sharedFragment.getNode();
+        mSharedFragment = sharedFragment;
+    }
+
+    /**
+     * Registers a grammar document as a {@link SharedXmlFragment} and creates
+     * a grammar referring to it. If the document is already registered under
+     * this name, the registered fragment is reused.
+     *
+     * @param name The name of the shared fragment. Not null.
+     * @param document The XML source of the grammar. Not null. Must not be
+     *            modified afterwards.
+     * @throws IllegalArgumentException if another node is already registered
+     *             under this name.
+     * @see SharedXmlFragment#register(String, Document)
+     * @since 1.0.13
+     */
+    public static InlineXmlGrammar shared(String name, Document document) {
+        return new InlineXmlGrammar(SharedXmlFragment.register(name, document));
+    }
+
+    /**
+     * Creates a grammar referring to a registered {@link SharedXmlFragment}.
+     *
+     * @param name The name of the shared fragment. Not null.
+     * @throws IllegalArgumentException if no fragment is registered under
+     *             this name or if it is not a document.
+     * @since 1.0.13
+     */
+    public static InlineXmlGrammar shared(String name) {
+        SharedXmlFragment sharedFragment = SharedXmlFragment.get(name);
+        if (sharedFragment == null) throw new IllegalArgumentException("No shared fragment named '" + name + "'.");
+        return new InlineXmlGrammar(sharedFragment);
     }
 
     public Document getDocument() {
         return mDocument;
     }
 
+    /**
+     * @return the shared fragment holding the grammar document, or
+     *         <code>null</code> if the grammar is not shared
+     * @since 1.0.13
+     */
+    public SharedXmlFragment getSharedFragment() {
+        return mSharedFragment;
+    }
+
     @Override
     public String getElementType() {
         return INLINE_XML_ELEMENT_TYPE;
@@ -41,7 +109,27 @@ public final class InlineXmlGrammar extends GrammarItem {
 
     @Override
     protected void addJsonProperties(JsonObjectBuilder builder) {
-        JsonUtils.addXmlNodeProperty(builder, SOURCE_PROPERTY, "grammar document", mDocument);
+        String source = getSerializedDocument();
+        if (source != null) {
+            builder.add(SOURCE_PROPERTY, source);
+        } else {
+            JsonUtils.addXmlNodeProperty(builder, SOURCE_PROPERTY, "grammar document", mDocument);
+        }
+    }
+
+    private String getSerializedDocument() {
+        if (mSharedFragment != null) return mSharedFragment.getSerializedNode();
+
+        String serializedDocument = mSerializedDocument;
+        if (serializedDocument == null) {
+            try {
+                serializedDocument = DomUtils.writeToString(mDocument);
+            } catch (IOException exception) {
+                return null;
+            }
+            mSerializedDocument = serializedDocument;
+        }
+        return serializedDocument;
     }
 
     @Override
@@ -8,13 +8,16 @@ import java.io.*;
 
 import javax.json.*;
 import javax.json.spi.*;
+import javax.json.stream.*;
+import javax.json.stream.JsonParser.Event;
 
 import org.w3c.dom.*;
 
 import com.nuecho.rivr.core.util.*;
 
 /**
- * JSON-related helper methods.
+ * JSON-related helper methods. All JSON objects are created through the
+ * {@link JsonProvider} set with {@link #setProvider(JsonProvider)}.
  * 
  * @author Nu Echo Inc.
  */
@@ -24,18 +27,40 @@ public final class JsonUtils {
         //utility class: instantiation forbidden
     }
 
-    private static final JsonProvider PROVIDER = JsonProvider.provider();
+    private static volatile JsonProvider sProvider = JsonProvider.provider();
+
+    /**
+     * Sets the JSON-P provider used to build, read, parse and write JSON. This
+     * setting is global to the class loader of Rivr. By default, the provider
+     * is the one returned by {@link JsonProvider#provider()}: the first
+     * provider registered with {@link java.util.ServiceLoader} or, if there is
+     * none, the reference implementation.
+     * 
+     * @param provider the provider. Cannot be <code>null</code>.
+     * @since 1.0.13
+     */
+    public static void setProvider(JsonProvider provider) {
+        Assert.notNull(provider, "provider");
+        sProvider = provider;
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public static JsonProvider getProvider() {
+        return sProvider;
+    }
 
     public static JsonArrayBuilder createArrayBuilder() {
-        return PROVIDER.createArrayBuilder();
+        return sProvider.createArrayBuilder();
     }
 
     public static JsonObjectBuilder createObjectBuilder() {
-        return PROVIDER.createObjectBuilder();
+        return sProvider.createObjectBuilder();
     }
 
     public static JsonString wrap(final String string) {
-        return Json.createArrayBuilder().add(string).build().getJsonString(0);
+        return createArrayBuilder().add(string).build().getJsonString(0);
     }
 
     public static void addDurationProperty(JsonObjectBuilder builder, String propertyName, Duration duration) {
@@ -97,27 +122,108 @@ public final class JsonUtils {
     }
 
     public static JsonReader createReader(InputStream inputStream) {
-        return PROVIDER.createReader(inputStream);
+        return sProvider.createReader(inputStream);
     }
 
     public static JsonReader createReader(Reader reader) {
-        return PROVIDER.createReader(reader);
+        return sProvider.createReader(reader);
     }
 
     public static JsonReader createReader(String string) {
         return createReader(new StringReader(string));
     }
 
+    /**
+     * @since 1.0.13
+     */
+    public static JsonParser createParser(Reader reader) {
+        return sProvider.createParser(reader);
+    }
+
+    /**
+     * @since 1.0.13
+     */
+    public static JsonParser createParser(String string) {
+        return createParser(new StringReader(string));
+    }
+
+    /**
+     * Builds the value starting at the current event of a parser. If the value
+     * is an object or an array, the parser is advanced to its end.
+     * 
+     * @param parser the parser
+     * @param event the current event, as returned by {@link JsonParser#next()}
+     * @throws JsonParsingException if the event does not start a value
+     * @since 1.0.13
+     */
+    public static JsonValue readValue(JsonParser parser, Event event) {
+        switch (event) {
+            case START_OBJECT:
+                JsonObjectBuilder objectBuilder = createObjectBuilder();
+                while (parser.next() == Event.KEY_NAME) {
+                    String name = parser.getString();
+                    objectBuilder.add(name, readValue(parser, parser.next()));
+                }
+                return objectBuilder.build();
+            case START_ARRAY:
+                JsonArrayBuilder arrayBuilder = createArrayBuilder();
+                Event elementEvent;
+                while ((elementEvent = parser.next()) != Event.END_ARRAY) {
+                    arrayBuilder.add(readValue(parser, elementEvent));
+                }
+                return arrayBuilder.build();
+            case VALUE_STRING:
+                return wrap(parser.getString());
+            case VALUE_NUMBER:
+                return createArrayBuilder().add(parser.getBigDecimal()).build().getJsonNumber(0);
+            case VALUE_TRUE:
+                return JsonValue.TRUE;
+            case VALUE_FALSE:
+                return JsonValue.FALSE;
+            case VALUE_NULL:
+                return JsonValue.NULL;
+            default:
+                throw new JsonParsingException("Unexpected event: " + event, parser.getLocation());
+        }
+    }
+
+    /**
+     * Skips the value starting at the current event of a parser without
+     * building it. If the value is an object or an array, the parser is
+     * advanced to its end.
+     * 
+     * @param parser the parser
+     * @param event the current event, as returned by {@link JsonParser#next()}
+     * @since 1.0.13
+     */
+    public static void skipValue(JsonParser parser, Event event) {
+        if (event != Event.START_OBJECT && event != Event.START_ARRAY) return;
+
+        int depth = 1;
+        while (depth > 0) {
+            Event nextEvent = parser.next();
+            if (nextEvent == Event.START_OBJECT || nextEvent == Event.START_ARRAY) {
+                depth++;
+            } else if (nextEvent == Event.END_OBJECT || nextEvent == Event.END_ARRAY) {
+                depth--;
+            }
+        }
+    }
+
     public static JsonWriter createWriter(OutputStream outputStream) {
-        return PROVIDER.createWriter(outputStream);
+        return sProvider.createWriter(outputStream);
     }
 
     public static JsonWriter createWriter(Writer writer) {
-        return PROVIDER.createWriter(writer);
+        return sProvider.createWriter(writer);
     }
 
+    /**
+     * Writes a structure. The writer is flushed but not closed, whatever the
+     * provider does with the writers it is given.
+     */
     public static void write(Writer writer, JsonStructure structure) {
-        JsonWriter jsonWriter = createWriter(writer);
+        JsonWriter jsonWriter = createWriter(new NonClosingWriter(writer));
         jsonWriter.write(structure);
     }
 
@@ -161,4 +267,19 @@ public final class JsonUtils {
         }
     }
 
+    /**
+     * Some providers close the underlying writer when a {@link JsonWriter} is
+     * written.
+     */
+    private static final class NonClosingWriter extends FilterWriter {
+
+        public NonClosingWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023 Nu Echo Inc. All rights reserved.
+ */
+
+package com.nuecho.rivr.voicexml.util.json;
+
+import java.io.*;
+
+import javax.json.*;
+import javax.json.stream.*;
+import javax.json.stream.JsonParser.Event;
+
+import com.nuecho.rivr.core.util.*;
+
+/**
+ * {@link JsonValue} built only when first requested. Until then, only the JSON
+ * text in which the value appears and the offset at which it starts are kept.
+ * 
+ * @author Nu Echo Inc.
+ * @since 1.0.13
+ */
+public final class LazyJsonValue {
+
+    private String mSource;
+    private final int mOffset;
+    private volatile JsonValue mValue;
+
+    /**
+     * Creates an already built value.
+     * 
+     * @param value the value. Cannot be <code>null</code>.
+     */
+    public LazyJsonValue(JsonValue value) {
+        Assert.notNull(value, "value");
+        mValue = value;
+        mOffset = 0;
+    }
+
+    /**
+     * Creates a value built on demand from JSON text. The text is not
+     * validated.
+     * 
+     * @param source the JSON text. Cannot be <code>null</code>.
+     * @param offset the index of the first character of the value in
+     *            <code>source</code>
+     */
+    public LazyJsonValue(String source, int offset) {
+        Assert.notNull(source, "source");
+        Assert.between(0, offset, source.length() - 1);
+        mSource = source;
+        mOffset = offset;
+    }
+
+    /**
+     * Reads the value starting at the current event of a parser reading
+     * <code>source</code>. The parser is advanced to the end of the value. An
+     * object or an array is only validated and will be built when
+     * {@link #getValue()} is called. Other values, and values whose position
+     * is not reported by the parser, are built immediately.
+     * 
+     * @param source the JSON text read by the parser
+     * @param parser the parser
+     * @param event the current event, as returned by {@link JsonParser#next()}
+     */
+    public static LazyJsonValue read(String source, JsonParser parser, Event event) {
+        if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+            //parsers report the offset following the opening character
+            long offset = parser.getLocation().getStreamOffset() - 1;
+            char openingCharacter = event == Event.START_OBJECT ? '{' : '[';
+            if (offset >= 0 && offset < source.length() && source.charAt((int) offset) == openingCharacter) {
+                JsonUtils.skipValue(parser, event);
+                return new LazyJsonValue(source, (int) offset);
+            }
+        }
+
+        return new LazyJsonValue(JsonUtils.readValue(parser, event));
+    }
+
+    public JsonValue getValue() {
+        JsonValue value = mValue;
+        if (value != null) return value;
+
+        synchronized (this) {
+            if (mValue == null) {
+                mValue = parse();
+                mSource = null;
+            }
+            return mValue;
+        }
+    }
+
+    public boolean isBuilt() {
+        return mValue != null;
+    }
+
+    private JsonValue parse() {
+        StringReader reader = new StringReader(mSource);
+        try {
+            reader.skip(mOffset);
+        } catch (IOException exception) {
+            throw new JsonException("Unable to read JSON value.", exception);
+        }
+
+        JsonParser parser = JsonUtils.createParser(reader);
+        try {
+            return JsonUtils.readValue(parser, parser.next());
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getValue().toString();
+    }
+}